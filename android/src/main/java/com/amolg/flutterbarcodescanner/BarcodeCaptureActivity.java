@@ -28,6 +28,9 @@ import android.content.pm.PackageManager;
 import android.hardware.Camera;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
 
 import androidx.annotation.NonNull;
 
@@ -46,12 +49,19 @@ import android.widget.ImageView;
 import android.widget.Toast;
 
 
+import com.amolg.flutterbarcodescanner.camera.CameraCapabilityCache;
 import com.amolg.flutterbarcodescanner.camera.CameraSource;
 import com.amolg.flutterbarcodescanner.camera.CameraSourcePreview;
+import com.amolg.flutterbarcodescanner.camera.FrameMetricsRecorder;
 import com.amolg.flutterbarcodescanner.camera.GraphicOverlay;
+import com.amolg.flutterbarcodescanner.camera.PowerManagerThermalSource;
+import com.amolg.flutterbarcodescanner.camera.StartupTrace;
+import com.amolg.flutterbarcodescanner.camera.ThermalSource;
+import com.amolg.flutterbarcodescanner.constants.AppConstants;
 import com.google.android.gms.common.ConnectionResult;
 import com.google.android.gms.common.GoogleApiAvailability;
 import com.google.android.gms.common.api.CommonStatusCodes;
+import com.google.android.gms.vision.Detector;
 import com.google.android.gms.vision.MultiProcessor;
 import com.google.android.gms.vision.barcode.Barcode;
 import com.google.android.gms.vision.barcode.BarcodeDetector;
@@ -73,6 +83,8 @@ public final class BarcodeCaptureActivity extends AppCompatActivity implements B
 
     // constants used to pass extra data in the intent
     public static final String BarcodeObject = "Barcode";
+    public static final String CaptureNanos = "CaptureNanos";
+    public static final String DetectedNanos = "DetectedNanos";
 
     private CameraSource mCameraSource;
     private CameraSourcePreview mPreview;
@@ -99,6 +111,14 @@ public final class BarcodeCaptureActivity extends AppCompatActivity implements B
     }
 
     private int flashStatus = USE_FLASH.OFF.ordinal();
+    // Whether the torch follows the brightness of the preview, until the user switches it by hand.
+    private boolean autoTorch = FlutterBarcodeScannerPlugin.isAutoTorch;
+    // Whether zoom follows detection results, until the user zooms by hand.
+    private boolean autoZoom = FlutterBarcodeScannerPlugin.isAutoZoom;
+
+    // Records frame times of the scan screen on its own thread, from Android N, while resumed.
+    private FrameMetricsRecorder mFrameMetricsRecorder;
+    private HandlerThread mFrameMetricsThread;
 
     /**
      * Initializes the UI and creates the detector pipeline.
@@ -106,6 +126,7 @@ public final class BarcodeCaptureActivity extends AppCompatActivity implements B
     @Override
     public void onCreate(Bundle icicle) {
         super.onCreate(icicle);
+        StartupTrace.beginSection("BarcodeCaptureActivity.onCreate");
         try {
             setContentView(R.layout.barcode_capture);
 
@@ -139,6 +160,8 @@ public final class BarcodeCaptureActivity extends AppCompatActivity implements B
         // permission is not granted yet, request permission.
         int rc = ActivityCompat.checkSelfPermission(this, Manifest.permission.CAMERA);
             if (rc == PackageManager.PERMISSION_GRANTED) {
+                FlutterBarcodeScannerPlugin.startupTrace.mark(StartupTrace.PERMISSION_RESOLVED,
+                        SystemClock.elapsedRealtimeNanos());
                 createCameraSource(autoFocus, useFlash, CameraSource.CAMERA_FACING_BACK);
             } else {
                 requestCameraPermission();
@@ -147,7 +170,11 @@ public final class BarcodeCaptureActivity extends AppCompatActivity implements B
             gestureDetector = new GestureDetector(this, new CaptureGestureListener());
             scaleGestureDetector = new ScaleGestureDetector(this, new ScaleListener());
 
+            FlutterBarcodeScannerPlugin.startupTrace.mark(StartupTrace.ACTIVITY_CREATED,
+                    SystemClock.elapsedRealtimeNanos());
         } catch (Exception e) {
+        } finally {
+            StartupTrace.endSection();
         }
     }
 
@@ -201,16 +228,29 @@ public final class BarcodeCaptureActivity extends AppCompatActivity implements B
      */
     @SuppressLint("InlinedApi")
     private void createCameraSource(boolean autoFocus, boolean useFlash, int cameraFacing) {
-        Context context = getApplicationContext();
+        final Context context = getApplicationContext();
 
         // A barcode detector is created to track barcodes.  An associated multi-processor instance
         // is set to receive the barcode detection results, track the barcodes, and maintain
         // graphics for each barcode on screen.  The factory is used by the multi-processor to
-        // create a separate tracker instance for each barcode.
-        BarcodeDetector barcodeDetector = new BarcodeDetector.Builder(context).build();
+        // create a separate tracker instance for each barcode.  The camera source delivers the
+        // results to the multi-processor itself, so that detection can be spread over workers.
+        // Only the requested formats are decoded, which saves running every decoder on every frame.
+        // A detector and camera prepared by a prewarm are used if they match this scan.
+        final int barcodeFormats = FlutterBarcodeScannerPlugin.barcodeFormats;
+        BarcodeDetector barcodeDetector = FlutterBarcodeScannerPlugin.prewarm.takeDetector(barcodeFormats);
+        Camera prewarmedCamera = FlutterBarcodeScannerPlugin.prewarm.takeCamera(cameraFacing);
+        FlutterBarcodeScannerPlugin.prewarm.release();
+        if (barcodeDetector != null || prewarmedCamera != null) {
+            FlutterBarcodeScannerPlugin.startupTrace.setPrewarmed(true);
+        }
+        if (barcodeDetector == null) {
+            barcodeDetector = new BarcodeDetector.Builder(context)
+                    .setBarcodeFormats(barcodeFormats)
+                    .build();
+        }
         BarcodeTrackerFactory barcodeFactory = new BarcodeTrackerFactory(mGraphicOverlay, this);
-        barcodeDetector.setProcessor(
-                new MultiProcessor.Builder<>(barcodeFactory).build());
+        MultiProcessor<Barcode> barcodeProcessor = new MultiProcessor.Builder<>(barcodeFactory).build();
 
         if (!barcodeDetector.isOperational()) {
             // Check for low storage.  If there is low storage, the native library will not be
@@ -226,11 +266,54 @@ public final class BarcodeCaptureActivity extends AppCompatActivity implements B
         // Creates and starts the camera.  Note that this uses a higher resolution in comparison
         // to other detection examples to enable the barcode detector to detect small barcodes
         // at long distances.
+        PreviewProfile preview = new PreviewProfileStore(context).getOrDefault();
         CameraSource.Builder builder = new CameraSource.Builder(getApplicationContext(), barcodeDetector)
                 .setFacing(cameraFacing)
-                .setRequestedPreviewSize(1600, 1024)
-                .setRequestedFps(30.0f)
-                .setFlashMode(useFlash ? Camera.Parameters.FLASH_MODE_TORCH : null);
+                .setOpenedCamera(prewarmedCamera)
+                .setRequestedPreviewSize(preview.previewWidth, preview.previewHeight)
+                .setRequestedFps(preview.fps)
+                .setFlashMode(useFlash ? Camera.Parameters.FLASH_MODE_TORCH : null)
+                .setProcessor(barcodeProcessor)
+                .setDetectionWorkers(FlutterBarcodeScannerPlugin.detectionWorkers, new CameraSource.DetectorFactory() {
+                    @Override
+                    public Detector<?> create() {
+                        return new BarcodeDetector.Builder(context)
+                                .setBarcodeFormats(barcodeFormats)
+                                .build();
+                    }
+                })
+                .setDetectionRate(AppConstants.DETECTION_MIN_FPS, AppConstants.DETECTION_MAX_FPS,
+                        AppConstants.DETECTION_IDLE_FPS, AppConstants.DETECTION_IDLE_AFTER_EMPTY_FRAMES)
+                .setStats(FlutterBarcodeScannerPlugin.scannerStats)
+                .setCapabilityCache(new CameraCapabilityCache(context))
+                .setStartupTrace(FlutterBarcodeScannerPlugin.startupTrace)
+                .setUseCamera2(FlutterBarcodeScannerPlugin.useCamera2)
+                .setFocusOnScanRegion(FlutterBarcodeScannerPlugin.isScanWindowFocus)
+                .setAutoTorch(autoTorch);
+        if (FlutterBarcodeScannerPlugin.refocusAfterMs > 0) {
+            builder = builder.setRefocusAfterIdle(FlutterBarcodeScannerPlugin.refocusAfterMs);
+        }
+        if (autoZoom) {
+            builder = builder.setAutoZoom(AppConstants.AUTO_ZOOM_MAX_RATIO, new CameraSource.ItemMeasurer() {
+                @Override
+                public int getWidth(Object item) {
+                    return ((Barcode) item).getBoundingBox().width();
+                }
+            });
+        }
+
+        // Only decode inside the scan window, moving the results back to full frame coordinates
+        // so that graphics and taps line up with the preview.
+        if (FlutterBarcodeScannerPlugin.isScanWindowOnly) {
+            builder = builder.setScanRegionMapper(new BarcodeResultMapper());
+        }
+
+        // Scale scanning back while the device is hot.
+        ThermalSource thermalSource = FlutterBarcodeScannerPlugin.isThermalScaling
+                ? PowerManagerThermalSource.create(context) : null;
+        if (thermalSource != null) {
+            builder = builder.setThermalSource(thermalSource, new BarcodeResultMapper());
+        }
 
         // make sure that auto focus is an available option
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
@@ -244,6 +327,20 @@ public final class BarcodeCaptureActivity extends AppCompatActivity implements B
             mCameraSource.release();
         }
         mCameraSource = builder.build();
+        mCameraSource.setThermalListener(new CameraSource.ThermalListener() {
+            @Override
+            public void onThermalTierChanged(int tier, boolean animateOverlay) {
+                mGraphicOverlay.setScanLineAnimated(animateOverlay);
+            }
+        });
+        mCameraSource.setAutoTorchListener(new CameraSource.AutoTorchListener() {
+            @Override
+            public void onAutoTorch(boolean on) {
+                flashStatus = on ? USE_FLASH.ON.ordinal() : USE_FLASH.OFF.ordinal();
+                imgViewBarcodeCaptureUseFlash.setImageResource(
+                        on ? R.drawable.ic_barcode_flash_on : R.drawable.ic_barcode_flash_off);
+            }
+        });
     }
 
     /**
@@ -253,6 +350,13 @@ public final class BarcodeCaptureActivity extends AppCompatActivity implements B
     protected void onResume() {
         super.onResume();
         startCameraSource();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            mFrameMetricsThread = new HandlerThread("Frame metrics");
+            mFrameMetricsThread.start();
+            mFrameMetricsRecorder = new FrameMetricsRecorder(FlutterBarcodeScannerPlugin.scannerStats,
+                    new Handler(mFrameMetricsThread.getLooper()));
+            mFrameMetricsRecorder.start(getWindow());
+        }
     }
 
     /**
@@ -261,6 +365,12 @@ public final class BarcodeCaptureActivity extends AppCompatActivity implements B
     @Override
     protected void onPause() {
         super.onPause();
+        if (mFrameMetricsRecorder != null) {
+            mFrameMetricsRecorder.stop(getWindow());
+            mFrameMetricsRecorder = null;
+            mFrameMetricsThread.quitSafely();
+            mFrameMetricsThread = null;
+        }
         if (mPreview != null) {
             mPreview.stop();
         }
@@ -305,6 +415,8 @@ public final class BarcodeCaptureActivity extends AppCompatActivity implements B
 
         if (grantResults.length != 0 && grantResults[0] == PackageManager.PERMISSION_GRANTED) {
             // we have permission, so create the camerasource
+            FlutterBarcodeScannerPlugin.startupTrace.mark(StartupTrace.PERMISSION_RESOLVED,
+                    SystemClock.elapsedRealtimeNanos());
             boolean autoFocus = true;
             boolean useFlash = false;
             createCameraSource(autoFocus, useFlash, CameraSource.CAMERA_FACING_BACK);
@@ -330,9 +442,12 @@ public final class BarcodeCaptureActivity extends AppCompatActivity implements B
      * again when the camera source is created.
      */
     private void startCameraSource() throws SecurityException {
-        // check that the device has play services available.
-        int code = GoogleApiAvailability.getInstance().isGooglePlayServicesAvailable(
-                getApplicationContext());
+        // check that the device has play services available, unless a prewarm already has.
+        int code = FlutterBarcodeScannerPlugin.prewarm.getPlayServicesStatus();
+        if (code == -1) {
+            code = GoogleApiAvailability.getInstance().isGooglePlayServicesAvailable(
+                    getApplicationContext());
+        }
         if (code != ConnectionResult.SUCCESS) {
             Dialog dlg = GoogleApiAvailability.getInstance().getErrorDialog(this, code, RC_HANDLE_GMS);
             dlg.show();
@@ -368,6 +483,9 @@ public final class BarcodeCaptureActivity extends AppCompatActivity implements B
         float bestDistance = Float.MAX_VALUE;
         for (BarcodeGraphic graphic : mGraphicOverlay.getGraphics()) {
             Barcode barcode = graphic.getBarcode();
+            if (barcode == null) {
+                continue;
+            }
             if (barcode.getBoundingBox().contains((int) x, (int) y)) {
                 // Exact hit, no need to keep looking.
                 best = barcode;
@@ -398,6 +516,9 @@ public final class BarcodeCaptureActivity extends AppCompatActivity implements B
         if (i == R.id.imgViewBarcodeCaptureUseFlash &&
                 getPackageManager().hasSystemFeature(PackageManager.FEATURE_CAMERA_FLASH)) {
             try {
+                // Switching by hand takes the torch out of automatic control.
+                autoTorch = false;
+                mCameraSource.setAutoTorchEnabled(false);
                 if (flashStatus == USE_FLASH.OFF.ordinal()) {
                     flashStatus = USE_FLASH.ON.ordinal();
                     imgViewBarcodeCaptureUseFlash.setImageResource(R.drawable.ic_barcode_flash_on);
@@ -415,7 +536,7 @@ public final class BarcodeCaptureActivity extends AppCompatActivity implements B
             Barcode barcode = new Barcode();
             barcode.rawValue = "-1";
             barcode.displayValue = "-1";
-            FlutterBarcodeScannerPlugin.onBarcodeScanReceiver(barcode);
+            FlutterBarcodeScannerPlugin.onBarcodeScanReceiver(barcode, 0, 0);
             finish();
         } else if (i == R.id.imgViewSwitchCamera) {
             int currentFacing = mCameraSource.getCameraFacing();
@@ -516,18 +637,23 @@ public final class BarcodeCaptureActivity extends AppCompatActivity implements B
          */
         @Override
         public void onScaleEnd(ScaleGestureDetector detector) {
+            // Zooming by hand takes zoom out of automatic control.
+            autoZoom = false;
+            mCameraSource.setAutoZoomEnabled(false);
             mCameraSource.doZoom(detector.getScaleFactor());
         }
     }
 
     @Override
-    public void onBarcodeDetected(Barcode barcode) {
+    public void onBarcodeDetected(Barcode barcode, long captureNanos, long detectedNanos) {
         if (null != barcode) {
             if (FlutterBarcodeScannerPlugin.isContinuousScan) {
-                FlutterBarcodeScannerPlugin.onBarcodeScanReceiver(barcode);
+                FlutterBarcodeScannerPlugin.onBarcodeScanReceiver(barcode, captureNanos, detectedNanos);
             } else {
                 Intent data = new Intent();
                 data.putExtra(BarcodeObject, barcode);
+                data.putExtra(CaptureNanos, captureNanos);
+                data.putExtra(DetectedNanos, detectedNanos);
                 setResult(CommonStatusCodes.SUCCESS, data);
                 finish();
             }
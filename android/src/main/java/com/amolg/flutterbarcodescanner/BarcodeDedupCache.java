@@ -0,0 +1,107 @@
+package com.amolg.flutterbarcodescanner;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Suppresses repeats of a barcode within a time window, so that a code which the tracker loses
+ * and picks up again is only sent to Flutter once.  Codes are keyed on format and raw value.  The
+ * cache holds at most a fixed number of codes, dropping the least recently seen when full.
+ * <p/>
+ * A code is delivered again once the window has passed since it was last delivered, so a code
+ * held in view is announced once per window.  Times are passed in, in nanoseconds, so the cache
+ * does not depend on a clock.  Safe to use from any thread.
+ */
+public final class BarcodeDedupCache {
+    private final long mWindowNanos;
+    private final LinkedHashMap<Key, Long> mDelivered;
+
+    private long mHits;
+    private long mMisses;
+
+    /**
+     * @param windowMillis how long a delivered code is suppressed for.
+     * @param capacity     the most codes remembered at once.
+     */
+    public BarcodeDedupCache(long windowMillis, final int capacity) {
+        if (windowMillis <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("Invalid dedup window " + windowMillis
+                    + "ms or capacity " + capacity);
+        }
+        mWindowNanos = windowMillis * 1000000L;
+        mDelivered = new LinkedHashMap<Key, Long>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Long> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns true if the code should be delivered, remembering it as delivered at the given time,
+     * or false if it is a repeat within the window.
+     */
+    public synchronized boolean shouldDeliver(int format, String rawValue, long nowNanos) {
+        Key key = new Key(format, rawValue);
+        Long deliveredNanos = mDelivered.get(key);
+        if (deliveredNanos != null && nowNanos - deliveredNanos < mWindowNanos) {
+            ++mHits;
+            return false;
+        }
+        ++mMisses;
+        mDelivered.put(key, nowNanos);
+        return true;
+    }
+
+    /**
+     * Returns the number of repeats suppressed.
+     */
+    public synchronized long getHits() {
+        return mHits;
+    }
+
+    /**
+     * Returns the number of codes let through.
+     */
+    public synchronized long getMisses() {
+        return mMisses;
+    }
+
+    public synchronized int size() {
+        return mDelivered.size();
+    }
+
+    /**
+     * Forgets every code and clears the counters.
+     */
+    public synchronized void clear() {
+        mDelivered.clear();
+        mHits = 0;
+        mMisses = 0;
+    }
+
+    private static final class Key {
+        private final int mFormat;
+        private final String mRawValue;
+
+        Key(int format, String rawValue) {
+            mFormat = format;
+            mRawValue = rawValue;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return mFormat == other.mFormat
+                    && (mRawValue == null ? other.mRawValue == null : mRawValue.equals(other.mRawValue));
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * mFormat + (mRawValue == null ? 0 : mRawValue.hashCode());
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.amolg.flutterbarcodescanner;
+
+import com.google.android.gms.vision.barcode.Barcode;
+
+import java.util.List;
+
+/**
+ * Maps the scan mode and format names sent from Dart onto {@link Barcode} format flags, so the
+ * detector only runs the decoders for the symbologies that were asked for.
+ */
+public final class BarcodeFormats {
+    /**
+     * The retail symbologies: EAN-13, EAN-8, UPC-A and UPC-E.
+     */
+    public static final int EAN_UPC = Barcode.EAN_13 | Barcode.EAN_8 | Barcode.UPC_A | Barcode.UPC_E;
+
+    /**
+     * Every linear symbology, plus PDF417, which is read with the same wide scan window.
+     */
+    public static final int LINEAR = Barcode.CODE_128 | Barcode.CODE_39 | Barcode.CODE_93
+            | Barcode.CODABAR | Barcode.ITF | EAN_UPC | Barcode.PDF417;
+
+    private static final String[] NAMES = {
+            "CODE_128", "CODE_39", "CODE_93", "CODABAR", "DATA_MATRIX", "EAN_13", "EAN_8", "ITF",
+            "QR_CODE", "UPC_A", "UPC_E", "PDF417", "AZTEC"
+    };
+
+    private static final int[] FORMATS = {
+            Barcode.CODE_128, Barcode.CODE_39, Barcode.CODE_93, Barcode.CODABAR, Barcode.DATA_MATRIX,
+            Barcode.EAN_13, Barcode.EAN_8, Barcode.ITF, Barcode.QR_CODE, Barcode.UPC_A,
+            Barcode.UPC_E, Barcode.PDF417, Barcode.AZTEC
+    };
+
+    private BarcodeFormats() {
+    }
+
+    /**
+     * Returns the formats implied by a scan mode, given as a
+     * {@link BarcodeCaptureActivity.SCAN_MODE_ENUM} ordinal.  QR mode decodes QR codes only,
+     * barcode mode decodes the linear symbologies, and any other mode decodes everything.
+     */
+    public static int forScanMode(int scanMode) {
+        if (scanMode == BarcodeCaptureActivity.SCAN_MODE_ENUM.QR.ordinal()) {
+            return Barcode.QR_CODE;
+        }
+        if (scanMode == BarcodeCaptureActivity.SCAN_MODE_ENUM.BARCODE.ordinal()) {
+            return LINEAR;
+        }
+        return Barcode.ALL_FORMATS;
+    }
+
+    /**
+     * Returns the formats named in the list, e.g. {@code ["QR_CODE", "EAN_13"]}, OR-ed together.
+     *
+     * @throws IllegalArgumentException if a name is not a known format.
+     */
+    public static int fromNames(List<?> names) {
+        int formats = 0;
+        for (Object name : names) {
+            formats |= fromName(String.valueOf(name));
+        }
+        return formats;
+    }
+
+    private static int fromName(String name) {
+        for (int i = 0; i < NAMES.length; ++i) {
+            if (NAMES[i].equals(name)) {
+                return FORMATS[i];
+            }
+        }
+        throw new IllegalArgumentException("Unknown barcode format: " + name);
+    }
+}
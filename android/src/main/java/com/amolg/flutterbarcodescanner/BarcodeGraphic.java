@@ -18,6 +18,7 @@ package com.amolg.flutterbarcodescanner;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
+import android.graphics.Point;
 import android.graphics.RectF;
 
 
@@ -27,6 +28,9 @@ import com.google.android.gms.vision.barcode.Barcode;
 /**
  * Graphic instance for rendering barcode position, size, and ID within an associated graphic
  * overlay view.
+ * <p/>
+ * Instances are pooled by {@link BarcodeTrackerFactory} and reused for later barcodes, so they
+ * share their paints and draw without allocating.
  */
 public class BarcodeGraphic extends GraphicOverlay.Graphic {
 
@@ -38,26 +42,35 @@ public class BarcodeGraphic extends GraphicOverlay.Graphic {
             Color.GREEN
     };
 
+    private static final Paint[] RECT_PAINTS = new Paint[COLOR_CHOICES.length];
+    private static final Paint[] TEXT_PAINTS = new Paint[COLOR_CHOICES.length];
+
+    static {
+        for (int i = 0; i < COLOR_CHOICES.length; ++i) {
+            RECT_PAINTS[i] = new Paint();
+            RECT_PAINTS[i].setColor(COLOR_CHOICES[i]);
+            RECT_PAINTS[i].setStyle(Paint.Style.STROKE);
+            RECT_PAINTS[i].setStrokeWidth(4.0f);
+
+            TEXT_PAINTS[i] = new Paint();
+            TEXT_PAINTS[i].setColor(COLOR_CHOICES[i]);
+            TEXT_PAINTS[i].setTextSize(36.0f);
+        }
+    }
+
     private static int mCurrentColorIndex = 0;
 
-    private Paint mRectPaint;
-    private Paint mTextPaint;
+    private final Paint mRectPaint;
+    private final Paint mTextPaint;
+    private final RectF mRect = new RectF();
     private volatile Barcode mBarcode;
 
     BarcodeGraphic(GraphicOverlay overlay) {
         super(overlay);
 
         mCurrentColorIndex = (mCurrentColorIndex + 1) % COLOR_CHOICES.length;
-        final int selectedColor = COLOR_CHOICES[mCurrentColorIndex];
-
-        mRectPaint = new Paint();
-        mRectPaint.setColor(selectedColor);
-        mRectPaint.setStyle(Paint.Style.STROKE);
-        mRectPaint.setStrokeWidth(4.0f);
-
-        mTextPaint = new Paint();
-        mTextPaint.setColor(selectedColor);
-        mTextPaint.setTextSize(36.0f);
+        mRectPaint = RECT_PAINTS[mCurrentColorIndex];
+        mTextPaint = TEXT_PAINTS[mCurrentColorIndex];
     }
 
     public int getId() {
@@ -81,25 +94,35 @@ public class BarcodeGraphic extends GraphicOverlay.Graphic {
         postInvalidate();
     }
 
+    /**
+     * Forgets the barcode before the graphic goes back to the pool.
+     */
+    void reset() {
+        mId = 0;
+        mBarcode = null;
+    }
+
     /**
      * Draws the barcode annotations for position, size, and raw value on the supplied canvas.
      */
     @Override
     public void draw(Canvas canvas) {
         Barcode barcode = mBarcode;
-        if (barcode == null) {
+        if (barcode == null || barcode.cornerPoints == null || barcode.cornerPoints.length == 0) {
             return;
         }
 
-        // Draws the bounding box around the barcode.
-        RectF rect = new RectF(barcode.getBoundingBox());
-        rect.left = translateX(rect.left);
-        rect.top = translateY(rect.top);
-        rect.right = translateX(rect.right);
-        rect.bottom = translateY(rect.bottom);
-        canvas.drawRect(rect, mRectPaint);
+        // Draws the bounding box around the barcode.  The box is worked out from the corner
+        // points, as Barcode.getBoundingBox() does, but into a rect that is reused.
+        Point[] corners = barcode.cornerPoints;
+        mRect.set(corners[0].x, corners[0].y, corners[0].x, corners[0].y);
+        for (int i = 1; i < corners.length; ++i) {
+            mRect.union(corners[i].x, corners[i].y);
+        }
+        translateRect(mRect);
+        canvas.drawRect(mRect, mRectPaint);
 
         // Draws a label at the bottom of the barcode indicate the barcode value that was detected.
-        canvas.drawText(barcode.rawValue, rect.left, rect.bottom, mTextPaint);
+        canvas.drawText(barcode.rawValue, mRect.left, mRect.bottom, mTextPaint);
     }
 }
@@ -19,6 +19,7 @@ import android.content.Context;
 import androidx.annotation.UiThread;
 
 import com.amolg.flutterbarcodescanner.camera.GraphicOverlay;
+import com.amolg.flutterbarcodescanner.camera.TimedDetections;
 import com.google.android.gms.vision.Detector;
 import com.google.android.gms.vision.Tracker;
 import com.google.android.gms.vision.barcode.Barcode;
@@ -32,21 +33,30 @@ import com.google.android.gms.vision.barcode.Barcode;
 public class BarcodeGraphicTracker extends Tracker<Barcode> {
     private GraphicOverlay<BarcodeGraphic> mOverlay;
     private BarcodeGraphic mGraphic;
+    private BarcodeTrackerFactory mFactory;
 
     private BarcodeUpdateListener mBarcodeUpdateListener;
+    // Set until the item's first update, where it is reported.
+    private boolean mNew;
 
     /**
      * Consume the item instance detected from an Activity or Fragment level by implementing the
      * BarcodeUpdateListener interface method onBarcodeDetected.
      */
     public interface BarcodeUpdateListener {
+        /**
+         * @param captureNanos  when the frame the barcode was found in was captured, or 0.
+         * @param detectedNanos when detection on that frame finished, or 0.
+         */
         @UiThread
-        void onBarcodeDetected(Barcode barcode);
+        void onBarcodeDetected(Barcode barcode, long captureNanos, long detectedNanos);
     }
 
-    BarcodeGraphicTracker(GraphicOverlay<BarcodeGraphic> mOverlay, BarcodeGraphic mGraphic, Context context) {
+    BarcodeGraphicTracker(GraphicOverlay<BarcodeGraphic> mOverlay, BarcodeGraphic mGraphic, Context context,
+                          BarcodeTrackerFactory factory) {
         this.mOverlay = mOverlay;
         this.mGraphic = mGraphic;
+        this.mFactory = factory;
         if (context instanceof BarcodeUpdateListener) {
             this.mBarcodeUpdateListener = (BarcodeUpdateListener) context;
         } else {
@@ -60,16 +70,23 @@ public class BarcodeGraphicTracker extends Tracker<Barcode> {
     @Override
     public void onNewItem(int id, Barcode item) {
         mGraphic.setId(id);
-        mBarcodeUpdateListener.onBarcodeDetected(item);
+        mNew = true;
     }
 
     /**
-     * Update the position/characteristics of the item within the overlay.
+     * Update the position/characteristics of the item within the overlay.  A new item is reported
+     * on its first update, which follows onNewItem for the same frame and carries its times.
      */
     @Override
     public void onUpdate(Detector.Detections<Barcode> detectionResults, Barcode item) {
         mOverlay.add(mGraphic);
         mGraphic.updateItem(item);
+        if (mNew) {
+            mNew = false;
+            mBarcodeUpdateListener.onBarcodeDetected(item,
+                    TimedDetections.getCaptureNanos(detectionResults),
+                    TimedDetections.getDetectedNanos(detectionResults));
+        }
     }
 
     /**
@@ -84,10 +101,11 @@ public class BarcodeGraphicTracker extends Tracker<Barcode> {
 
     /**
      * Called when the item is assumed to be gone for good. Remove the graphic annotation from
-     * the overlay.
+     * the overlay and hand it back to the factory for reuse.
      */
     @Override
     public void onDone() {
         mOverlay.remove(mGraphic);
+        mFactory.recycleGraphic(mGraphic);
     }
 }
@@ -0,0 +1,32 @@
+package com.amolg.flutterbarcodescanner;
+
+import android.graphics.Point;
+
+import com.amolg.flutterbarcodescanner.camera.CameraSource;
+import com.google.android.gms.vision.barcode.Barcode;
+
+/**
+ * Moves barcodes detected in a cropped or scaled down frame back to full frame coordinates, by
+ * their corner points, which the bounding box is worked out from.
+ */
+final class BarcodeResultMapper implements CameraSource.RegionResultMapper {
+    @Override
+    public void offset(Object item, int dx, int dy) {
+        Point[] cornerPoints = ((Barcode) item).cornerPoints;
+        if (cornerPoints != null) {
+            for (Point point : cornerPoints) {
+                point.offset(dx, dy);
+            }
+        }
+    }
+
+    @Override
+    public void scale(Object item, int factor) {
+        Point[] cornerPoints = ((Barcode) item).cornerPoints;
+        if (cornerPoints != null) {
+            for (Point point : cornerPoints) {
+                point.set(point.x * factor, point.y * factor);
+            }
+        }
+    }
+}
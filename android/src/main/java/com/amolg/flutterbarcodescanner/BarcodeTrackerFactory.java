@@ -22,13 +22,21 @@ import com.google.android.gms.vision.MultiProcessor;
 import com.google.android.gms.vision.Tracker;
 import com.google.android.gms.vision.barcode.Barcode;
 
+import java.util.ArrayDeque;
+
 /**
  * Factory for creating a tracker and associated graphic to be associated with a new barcode.  The
  * multi-processor uses this factory to create barcode trackers as needed -- one for each barcode.
+ * <p/>
+ * Graphics of trackers that are done go back to a pool and are handed to later trackers, so
+ * barcodes coming in and out of view do not create a graphic each time.
  */
 class BarcodeTrackerFactory implements MultiProcessor.Factory<Barcode> {
+    private static final int MAX_POOLED_GRAPHICS = 16;
+
     private GraphicOverlay<BarcodeGraphic> mGraphicOverlay;
     private Context mContext;
+    private final ArrayDeque<BarcodeGraphic> mGraphicPool = new ArrayDeque<>();
 
     public BarcodeTrackerFactory(GraphicOverlay<BarcodeGraphic> mGraphicOverlay, Context mContext) {
         this.mGraphicOverlay = mGraphicOverlay;
@@ -37,7 +45,21 @@ class BarcodeTrackerFactory implements MultiProcessor.Factory<Barcode> {
 
     @Override
     public Tracker<Barcode> create(Barcode barcode) {
-        BarcodeGraphic graphic = new BarcodeGraphic(mGraphicOverlay);
-        return new BarcodeGraphicTracker(mGraphicOverlay, graphic, mContext);
+        return new BarcodeGraphicTracker(mGraphicOverlay, obtainGraphic(), mContext, this);
+    }
+
+    private synchronized BarcodeGraphic obtainGraphic() {
+        BarcodeGraphic graphic = mGraphicPool.pollFirst();
+        return graphic != null ? graphic : new BarcodeGraphic(mGraphicOverlay);
+    }
+
+    /**
+     * Takes back a graphic that is no longer shown, for a later tracker.
+     */
+    synchronized void recycleGraphic(BarcodeGraphic graphic) {
+        graphic.reset();
+        if (mGraphicPool.size() < MAX_POOLED_GRAPHICS) {
+            mGraphicPool.addFirst(graphic);
+        }
     }
-}
\ No newline at end of file
+}
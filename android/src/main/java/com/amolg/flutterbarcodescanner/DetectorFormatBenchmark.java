@@ -0,0 +1,105 @@
+package com.amolg.flutterbarcodescanner;
+
+import android.content.Context;
+import android.graphics.ImageFormat;
+import android.os.SystemClock;
+
+import com.amolg.flutterbarcodescanner.camera.LatencyHistogram;
+import com.google.android.gms.vision.Frame;
+import com.google.android.gms.vision.barcode.Barcode;
+import com.google.android.gms.vision.barcode.BarcodeDetector;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Measures the per-frame detector cost of the format restrictions on the device it runs on.  The
+ * same frames are decoded with all formats, QR codes only and EAN/UPC only.
+ * <p/>
+ * The frames are seeded noise rather than camera frames.  Most frames seen while scanning contain
+ * no readable code, and those are the frames on which every enabled decoder runs to the end, so
+ * noise shows the saving where it matters.  Runs for a few seconds, so call it off the main thread.
+ */
+final class DetectorFormatBenchmark {
+    private static final int WARM_UP_FRAMES = 5;
+    private static final int DISTINCT_FRAMES = 4;
+
+    private final Context mContext;
+    private final int mWidth;
+    private final int mHeight;
+    private final int mFrames;
+
+    DetectorFormatBenchmark(Context context, int width, int height, int frames) {
+        if (width <= 0 || height <= 0 || frames <= 0) {
+            throw new IllegalArgumentException("Invalid benchmark size: " + width + "x" + height
+                    + ", " + frames + " frames");
+        }
+        mContext = context;
+        mWidth = width;
+        mHeight = height;
+        mFrames = frames;
+    }
+
+    /**
+     * Runs each configuration and returns its detect latency summary, in microseconds, keyed by
+     * {@code all}, {@code qr} and {@code eanUpc}.
+     */
+    Map<String, Object> run() {
+        Frame[] frames = createFrames();
+        Map<String, Object> results = new HashMap<>();
+        results.put("all", measure(Barcode.ALL_FORMATS, frames));
+        results.put("qr", measure(Barcode.QR_CODE, frames));
+        results.put("eanUpc", measure(BarcodeFormats.EAN_UPC, frames));
+        results.put("width", mWidth);
+        results.put("height", mHeight);
+        return results;
+    }
+
+    private Map<String, Object> measure(int formats, Frame[] frames) {
+        BarcodeDetector detector = new BarcodeDetector.Builder(mContext)
+                .setBarcodeFormats(formats)
+                .build();
+        if (!detector.isOperational()) {
+            detector.release();
+            throw new IllegalStateException("Barcode detector is not operational yet");
+        }
+        LatencyHistogram histogram = new LatencyHistogram();
+        try {
+            for (int i = 0; i < WARM_UP_FRAMES; ++i) {
+                detector.detect(frames[i % frames.length]);
+            }
+            for (int i = 0; i < mFrames; ++i) {
+                long start = SystemClock.elapsedRealtimeNanos();
+                detector.detect(frames[i % frames.length]);
+                histogram.recordNanos(SystemClock.elapsedRealtimeNanos() - start);
+            }
+        } finally {
+            detector.release();
+        }
+        return histogram.toMap();
+    }
+
+    private Frame[] createFrames() {
+        Random random = new Random(0);
+        int lumaSize = mWidth * mHeight;
+        Frame[] frames = new Frame[DISTINCT_FRAMES];
+        for (int i = 0; i < frames.length; ++i) {
+            byte[] data = new byte[lumaSize + lumaSize / 2];
+            random.nextBytes(data);
+            // Neutral chroma, as the detector only reads the luma plane.
+            for (int j = lumaSize; j < data.length; ++j) {
+                data[j] = (byte) 128;
+            }
+            ByteBuffer buffer = ByteBuffer.allocateDirect(data.length);
+            buffer.put(data);
+            buffer.rewind();
+            frames[i] = new Frame.Builder()
+                    .setImageData(buffer, mWidth, mHeight, ImageFormat.NV21)
+                    .setId(i)
+                    .build();
+        }
+        return frames;
+    }
+}
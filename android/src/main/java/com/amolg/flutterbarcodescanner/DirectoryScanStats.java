@@ -0,0 +1,106 @@
+package com.amolg.flutterbarcodescanner;
+
+import com.amolg.flutterbarcodescanner.camera.LatencyHistogram;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Throughput counters for a {@link DirectoryScanner} run: how many files were scanned, how many
+ * could not be, how many barcodes were found and how many files a second the pipeline gets
+ * through.  The time each file took to scan and the time workers spent waiting for earlier results
+ * to be sent over the event channel are kept as histograms, so a slow hand-off can be told from a
+ * slow scan.
+ * <p/>
+ * All times are {@link android.os.SystemClock#elapsedRealtimeNanos()} values.
+ */
+final class DirectoryScanStats {
+    private final LatencyHistogram mScan = new LatencyHistogram();
+    private final LatencyHistogram mDeliveryWait = new LatencyHistogram();
+
+    private final AtomicLong mFilesScanned = new AtomicLong();
+    private final AtomicLong mFilesFailed = new AtomicLong();
+    private final AtomicLong mBarcodesFound = new AtomicLong();
+
+    private volatile long mStartNanos;
+    // When the run ended, or 0 while it is still going.
+    private volatile long mFinishNanos;
+
+    /**
+     * Clears the counters for a new run.
+     */
+    void start(long nowNanos) {
+        mScan.reset();
+        mDeliveryWait.reset();
+        mFilesScanned.set(0);
+        mFilesFailed.set(0);
+        mBarcodesFound.set(0);
+        mFinishNanos = 0;
+        mStartNanos = nowNanos;
+    }
+
+    void finish(long nowNanos) {
+        mFinishNanos = nowNanos;
+    }
+
+    /**
+     * Records one file, whether or not it could be scanned.
+     */
+    void recordFile(long scanNanos, int barcodes, boolean failed) {
+        mScan.recordNanos(scanNanos);
+        mFilesScanned.incrementAndGet();
+        mBarcodesFound.addAndGet(barcodes);
+        if (failed) {
+            mFilesFailed.incrementAndGet();
+        }
+    }
+
+    /**
+     * Records how long a worker waited for room to deliver a result.
+     */
+    void recordDeliveryWait(long waitNanos) {
+        mDeliveryWait.recordNanos(waitNanos);
+    }
+
+    long getFilesScanned() {
+        return mFilesScanned.get();
+    }
+
+    long getFilesFailed() {
+        return mFilesFailed.get();
+    }
+
+    long getBarcodesFound() {
+        return mBarcodesFound.get();
+    }
+
+    /**
+     * Returns the files scanned per second since the run started, up to its end if it has ended.
+     */
+    double getFilesPerSecond(long nowNanos) {
+        long elapsedNanos = getElapsedNanos(nowNanos);
+        return elapsedNanos > 0 ? mFilesScanned.get() * 1e9 / elapsedNanos : 0;
+    }
+
+    private long getElapsedNanos(long nowNanos) {
+        if (mStartNanos == 0) {
+            return 0;
+        }
+        long finishNanos = mFinishNanos;
+        return (finishNanos != 0 ? finishNanos : nowNanos) - mStartNanos;
+    }
+
+    Map<String, Object> toMap(long nowNanos) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("filesScanned", getFilesScanned());
+        map.put("filesFailed", getFilesFailed());
+        map.put("barcodesFound", getBarcodesFound());
+        map.put("elapsedMs", getElapsedNanos(nowNanos) / 1000000L);
+        map.put("filesPerSecond", getFilesPerSecond(nowNanos));
+        map.put("running", mStartNanos != 0 && mFinishNanos == 0);
+        map.put("scan", mScan.toMap());
+        map.put("deliveryWait", mDeliveryWait.toMap());
+        return map;
+    }
+}
@@ -0,0 +1,239 @@
+package com.amolg.flutterbarcodescanner;
+
+import android.content.Context;
+import android.os.SystemClock;
+
+import com.google.android.gms.vision.barcode.Barcode;
+import com.google.android.gms.vision.barcode.BarcodeDetector;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Scans every image in a directory on a bounded pipeline, handing each file's barcodes to a
+ * {@link Listener} as soon as that file is done.  A fixed number of workers, each with its own
+ * detector, take files from an {@link ImageFileWalker} and take each one through decoding,
+ * downsampling and detection with {@link ImageScanner}, so the stages of different files overlap
+ * while memory stays bounded by the worker count.
+ * <p/>
+ * At most {@code maxPending} results may be handed to the listener and not yet reported
+ * delivered through {@link #onDelivered()}, and workers wait for room before handing on another.
+ * This only bounds the results queued on their way out; whether the consumer has taken them is
+ * not known here, so it slows the run through {@link #pause()}, which stops workers taking new
+ * files.  {@link #cancel()} stops the run after the files in progress, dropping their results.
+ */
+final class DirectoryScanner {
+
+    /**
+     * Receives the results of a run.
+     */
+    interface Listener {
+        /**
+         * Called on a worker thread as each file is done.  {@link DirectoryScanner#onDelivered()}
+         * must be called once the result has been passed on.
+         *
+         * @param barcodes the barcodes in the file, or null if it could not be scanned.
+         * @param error    why the file could not be scanned, or null.
+         */
+        void onFileScanned(File file, List<Barcode> barcodes, String error);
+
+        /**
+         * Called once when the run ends, after the last file has been handed on.
+         *
+         * @param error why the run could not start, or null.
+         */
+        void onFinished(boolean cancelled, String error);
+    }
+
+    private final Context mContext;
+    private final ImageFileWalker mWalker;
+    private final int mFormats;
+    private final int mWorkers;
+    private final int mMaxPending;
+    private final DirectoryScanStats mStats;
+    private final Listener mListener;
+
+    // This lock guards all of the member variables below.
+    private final Object mLock = new Object();
+    private boolean mPaused;
+    private boolean mCancelled;
+    // Results handed to the listener and not yet delivered.
+    private int mPending;
+
+    /**
+     * @throws IllegalArgumentException if the directory is not a directory, or the worker or
+     *                                  pending counts are not positive
+     */
+    DirectoryScanner(Context context, File directory, boolean recursive, int formats, int workers,
+                     int maxPending, DirectoryScanStats stats, Listener listener) {
+        if (workers <= 0 || maxPending <= 0) {
+            throw new IllegalArgumentException("Invalid directory scan: " + workers + " workers, "
+                    + maxPending + " pending results");
+        }
+        mContext = context;
+        mWalker = new ImageFileWalker(directory, recursive);
+        mFormats = formats;
+        mWorkers = workers;
+        mMaxPending = maxPending;
+        mStats = stats;
+        mListener = listener;
+    }
+
+    /**
+     * Starts the run on its own threads and returns at once.
+     */
+    void start() {
+        mStats.start(SystemClock.elapsedRealtimeNanos());
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runWorkers();
+            }
+        }, "Directory scan").start();
+    }
+
+    /**
+     * Stops workers taking new files until {@link #resume()}.
+     */
+    void pause() {
+        synchronized (mLock) {
+            mPaused = true;
+        }
+    }
+
+    void resume() {
+        synchronized (mLock) {
+            mPaused = false;
+            mLock.notifyAll();
+        }
+    }
+
+    /**
+     * Stops the run once the files in progress are done.  Their results are dropped.
+     */
+    void cancel() {
+        synchronized (mLock) {
+            mCancelled = true;
+            mLock.notifyAll();
+        }
+    }
+
+    /**
+     * Reports that a result handed to the listener has been passed on, making room for another.
+     */
+    void onDelivered() {
+        synchronized (mLock) {
+            --mPending;
+            mLock.notifyAll();
+        }
+    }
+
+    private void runWorkers() {
+        final BarcodeDetector[] detectors = new BarcodeDetector[mWorkers];
+        String error = null;
+        try {
+            for (int i = 0; i < detectors.length; ++i) {
+                detectors[i] = new BarcodeDetector.Builder(mContext)
+                        .setBarcodeFormats(mFormats)
+                        .build();
+            }
+            if (!detectors[0].isOperational()) {
+                error = "Barcode detector is not operational yet";
+                return;
+            }
+            Thread[] threads = new Thread[detectors.length];
+            for (int i = 0; i < threads.length; ++i) {
+                final BarcodeDetector detector = detectors[i];
+                threads[i] = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        scanFiles(detector);
+                    }
+                }, "Directory scan worker " + i);
+                threads[i].start();
+            }
+            ImageScanner.joinAll(threads);
+        } finally {
+            for (BarcodeDetector detector : detectors) {
+                if (detector != null) {
+                    detector.release();
+                }
+            }
+            mStats.finish(SystemClock.elapsedRealtimeNanos());
+            boolean cancelled;
+            synchronized (mLock) {
+                cancelled = mCancelled;
+            }
+            mListener.onFinished(cancelled, error);
+        }
+    }
+
+    private void scanFiles(BarcodeDetector detector) {
+        File file;
+        while (awaitTurn() && (file = mWalker.next()) != null) {
+            long startNanos = SystemClock.elapsedRealtimeNanos();
+            List<Barcode> barcodes = null;
+            String error = null;
+            try {
+                barcodes = ImageScanner.scan(file.getPath(), detector);
+            } catch (IOException | RuntimeException e) {
+                error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            }
+            mStats.recordFile(SystemClock.elapsedRealtimeNanos() - startNanos,
+                    barcodes != null ? barcodes.size() : 0, barcodes == null);
+            if (!awaitRoom()) {
+                return;
+            }
+            mListener.onFileScanned(file, barcodes, error);
+        }
+    }
+
+    /**
+     * Waits while the run is paused, returning false if it has been cancelled.
+     */
+    private boolean awaitTurn() {
+        synchronized (mLock) {
+            while (mPaused && !mCancelled) {
+                if (!waitForChange()) {
+                    return false;
+                }
+            }
+            return !mCancelled;
+        }
+    }
+
+    /**
+     * Waits for room to hand on a result and takes it, returning false if the run has been
+     * cancelled.
+     */
+    private boolean awaitRoom() {
+        long startNanos = SystemClock.elapsedRealtimeNanos();
+        synchronized (mLock) {
+            while (mPending >= mMaxPending && !mCancelled) {
+                if (!waitForChange()) {
+                    return false;
+                }
+            }
+            if (mCancelled) {
+                return false;
+            }
+            ++mPending;
+        }
+        mStats.recordDeliveryWait(SystemClock.elapsedRealtimeNanos() - startNanos);
+        return true;
+    }
+
+    // Must hold mLock.  An interrupted worker cancels the run.
+    private boolean waitForChange() {
+        try {
+            mLock.wait();
+            return true;
+        } catch (InterruptedException e) {
+            mCancelled = true;
+            mLock.notifyAll();
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package com.amolg.flutterbarcodescanner;
+
+import android.Manifest;
+import android.content.Context;
+import android.hardware.Camera;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+
+import androidx.annotation.RequiresPermission;
+
+import com.amolg.flutterbarcodescanner.camera.CameraCapabilityCache;
+import com.amolg.flutterbarcodescanner.camera.CameraSource;
+import com.amolg.flutterbarcodescanner.camera.PowerManagerThermalSource;
+import com.amolg.flutterbarcodescanner.camera.StartupTrace;
+import com.amolg.flutterbarcodescanner.camera.ThermalSource;
+import com.amolg.flutterbarcodescanner.camera.TimedDetections;
+import com.amolg.flutterbarcodescanner.constants.AppConstants;
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.MultiProcessor;
+import com.google.android.gms.vision.Tracker;
+import com.google.android.gms.vision.barcode.Barcode;
+import com.google.android.gms.vision.barcode.BarcodeDetector;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import io.flutter.view.TextureRegistry;
+
+/**
+ * Runs a scan session inside the Flutter view instead of {@link BarcodeCaptureActivity}.  The
+ * camera preview goes to a texture registered with Flutter, shown by a {@code Texture} widget,
+ * and detections go to the processor given at start: either {@link #newItemProcessor}, which
+ * reports each barcode that comes into view as the activity does for a continuous scan, or a
+ * {@link SingleScanProcessor} for back to back single scans with the camera kept open.
+ * <p/>
+ * Starting and stopping must be called on the main thread.  The camera is started, stopped and
+ * released on a camera thread of its own, in the order asked for, so the main thread never waits
+ * on the camera and the Flutter UI keeps drawing while it starts.
+ */
+final class EmbeddedScanner {
+    private final Context mContext;
+    private final TextureRegistry mTextureRegistry;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final HandlerThread mCameraThread;
+    private final Handler mCameraHandler;
+
+    private TextureRegistry.SurfaceTextureEntry mTexture;
+    // Volatile for setDetectionPaused, which detector threads call.
+    private volatile CameraSource mCameraSource;
+    private boolean mPaused;
+
+    interface Listener {
+        /**
+         * Called on a detector thread for each barcode that comes into view.
+         *
+         * @param captureNanos  when the frame the barcode was found in was captured, or 0.
+         * @param detectedNanos when detection on that frame finished, or 0.
+         */
+        void onBarcodeDetected(Barcode barcode, long captureNanos, long detectedNanos);
+    }
+
+    interface StartCallback {
+        /**
+         * Called on the main thread once the preview is running.
+         *
+         * @param info the texture id, preview size and rotation, for the Flutter side.
+         */
+        void onStarted(Map<String, Object> info);
+
+        /**
+         * Called on the main thread if the camera could not be started.  Nothing is left open.
+         */
+        void onError(String message);
+    }
+
+    EmbeddedScanner(Context context, TextureRegistry textureRegistry) {
+        mContext = context.getApplicationContext();
+        mTextureRegistry = textureRegistry;
+        mCameraThread = new HandlerThread("Embedded scanner camera");
+        mCameraThread.start();
+        mCameraHandler = new Handler(mCameraThread.getLooper());
+    }
+
+    /**
+     * Returns true if a session is running or starting.
+     */
+    boolean isStarted() {
+        return mTexture != null;
+    }
+
+    /**
+     * Returns a processor that hands each barcode coming into view to the listener once.
+     */
+    static Detector.Processor<Barcode> newItemProcessor(final Listener listener) {
+        return new MultiProcessor.Builder<>(new MultiProcessor.Factory<Barcode>() {
+            @Override
+            public Tracker<Barcode> create(Barcode barcode) {
+                return new Tracker<Barcode>() {
+                    // Set until the item's first update, which carries the frame's times.
+                    private boolean mNew;
+
+                    @Override
+                    public void onNewItem(int id, Barcode item) {
+                        mNew = true;
+                    }
+
+                    @Override
+                    public void onUpdate(Detector.Detections<Barcode> detections, Barcode item) {
+                        if (mNew) {
+                            mNew = false;
+                            listener.onBarcodeDetected(item,
+                                    TimedDetections.getCaptureNanos(detections),
+                                    TimedDetections.getDetectedNanos(detections));
+                        }
+                    }
+                };
+            }
+        }).build();
+    }
+
+    /**
+     * Registers a texture and starts the camera previewing into it, decoding the given formats.
+     * A detector and camera left by a prewarm are used if they match.
+     *
+     * @param detectionPaused true to start with the preview running but detection paused.
+     * @param thermalScaling  true to scale scanning back while the device is hot.
+     * @throws IllegalStateException if a session is already running
+     */
+    @RequiresPermission(Manifest.permission.CAMERA)
+    void start(final int formats, int facing, boolean useCamera2, int detectionWorkers,
+               Detector.Processor<Barcode> processor, boolean detectionPaused,
+               boolean thermalScaling, final StartCallback callback) {
+        if (mTexture != null) {
+            throw new IllegalStateException("Embedded scanner already started");
+        }
+        mTexture = mTextureRegistry.createSurfaceTexture();
+        mPaused = false;
+
+        BarcodeDetector detector = FlutterBarcodeScannerPlugin.prewarm.takeDetector(formats);
+        Camera prewarmedCamera = FlutterBarcodeScannerPlugin.prewarm.takeCamera(facing);
+        FlutterBarcodeScannerPlugin.prewarm.release();
+        if (detector != null || prewarmedCamera != null) {
+            FlutterBarcodeScannerPlugin.startupTrace.setPrewarmed(true);
+        }
+        if (detector == null) {
+            detector = new BarcodeDetector.Builder(mContext).setBarcodeFormats(formats).build();
+        }
+
+        final Context context = mContext;
+        PreviewProfile preview = new PreviewProfileStore(mContext).getOrDefault();
+        CameraSource.Builder builder = new CameraSource.Builder(mContext, detector)
+                .setFacing(facing)
+                .setOpenedCamera(prewarmedCamera)
+                .setRequestedPreviewSize(preview.previewWidth, preview.previewHeight)
+                .setRequestedFps(preview.fps)
+                .setFocusMode(Camera.Parameters.FOCUS_MODE_CONTINUOUS_PICTURE)
+                .setProcessor(processor)
+                .setDetectionWorkers(detectionWorkers, new CameraSource.DetectorFactory() {
+                    @Override
+                    public Detector<?> create() {
+                        return new BarcodeDetector.Builder(context)
+                                .setBarcodeFormats(formats)
+                                .build();
+                    }
+                })
+                .setDetectionRate(AppConstants.DETECTION_MIN_FPS, AppConstants.DETECTION_MAX_FPS,
+                        AppConstants.DETECTION_IDLE_FPS, AppConstants.DETECTION_IDLE_AFTER_EMPTY_FRAMES)
+                .setStats(FlutterBarcodeScannerPlugin.scannerStats)
+                .setCapabilityCache(new CameraCapabilityCache(mContext))
+                .setStartupTrace(FlutterBarcodeScannerPlugin.startupTrace)
+                .setUseCamera2(useCamera2);
+        ThermalSource thermalSource = thermalScaling ? PowerManagerThermalSource.create(mContext) : null;
+        if (thermalSource != null) {
+            builder = builder.setThermalSource(thermalSource, new BarcodeResultMapper());
+        }
+        final CameraSource cameraSource = builder.build();
+        cameraSource.setDetectionPaused(detectionPaused);
+        mCameraSource = cameraSource;
+        startCamera(cameraSource, false, callback);
+    }
+
+    /**
+     * Starts the camera on the camera thread and reports the outcome on the main thread.  If it
+     * fails, the session is stopped.  A pause or stop called meanwhile is queued behind the start
+     * on the camera thread, so it applies to the started camera.
+     *
+     * @param resuming true if restarting after {@link #pause()}, in which case a session stopped
+     *                 while the camera starts is not reported, as nothing waits on it.
+     */
+    private void startCamera(final CameraSource cameraSource, final boolean resuming,
+                             final StartCallback callback) {
+        final TextureRegistry.SurfaceTextureEntry texture = mTexture;
+        mCameraHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                String error = null;
+                try {
+                    StartupTrace.beginSection("EmbeddedScanner.start");
+                    try {
+                        cameraSource.start(texture.surfaceTexture());
+                    } finally {
+                        StartupTrace.endSection();
+                    }
+                } catch (IOException | RuntimeException e) {
+                    error = e.getMessage() != null ? e.getMessage() : e.toString();
+                }
+                final String startError = error;
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (mCameraSource != cameraSource) {
+                            // Stopped while starting; the release is queued behind the start.
+                            if (!resuming) {
+                                callback.onError("Embedded scanner stopped while starting");
+                            }
+                        } else if (startError != null) {
+                            stop();
+                            callback.onError(startError);
+                        } else {
+                            callback.onStarted(getInfo());
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Pauses or resumes detection, keeping the camera and preview running.  Safe to call from any
+     * thread; does nothing if no session is running.
+     */
+    void setDetectionPaused(boolean paused) {
+        CameraSource cameraSource = mCameraSource;
+        if (cameraSource != null) {
+            cameraSource.setDetectionPaused(paused);
+        }
+    }
+
+    /**
+     * Stops the camera while the app is in the background, keeping the texture.
+     */
+    void pause() {
+        if (mCameraSource != null && !mPaused) {
+            mPaused = true;
+            final CameraSource cameraSource = mCameraSource;
+            mCameraHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    cameraSource.stop();
+                }
+            });
+        }
+    }
+
+    /**
+     * Restarts the camera stopped by {@link #pause()}, on the camera thread as at start.  If it
+     * cannot be restarted, the session is stopped and the callback told why.
+     */
+    @RequiresPermission(Manifest.permission.CAMERA)
+    void resume(StartCallback callback) {
+        if (mCameraSource == null || !mPaused) {
+            return;
+        }
+        mPaused = false;
+        startCamera(mCameraSource, true, callback);
+    }
+
+    /**
+     * Stops the camera and unregisters the texture.  The camera is released on the camera
+     * thread, after any start still in progress, and the texture once the camera no longer draws
+     * into it.
+     */
+    void stop() {
+        final CameraSource cameraSource = mCameraSource;
+        final TextureRegistry.SurfaceTextureEntry texture = mTexture;
+        mCameraSource = null;
+        mTexture = null;
+        if (cameraSource == null && texture == null) {
+            return;
+        }
+        mCameraHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (cameraSource != null) {
+                    cameraSource.release();
+                }
+                if (texture != null) {
+                    mMainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            texture.release();
+                        }
+                    });
+                }
+            }
+        });
+    }
+
+    /**
+     * Stops any session and ends the camera thread once it has released the camera.  The scanner
+     * cannot be used afterwards.
+     */
+    void release() {
+        stop();
+        mCameraThread.quitSafely();
+    }
+
+    private Map<String, Object> getInfo() {
+        Map<String, Object> info = new HashMap<>();
+        info.put("textureId", mTexture.id());
+        info.put("previewWidth", mCameraSource.getPreviewSize().getWidth());
+        info.put("previewHeight", mCameraSource.getPreviewSize().getHeight());
+        info.put("rotation", mCameraSource.getRotationDegrees());
+        return info;
+    }
+}
@@ -1,19 +1,34 @@
 package com.amolg.flutterbarcodescanner;
 
+import android.Manifest;
 import android.app.Activity;
 import android.app.Application;
+import android.content.Context;
 import android.content.Intent;
+import android.content.pm.PackageManager;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.core.content.ContextCompat;
 import androidx.lifecycle.DefaultLifecycleObserver;
 import androidx.lifecycle.Lifecycle;
 import androidx.lifecycle.LifecycleOwner;
 
+import com.amolg.flutterbarcodescanner.camera.CameraSource;
+import com.amolg.flutterbarcodescanner.camera.ScannerStats;
+import com.amolg.flutterbarcodescanner.camera.StartupTrace;
 import com.google.android.gms.common.api.CommonStatusCodes;
 import com.google.android.gms.vision.barcode.Barcode;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import io.flutter.embedding.android.FlutterActivity;
@@ -31,6 +46,7 @@ import io.flutter.plugin.common.PluginRegistry;
 import io.flutter.plugin.common.PluginRegistry.ActivityResultListener;
 import io.flutter.plugin.common.EventChannel.StreamHandler;
 import io.flutter.embedding.engine.plugins.lifecycle.FlutterLifecycleAdapter;
+import io.flutter.view.TextureRegistry;
 
 
 /**
@@ -48,7 +64,36 @@ public class FlutterBarcodeScannerPlugin implements MethodCallHandler, ActivityR
     public static String lineColor = "";
     public static boolean isShowFlashIcon = false;
     public static boolean isContinuousScan = false;
+    public static int detectionWorkers = 1;
+    public static boolean isScanWindowOnly = false;
+    public static boolean useCamera2 = false;
+    // Focus and meter on the scan window, and refocus after this long without a result (0: never).
+    public static boolean isScanWindowFocus = false;
+    public static int refocusAfterMs = 0;
+    // Switch the torch on and off from the brightness of the preview.
+    public static boolean isAutoTorch = false;
+    // Zoom in on codes too small to decode, and back out once one is read.
+    public static boolean isAutoZoom = false;
+    // Scale scanning back in tiers while the device is hot.
+    public static boolean isThermalScaling = false;
+    public static int barcodeFormats = Barcode.ALL_FORMATS;
+    public static final ScannerStats scannerStats = new ScannerStats();
+    // Suppresses repeated continuous scan results; null when not enabled.
+    static volatile BarcodeDedupCache dedupCache;
+    // Collects continuous scan results into one message per batch; null when not enabled.
+    static volatile ResultBatcher<BatchedResult> resultBatcher;
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Send results as ResultCodec messages with geometry and capture times, instead of strings.
+    static boolean isDetailedResults = false;
+    private static final ResultCodec resultCodec = new ResultCodec();
+    // Detector and camera prepared ahead of the next scan session.
+    static final ScannerPrewarm prewarm = new ScannerPrewarm();
+    public static final StartupTrace startupTrace = new StartupTrace();
+    private static boolean hasStartedScan = false;
     static EventChannel.EventSink barcodeStream;
+    // The directory scan streaming its results, or null.  Only used on the main thread.
+    private static DirectoryScanner directoryScanner;
+    static final DirectoryScanStats directoryScanStats = new DirectoryScanStats();
     private EventChannel eventChannel;
 
     /**
@@ -64,6 +109,12 @@ public class FlutterBarcodeScannerPlugin implements MethodCallHandler, ActivityR
     // This is null when not using v2 embedding;
     private Lifecycle lifecycle;
     private LifeCycleObserver observer;
+    // Scan session previewing into a Flutter texture; null until the plugin is set up.
+    private EmbeddedScanner embeddedScanner;
+    // Set while the embedded scanner runs a session of single scans, and the scanNext call
+    // waiting for a barcode.  Main thread only.
+    private SingleScanProcessor sessionProcessor;
+    private Result sessionScanResult;
 
     public FlutterBarcodeScannerPlugin() {
     }
@@ -85,43 +136,646 @@ public class FlutterBarcodeScannerPlugin implements MethodCallHandler, ActivityR
             applicationContext = (Application) (registrar.context().getApplicationContext());
         }
         FlutterBarcodeScannerPlugin instance = new FlutterBarcodeScannerPlugin((FlutterActivity) registrar.activity(), registrar);
-        instance.createPluginSetup(registrar.messenger(), applicationContext, activity, registrar, null);
+        instance.createPluginSetup(registrar.messenger(), applicationContext, activity, registrar.textures(),
+                registrar, null);
     }
 
     @Override
     public void onMethodCall(@NonNull MethodCall call, @NonNull Result result) {
         try {
-            pendingResult = result;
-
-            if (call.method.equals("scanBarcode")) {
+            if (call.method.equals("getScannerStats")) {
+                Map<String, Object> stats = scannerStats.toMap();
+                BarcodeDedupCache cache = dedupCache;
+                stats.put("dedupHits", cache != null ? cache.getHits() : 0L);
+                stats.put("dedupMisses", cache != null ? cache.getMisses() : 0L);
+                result.success(stats);
+                return;
+            }
+            if (call.method.equals("resetScannerStats")) {
+                scannerStats.reset();
+                BarcodeDedupCache cache = dedupCache;
+                if (cache != null) {
+                    cache.clear();
+                }
+                result.success(null);
+                return;
+            }
+            if (call.method.equals("benchmarkDetectorFormats")) {
+                runDetectorFormatBenchmark(call, result);
+                return;
+            }
+            if (call.method.equals("calibratePreview")) {
+                runPreviewCalibration(call, result);
+                return;
+            }
+            if (call.method.equals("clearPreviewCalibration")) {
+                new PreviewProfileStore(applicationContext).clear();
+                result.success(null);
+                return;
+            }
+            if (call.method.equals("scanImage")) {
                 if (!(call.arguments instanceof Map)) {
-                    throw new IllegalArgumentException("Plugin not passing a map as parameter: " + call.arguments);
+                    result.error("invalidArguments", "scanImage expects a map of arguments", null);
+                    return;
                 }
-                arguments = (Map<String, Object>) call.arguments;
-                lineColor = (String) arguments.get("lineColor");
-                isShowFlashIcon = (boolean) arguments.get("isShowFlashIcon");
-                if (null == lineColor || lineColor.equalsIgnoreCase("")) {
-                    lineColor = "#DC143C";
+                runImageScan((Map<String, Object>) call.arguments, result);
+                return;
+            }
+            if (call.method.equals("scanDirectory")) {
+                if (!(call.arguments instanceof Map)) {
+                    result.error("invalidArguments", "scanDirectory expects a map of arguments",
+                            null);
+                    return;
                 }
-                if (null != arguments.get("scanMode")) {
-                    if ((int) arguments.get("scanMode") == BarcodeCaptureActivity.SCAN_MODE_ENUM.DEFAULT.ordinal()) {
-                        BarcodeCaptureActivity.SCAN_MODE = BarcodeCaptureActivity.SCAN_MODE_ENUM.QR.ordinal();
+                startDirectoryScan((Map<String, Object>) call.arguments, result);
+                return;
+            }
+            if (call.method.equals("pauseDirectoryScan")) {
+                if (directoryScanner != null) {
+                    directoryScanner.pause();
+                }
+                result.success(null);
+                return;
+            }
+            if (call.method.equals("resumeDirectoryScan")) {
+                if (directoryScanner != null) {
+                    directoryScanner.resume();
+                }
+                result.success(null);
+                return;
+            }
+            if (call.method.equals("cancelDirectoryScan")) {
+                if (directoryScanner != null) {
+                    directoryScanner.cancel();
+                }
+                result.success(null);
+                return;
+            }
+            if (call.method.equals("getDirectoryScanStats")) {
+                result.success(directoryScanStats.toMap(SystemClock.elapsedRealtimeNanos()));
+                return;
+            }
+            if (call.method.equals("prewarm")) {
+                if (!(call.arguments instanceof Map)) {
+                    result.error("invalidArguments", "prewarm expects a map of arguments", null);
+                    return;
+                }
+                Map<String, Object> prewarmArguments = (Map<String, Object>) call.arguments;
+                Integer idleTimeoutMs = (Integer) prewarmArguments.get("idleTimeoutMs");
+                int prewarmFormats;
+                try {
+                    prewarmFormats = barcodeFormatsFromArguments(prewarmArguments);
+                } catch (IllegalArgumentException e) {
+                    result.error("invalidArguments", e.getMessage(), null);
+                    return;
+                }
+                prewarm.prewarm(applicationContext, prewarmFormats,
+                        CameraSource.CAMERA_FACING_BACK, idleTimeoutMs != null ? idleTimeoutMs : 10000,
+                        new ScannerPrewarm.Callback() {
+                            @Override
+                            public void onPrewarmed(boolean ready) {
+                                result.success(ready);
+                            }
+                        });
+                return;
+            }
+            if (call.method.equals("getStartupTrace")) {
+                result.success(startupTrace.toMap());
+                return;
+            }
+            if (call.method.equals("releasePrewarm")) {
+                prewarm.release();
+                result.success(null);
+                return;
+            }
+            if (call.method.equals("startEmbeddedScanner")) {
+                startEmbeddedScanner((Map<String, Object>) call.arguments, false, result);
+                return;
+            }
+            if (call.method.equals("openSession")) {
+                startEmbeddedScanner((Map<String, Object>) call.arguments, true, result);
+                return;
+            }
+            if (call.method.equals("scanNext")) {
+                scanNext(result);
+                return;
+            }
+            if (call.method.equals("pauseDetection")) {
+                pauseSessionDetection();
+                result.success(null);
+                return;
+            }
+            if (call.method.equals("stopEmbeddedScanner") || call.method.equals("closeSession")) {
+                stopEmbeddedScanner();
+                result.success(null);
+                return;
+            }
+
+            pendingResult = result;
+
+            if (call.method.equals("scanBarcode")) {
+                startupTrace.start(SystemClock.elapsedRealtimeNanos(), !hasStartedScan);
+                hasStartedScan = true;
+                StartupTrace.beginSection("onMethodCall");
+                try {
+                    if (!(call.arguments instanceof Map)) {
+                        throw new IllegalArgumentException("Plugin not passing a map as parameter: " + call.arguments);
+                    }
+                    arguments = (Map<String, Object>) call.arguments;
+                    lineColor = (String) arguments.get("lineColor");
+                    isShowFlashIcon = (boolean) arguments.get("isShowFlashIcon");
+                    if (null == lineColor || lineColor.equalsIgnoreCase("")) {
+                        lineColor = "#DC143C";
+                    }
+                    if (null != arguments.get("scanMode")) {
+                        if ((int) arguments.get("scanMode") == BarcodeCaptureActivity.SCAN_MODE_ENUM.DEFAULT.ordinal()) {
+                            BarcodeCaptureActivity.SCAN_MODE = BarcodeCaptureActivity.SCAN_MODE_ENUM.QR.ordinal();
+                        } else {
+                            BarcodeCaptureActivity.SCAN_MODE = (int) arguments.get("scanMode");
+                        }
                     } else {
-                        BarcodeCaptureActivity.SCAN_MODE = (int) arguments.get("scanMode");
+                        BarcodeCaptureActivity.SCAN_MODE = BarcodeCaptureActivity.SCAN_MODE_ENUM.QR.ordinal();
                     }
-                } else {
-                    BarcodeCaptureActivity.SCAN_MODE = BarcodeCaptureActivity.SCAN_MODE_ENUM.QR.ordinal();
-                }
 
-                isContinuousScan = (boolean) arguments.get("isContinuousScan");
+                    isContinuousScan = (boolean) arguments.get("isContinuousScan");
+
+                    try {
+                        barcodeFormats = barcodeFormatsFromArguments(arguments);
+                        configureResultDelivery(arguments, isContinuousScan);
+                    } catch (IllegalArgumentException e) {
+                        // Answered here, so no scan result may answer it again.
+                        pendingResult = null;
+                        result.error("invalidArguments", e.getMessage(), null);
+                        return;
+                    }
+                    isScanWindowOnly = Boolean.TRUE.equals(arguments.get("scanWindowOnly"));
+                    useCamera2 = Boolean.TRUE.equals(arguments.get("useCamera2"));
+                    isScanWindowFocus = Boolean.TRUE.equals(arguments.get("scanWindowFocus"));
+                    refocusAfterMs = null != arguments.get("refocusAfterMs")
+                            ? Math.max(0, (int) arguments.get("refocusAfterMs")) : 0;
+                    isAutoTorch = Boolean.TRUE.equals(arguments.get("autoTorch"));
+                    isAutoZoom = Boolean.TRUE.equals(arguments.get("autoZoom"));
+                    isThermalScaling = Boolean.TRUE.equals(arguments.get("thermalScaling"));
+
+                    detectionWorkers = detectionWorkersFromArguments(arguments);
+
+                    // Each scan session starts with fresh stats.
+                    scannerStats.reset();
 
-                startBarcodeScannerActivityView((String) arguments.get("cancelButtonText"), isContinuousScan);
+                    startBarcodeScannerActivityView((String) arguments.get("cancelButtonText"), isContinuousScan);
+                } finally {
+                    StartupTrace.endSection();
+                }
             }
         } catch (Exception e) {
             Log.e(TAG, "onMethodCall: " + e.getLocalizedMessage());
         }
     }
 
+    /**
+     * Sets how results are sent: encoded or as strings and, for a continuous scan, whether
+     * repeats are suppressed and results batched.  Missing batch settings take the Dart defaults.
+     *
+     * @throws IllegalArgumentException if a dedup or batch setting is out of range
+     *
+     * @param arguments
+     * @param continuous
+     */
+    private static void configureResultDelivery(Map<String, Object> arguments, boolean continuous) {
+        isDetailedResults = Boolean.TRUE.equals(arguments.get("detailedResults"));
+
+        dedupCache = null;
+        if (continuous && null != arguments.get("dedupWindowMs")
+                && (int) arguments.get("dedupWindowMs") > 0) {
+            int capacity = null != arguments.get("dedupCapacity") ? (int) arguments.get("dedupCapacity") : 256;
+            dedupCache = new BarcodeDedupCache((int) arguments.get("dedupWindowMs"), capacity);
+        }
+
+        resultBatcher = null;
+        if (continuous && Boolean.TRUE.equals(arguments.get("batchResults"))) {
+            // The same defaults as the Dart side, for callers that leave either out.
+            Integer maxItems = (Integer) arguments.get("batchMaxItems");
+            Integer maxDelayMs = (Integer) arguments.get("batchMaxDelayMs");
+            resultBatcher = new ResultBatcher<>(maxItems != null ? maxItems : 32,
+                    maxDelayMs != null ? maxDelayMs : 50);
+        }
+    }
+
+    /**
+     * Returns the number of detection workers asked for, between one and the number of cores.
+     *
+     * @param arguments
+     * @return
+     */
+    private static int detectionWorkersFromArguments(Map<String, Object> arguments) {
+        if (null == arguments.get("detectionWorkers")) {
+            return 1;
+        }
+        int maxWorkers = Runtime.getRuntime().availableProcessors();
+        return Math.max(1, Math.min((int) arguments.get("detectionWorkers"), maxWorkers));
+    }
+
+    /**
+     * Starts a scan session that previews into a Flutter texture.  Answers with the texture id and
+     * preview geometry once the camera is running.  The camera permission must already have been
+     * granted.
+     * <p/>
+     * Without singleScans, results are sent over the event channel as a continuous scan does.
+     * With it, detection starts paused and each {@link #scanNext} call answers with one barcode,
+     * keeping the camera open in between.
+     *
+     * @param arguments
+     * @param singleScans
+     * @param result
+     */
+    private void startEmbeddedScanner(Map<String, Object> arguments, boolean singleScans,
+                                      final Result result) {
+        if (embeddedScanner == null) {
+            result.error("unavailable", "The plugin is not attached to an activity", null);
+            return;
+        }
+        if (embeddedScanner.isStarted()) {
+            result.error("alreadyStarted", "The embedded scanner is already running", null);
+            return;
+        }
+        if (ContextCompat.checkSelfPermission(applicationContext, Manifest.permission.CAMERA)
+                != PackageManager.PERMISSION_GRANTED) {
+            result.error("cameraPermission", "The camera permission has not been granted", null);
+            return;
+        }
+
+        startupTrace.start(SystemClock.elapsedRealtimeNanos(), !hasStartedScan);
+        hasStartedScan = true;
+        startupTrace.mark(StartupTrace.PERMISSION_RESOLVED, SystemClock.elapsedRealtimeNanos());
+        // Worked out before anything is set up, so bad arguments leave no session behind.
+        int formats;
+        try {
+            formats = barcodeFormatsFromArguments(arguments);
+            configureResultDelivery(arguments, !singleScans);
+        } catch (IllegalArgumentException e) {
+            result.error("invalidArguments", e.getMessage(), null);
+            return;
+        }
+        scannerStats.reset();
+
+        final SingleScanProcessor singleScanProcessor = singleScans ? new SingleScanProcessor() : null;
+        sessionProcessor = singleScanProcessor;
+        int facing = Boolean.TRUE.equals(arguments.get("frontCamera"))
+                ? CameraSource.CAMERA_FACING_FRONT : CameraSource.CAMERA_FACING_BACK;
+        embeddedScanner.start(formats, facing,
+                Boolean.TRUE.equals(arguments.get("useCamera2")), detectionWorkersFromArguments(arguments),
+                singleScans ? singleScanProcessor : EmbeddedScanner.newItemProcessor(new EmbeddedScanner.Listener() {
+                    @Override
+                    public void onBarcodeDetected(Barcode barcode, long captureNanos,
+                                                  long detectedNanos) {
+                        onBarcodeScanReceiver(barcode, captureNanos, detectedNanos);
+                    }
+                }),
+                singleScans, Boolean.TRUE.equals(arguments.get("thermalScaling")),
+                new EmbeddedScanner.StartCallback() {
+                    @Override
+                    public void onStarted(Map<String, Object> info) {
+                        result.success(info);
+                    }
+
+                    @Override
+                    public void onError(String message) {
+                        if (sessionProcessor == singleScanProcessor) {
+                            sessionProcessor = null;
+                        }
+                        result.error("cameraError", message, null);
+                    }
+                });
+    }
+
+    /**
+     * Resumes detection in the open session and answers with the first barcode found, pausing
+     * detection again as soon as it is found.  Only the detection latency is paid, as the camera
+     * and the frame pipeline are already running.
+     *
+     * @param result
+     */
+    private void scanNext(final Result result) {
+        if (sessionProcessor == null) {
+            result.error("noSession", "No scan session is open", null);
+            return;
+        }
+        if (sessionScanResult != null) {
+            result.error("scanPending", "The last scanNext call has not finished", null);
+            return;
+        }
+        sessionScanResult = result;
+        final EmbeddedScanner scanner = embeddedScanner;
+        sessionProcessor.arm(new SingleScanProcessor.Callback() {
+            @Override
+            public void onScanned(Barcode barcode, final long captureNanos,
+                                  final long detectedNanos) {
+                // Stop detecting straight away; later frames only go back to the camera.
+                scanner.setDetectionPaused(true);
+                final Object message = isDetailedResults
+                        ? resultCodec.encodeMessage(barcode.format, barcode.rawValue,
+                        barcode.cornerPoints, captureTimeMicros(captureNanos))
+                        : barcode.rawValue;
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        // Answered already if detection was paused or the session closed.
+                        if (sessionScanResult != result) {
+                            return;
+                        }
+                        sessionScanResult = null;
+                        result.success(message);
+                        long nowNanos = SystemClock.elapsedRealtimeNanos();
+                        scannerStats.recordDelivered(captureNanos, detectedNanos, nowNanos);
+                        startupTrace.mark(StartupTrace.RESULT_DELIVERED, nowNanos);
+                    }
+                });
+            }
+        });
+        scanner.setDetectionPaused(false);
+    }
+
+    /**
+     * Pauses detection in the open session, answering a waiting scanNext call with null.
+     */
+    private void pauseSessionDetection() {
+        if (embeddedScanner != null) {
+            embeddedScanner.setDetectionPaused(true);
+        }
+        if (sessionProcessor != null) {
+            sessionProcessor.disarm();
+        }
+        if (sessionScanResult != null) {
+            Result result = sessionScanResult;
+            sessionScanResult = null;
+            result.success(null);
+        }
+    }
+
+    /**
+     * Reports an embedded scanner that stopped because its camera could not be restarted: a
+     * waiting scanNext fails with a cameraError, the session is closed, and an error event goes
+     * to the Dart side.
+     */
+    private void onEmbeddedScannerFailed(String message) {
+        sessionProcessor = null;
+        if (sessionScanResult != null) {
+            Result result = sessionScanResult;
+            sessionScanResult = null;
+            result.error("cameraError", message, null);
+        }
+        if (barcodeStream != null) {
+            Map<String, Object> event = new HashMap<>();
+            event.put("embeddedScanner", "error");
+            event.put("message", message);
+            barcodeStream.success(event);
+        }
+    }
+
+    /**
+     * Stops the embedded scanner, closing its session if it runs one.
+     */
+    private void stopEmbeddedScanner() {
+        pauseSessionDetection();
+        sessionProcessor = null;
+        if (embeddedScanner != null) {
+            embeddedScanner.stop();
+        }
+    }
+
+    /**
+     * Returns the detector formats for a scan: those in the "formats" list if there are any,
+     * otherwise those implied by the "scanMode".
+     *
+     * @throws IllegalArgumentException if a name in the "formats" list is not a known format
+     *
+     * @param arguments
+     * @return
+     */
+    private static int barcodeFormatsFromArguments(Map<String, Object> arguments) {
+        Object formats = arguments.get("formats");
+        if (formats instanceof List && !((List<?>) formats).isEmpty()) {
+            return BarcodeFormats.fromNames((List<?>) formats);
+        }
+        if (null != arguments.get("scanMode")) {
+            return BarcodeFormats.forScanMode((int) arguments.get("scanMode"));
+        }
+        return Barcode.ALL_FORMATS;
+    }
+
+    /**
+     * Runs {@link DetectorFormatBenchmark} on a background thread and answers on the main thread.
+     *
+     * @param call
+     * @param result
+     */
+    private void runDetectorFormatBenchmark(MethodCall call, final Result result) {
+        Integer width = call.argument("width");
+        Integer height = call.argument("height");
+        Integer frames = call.argument("frames");
+        final int frameWidth = width != null ? width : 1280;
+        final int frameHeight = height != null ? height : 720;
+        final int frameCount = frames != null ? frames : 30;
+        final Context context = applicationContext;
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    final Map<String, Object> results = new DetectorFormatBenchmark(context,
+                            frameWidth, frameHeight, frameCount).run();
+                    mainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            result.success(results);
+                        }
+                    });
+                } catch (final RuntimeException e) {
+                    mainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            result.error("benchmarkFailed", e.getMessage(), null);
+                        }
+                    });
+                }
+            }
+        }, "Detector format benchmark").start();
+    }
+
+    /**
+     * Runs {@link PreviewCalibration} on a background thread and answers on the main thread.
+     */
+    private void runPreviewCalibration(MethodCall call, final Result result) {
+        Integer frames = call.argument("frames");
+        final int frameCount = frames != null ? frames : 12;
+        final Context context = applicationContext;
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    final Map<String, Object> results = new PreviewCalibration(context, frameCount).run();
+                    mainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            result.success(results);
+                        }
+                    });
+                } catch (final RuntimeException e) {
+                    mainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            result.error("calibrationFailed", e.getMessage(), null);
+                        }
+                    });
+                }
+            }
+        }, "Preview calibration").start();
+    }
+
+    /**
+     * Runs an {@link ImageScanner} over an image file on a background thread and answers on the
+     * main thread with the barcodes found, as one ResultCodec message.  Their capture time is when
+     * the file was last modified.
+     *
+     * @param arguments
+     * @param result
+     */
+    private void runImageScan(Map<String, Object> arguments, final Result result) {
+        final String path = (String) arguments.get("path");
+        if (path == null) {
+            result.error("scanImageFailed", "No image path", null);
+            return;
+        }
+        final ImageScanner scanner;
+        try {
+            scanner = new ImageScanner(applicationContext, barcodeFormatsFromArguments(arguments),
+                    detectionWorkersFromArguments(arguments));
+        } catch (IllegalArgumentException e) {
+            result.error("invalidArguments", e.getMessage(), null);
+            return;
+        }
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    final byte[] message = encodeImageResults(scanner.scan(path),
+                            new File(path).lastModified());
+                    mainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            result.success(message);
+                        }
+                    });
+                } catch (final IOException | RuntimeException e) {
+                    mainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            result.error("scanImageFailed", e.getMessage(), null);
+                        }
+                    });
+                }
+            }
+        }, "Image scan").start();
+    }
+
+    /**
+     * Starts a {@link DirectoryScanner} over a directory of images, streaming each file's results
+     * over the event channel as a map with {@code directoryScan} set to {@code file}, its
+     * {@code path} and either its {@code results}, as one ResultCodec message, or an
+     * {@code error}.  A last event with {@code directoryScan} set to {@code done} carries whether
+     * the run was {@code cancelled}, any {@code error} and the {@code stats}.  Answers as soon as
+     * the run has started.
+     *
+     * @param arguments
+     * @param result
+     */
+    private void startDirectoryScan(Map<String, Object> arguments, Result result) {
+        if (directoryScanner != null) {
+            result.error("scanDirectoryFailed", "A directory scan is already running", null);
+            return;
+        }
+        String path = (String) arguments.get("path");
+        if (path == null) {
+            result.error("scanDirectoryFailed", "No directory path", null);
+            return;
+        }
+        Integer maxPending = (Integer) arguments.get("maxPending");
+        final DirectoryScanner[] scanner = new DirectoryScanner[1];
+        try {
+            scanner[0] = new DirectoryScanner(applicationContext, new File(path),
+                    !Boolean.FALSE.equals(arguments.get("recursive")),
+                    barcodeFormatsFromArguments(arguments), detectionWorkersFromArguments(arguments),
+                    maxPending != null ? maxPending : 8, directoryScanStats,
+                    new DirectoryScanner.Listener() {
+                        @Override
+                        public void onFileScanned(File file, List<Barcode> barcodes, String error) {
+                            final Map<String, Object> event = new HashMap<>();
+                            event.put("directoryScan", "file");
+                            event.put("path", file.getPath());
+                            event.put("results", barcodes != null
+                                    ? encodeImageResults(barcodes, file.lastModified()) : null);
+                            event.put("error", error);
+                            mainHandler.post(new Runnable() {
+                                @Override
+                                public void run() {
+                                    if (barcodeStream != null) {
+                                        barcodeStream.success(event);
+                                    }
+                                    // Handed to the engine, not yet taken by the app; the Dart
+                                    // side pauses the scan when it falls behind.
+                                    scanner[0].onDelivered();
+                                }
+                            });
+                        }
+
+                        @Override
+                        public void onFinished(boolean cancelled, String error) {
+                            final Map<String, Object> event = new HashMap<>();
+                            event.put("directoryScan", "done");
+                            event.put("cancelled", cancelled);
+                            event.put("error", error);
+                            event.put("stats",
+                                    directoryScanStats.toMap(SystemClock.elapsedRealtimeNanos()));
+                            mainHandler.post(new Runnable() {
+                                @Override
+                                public void run() {
+                                    if (directoryScanner == scanner[0]) {
+                                        directoryScanner = null;
+                                    }
+                                    if (barcodeStream != null) {
+                                        barcodeStream.success(event);
+                                    }
+                                }
+                            });
+                        }
+                    });
+        } catch (IllegalArgumentException e) {
+            result.error("scanDirectoryFailed", e.getMessage(), null);
+            return;
+        }
+        directoryScanner = scanner[0];
+        directoryScanner.start();
+        result.success(null);
+    }
+
+    /**
+     * Encodes the barcodes found in an image file as one ResultCodec message, with the time the
+     * file was last modified as their capture time.
+     *
+     * @param barcodes
+     * @param modifiedMillis
+     * @return
+     */
+    private static byte[] encodeImageResults(List<Barcode> barcodes, long modifiedMillis) {
+        long captureTimeMicros =
+                (modifiedMillis > 0 ? modifiedMillis : System.currentTimeMillis()) * 1000L;
+        List<byte[]> records = new ArrayList<>(barcodes.size());
+        for (Barcode barcode : barcodes) {
+            records.add(resultCodec.encodeRecord(barcode.format, barcode.rawValue,
+                    barcode.cornerPoints, captureTimeMicros));
+        }
+        return ResultCodec.joinRecords(records);
+    }
+
     private void startBarcodeScannerActivityView(String buttonText, boolean isContinuousScan) {
         try {
             Intent intent = new Intent(activity, BarcodeCaptureActivity.class).putExtra("cancelButtonText", buttonText);
@@ -151,8 +805,17 @@ public class FlutterBarcodeScannerPlugin implements MethodCallHandler, ActivityR
                 if (data != null) {
                     try {
                         Barcode barcode = data.getParcelableExtra(BarcodeCaptureActivity.BarcodeObject);
-                        String barcodeResult = barcode.rawValue;
-                        pendingResult.success(barcodeResult);
+                        long captureNanos = data.getLongExtra(BarcodeCaptureActivity.CaptureNanos, 0);
+                        if (isDetailedResults) {
+                            pendingResult.success(resultCodec.encodeMessage(barcode.format,
+                                    barcode.rawValue, barcode.cornerPoints, captureTimeMicros(captureNanos)));
+                        } else {
+                            pendingResult.success(barcode.rawValue);
+                        }
+                        long nowNanos = SystemClock.elapsedRealtimeNanos();
+                        scannerStats.recordDelivered(captureNanos,
+                                data.getLongExtra(BarcodeCaptureActivity.DetectedNanos, 0), nowNanos);
+                        startupTrace.mark(StartupTrace.RESULT_DELIVERED, nowNanos);
                     } catch (Exception e) {
                         pendingResult.success("-1");
                     }
@@ -182,6 +845,10 @@ public class FlutterBarcodeScannerPlugin implements MethodCallHandler, ActivityR
     public void onCancel(Object o) {
         try {
             barcodeStream = null;
+            // Nobody is listening for the rest of the directory's results.
+            if (directoryScanner != null) {
+                directoryScanner.cancel();
+            }
         } catch (Exception e) {
 
         }
@@ -191,14 +858,39 @@ public class FlutterBarcodeScannerPlugin implements MethodCallHandler, ActivityR
      * Continuous receive barcode
      *
      * @param barcode
+     * @param captureNanos  when the frame the barcode was found in was captured, or 0.
+     * @param detectedNanos when detection on that frame finished, or 0.
      */
-    public static void onBarcodeScanReceiver(final Barcode barcode) {
+    public static void onBarcodeScanReceiver(final Barcode barcode, final long captureNanos,
+                                             final long detectedNanos) {
         try {
             if (barcode != null && !barcode.displayValue.isEmpty()) {
+                // Drop repeats here, before they cost a hop to the UI thread and over the channel.
+                BarcodeDedupCache cache = dedupCache;
+                if (cache != null && !cache.shouldDeliver(barcode.format, barcode.rawValue,
+                        SystemClock.elapsedRealtimeNanos())) {
+                    return;
+                }
+                ResultBatcher<BatchedResult> batcher = resultBatcher;
+                if (batcher != null) {
+                    addToBatch(batcher, new BatchedResult(barcode, captureNanos, detectedNanos));
+                    return;
+                }
+                // Encoded here on the detector thread, leaving only the send to the main thread.
+                final Object message = isDetailedResults
+                        ? resultCodec.encodeMessage(barcode.format, barcode.rawValue,
+                        barcode.cornerPoints, captureTimeMicros(captureNanos))
+                        : barcode.rawValue;
                 activity.runOnUiThread(new Runnable() {
                     @Override
                     public void run() {
-                        barcodeStream.success(barcode.rawValue);
+                        if (barcodeStream == null) {
+                            return;
+                        }
+                        barcodeStream.success(message);
+                        long nowNanos = SystemClock.elapsedRealtimeNanos();
+                        scannerStats.recordDelivered(captureNanos, detectedNanos, nowNanos);
+                        startupTrace.mark(StartupTrace.RESULT_DELIVERED, nowNanos);
                     }
                 });
             }
@@ -207,6 +899,114 @@ public class FlutterBarcodeScannerPlugin implements MethodCallHandler, ActivityR
         }
     }
 
+    /**
+     * Adds a result to the batch, sending the batch if it is full, or scheduling it to be sent
+     * once its delay has passed if this is its first result.
+     *
+     * @param batcher
+     * @param result
+     */
+    private static void addToBatch(final ResultBatcher<BatchedResult> batcher, BatchedResult result) {
+        switch (batcher.add(result, SystemClock.elapsedRealtimeNanos())) {
+            case ResultBatcher.FLUSH_NOW:
+                final List<BatchedResult> batch = batcher.drain();
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        sendBatch(batch);
+                    }
+                });
+                break;
+            case ResultBatcher.SCHEDULE_FLUSH:
+                mainHandler.postDelayed(new Runnable() {
+                    @Override
+                    public void run() {
+                        sendBatch(batcher.drainIfDue(SystemClock.elapsedRealtimeNanos()));
+                    }
+                }, batcher.getMaxDelayMillis());
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Sends a batch of results as one list over the event channel.  Must be called on the main
+     * thread.
+     *
+     * @param batch
+     */
+    private static void sendBatch(List<BatchedResult> batch) {
+        if (batch == null || barcodeStream == null) {
+            return;
+        }
+        if (isDetailedResults) {
+            List<byte[]> records = new ArrayList<>(batch.size());
+            for (BatchedResult result : batch) {
+                records.add(result.record);
+            }
+            barcodeStream.success(ResultCodec.joinRecords(records));
+        } else {
+            List<Map<String, Object>> items = new ArrayList<>(batch.size());
+            for (BatchedResult result : batch) {
+                items.add(result.toMap());
+            }
+            barcodeStream.success(items);
+        }
+        long nowNanos = SystemClock.elapsedRealtimeNanos();
+        for (BatchedResult result : batch) {
+            scannerStats.recordDelivered(result.captureNanos, result.detectedNanos, nowNanos);
+        }
+        startupTrace.mark(StartupTrace.RESULT_DELIVERED, nowNanos);
+    }
+
+    /**
+     * Converts a frame capture time to wall clock microseconds, for Dart.  Unknown capture times
+     * are taken as now.
+     *
+     * @param captureNanos
+     * @return
+     */
+    private static long captureTimeMicros(long captureNanos) {
+        long ageMicros = captureNanos == 0 ? 0
+                : (SystemClock.elapsedRealtimeNanos() - captureNanos) / 1000L;
+        return System.currentTimeMillis() * 1000L - ageMicros;
+    }
+
+    /**
+     * A continuous scan result waiting in a batch, with the times of the frame it came from.
+     */
+    static final class BatchedResult {
+        final String rawValue;
+        final int format;
+        final long captureNanos;
+        final long detectedNanos;
+        // Wall clock time of the capture, for Dart.
+        final long timestampMillis;
+        // The result as a ResultCodec record when sending detailed results, otherwise null.
+        final byte[] record;
+
+        BatchedResult(Barcode barcode, long captureNanos, long detectedNanos) {
+            this.rawValue = barcode.rawValue;
+            this.format = barcode.format;
+            this.captureNanos = captureNanos;
+            this.detectedNanos = detectedNanos;
+            long captureTimeMicros = captureTimeMicros(captureNanos);
+            this.timestampMillis = captureTimeMicros / 1000L;
+            this.record = isDetailedResults
+                    ? resultCodec.encodeRecord(format, rawValue, barcode.cornerPoints, captureTimeMicros)
+                    : null;
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new HashMap<>();
+            map.put("rawValue", rawValue);
+            map.put("format", format);
+            map.put("timestamp", timestampMillis);
+            return map;
+        }
+    }
+
     @Override
     public void onAttachedToEngine(FlutterPluginBinding binding) {
         pluginBinding = binding;
@@ -215,6 +1015,12 @@ public class FlutterBarcodeScannerPlugin implements MethodCallHandler, ActivityR
     @Override
     public void onDetachedFromEngine(FlutterPluginBinding binding) {
         pluginBinding = null;
+        prewarm.release();
+        stopEmbeddedScanner();
+        if (embeddedScanner != null) {
+            embeddedScanner.release();
+        }
+        embeddedScanner = null;
     }
 
     @Override
@@ -234,6 +1040,7 @@ public class FlutterBarcodeScannerPlugin implements MethodCallHandler, ActivityR
      * @param messenger
      * @param applicationContext
      * @param activity
+     * @param textureRegistry
      * @param registrar
      * @param activityBinding
      */
@@ -241,6 +1048,7 @@ public class FlutterBarcodeScannerPlugin implements MethodCallHandler, ActivityR
             final BinaryMessenger messenger,
             final Application applicationContext,
             final Activity activity,
+            final TextureRegistry textureRegistry,
             final PluginRegistry.Registrar registrar,
             final ActivityPluginBinding activityBinding) {
 
@@ -252,6 +1060,9 @@ public class FlutterBarcodeScannerPlugin implements MethodCallHandler, ActivityR
 
 
         this.applicationContext = applicationContext;
+        if (embeddedScanner == null && textureRegistry != null) {
+            embeddedScanner = new EmbeddedScanner(applicationContext, textureRegistry);
+        }
         channel = new MethodChannel(messenger, CHANNEL);
         channel.setMethodCallHandler(this);
         if (registrar != null) {
@@ -276,6 +1087,7 @@ public class FlutterBarcodeScannerPlugin implements MethodCallHandler, ActivityR
                 pluginBinding.getBinaryMessenger(),
                 (Application) pluginBinding.getApplicationContext(),
                 activityBinding.getActivity(),
+                pluginBinding.getTextureRegistry(),
                 null,
                 activityBinding);
     }
@@ -289,6 +1101,7 @@ public class FlutterBarcodeScannerPlugin implements MethodCallHandler, ActivityR
      * Clear plugin setup
      */
     private void clearPluginSetup() {
+        stopEmbeddedScanner();
         activity = null;
         activityBinding.removeActivityResultListener(this);
         activityBinding = null;
@@ -318,6 +1131,7 @@ public class FlutterBarcodeScannerPlugin implements MethodCallHandler, ActivityR
 
         @Override
         public void onStart(@NonNull LifecycleOwner owner) {
+            onActivityStarted(thisActivity);
         }
 
         @Override
@@ -344,6 +1158,20 @@ public class FlutterBarcodeScannerPlugin implements MethodCallHandler, ActivityR
 
         @Override
         public void onActivityStarted(Activity activity) {
+            if (thisActivity == activity && embeddedScanner != null
+                    && ContextCompat.checkSelfPermission(activity, Manifest.permission.CAMERA)
+                    == PackageManager.PERMISSION_GRANTED) {
+                embeddedScanner.resume(new EmbeddedScanner.StartCallback() {
+                    @Override
+                    public void onStarted(Map<String, Object> info) {
+                    }
+
+                    @Override
+                    public void onError(String message) {
+                        onEmbeddedScannerFailed(message);
+                    }
+                });
+            }
         }
 
         @Override
@@ -369,7 +1197,10 @@ public class FlutterBarcodeScannerPlugin implements MethodCallHandler, ActivityR
 
         @Override
         public void onActivityStopped(Activity activity) {
-
+            // Give the camera back while the app is in the background.
+            if (thisActivity == activity && embeddedScanner != null) {
+                embeddedScanner.pause();
+            }
         }
     }
 }
\ No newline at end of file
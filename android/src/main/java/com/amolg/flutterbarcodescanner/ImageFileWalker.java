@@ -0,0 +1,84 @@
+package com.amolg.flutterbarcodescanner;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Walks a directory for image files, handing them out one at a time, so that the walk only ever
+ * holds the listing of the directory being read and the directories still waiting.  Files come
+ * in name order, each directory's files before its subdirectories.  Hidden files and directories
+ * are skipped.  Safe to use from any thread.
+ */
+final class ImageFileWalker {
+    private static final String[] IMAGE_EXTENSIONS = {
+            ".jpg", ".jpeg", ".png", ".webp", ".heic", ".heif"
+    };
+
+    private final boolean mRecursive;
+    // Directories still to be read, the next one first.
+    private final ArrayDeque<File> mDirectories = new ArrayDeque<>();
+    // Files and subdirectories of the directory being read.
+    private File[] mEntries = new File[0];
+    private int mNextEntry;
+    // Subdirectories of the directory being read, to be read once it is done.
+    private final List<File> mSubdirectories = new ArrayList<>();
+
+    ImageFileWalker(File directory, boolean recursive) {
+        if (!directory.isDirectory()) {
+            throw new IllegalArgumentException("Not a directory: " + directory);
+        }
+        mRecursive = recursive;
+        mDirectories.push(directory);
+    }
+
+    /**
+     * Returns the next image file, or null once there are none left.
+     */
+    synchronized File next() {
+        while (true) {
+            while (mNextEntry < mEntries.length) {
+                File entry = mEntries[mNextEntry++];
+                if (entry.getName().startsWith(".")) {
+                    continue;
+                }
+                if (entry.isDirectory()) {
+                    if (mRecursive) {
+                        mSubdirectories.add(entry);
+                    }
+                } else if (isImage(entry.getName())) {
+                    return entry;
+                }
+            }
+            // Read depth first, taking the subdirectories in name order.
+            for (int i = mSubdirectories.size() - 1; i >= 0; --i) {
+                mDirectories.push(mSubdirectories.get(i));
+            }
+            mSubdirectories.clear();
+            File directory = mDirectories.poll();
+            if (directory == null) {
+                return null;
+            }
+            File[] entries = directory.listFiles();
+            mEntries = entries != null ? entries : new File[0];
+            Arrays.sort(mEntries);
+            mNextEntry = 0;
+        }
+    }
+
+    static boolean isImage(String name) {
+        if (name.startsWith(".")) {
+            return false;
+        }
+        String lowerCase = name.toLowerCase(Locale.ROOT);
+        for (String extension : IMAGE_EXTENSIONS) {
+            if (lowerCase.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
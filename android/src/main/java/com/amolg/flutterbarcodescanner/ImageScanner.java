@@ -0,0 +1,316 @@
+package com.amolg.flutterbarcodescanner;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Point;
+import android.graphics.Rect;
+import android.util.SparseArray;
+
+import com.google.android.gms.vision.Frame;
+import com.google.android.gms.vision.barcode.Barcode;
+import com.google.android.gms.vision.barcode.BarcodeDetector;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Finds the barcodes in an image file, such as a photo or a scanned document, of any size.  The
+ * image is never decoded whole at full resolution: {@link BitmapRegionDecoder} decodes it one
+ * overlapping tile at a time (see {@link ImageTiling}), and a few workers, each with its own
+ * detector and a single tile bitmap it reuses, decode the tiles in parallel.  A downsampled pass
+ * over the whole image finds the codes too large to fit in one tile.  Peak memory is set by the
+ * tile size and the number of workers, not by the size of the image.
+ * <p/>
+ * Codes found in several tiles are reported once, with the corners from the full resolution tile
+ * when there is one.  The region decoder is shared, so tiles are decoded from the file one at a
+ * time while the workers detect in parallel.  Blocks until the whole image is scanned, so call it
+ * off the main thread.
+ */
+final class ImageScanner {
+    static final int TILE_SIZE = 2048;
+    // Codes up to this wide lie wholly inside some tile.
+    static final int TILE_OVERLAP = 256;
+    // Longest side of the downsampled pass over the whole image.
+    static final int OVERVIEW_SIZE = 2048;
+
+    private static final BarcodeResultMapper MAPPER = new BarcodeResultMapper();
+
+    private final Context mContext;
+    private final int mFormats;
+    private final int mWorkers;
+
+    ImageScanner(Context context, int formats, int workers) {
+        if (workers <= 0) {
+            throw new IllegalArgumentException("Invalid worker count: " + workers);
+        }
+        mContext = context;
+        mFormats = formats;
+        mWorkers = workers;
+    }
+
+    /**
+     * Returns the barcodes in the image, in full image coordinates, top to bottom.
+     *
+     * @throws IOException if the file cannot be read or is not an image the platform decodes
+     */
+    List<Barcode> scan(String path) throws IOException {
+        BitmapRegionDecoder decoder = open(path);
+        try {
+            return scan(decoder);
+        } finally {
+            decoder.recycle();
+        }
+    }
+
+    /**
+     * Scans an image on the calling thread with the given detector, for callers that run their
+     * own workers, such as {@link DirectoryScanner}.
+     *
+     * @throws IOException if the file cannot be read or is not an image the platform decodes
+     */
+    static List<Barcode> scan(String path, BarcodeDetector detector) throws IOException {
+        BitmapRegionDecoder decoder = open(path);
+        try {
+            List<Rect> tiles = new ArrayList<>();
+            int overviewSampleSize = planTiles(decoder.getWidth(), decoder.getHeight(), tiles);
+            AtomicReference<RuntimeException> failure = new AtomicReference<>();
+            Results results = new Results();
+            scanTiles(decoder, detector, tiles, overviewSampleSize, new AtomicInteger(), failure,
+                    results);
+            if (failure.get() != null) {
+                throw failure.get();
+            }
+            return results.sorted();
+        } finally {
+            decoder.recycle();
+        }
+    }
+
+    private static BitmapRegionDecoder open(String path) throws IOException {
+        BitmapRegionDecoder decoder = BitmapRegionDecoder.newInstance(path, false);
+        if (decoder == null) {
+            throw new IOException("Cannot decode image: " + path);
+        }
+        return decoder;
+    }
+
+    /**
+     * Adds the tiles of an image to the list, followed by the whole image if there is an overview
+     * pass, and returns the overview sample size, or 0 if there is none.
+     */
+    private static int planTiles(int width, int height, List<Rect> tiles) {
+        int[] xs = ImageTiling.tileOrigins(width, TILE_SIZE, TILE_OVERLAP);
+        int[] ys = ImageTiling.tileOrigins(height, TILE_SIZE, TILE_OVERLAP);
+        int tileWidth = Math.min(TILE_SIZE, width);
+        int tileHeight = Math.min(TILE_SIZE, height);
+        for (int y : ys) {
+            for (int x : xs) {
+                tiles.add(new Rect(x, y, x + tileWidth, y + tileHeight));
+            }
+        }
+        // With a single tile, the tile already is the whole image at full resolution.
+        if (tiles.size() == 1) {
+            return 0;
+        }
+        tiles.add(new Rect(0, 0, width, height));
+        return ImageTiling.sampleSize(width, height, OVERVIEW_SIZE);
+    }
+
+    private List<Barcode> scan(final BitmapRegionDecoder decoder) {
+        final List<Rect> tiles = new ArrayList<>();
+        final int overviewSampleSize = planTiles(decoder.getWidth(), decoder.getHeight(), tiles);
+
+        int workerCount = Math.min(mWorkers, tiles.size());
+        final BarcodeDetector[] detectors = new BarcodeDetector[workerCount];
+        final Results results = new Results();
+        try {
+            for (int i = 0; i < workerCount; ++i) {
+                detectors[i] = new BarcodeDetector.Builder(mContext)
+                        .setBarcodeFormats(mFormats)
+                        .build();
+            }
+            if (!detectors[0].isOperational()) {
+                throw new IllegalStateException("Barcode detector is not operational yet");
+            }
+
+            final AtomicInteger nextTile = new AtomicInteger();
+            final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+            Thread[] threads = new Thread[workerCount - 1];
+            for (int i = 0; i < threads.length; ++i) {
+                final BarcodeDetector detector = detectors[i + 1];
+                threads[i] = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        scanTiles(decoder, detector, tiles, overviewSampleSize, nextTile, failure,
+                                results);
+                    }
+                }, "Image scan worker " + (i + 1));
+                threads[i].start();
+            }
+            scanTiles(decoder, detectors[0], tiles, overviewSampleSize, nextTile, failure, results);
+            joinAll(threads);
+            if (failure.get() != null) {
+                throw failure.get();
+            }
+        } finally {
+            for (BarcodeDetector detector : detectors) {
+                if (detector != null) {
+                    detector.release();
+                }
+            }
+        }
+        return results.sorted();
+    }
+
+    /**
+     * Takes tiles until there are none left, or until a worker has failed.  The last tile is the
+     * whole image, decoded at the overview sample size, if there is an overview pass.
+     */
+    private static void scanTiles(BitmapRegionDecoder decoder, BarcodeDetector detector, List<Rect> tiles,
+                           int overviewSampleSize, AtomicInteger nextTile,
+                           AtomicReference<RuntimeException> failure, Results results) {
+        BitmapFactory.Options tileOptions = new BitmapFactory.Options();
+        tileOptions.inPreferredConfig = Bitmap.Config.RGB_565;
+        tileOptions.inMutable = true;
+        try {
+            int index;
+            while (failure.get() == null && (index = nextTile.getAndIncrement()) < tiles.size()) {
+                Rect tile = tiles.get(index);
+                boolean overview = overviewSampleSize > 0 && index == tiles.size() - 1;
+                if (overview) {
+                    BitmapFactory.Options overviewOptions = new BitmapFactory.Options();
+                    overviewOptions.inPreferredConfig = Bitmap.Config.RGB_565;
+                    overviewOptions.inSampleSize = overviewSampleSize;
+                    Bitmap bitmap = decoder.decodeRegion(tile, overviewOptions);
+                    try {
+                        detect(detector, bitmap, tile, overviewSampleSize, results);
+                    } finally {
+                        if (bitmap != null) {
+                            bitmap.recycle();
+                        }
+                    }
+                } else {
+                    // Every tile is the same size, so each one is decoded over the last.
+                    Bitmap bitmap = decoder.decodeRegion(tile, tileOptions);
+                    tileOptions.inBitmap = bitmap;
+                    detect(detector, bitmap, tile, 1, results);
+                }
+            }
+        } catch (RuntimeException e) {
+            failure.compareAndSet(null, e);
+        } finally {
+            if (tileOptions.inBitmap != null) {
+                tileOptions.inBitmap.recycle();
+            }
+        }
+    }
+
+    private static void detect(BarcodeDetector detector, Bitmap bitmap, Rect tile, int sampleSize,
+                        Results results) {
+        if (bitmap == null) {
+            throw new IllegalStateException("Cannot decode image region at "
+                    + tile.left + ", " + tile.top);
+        }
+        SparseArray<Barcode> barcodes = detector.detect(new Frame.Builder().setBitmap(bitmap).build());
+        for (int i = 0; i < barcodes.size(); ++i) {
+            Barcode barcode = barcodes.valueAt(i);
+            if (sampleSize > 1) {
+                MAPPER.scale(barcode, sampleSize);
+            }
+            MAPPER.offset(barcode, tile.left, tile.top);
+            results.add(barcode, sampleSize);
+        }
+    }
+
+    /**
+     * Waits for the threads to end, even if interrupted, keeping the interrupt for the caller.
+     */
+    static void joinAll(Thread[] threads) {
+        boolean interrupted = false;
+        for (Thread thread : threads) {
+            while (true) {
+                try {
+                    thread.join();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The codes found so far.  A code found again where it was already found, with the same format
+     * and value and overlapping bounds, is the same code seen by another tile.
+     */
+    private static final class Results {
+        private final List<Barcode> mBarcodes = new ArrayList<>();
+        private final List<Integer> mSampleSizes = new ArrayList<>();
+
+        synchronized void add(Barcode barcode, int sampleSize) {
+            int[] bounds = bounds(barcode.cornerPoints);
+            for (int i = 0; i < mBarcodes.size(); ++i) {
+                Barcode found = mBarcodes.get(i);
+                if (found.format == barcode.format && equal(found.rawValue, barcode.rawValue)
+                        && overlap(bounds(found.cornerPoints), bounds)) {
+                    if (sampleSize < mSampleSizes.get(i)) {
+                        mBarcodes.set(i, barcode);
+                        mSampleSizes.set(i, sampleSize);
+                    }
+                    return;
+                }
+            }
+            mBarcodes.add(barcode);
+            mSampleSizes.add(sampleSize);
+        }
+
+        synchronized List<Barcode> sorted() {
+            List<Barcode> barcodes = new ArrayList<>(mBarcodes);
+            Collections.sort(barcodes, new Comparator<Barcode>() {
+                @Override
+                public int compare(Barcode a, Barcode b) {
+                    int[] first = bounds(a.cornerPoints);
+                    int[] second = bounds(b.cornerPoints);
+                    return first[1] != second[1] ? Integer.compare(first[1], second[1])
+                            : Integer.compare(first[0], second[0]);
+                }
+            });
+            return barcodes;
+        }
+
+        // Left, top, right and bottom of the corners, or all zero without corners.
+        private static int[] bounds(Point[] cornerPoints) {
+            int[] bounds = new int[4];
+            if (cornerPoints == null || cornerPoints.length == 0) {
+                return bounds;
+            }
+            bounds[0] = bounds[2] = cornerPoints[0].x;
+            bounds[1] = bounds[3] = cornerPoints[0].y;
+            for (Point point : cornerPoints) {
+                bounds[0] = Math.min(bounds[0], point.x);
+                bounds[1] = Math.min(bounds[1], point.y);
+                bounds[2] = Math.max(bounds[2], point.x);
+                bounds[3] = Math.max(bounds[3], point.y);
+            }
+            return bounds;
+        }
+
+        private static boolean overlap(int[] a, int[] b) {
+            return a[0] <= b[2] && b[0] <= a[2] && a[1] <= b[3] && b[1] <= a[3];
+        }
+
+        private static boolean equal(String a, String b) {
+            return a == null ? b == null : a.equals(b);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.amolg.flutterbarcodescanner;
+
+/**
+ * Splits a large image into overlapping tiles of equal size for {@link ImageScanner}.  Neighbouring
+ * tiles share a band as wide as the overlap, so a code no wider than the overlap lies wholly inside
+ * at least one tile.  Larger codes are left to a downsampled pass over the whole image.
+ */
+final class ImageTiling {
+    private ImageTiling() {
+    }
+
+    /**
+     * Returns where the tiles start along one side of the image.  Every tile is {@code tile}
+     * pixels long, or the whole side if it is shorter, and the last tile ends at the edge of the
+     * image, so that no tile runs past it.
+     *
+     * @throws IllegalArgumentException if the overlap is not smaller than the tile
+     */
+    static int[] tileOrigins(int length, int tile, int overlap) {
+        if (length <= 0 || tile <= 0 || overlap < 0 || overlap >= tile) {
+            throw new IllegalArgumentException("Invalid tiling: length " + length + ", tile "
+                    + tile + ", overlap " + overlap);
+        }
+        if (length <= tile) {
+            return new int[]{0};
+        }
+        int step = tile - overlap;
+        int count = (length - tile + step - 1) / step + 1;
+        int[] origins = new int[count];
+        for (int i = 0; i < count; ++i) {
+            origins[i] = Math.min(i * step, length - tile);
+        }
+        return origins;
+    }
+
+    /**
+     * Returns the smallest power of two sample size that brings the longer side of the image down
+     * to at most {@code maxSide} pixels.
+     */
+    static int sampleSize(int width, int height, int maxSide) {
+        if (maxSide <= 0) {
+            throw new IllegalArgumentException("Invalid side: " + maxSide);
+        }
+        int longest = Math.max(width, height);
+        int sampleSize = 1;
+        while (longest / sampleSize > maxSide) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+}
@@ -0,0 +1,128 @@
+package com.amolg.flutterbarcodescanner;
+
+import android.content.Context;
+import android.graphics.ImageFormat;
+import android.os.SystemClock;
+import android.util.SparseArray;
+
+import com.amolg.flutterbarcodescanner.constants.AppConstants;
+import com.google.android.gms.vision.Frame;
+import com.google.android.gms.vision.barcode.Barcode;
+import com.google.android.gms.vision.barcode.BarcodeDetector;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the preview size and frame rate that suit the device it runs on.  At each candidate size,
+ * synthetic frames holding EAN-13 codes of several densities are decoded by the real detector,
+ * measuring how many codes are read and how many frames a second the detector gets through.  The
+ * chosen profile is stored for later scan sessions.
+ * <p/>
+ * Small sizes fail on the dense codes and large ones may be too slow for the device, so the choice
+ * is the size that reads the most codes while the detector keeps up with the minimum detection
+ * rate.  Runs for a few seconds, so call it off the main thread.
+ */
+final class PreviewCalibration {
+    private static final int[][] CANDIDATE_SIZES = {
+            {640, 480}, {1280, 720}, {1600, 1024}, {1920, 1080}
+    };
+    // Widths of the codes with their quiet zones, as fractions of the frame width.  The narrowest
+    // stands for a dense code or one far away.
+    private static final float[] CODE_WIDTHS = {0.15f, 0.25f, 0.4f};
+    private static final String[] CODE_VALUES = {"400638133393", "590123412345", "978020137962"};
+    private static final int NOISE = 12;
+    private static final int WARM_UP_FRAMES = 2;
+
+    private final Context mContext;
+    private final int mFrames;
+
+    PreviewCalibration(Context context, int frames) {
+        if (frames <= 0) {
+            throw new IllegalArgumentException("Invalid calibration frame count: " + frames);
+        }
+        mContext = context;
+        mFrames = frames;
+    }
+
+    /**
+     * Measures each candidate size, stores the chosen profile and returns it as
+     * {@code previewWidth}, {@code previewHeight} and {@code fps}, with the measurements under
+     * {@code candidates}.
+     */
+    Map<String, Object> run() {
+        BarcodeDetector detector = new BarcodeDetector.Builder(mContext)
+                .setBarcodeFormats(Barcode.ALL_FORMATS)
+                .build();
+        if (!detector.isOperational()) {
+            detector.release();
+            throw new IllegalStateException("Barcode detector is not operational yet");
+        }
+        List<PreviewProfile.Measurement> measurements = new ArrayList<>();
+        try {
+            for (int[] size : CANDIDATE_SIZES) {
+                measurements.add(measure(detector, size[0], size[1]));
+            }
+        } finally {
+            detector.release();
+        }
+
+        PreviewProfile profile = PreviewProfile.choose(measurements, AppConstants.DETECTION_MIN_FPS);
+        new PreviewProfileStore(mContext).put(profile);
+
+        List<Map<String, Object>> candidates = new ArrayList<>();
+        for (PreviewProfile.Measurement measurement : measurements) {
+            Map<String, Object> candidate = new HashMap<>();
+            candidate.put("width", measurement.width);
+            candidate.put("height", measurement.height);
+            candidate.put("successRate", (double) measurement.successRate);
+            candidate.put("framesPerSecond", (double) measurement.framesPerSecond);
+            candidates.add(candidate);
+        }
+        Map<String, Object> results = new HashMap<>();
+        results.put("previewWidth", profile.previewWidth);
+        results.put("previewHeight", profile.previewHeight);
+        results.put("fps", profile.fps);
+        results.put("candidates", candidates);
+        return results;
+    }
+
+    private PreviewProfile.Measurement measure(BarcodeDetector detector, int width, int height) {
+        Frame[] frames = new Frame[CODE_WIDTHS.length];
+        String[] values = new String[frames.length];
+        byte[] data = new byte[width * height * 3 / 2];
+        for (int i = 0; i < frames.length; ++i) {
+            values[i] = SyntheticBarcode.withCheckDigit(CODE_VALUES[i % CODE_VALUES.length]);
+            SyntheticBarcode.render(SyntheticBarcode.encodeEan13(values[i]), width, height,
+                    CODE_WIDTHS[i], NOISE, i, data);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(data.length);
+            buffer.put(data);
+            buffer.rewind();
+            frames[i] = new Frame.Builder()
+                    .setImageData(buffer, width, height, ImageFormat.NV21)
+                    .setId(i)
+                    .build();
+        }
+
+        for (int i = 0; i < WARM_UP_FRAMES; ++i) {
+            detector.detect(frames[i % frames.length]);
+        }
+        int read = 0;
+        long start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < mFrames; ++i) {
+            SparseArray<Barcode> barcodes = detector.detect(frames[i % frames.length]);
+            for (int j = 0; j < barcodes.size(); ++j) {
+                if (values[i % frames.length].equals(barcodes.valueAt(j).rawValue)) {
+                    ++read;
+                    break;
+                }
+            }
+        }
+        long elapsedNanos = Math.max(1, SystemClock.elapsedRealtimeNanos() - start);
+        return new PreviewProfile.Measurement(width, height, (float) read / mFrames,
+                mFrames * 1e9f / elapsedNanos);
+    }
+}
@@ -0,0 +1,109 @@
+package com.amolg.flutterbarcodescanner;
+
+import java.util.List;
+
+/**
+ * The preview size and frame rate requested from the camera when a scan starts.  The default
+ * suits most devices; {@link PreviewCalibration} measures a better one for the device it runs on,
+ * kept by a {@link PreviewProfileStore}.
+ */
+final class PreviewProfile {
+    static final PreviewProfile DEFAULT = new PreviewProfile(1600, 1024, 30);
+
+    private static final String VERSION = "1";
+    private static final String FIELD_SEPARATOR = ";";
+    private static final int MIN_FPS = 15;
+
+    final int previewWidth;
+    final int previewHeight;
+    final int fps;
+
+    PreviewProfile(int previewWidth, int previewHeight, int fps) {
+        this.previewWidth = previewWidth;
+        this.previewHeight = previewHeight;
+        this.fps = fps;
+    }
+
+    /**
+     * How well the detector did on calibration frames at one preview size.
+     */
+    static final class Measurement {
+        final int width;
+        final int height;
+        // Fraction of frames whose code was read, 0 to 1.
+        final float successRate;
+        // Frames the detector gets through per second on one thread.
+        final float framesPerSecond;
+
+        Measurement(int width, int height, float successRate, float framesPerSecond) {
+            this.width = width;
+            this.height = height;
+            this.successRate = successRate;
+            this.framesPerSecond = framesPerSecond;
+        }
+    }
+
+    /**
+     * Picks the size that reads the most codes among those the detector keeps up with at the
+     * given rate, preferring the faster of equally good sizes.  If none keeps up, picks the
+     * fastest.  The frame rate is what the detector keeps up with at that size, between 15 and
+     * 30, as frames beyond it would only be dropped.
+     *
+     * @throws IllegalArgumentException if there are no measurements
+     */
+    static PreviewProfile choose(List<Measurement> measurements, float minFramesPerSecond) {
+        if (measurements.isEmpty()) {
+            throw new IllegalArgumentException("No calibration measurements");
+        }
+        Measurement best = null;
+        for (Measurement measurement : measurements) {
+            if (measurement.framesPerSecond < minFramesPerSecond) {
+                continue;
+            }
+            if (best == null || measurement.successRate > best.successRate
+                    || (measurement.successRate == best.successRate
+                    && measurement.framesPerSecond > best.framesPerSecond)) {
+                best = measurement;
+            }
+        }
+        if (best == null) {
+            for (Measurement measurement : measurements) {
+                if (best == null || measurement.framesPerSecond > best.framesPerSecond) {
+                    best = measurement;
+                }
+            }
+        }
+        int fps = Math.max(MIN_FPS, Math.min(DEFAULT.fps, (int) best.framesPerSecond));
+        return new PreviewProfile(best.width, best.height, fps);
+    }
+
+    /**
+     * Returns the profile as a single string, for {@link #decode(String)}.
+     */
+    String encode() {
+        return VERSION + FIELD_SEPARATOR + previewWidth + FIELD_SEPARATOR + previewHeight
+                + FIELD_SEPARATOR + fps;
+    }
+
+    /**
+     * Reads a profile written by {@link #encode()}, returning null if the string is from another
+     * version or is not valid.
+     */
+    static PreviewProfile decode(String encoded) {
+        if (encoded == null) {
+            return null;
+        }
+        String[] fields = encoded.split(FIELD_SEPARATOR, -1);
+        if (fields.length != 4 || !VERSION.equals(fields[0])) {
+            return null;
+        }
+        try {
+            PreviewProfile profile = new PreviewProfile(Integer.parseInt(fields[1]),
+                    Integer.parseInt(fields[2]), Integer.parseInt(fields[3]));
+            return profile.previewWidth > 0 && profile.previewHeight > 0 && profile.fps > 0
+                    ? profile : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
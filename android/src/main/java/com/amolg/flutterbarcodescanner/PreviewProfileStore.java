@@ -0,0 +1,52 @@
+package com.amolg.flutterbarcodescanner;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+
+/**
+ * Keeps the preview profile found by {@link PreviewCalibration} on disk, for later scan sessions
+ * to use.  Like the camera capability cache, the profile belongs to one build of the OS and is
+ * dropped when {@link Build#FINGERPRINT} changes.
+ */
+final class PreviewProfileStore {
+    private static final String PREFERENCES_NAME = "flutter_barcode_scanner_preview_profile";
+    private static final String KEY_FINGERPRINT = "fingerprint";
+    private static final String KEY_PROFILE = "profile";
+
+    private final SharedPreferences mPreferences;
+
+    PreviewProfileStore(Context context) {
+        mPreferences = context.getApplicationContext()
+                .getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+        if (!Build.FINGERPRINT.equals(mPreferences.getString(KEY_FINGERPRINT, null))) {
+            mPreferences.edit()
+                    .clear()
+                    .putString(KEY_FINGERPRINT, Build.FINGERPRINT)
+                    .apply();
+        }
+    }
+
+    /**
+     * Returns the calibrated profile, or {@link PreviewProfile#DEFAULT} if there is none.
+     */
+    PreviewProfile getOrDefault() {
+        PreviewProfile profile = PreviewProfile.decode(mPreferences.getString(KEY_PROFILE, null));
+        return profile != null ? profile : PreviewProfile.DEFAULT;
+    }
+
+    void put(PreviewProfile profile) {
+        mPreferences.edit()
+                .putString(KEY_PROFILE, profile.encode())
+                .apply();
+    }
+
+    /**
+     * Drops the calibrated profile, so that sessions go back to the default.
+     */
+    void clear() {
+        mPreferences.edit()
+                .remove(KEY_PROFILE)
+                .apply();
+    }
+}
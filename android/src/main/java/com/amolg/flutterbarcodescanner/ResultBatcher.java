@@ -0,0 +1,84 @@
+package com.amolg.flutterbarcodescanner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects scan results so they can be sent to Flutter as one message.  A batch is due when it
+ * holds the maximum number of items, or when the maximum delay has passed since its first item.
+ * <p/>
+ * The batcher does not run timers itself.  {@link #add} tells the caller when a batch is full, to
+ * be taken with {@link #drain()}, and when a batch has started, so that the caller can schedule a
+ * call to {@link #drainIfDue} after {@link #getMaxDelayMillis()}.  A timer left over from a batch
+ * that was already sent finds the next batch not yet due and leaves it to its own timer.
+ * <p/>
+ * Times are passed in, in nanoseconds.  Safe to use from any thread.
+ */
+final class ResultBatcher<T> {
+    /**
+     * Returned by {@link #add} when nothing needs doing.
+     */
+    static final int PENDING = 0;
+    /**
+     * Returned by {@link #add} for the first item of a batch: schedule a flush after the delay.
+     */
+    static final int SCHEDULE_FLUSH = 1;
+    /**
+     * Returned by {@link #add} when the batch is full: drain and send it now.
+     */
+    static final int FLUSH_NOW = 2;
+
+    private final int mMaxItems;
+    private final long mMaxDelayMillis;
+    private List<T> mItems;
+    private long mFirstItemNanos;
+
+    ResultBatcher(int maxItems, long maxDelayMillis) {
+        if (maxItems <= 0 || maxDelayMillis <= 0) {
+            throw new IllegalArgumentException("Invalid batch size " + maxItems
+                    + " or delay " + maxDelayMillis + "ms");
+        }
+        mMaxItems = maxItems;
+        mMaxDelayMillis = maxDelayMillis;
+    }
+
+    /**
+     * Adds an item to the current batch, returning {@link #PENDING}, {@link #SCHEDULE_FLUSH} or
+     * {@link #FLUSH_NOW}.
+     */
+    synchronized int add(T item, long nowNanos) {
+        if (mItems == null) {
+            mItems = new ArrayList<>(mMaxItems);
+            mFirstItemNanos = nowNanos;
+        }
+        mItems.add(item);
+        if (mItems.size() >= mMaxItems) {
+            return FLUSH_NOW;
+        }
+        return mItems.size() == 1 ? SCHEDULE_FLUSH : PENDING;
+    }
+
+    /**
+     * Takes the current batch, or returns null if it is empty.  The next item starts a new batch.
+     */
+    synchronized List<T> drain() {
+        List<T> items = mItems;
+        mItems = null;
+        return items;
+    }
+
+    /**
+     * Takes the current batch if its first item is at least the maximum delay old, otherwise
+     * returns null.
+     */
+    synchronized List<T> drainIfDue(long nowNanos) {
+        if (mItems == null || nowNanos - mFirstItemNanos < mMaxDelayMillis * 1000000L) {
+            return null;
+        }
+        return drain();
+    }
+
+    long getMaxDelayMillis() {
+        return mMaxDelayMillis;
+    }
+}
@@ -0,0 +1,149 @@
+package com.amolg.flutterbarcodescanner;
+
+import android.graphics.Point;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Fixed-layout binary encoding of scan results, decoded on the Dart side by
+ * {@code BarcodeResultCodec}.  Sent as a byte array, which the standard message codec passes
+ * through as a single block instead of walking a map per result.
+ * <p/>
+ * All values are little endian.  A message is a 4 byte header followed by its records:
+ * <pre>
+ * header:  u8 version, u8 reserved, u16 record count
+ * record:  i32 format, i64 capture time (us since the epoch),
+ *          i32 left, i32 top, i32 right, i32 bottom,
+ *          u8 corner count, corner count * (i32 x, i32 y),
+ *          i32 value length, value length bytes of UTF-8 raw value
+ * </pre>
+ * Records are written into a buffer that is reused between calls, so the only allocation per
+ * result is the array handed to the channel.  Safe to use from any thread.
+ */
+final class ResultCodec {
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 4;
+    private static final int RECORD_FIXED_SIZE = 4 + 8 + 16 + 1 + 4;
+    private static final int MAX_CORNERS = 255;
+
+    // Replaces unpaired surrogates, which a raw value can hold, so that every value encodes.
+    private final CharsetEncoder mUtf8 = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private ByteBuffer mBuffer = allocate(256);
+
+    /**
+     * Encodes one result as a record, without a header, for joining with {@link #joinRecords}.
+     */
+    synchronized byte[] encodeRecord(int format, String rawValue, Point[] cornerPoints,
+                                     long captureTimeMicros) {
+        mBuffer.clear();
+        writeRecord(format, rawValue, cornerPoints, captureTimeMicros);
+        return Arrays.copyOf(mBuffer.array(), mBuffer.position());
+    }
+
+    /**
+     * Encodes one result as a complete message.
+     */
+    synchronized byte[] encodeMessage(int format, String rawValue, Point[] cornerPoints,
+                                      long captureTimeMicros) {
+        mBuffer.clear();
+        writeHeader(mBuffer, 1);
+        writeRecord(format, rawValue, cornerPoints, captureTimeMicros);
+        return Arrays.copyOf(mBuffer.array(), mBuffer.position());
+    }
+
+    /**
+     * Joins records from {@link #encodeRecord} into one message.
+     */
+    static byte[] joinRecords(List<byte[]> records) {
+        if (records.size() > 0xffff) {
+            throw new IllegalArgumentException("Too many records for one message: " + records.size());
+        }
+        int size = HEADER_SIZE;
+        for (byte[] record : records) {
+            size += record.length;
+        }
+        ByteBuffer message = allocate(size);
+        writeHeader(message, records.size());
+        for (byte[] record : records) {
+            message.put(record);
+        }
+        return message.array();
+    }
+
+    private void writeRecord(int format, String rawValue, Point[] cornerPoints, long captureTimeMicros) {
+        String value = rawValue == null ? "" : rawValue;
+        int corners = cornerPoints == null ? 0 : Math.min(cornerPoints.length, MAX_CORNERS);
+        // A UTF-16 unit never takes more than 3 bytes of UTF-8.
+        ensureRemaining(RECORD_FIXED_SIZE + corners * 8 + value.length() * 3);
+
+        mBuffer.putInt(format);
+        mBuffer.putLong(captureTimeMicros);
+        writeBoundingBox(cornerPoints, corners);
+        mBuffer.put((byte) corners);
+        for (int i = 0; i < corners; ++i) {
+            mBuffer.putInt(cornerPoints[i].x);
+            mBuffer.putInt(cornerPoints[i].y);
+        }
+
+        int lengthPosition = mBuffer.position();
+        mBuffer.putInt(0);
+        mUtf8.reset();
+        CoderResult result = mUtf8.encode(CharBuffer.wrap(value), mBuffer, true);
+        if (!result.isUnderflow()) {
+            throw new IllegalStateException("Could not encode barcode value: " + result);
+        }
+        mUtf8.flush(mBuffer);
+        mBuffer.putInt(lengthPosition, mBuffer.position() - lengthPosition - 4);
+    }
+
+    /**
+     * Writes the box around the corner points, as the detector computes it, or zeros if there are
+     * none.
+     */
+    private void writeBoundingBox(Point[] cornerPoints, int corners) {
+        if (corners == 0) {
+            mBuffer.putInt(0).putInt(0).putInt(0).putInt(0);
+            return;
+        }
+        int left = Integer.MAX_VALUE;
+        int top = Integer.MAX_VALUE;
+        int right = Integer.MIN_VALUE;
+        int bottom = Integer.MIN_VALUE;
+        for (int i = 0; i < corners; ++i) {
+            left = Math.min(left, cornerPoints[i].x);
+            top = Math.min(top, cornerPoints[i].y);
+            right = Math.max(right, cornerPoints[i].x);
+            bottom = Math.max(bottom, cornerPoints[i].y);
+        }
+        mBuffer.putInt(left).putInt(top).putInt(right).putInt(bottom);
+    }
+
+    private void ensureRemaining(int bytes) {
+        if (mBuffer.remaining() < bytes) {
+            ByteBuffer larger = allocate(Math.max(mBuffer.capacity() * 2, mBuffer.position() + bytes));
+            mBuffer.flip();
+            larger.put(mBuffer);
+            mBuffer = larger;
+        }
+    }
+
+    private static void writeHeader(ByteBuffer buffer, int count) {
+        buffer.put((byte) VERSION);
+        buffer.put((byte) 0);
+        buffer.putShort((short) count);
+    }
+
+    private static ByteBuffer allocate(int capacity) {
+        return ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
@@ -0,0 +1,148 @@
+package com.amolg.flutterbarcodescanner;
+
+import android.Manifest;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.hardware.Camera;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.core.content.ContextCompat;
+
+import com.amolg.flutterbarcodescanner.camera.CameraSource;
+import com.google.android.gms.common.GoogleApiAvailability;
+import com.google.android.gms.vision.barcode.BarcodeDetector;
+
+/**
+ * Holds a detector and an open camera prepared ahead of a scan, so the scan screen does not pay
+ * for loading the detector, checking play services and opening the camera when it opens.
+ * <p/>
+ * {@link #prewarm} does the work on a background thread while the app is still on the previous
+ * screen.  The next scan session takes what it can use; whatever is not taken within the idle
+ * timeout is released, so an abandoned prewarm does not keep the camera from other apps.
+ * <p/>
+ * Takes block while a prewarm is in progress, so a scan started early waits for the camera the
+ * prewarm is opening instead of failing to open it a second time.
+ */
+final class ScannerPrewarm {
+    private static final String TAG = "ScannerPrewarm";
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable mIdleRelease = new Runnable() {
+        @Override
+        public void run() {
+            release();
+        }
+    };
+
+    private BarcodeDetector mDetector;
+    private int mDetectorFormats;
+    private Camera mCamera;
+    private int mCameraFacing;
+    private int mPlayServicesStatus = -1;
+
+    interface Callback {
+        /**
+         * Called on the main thread when the prewarm is done.
+         *
+         * @param ready true if the detector is operational.
+         */
+        void onPrewarmed(boolean ready);
+    }
+
+    /**
+     * Prepares a detector for the given formats and, if the camera permission has been granted,
+     * opens the camera facing the given way.  Anything left over from an earlier prewarm is
+     * released first.
+     */
+    void prewarm(final Context context, final int formats, final int facing,
+                 final long idleTimeoutMillis, final Callback callback) {
+        mMainHandler.removeCallbacks(mIdleRelease);
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                final boolean ready = prepare(context, formats, facing);
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        mMainHandler.removeCallbacks(mIdleRelease);
+                        mMainHandler.postDelayed(mIdleRelease, idleTimeoutMillis);
+                        callback.onPrewarmed(ready);
+                    }
+                });
+            }
+        }, "Scanner prewarm").start();
+    }
+
+    private synchronized boolean prepare(Context context, int formats, int facing) {
+        release();
+
+        mPlayServicesStatus = GoogleApiAvailability.getInstance().isGooglePlayServicesAvailable(context);
+
+        // The first detector built loads the native library, which is most of the cost.
+        mDetector = new BarcodeDetector.Builder(context).setBarcodeFormats(formats).build();
+        mDetectorFormats = formats;
+        boolean ready = mDetector.isOperational();
+
+        if (ContextCompat.checkSelfPermission(context, Manifest.permission.CAMERA)
+                == PackageManager.PERMISSION_GRANTED) {
+            try {
+                mCamera = CameraSource.openCamera(facing);
+                mCameraFacing = facing;
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Could not open camera: " + e.getLocalizedMessage());
+            }
+        }
+        return ready;
+    }
+
+    /**
+     * Returns the prepared detector if it decodes the given formats, handing over ownership, or
+     * null if there is none.
+     */
+    synchronized BarcodeDetector takeDetector(int formats) {
+        if (mDetector == null || mDetectorFormats != formats) {
+            return null;
+        }
+        BarcodeDetector detector = mDetector;
+        mDetector = null;
+        return detector;
+    }
+
+    /**
+     * Returns the open camera if it faces the given way, handing over ownership, or null if there
+     * is none.
+     */
+    synchronized Camera takeCamera(int facing) {
+        if (mCamera == null || mCameraFacing != facing) {
+            return null;
+        }
+        Camera camera = mCamera;
+        mCamera = null;
+        return camera;
+    }
+
+    /**
+     * Returns the play services status found by the last prewarm, or -1 if there was none.
+     */
+    synchronized int getPlayServicesStatus() {
+        return mPlayServicesStatus;
+    }
+
+    /**
+     * Releases whatever has not been taken.  A session calls this once it has taken what matches
+     * it, so that a camera facing the other way is not held until the idle timeout, keeping the
+     * session from opening its own.  The play services status holds nothing and is kept.
+     */
+    synchronized void release() {
+        if (mDetector != null) {
+            mDetector.release();
+            mDetector = null;
+        }
+        if (mCamera != null) {
+            mCamera.release();
+            mCamera = null;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.amolg.flutterbarcodescanner;
+
+import android.util.SparseArray;
+
+import com.amolg.flutterbarcodescanner.camera.TimedDetections;
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.barcode.Barcode;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Detection processor for a scan session: hands the first barcode found after {@link #arm} to
+ * its callback, once, and ignores detections while it is not armed.
+ * <p/>
+ * Unlike the trackers of a {@code MultiProcessor}, it reports a barcode that stayed in view from
+ * one scan to the next, as a checkout scanning the same item twice needs.  Detection workers may
+ * deliver concurrently; only one of them gets to report.
+ */
+final class SingleScanProcessor implements Detector.Processor<Barcode> {
+    private final AtomicReference<Callback> mCallback = new AtomicReference<>();
+
+    interface Callback {
+        /**
+         * Called on a detector thread, while the frame's results are being delivered.
+         *
+         * @param captureNanos  when the frame the barcode was found in was captured, or 0.
+         * @param detectedNanos when detection on that frame finished, or 0.
+         */
+        void onScanned(Barcode barcode, long captureNanos, long detectedNanos);
+    }
+
+    /**
+     * Reports the next barcode found to the callback.
+     *
+     * @return false if a callback is already waiting for a barcode.
+     */
+    boolean arm(Callback callback) {
+        return mCallback.compareAndSet(null, callback);
+    }
+
+    /**
+     * Stops waiting for a barcode, returning the callback that was waiting, or null if none was.
+     */
+    Callback disarm() {
+        return mCallback.getAndSet(null);
+    }
+
+    @Override
+    public void receiveDetections(Detector.Detections<Barcode> detections) {
+        SparseArray<Barcode> items = detections.getDetectedItems();
+        if (items.size() == 0 || mCallback.get() == null) {
+            return;
+        }
+        Callback callback = mCallback.getAndSet(null);
+        if (callback != null) {
+            callback.onScanned(items.valueAt(0), TimedDetections.getCaptureNanos(detections),
+                    TimedDetections.getDetectedNanos(detections));
+        }
+    }
+
+    @Override
+    public void release() {
+        mCallback.set(null);
+    }
+}
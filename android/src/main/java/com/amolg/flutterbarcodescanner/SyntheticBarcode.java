@@ -0,0 +1,152 @@
+package com.amolg.flutterbarcodescanner;
+
+import java.util.Random;
+
+/**
+ * Draws EAN-13 barcodes into the luma plane of NV21 frames, for measuring the detector without a
+ * camera.  A code is drawn across a given fraction of the frame width, so that the same code is
+ * spread over fewer pixels per module in a smaller frame, as a real code at the same distance
+ * would be.  Pixels a module only partly covers are shaded in proportion, and seeded noise stands
+ * in for sensor noise.
+ */
+final class SyntheticBarcode {
+    // Light modules on either side of the code, as the symbology requires.
+    static final int QUIET_MODULES = 10;
+    static final int EAN_13_MODULES = 95;
+
+    private static final int PAPER_LUMA = 210;
+    private static final int INK_LUMA = 30;
+    // Bar height as a fraction of the code width.
+    private static final float BAR_HEIGHT = 0.6f;
+
+    private static final String[] L_CODES = {
+            "0001101", "0011001", "0010011", "0111101", "0100011",
+            "0110001", "0101111", "0111011", "0110111", "0001011"
+    };
+    private static final String[] G_CODES = {
+            "0100111", "0110011", "0011011", "0100001", "0011101",
+            "0111001", "0000101", "0010001", "0001001", "0010111"
+    };
+    private static final String[] R_CODES = {
+            "1110010", "1100110", "1101100", "1000010", "1011100",
+            "1001110", "1010000", "1000100", "1001000", "1110100"
+    };
+    // Which of the left half digits use the G codes, by first digit.
+    private static final String[] PARITY = {
+            "LLLLLL", "LLGLGG", "LLGGLG", "LLGGGL", "LGLLGG",
+            "LGGLLG", "LGGGLL", "LGLGLG", "LGLGGL", "LGGLGL"
+    };
+
+    private SyntheticBarcode() {
+    }
+
+    /**
+     * Appends the EAN-13 check digit to twelve digits.
+     *
+     * @throws IllegalArgumentException if the value is not twelve digits
+     */
+    static String withCheckDigit(String digits) {
+        if (digits.length() != 12 || !isDigits(digits)) {
+            throw new IllegalArgumentException("Expected twelve digits: " + digits);
+        }
+        int sum = 0;
+        for (int i = 0; i < 12; ++i) {
+            int digit = digits.charAt(i) - '0';
+            sum += i % 2 == 0 ? digit : 3 * digit;
+        }
+        return digits + (10 - sum % 10) % 10;
+    }
+
+    /**
+     * Returns the modules of an EAN-13 code, true for dark, without the quiet zones.
+     *
+     * @throws IllegalArgumentException if the value is not thirteen digits with a valid check digit
+     */
+    static boolean[] encodeEan13(String value) {
+        if (value.length() != 13 || !isDigits(value)
+                || !withCheckDigit(value.substring(0, 12)).equals(value)) {
+            throw new IllegalArgumentException("Not a valid EAN-13 value: " + value);
+        }
+        StringBuilder modules = new StringBuilder(EAN_13_MODULES);
+        modules.append("101");
+        String parity = PARITY[value.charAt(0) - '0'];
+        for (int i = 1; i <= 6; ++i) {
+            int digit = value.charAt(i) - '0';
+            modules.append(parity.charAt(i - 1) == 'G' ? G_CODES[digit] : L_CODES[digit]);
+        }
+        modules.append("01010");
+        for (int i = 7; i <= 12; ++i) {
+            modules.append(R_CODES[value.charAt(i) - '0']);
+        }
+        modules.append("101");
+
+        boolean[] dark = new boolean[EAN_13_MODULES];
+        for (int i = 0; i < dark.length; ++i) {
+            dark[i] = modules.charAt(i) == '1';
+        }
+        return dark;
+    }
+
+    /**
+     * Draws a code centred in an NV21 frame, filling the rest with paper.
+     *
+     * @param widthFraction width of the code with its quiet zones, as a fraction of the frame width.
+     * @param noise         largest luma change added to each pixel, or 0 for none.
+     * @param out           the frame, at least {@code width * height * 3 / 2} bytes.
+     */
+    static void render(boolean[] modules, int width, int height, float widthFraction, int noise,
+                       long seed, byte[] out) {
+        if (widthFraction <= 0 || widthFraction > 1) {
+            throw new IllegalArgumentException("Invalid code width: " + widthFraction);
+        }
+        int lumaSize = width * height;
+        int totalModules = modules.length + 2 * QUIET_MODULES;
+        float codeWidth = width * widthFraction;
+        float modulePixels = codeWidth / totalModules;
+        float left = (width - codeWidth) / 2;
+
+        // One luma value per column, shading the pixels that modules only partly cover.
+        int[] columns = new int[width];
+        for (int x = 0; x < width; ++x) {
+            float start = (x - left) / modulePixels;
+            float end = (x + 1 - left) / modulePixels;
+            float darkCoverage = 0;
+            for (int module = (int) Math.floor(start); module < end; ++module) {
+                int index = module - QUIET_MODULES;
+                if (index >= 0 && index < modules.length && modules[index]) {
+                    darkCoverage += Math.min(end, module + 1) - Math.max(start, module);
+                }
+            }
+            float dark = darkCoverage / (end - start);
+            columns[x] = Math.round(PAPER_LUMA - dark * (PAPER_LUMA - INK_LUMA));
+        }
+
+        int barHeight = Math.min(height, Math.round(codeWidth * BAR_HEIGHT));
+        int top = (height - barHeight) / 2;
+        Random random = new Random(seed);
+        for (int y = 0; y < height; ++y) {
+            boolean inBars = y >= top && y < top + barHeight;
+            int row = y * width;
+            for (int x = 0; x < width; ++x) {
+                int luma = inBars ? columns[x] : PAPER_LUMA;
+                if (noise > 0) {
+                    luma += random.nextInt(2 * noise + 1) - noise;
+                }
+                out[row + x] = (byte) Math.max(0, Math.min(255, luma));
+            }
+        }
+        // Neutral chroma, as the detector only reads the luma plane.
+        for (int i = lumaSize; i < lumaSize + lumaSize / 2; ++i) {
+            out[i] = (byte) 128;
+        }
+    }
+
+    private static boolean isDigits(String value) {
+        for (int i = 0; i < value.length(); ++i) {
+            if (value.charAt(i) < '0' || value.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,120 @@
+package com.amolg.flutterbarcodescanner.camera;
+
+/**
+ * Decides when to switch the torch from the brightness of preview frames.  The torch goes on once
+ * the scene has stayed darker than the on level for the settle time, and off once it has stayed
+ * brighter than the off level, which is well above the on level so that the light the torch adds
+ * does not switch it straight back off.  After each switch the torch is held for a while before it
+ * may switch again, so a scene near either level does not make it flicker.
+ * <p/>
+ * Brightness is the mean luma of the frame's Y plane, 0 to 255.  Times are in nanoseconds from a
+ * monotonic clock.  Used from the frame processing thread only.
+ */
+final class AutoTorchController {
+    static final int NO_CHANGE = 0;
+    static final int TURN_ON = 1;
+    static final int TURN_OFF = 2;
+
+    static final int DEFAULT_ON_BELOW_LUMA = 50;
+    static final int DEFAULT_OFF_ABOVE_LUMA = 140;
+    static final long DEFAULT_SETTLE_MILLIS = 500;
+    static final long DEFAULT_HOLD_MILLIS = 2000;
+
+    // Weight given to the newest frame in the moving average of luma.
+    private static final float SMOOTHING = 0.25f;
+
+    private final int mOnBelowLuma;
+    private final int mOffAboveLuma;
+    private final long mSettleNanos;
+    private final long mHoldNanos;
+
+    private boolean mStarted;
+    private float mLuma;
+    private boolean mChangeWanted;
+    private long mChangeWantedNanos;
+    private boolean mSwitched;
+    private long mLastSwitchNanos;
+
+    AutoTorchController() {
+        this(DEFAULT_ON_BELOW_LUMA, DEFAULT_OFF_ABOVE_LUMA, DEFAULT_SETTLE_MILLIS, DEFAULT_HOLD_MILLIS);
+    }
+
+    /**
+     * @param onBelowLuma  brightness under which the torch is switched on.
+     * @param offAboveLuma brightness over which the torch is switched off.
+     * @param settleMillis how long the brightness must stay past a level before switching.
+     * @param holdMillis   how long the torch stays as it is after a switch.
+     */
+    AutoTorchController(int onBelowLuma, int offAboveLuma, long settleMillis, long holdMillis) {
+        if (onBelowLuma < 0 || offAboveLuma <= onBelowLuma || offAboveLuma > 255) {
+            throw new IllegalArgumentException("Invalid torch levels: on=" + onBelowLuma
+                    + " off=" + offAboveLuma);
+        }
+        if (settleMillis < 0 || holdMillis < 0) {
+            throw new IllegalArgumentException("Invalid torch delays: settle=" + settleMillis
+                    + " hold=" + holdMillis);
+        }
+        mOnBelowLuma = onBelowLuma;
+        mOffAboveLuma = offAboveLuma;
+        mSettleNanos = settleMillis * 1000000L;
+        mHoldNanos = holdMillis * 1000000L;
+    }
+
+    /**
+     * Forgets the brightness seen so far, e.g. when the camera starts.
+     */
+    void reset() {
+        mStarted = false;
+        mChangeWanted = false;
+        mSwitched = false;
+    }
+
+    /**
+     * Records the brightness of a frame.
+     *
+     * @param torchOn whether the torch is on now.
+     * @return {@link #TURN_ON}, {@link #TURN_OFF} or {@link #NO_CHANGE}
+     */
+    int onFrame(long nowNanos, int luma, boolean torchOn) {
+        mLuma = mStarted ? mLuma + (luma - mLuma) * SMOOTHING : luma;
+        mStarted = true;
+
+        boolean changeWanted = torchOn ? mLuma > mOffAboveLuma : mLuma < mOnBelowLuma;
+        if (!changeWanted) {
+            mChangeWanted = false;
+            return NO_CHANGE;
+        }
+        if (!mChangeWanted) {
+            mChangeWanted = true;
+            mChangeWantedNanos = nowNanos;
+        }
+        if (nowNanos - mChangeWantedNanos < mSettleNanos
+                || (mSwitched && nowNanos - mLastSwitchNanos < mHoldNanos)) {
+            return NO_CHANGE;
+        }
+        mChangeWanted = false;
+        mSwitched = true;
+        mLastSwitchNanos = nowNanos;
+        return torchOn ? TURN_OFF : TURN_ON;
+    }
+
+    /**
+     * Returns the mean of a grid of samples, every {@code step} pixels across and down, of the Y
+     * plane at the start of an NV21 or luma only frame.
+     */
+    static int meanLuma(byte[] data, int width, int height, int step) {
+        if (step <= 0) {
+            throw new IllegalArgumentException("Invalid sample step: " + step);
+        }
+        long sum = 0;
+        int count = 0;
+        for (int y = step / 2; y < height; y += step) {
+            int row = y * width;
+            for (int x = step / 2; x < width; x += step) {
+                sum += data[row + x] & 0xff;
+                ++count;
+            }
+        }
+        return count == 0 ? 0 : (int) (sum / count);
+    }
+}
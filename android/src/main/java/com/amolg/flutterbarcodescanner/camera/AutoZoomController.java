@@ -0,0 +1,123 @@
+package com.amolg.flutterbarcodescanner.camera;
+
+/**
+ * Decides the zoom ratio from detection results, for codes too small in the frame to decode.
+ * While detection finds nothing, zoom steps in every idle period up to the maximum, and goes back
+ * to no zoom once the maximum has had an idle period too, so the search starts over.  A code that
+ * would be read at a normal size without zoom puts zoom back to none; one read smaller than the
+ * small size steps zoom in towards the target size, and zoom is kept while the code, zoomed, is
+ * no longer small.  Widths are measured in the zoomed frame, so they are divided by the current
+ * ratio to tell how large the code is without zoom.
+ * <p/>
+ * Zoom moves one step at a time, so the preview does not jump.  Times are in nanoseconds from a
+ * monotonic clock.  Safe to use from any thread.
+ */
+final class AutoZoomController {
+    /**
+     * Returned by {@link #onFrameDetected} when zoom should stay as it is.
+     */
+    static final float NO_CHANGE = 0f;
+
+    static final long DEFAULT_IDLE_MILLIS = 800;
+    static final float DEFAULT_STEP = 1.25f;
+    // Width of a code, as a fraction of the frame width, under which it counts as small, and the
+    // width zoom aims to bring it to.
+    static final float DEFAULT_SMALL_WIDTH = 0.15f;
+    static final float DEFAULT_TARGET_WIDTH = 0.3f;
+
+    private final float mMaxRatio;
+    private final long mIdleNanos;
+    private final float mStep;
+    private final float mSmallWidth;
+    private final float mTargetWidth;
+
+    private boolean mStarted;
+    private float mRatio = 1.0f;
+    private long mLastChangeNanos;
+    private long mLastFoundNanos;
+
+    AutoZoomController(float maxRatio) {
+        this(maxRatio, DEFAULT_IDLE_MILLIS, DEFAULT_STEP, DEFAULT_SMALL_WIDTH, DEFAULT_TARGET_WIDTH);
+    }
+
+    /**
+     * @param maxRatio    the largest zoom ratio to step to.
+     * @param idleMillis  how long detection must find nothing before each step while searching.
+     * @param step        the most the zoom ratio is multiplied by in one step.
+     * @param smallWidth  width fraction under which a code read counts as small.
+     * @param targetWidth width fraction zoom aims to bring a small code to.
+     */
+    AutoZoomController(float maxRatio, long idleMillis, float step, float smallWidth,
+                       float targetWidth) {
+        if (maxRatio < 1.0f || step <= 1.0f) {
+            throw new IllegalArgumentException("Invalid zoom: max=" + maxRatio + " step=" + step);
+        }
+        if (idleMillis <= 0) {
+            throw new IllegalArgumentException("Invalid zoom delay: " + idleMillis);
+        }
+        if (smallWidth <= 0 || targetWidth < smallWidth || targetWidth > 1) {
+            throw new IllegalArgumentException("Invalid zoom widths: small=" + smallWidth
+                    + " target=" + targetWidth);
+        }
+        mMaxRatio = maxRatio;
+        mIdleNanos = idleMillis * 1000000L;
+        mStep = step;
+        mSmallWidth = smallWidth;
+        mTargetWidth = targetWidth;
+    }
+
+    /**
+     * Starts again from no zoom, e.g. when the camera starts.
+     */
+    synchronized void reset(long nowNanos) {
+        mStarted = true;
+        mRatio = 1.0f;
+        mLastChangeNanos = nowNanos;
+        mLastFoundNanos = nowNanos;
+    }
+
+    /**
+     * Records the outcome of detecting a frame.
+     *
+     * @param largestWidth width of the largest code found, as a fraction of the width of the
+     *                     zoomed frame, or 0 if none was found.
+     * @return the zoom ratio to set now, or {@link #NO_CHANGE}
+     */
+    synchronized float onFrameDetected(long nowNanos, int itemCount, float largestWidth) {
+        if (!mStarted) {
+            reset(nowNanos);
+        }
+        if (itemCount > 0) {
+            mLastFoundNanos = nowNanos;
+            if (largestWidth <= 0 || largestWidth / mRatio >= mSmallWidth) {
+                return changeTo(nowNanos, 1.0f);
+            }
+            if (largestWidth >= mSmallWidth) {
+                // A small code that zoom has brought up to size.
+                return NO_CHANGE;
+            }
+            if (nowNanos - mLastChangeNanos < mIdleNanos / 2) {
+                // Let the last step reach the detector before judging the size again.
+                return NO_CHANGE;
+            }
+            float scale = Math.min(mStep, mTargetWidth / largestWidth);
+            return changeTo(nowNanos, Math.min(mRatio * scale, mMaxRatio));
+        }
+        if (nowNanos - Math.max(mLastChangeNanos, mLastFoundNanos) < mIdleNanos) {
+            return NO_CHANGE;
+        }
+        if (mRatio >= mMaxRatio) {
+            return changeTo(nowNanos, 1.0f);
+        }
+        return changeTo(nowNanos, Math.min(mRatio * mStep, mMaxRatio));
+    }
+
+    private float changeTo(long nowNanos, float ratio) {
+        if (ratio == mRatio) {
+            return NO_CHANGE;
+        }
+        mRatio = ratio;
+        mLastChangeNanos = nowNanos;
+        return ratio;
+    }
+}
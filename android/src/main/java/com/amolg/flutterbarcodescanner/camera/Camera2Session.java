@@ -0,0 +1,720 @@
+package com.amolg.flutterbarcodescanner.camera;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.graphics.ImageFormat;
+import android.graphics.Rect;
+import android.graphics.SurfaceTexture;
+import android.hardware.Camera;
+import android.hardware.camera2.CameraAccessException;
+import android.hardware.camera2.CameraCaptureSession;
+import android.hardware.camera2.CameraCharacteristics;
+import android.hardware.camera2.CameraDevice;
+import android.hardware.camera2.CameraManager;
+import android.hardware.camera2.CameraMetadata;
+import android.hardware.camera2.CaptureRequest;
+import android.hardware.camera2.CaptureResult;
+import android.hardware.camera2.TotalCaptureResult;
+import android.hardware.camera2.params.MeteringRectangle;
+import android.hardware.camera2.params.StreamConfigurationMap;
+import android.media.Image;
+import android.media.ImageReader;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+import android.util.Range;
+import android.view.Surface;
+
+import com.google.android.gms.common.images.Size;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Camera2 frame source used by {@link CameraSource}.  The preview is drawn straight to its
+ * surface, while a separate, smaller YUV_420_888 stream from an {@link ImageReader} feeds
+ * detection.
+ * <p/>
+ * Only the Y plane of each analysis image is read.  The detector takes NV21 data, so the luma rows
+ * are copied once into a frame pool buffer whose chroma half is filled with neutral grey when the
+ * session starts; the U and V planes are never touched.
+ */
+@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+@SuppressWarnings("deprecation")
+final class Camera2Session {
+    private static final String TAG = "Camera2Session";
+    private static final long START_TIMEOUT_MS = 3000;
+    private static final int MAX_IMAGES = 2;
+    private static final float ASPECT_RATIO_TOLERANCE = 0.05f;
+
+    /**
+     * Receives analysis frames on the camera thread.
+     */
+    interface FrameListener {
+        /**
+         * Called when a frame pool buffer holds a new frame.  The buffer belongs to the listener
+         * until it releases it back to the pool.
+         */
+        void onFrame(FramePool pool, int frameIndex);
+
+        /**
+         * Called when a frame arrived while every pool buffer was in use.
+         */
+        void onFrameSkipped();
+    }
+
+    private final CameraManager mManager;
+    private final String mCameraId;
+    private final CameraCharacteristics mCharacteristics;
+    private final Size mPreviewSize;
+    private final Size mAnalysisSize;
+    private final Range<Integer> mFpsRange;
+    private final int mRotation;
+
+    private final HandlerThread mThread;
+    private final Handler mHandler;
+
+    // This lock guards all of the member variables below.
+    private final Object mLock = new Object();
+    private ImageReader mImageReader;
+    private CameraDevice mDevice;
+    private CameraCaptureSession mSession;
+    private CaptureRequest.Builder mRequestBuilder;
+    private FramePool mPool;
+    private FrameListener mFrameListener;
+    private boolean mClosed;
+
+    private float mZoomRatio = 1.0f;
+    private int mAfMode = CameraMetadata.CONTROL_AF_MODE_CONTINUOUS_PICTURE;
+    private String mFocusMode;
+    private String mFlashMode;
+    private CameraSource.AutoFocusCallback mPendingAutoFocus;
+    private CameraSource.AutoFocusMoveCallback mAutoFocusMoveCallback;
+    private boolean mFocusMoving;
+    // Focus and metering area as a camera area (see FocusAreas), or null for the camera default.
+    private Rect mFocusArea;
+    // Set while a refocus triggered in a continuous mode waits to lock, to then resume scanning.
+    private boolean mRefocusing;
+
+    /**
+     * Selects the camera and stream sizes.  The camera itself is opened by {@link #start}.
+     *
+     * @param displayDegrees the rotation of the display from its natural orientation
+     * @throws RuntimeException if there is no suitable camera
+     */
+    Camera2Session(Context context, int facing, int previewWidth, int previewHeight,
+                   int analysisWidth, int analysisHeight, float fps, int displayDegrees) {
+        mManager = (CameraManager) context.getSystemService(Context.CAMERA_SERVICE);
+        int lensFacing = facing == CameraSource.CAMERA_FACING_FRONT
+                ? CameraMetadata.LENS_FACING_FRONT : CameraMetadata.LENS_FACING_BACK;
+
+        String cameraId = null;
+        CameraCharacteristics characteristics = null;
+        try {
+            for (String id : mManager.getCameraIdList()) {
+                CameraCharacteristics candidate = mManager.getCameraCharacteristics(id);
+                Integer candidateFacing = candidate.get(CameraCharacteristics.LENS_FACING);
+                if (candidateFacing != null && candidateFacing == lensFacing) {
+                    cameraId = id;
+                    characteristics = candidate;
+                    break;
+                }
+            }
+        } catch (CameraAccessException e) {
+            throw new RuntimeException("Could not query cameras.", e);
+        }
+        if (cameraId == null) {
+            throw new RuntimeException("Could not find requested camera.");
+        }
+        mCameraId = cameraId;
+        mCharacteristics = characteristics;
+
+        StreamConfigurationMap map =
+                characteristics.get(CameraCharacteristics.SCALER_STREAM_CONFIGURATION_MAP);
+        mPreviewSize = selectSize(map.getOutputSizes(SurfaceTexture.class),
+                previewWidth, previewHeight, 0, Integer.MAX_VALUE);
+        if (mPreviewSize == null) {
+            throw new RuntimeException("Could not find suitable preview size.");
+        }
+
+        // Analysis frames keep the preview's aspect ratio, so that detection results map onto the
+        // preview, but are never larger than it.
+        Size analysisSize = selectSize(map.getOutputSizes(ImageFormat.YUV_420_888),
+                analysisWidth, analysisHeight,
+                (float) mPreviewSize.getWidth() / mPreviewSize.getHeight(),
+                mPreviewSize.getWidth() * mPreviewSize.getHeight());
+        mAnalysisSize = analysisSize != null ? analysisSize : mPreviewSize;
+
+        mFpsRange = selectFpsRange(
+                characteristics.get(CameraCharacteristics.CONTROL_AE_AVAILABLE_TARGET_FPS_RANGES), fps);
+
+        Integer sensorOrientation = characteristics.get(CameraCharacteristics.SENSOR_ORIENTATION);
+        int orientation = sensorOrientation != null ? sensorOrientation : 90;
+        int angle;
+        if (lensFacing == CameraMetadata.LENS_FACING_FRONT) {
+            angle = (orientation + displayDegrees) % 360;
+        } else {
+            angle = (orientation - displayDegrees + 360) % 360;
+        }
+        mRotation = angle / 90;
+
+        mThread = new HandlerThread(TAG);
+        mThread.start();
+        mHandler = new Handler(mThread.getLooper());
+    }
+
+    Size getPreviewSize() {
+        return mPreviewSize;
+    }
+
+    Size getAnalysisSize() {
+        return mAnalysisSize;
+    }
+
+    /**
+     * Returns the rotation of frames, in the units of {@link com.google.android.gms.vision.Frame}.
+     */
+    int getRotation() {
+        return mRotation;
+    }
+
+    /**
+     * Opens the camera and starts streaming to the preview surface and to the frame listener.
+     * Blocks until the first request is submitted.
+     *
+     * @throws IOException if the camera could not be opened or configured in time
+     */
+    void start(final Surface previewSurface, FramePool pool, FrameListener listener,
+               String focusMode, String flashMode) throws IOException {
+        final int analysisWidth = mAnalysisSize.getWidth();
+        final int analysisHeight = mAnalysisSize.getHeight();
+        final int lumaSize = analysisWidth * analysisHeight;
+
+        // The detector only reads luma, but NV21 frames must carry chroma.  Make it neutral once.
+        byte[][] arrays = pool.queueAll();
+        for (byte[] array : arrays) {
+            Arrays.fill(array, lumaSize, array.length, (byte) 128);
+        }
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final Exception[] failure = new Exception[1];
+
+        synchronized (mLock) {
+            mPool = pool;
+            mFrameListener = listener;
+            mFocusMode = focusMode;
+            mFlashMode = flashMode;
+            mAfMode = toAfMode(focusMode);
+
+            mImageReader = ImageReader.newInstance(analysisWidth, analysisHeight,
+                    ImageFormat.YUV_420_888, MAX_IMAGES);
+            mImageReader.setOnImageAvailableListener(new ImageReader.OnImageAvailableListener() {
+                @Override
+                public void onImageAvailable(ImageReader reader) {
+                    onAnalysisImage(reader, analysisWidth, analysisHeight);
+                }
+            }, mHandler);
+        }
+
+        try {
+            mManager.openCamera(mCameraId, new CameraDevice.StateCallback() {
+                @Override
+                public void onOpened(CameraDevice device) {
+                    synchronized (mLock) {
+                        mDevice = device;
+                        if (mClosed) {
+                            device.close();
+                            started.countDown();
+                            return;
+                        }
+                        try {
+                            device.createCaptureSession(
+                                    Arrays.asList(previewSurface, mImageReader.getSurface()),
+                                    new CameraCaptureSession.StateCallback() {
+                                        @Override
+                                        public void onConfigured(CameraCaptureSession session) {
+                                            try {
+                                                onSessionConfigured(session, previewSurface);
+                                            } catch (Exception e) {
+                                                failure[0] = e;
+                                            }
+                                            started.countDown();
+                                        }
+
+                                        @Override
+                                        public void onConfigureFailed(CameraCaptureSession session) {
+                                            failure[0] = new IOException("Could not configure camera session.");
+                                            started.countDown();
+                                        }
+                                    }, mHandler);
+                        } catch (CameraAccessException e) {
+                            failure[0] = e;
+                            started.countDown();
+                        }
+                    }
+                }
+
+                @Override
+                public void onDisconnected(CameraDevice device) {
+                    device.close();
+                    failure[0] = new IOException("Camera disconnected.");
+                    started.countDown();
+                }
+
+                @Override
+                public void onError(CameraDevice device, int error) {
+                    device.close();
+                    failure[0] = new IOException("Camera error " + error);
+                    started.countDown();
+                }
+            }, mHandler);
+        } catch (CameraAccessException e) {
+            close();
+            throw new IOException("Could not open camera.", e);
+        }
+
+        try {
+            if (!started.await(START_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                failure[0] = new IOException("Timed out starting the camera.");
+            }
+        } catch (InterruptedException e) {
+            failure[0] = e;
+        }
+        if (failure[0] != null) {
+            close();
+            throw failure[0] instanceof IOException ? (IOException) failure[0]
+                    : new IOException("Could not start camera.", failure[0]);
+        }
+    }
+
+    /**
+     * Stops streaming and releases the camera.  Safe to call more than once.
+     */
+    void close() {
+        synchronized (mLock) {
+            mClosed = true;
+            if (mSession != null) {
+                mSession.close();
+                mSession = null;
+            }
+            if (mDevice != null) {
+                mDevice.close();
+                mDevice = null;
+            }
+            if (mImageReader != null) {
+                mImageReader.close();
+                mImageReader = null;
+            }
+            mRequestBuilder = null;
+            mPool = null;
+            mFrameListener = null;
+            mPendingAutoFocus = null;
+        }
+        mThread.quitSafely();
+    }
+
+    /**
+     * Multiplies the zoom ratio by the given scale, within what the camera supports.
+     *
+     * @return the new zoom ratio in hundredths
+     */
+    int zoom(float scale) {
+        synchronized (mLock) {
+            Float maxZoom = mCharacteristics.get(CameraCharacteristics.SCALER_AVAILABLE_MAX_DIGITAL_ZOOM);
+            float max = maxZoom != null ? maxZoom : 1.0f;
+            mZoomRatio = Math.max(1.0f, Math.min(mZoomRatio * scale, max));
+            updateRepeatingRequest();
+            return Math.round(mZoomRatio * 100);
+        }
+    }
+
+    /**
+     * Sets the zoom ratio, within what the camera supports.
+     */
+    void setZoomRatio(float ratio) {
+        synchronized (mLock) {
+            Float maxZoom = mCharacteristics.get(CameraCharacteristics.SCALER_AVAILABLE_MAX_DIGITAL_ZOOM);
+            float max = maxZoom != null ? maxZoom : 1.0f;
+            mZoomRatio = Math.max(1.0f, Math.min(ratio, max));
+            updateRepeatingRequest();
+        }
+    }
+
+    String getFocusMode() {
+        synchronized (mLock) {
+            return mFocusMode;
+        }
+    }
+
+    boolean setFocusMode(String mode) {
+        synchronized (mLock) {
+            int afMode = toAfMode(mode);
+            int[] available = mCharacteristics.get(CameraCharacteristics.CONTROL_AF_AVAILABLE_MODES);
+            if (mode == null || !contains(available, afMode)) {
+                return false;
+            }
+            mFocusMode = mode;
+            mAfMode = afMode;
+            updateRepeatingRequest();
+            return true;
+        }
+    }
+
+    String getFlashMode() {
+        synchronized (mLock) {
+            return mFlashMode;
+        }
+    }
+
+    boolean setFlashMode(String mode) {
+        synchronized (mLock) {
+            Boolean hasFlash = mCharacteristics.get(CameraCharacteristics.FLASH_INFO_AVAILABLE);
+            if (mode == null || (!Camera.Parameters.FLASH_MODE_OFF.equals(mode)
+                    && !Boolean.TRUE.equals(hasFlash))) {
+                return false;
+            }
+            mFlashMode = mode;
+            updateRepeatingRequest();
+            return true;
+        }
+    }
+
+    /**
+     * Triggers a focus scan and reports the result once focus locks.  Reports success straight
+     * away if the lens cannot focus.
+     */
+    void autoFocus(CameraSource.AutoFocusCallback callback) {
+        synchronized (mLock) {
+            if (mAfMode == CameraMetadata.CONTROL_AF_MODE_OFF
+                    || mAfMode == CameraMetadata.CONTROL_AF_MODE_EDOF) {
+                if (callback != null) {
+                    callback.onAutoFocus(true);
+                }
+                return;
+            }
+            mPendingAutoFocus = callback;
+            sendAfTrigger(CameraMetadata.CONTROL_AF_TRIGGER_START);
+        }
+    }
+
+    void cancelAutoFocus() {
+        synchronized (mLock) {
+            mPendingAutoFocus = null;
+            sendAfTrigger(CameraMetadata.CONTROL_AF_TRIGGER_CANCEL);
+        }
+    }
+
+    /**
+     * Focuses and meters on the given camera area, or on the camera's default areas if null.
+     *
+     * @return false if the camera supports neither focus nor metering areas
+     */
+    boolean setFocusArea(Rect area) {
+        synchronized (mLock) {
+            if (getMaxRegions(CameraCharacteristics.CONTROL_MAX_REGIONS_AF) == 0
+                    && getMaxRegions(CameraCharacteristics.CONTROL_MAX_REGIONS_AE) == 0) {
+                return false;
+            }
+            mFocusArea = area != null ? new Rect(area) : null;
+            updateRepeatingRequest();
+            return true;
+        }
+    }
+
+    /**
+     * Triggers a new focus scan.  In a continuous focus mode, continuous focus resumes once the
+     * scan locks, instead of staying locked as after {@link #autoFocus}.
+     */
+    void refocus() {
+        synchronized (mLock) {
+            if (mAfMode == CameraMetadata.CONTROL_AF_MODE_OFF
+                    || mAfMode == CameraMetadata.CONTROL_AF_MODE_EDOF) {
+                return;
+            }
+            mRefocusing = mAfMode == CameraMetadata.CONTROL_AF_MODE_CONTINUOUS_PICTURE
+                    || mAfMode == CameraMetadata.CONTROL_AF_MODE_CONTINUOUS_VIDEO;
+            sendAfTrigger(CameraMetadata.CONTROL_AF_TRIGGER_START);
+        }
+    }
+
+    void setAutoFocusMoveCallback(CameraSource.AutoFocusMoveCallback callback) {
+        synchronized (mLock) {
+            mAutoFocusMoveCallback = callback;
+        }
+    }
+
+    private void onSessionConfigured(CameraCaptureSession session, Surface previewSurface)
+            throws CameraAccessException {
+        synchronized (mLock) {
+            if (mClosed) {
+                session.close();
+                return;
+            }
+            mSession = session;
+            mRequestBuilder = mDevice.createCaptureRequest(CameraDevice.TEMPLATE_PREVIEW);
+            mRequestBuilder.addTarget(previewSurface);
+            mRequestBuilder.addTarget(mImageReader.getSurface());
+            if (mFpsRange != null) {
+                mRequestBuilder.set(CaptureRequest.CONTROL_AE_TARGET_FPS_RANGE, mFpsRange);
+            }
+            updateRepeatingRequest();
+        }
+    }
+
+    /**
+     * Copies the luma of the newest analysis image into a free pool buffer and hands it on.
+     */
+    private void onAnalysisImage(ImageReader reader, int width, int height) {
+        Image image = reader.acquireLatestImage();
+        if (image == null) {
+            return;
+        }
+
+        FramePool pool;
+        FrameListener listener;
+        int frameIndex;
+        try {
+            synchronized (mLock) {
+                pool = mPool;
+                listener = mFrameListener;
+            }
+            if (pool == null || listener == null) {
+                return;
+            }
+            frameIndex = pool.acquireFree();
+            if (frameIndex == FramePool.NO_FRAME) {
+                listener.onFrameSkipped();
+                return;
+            }
+
+            Image.Plane luma = image.getPlanes()[0];
+            ByteBuffer src = luma.getBuffer();
+            int rowStride = luma.getRowStride();
+            byte[] dst = pool.getArray(frameIndex);
+            if (rowStride == width) {
+                src.get(dst, 0, width * height);
+            } else {
+                for (int row = 0; row < height; ++row) {
+                    src.position(row * rowStride);
+                    src.get(dst, row * width, width);
+                }
+            }
+        } finally {
+            image.close();
+        }
+
+        listener.onFrame(pool, frameIndex);
+    }
+
+    private final CameraCaptureSession.CaptureCallback mCaptureCallback =
+            new CameraCaptureSession.CaptureCallback() {
+                @Override
+                public void onCaptureCompleted(CameraCaptureSession session,
+                                               CaptureRequest request, TotalCaptureResult result) {
+                    Integer afState = result.get(CaptureResult.CONTROL_AF_STATE);
+                    if (afState == null) {
+                        return;
+                    }
+
+                    CameraSource.AutoFocusCallback focusCallback = null;
+                    CameraSource.AutoFocusMoveCallback moveCallback = null;
+                    boolean moving;
+                    synchronized (mLock) {
+                        if (mPendingAutoFocus != null
+                                && (afState == CameraMetadata.CONTROL_AF_STATE_FOCUSED_LOCKED
+                                || afState == CameraMetadata.CONTROL_AF_STATE_NOT_FOCUSED_LOCKED)) {
+                            focusCallback = mPendingAutoFocus;
+                            mPendingAutoFocus = null;
+                        }
+                        if (mRefocusing
+                                && (afState == CameraMetadata.CONTROL_AF_STATE_FOCUSED_LOCKED
+                                || afState == CameraMetadata.CONTROL_AF_STATE_NOT_FOCUSED_LOCKED)) {
+                            mRefocusing = false;
+                            sendAfTrigger(CameraMetadata.CONTROL_AF_TRIGGER_CANCEL);
+                        }
+                        moving = afState == CameraMetadata.CONTROL_AF_STATE_PASSIVE_SCAN;
+                        if (moving != mFocusMoving) {
+                            mFocusMoving = moving;
+                            moveCallback = mAutoFocusMoveCallback;
+                        }
+                    }
+
+                    if (focusCallback != null) {
+                        focusCallback.onAutoFocus(
+                                afState == CameraMetadata.CONTROL_AF_STATE_FOCUSED_LOCKED);
+                    }
+                    if (moveCallback != null) {
+                        moveCallback.onAutoFocusMoving(moving);
+                    }
+                }
+            };
+
+    /**
+     * Applies the current zoom, focus and flash settings to the repeating request.  Must be
+     * called with the lock held.
+     */
+    private void updateRepeatingRequest() {
+        if (mSession == null || mRequestBuilder == null) {
+            return;
+        }
+
+        mRequestBuilder.set(CaptureRequest.CONTROL_AF_MODE, mAfMode);
+        if (Camera.Parameters.FOCUS_MODE_INFINITY.equals(mFocusMode)) {
+            mRequestBuilder.set(CaptureRequest.LENS_FOCUS_DISTANCE, 0.0f);
+        }
+        applyFlashMode(mRequestBuilder);
+
+        Rect activeArray = mCharacteristics.get(CameraCharacteristics.SENSOR_INFO_ACTIVE_ARRAY_SIZE);
+        if (activeArray != null) {
+            int cropWidth = (int) (activeArray.width() / mZoomRatio);
+            int cropHeight = (int) (activeArray.height() / mZoomRatio);
+            int left = (activeArray.width() - cropWidth) / 2;
+            int top = (activeArray.height() - cropHeight) / 2;
+            Rect crop = new Rect(left, top, left + cropWidth, top + cropHeight);
+            mRequestBuilder.set(CaptureRequest.SCALER_CROP_REGION, crop);
+            applyFocusArea(mRequestBuilder, crop);
+        }
+
+        try {
+            mSession.setRepeatingRequest(mRequestBuilder.build(), mCaptureCallback, mHandler);
+        } catch (CameraAccessException | IllegalStateException e) {
+            Log.e(TAG, "Could not update camera request", e);
+        }
+    }
+
+    /**
+     * Sends a one-off focus trigger on top of the repeating request.  Must be called with the lock
+     * held.
+     */
+    private void sendAfTrigger(int trigger) {
+        if (mSession == null || mRequestBuilder == null) {
+            return;
+        }
+        try {
+            mRequestBuilder.set(CaptureRequest.CONTROL_AF_TRIGGER, trigger);
+            mSession.capture(mRequestBuilder.build(), mCaptureCallback, mHandler);
+        } catch (CameraAccessException | IllegalStateException e) {
+            Log.e(TAG, "Could not trigger auto focus", e);
+        } finally {
+            mRequestBuilder.set(CaptureRequest.CONTROL_AF_TRIGGER,
+                    CameraMetadata.CONTROL_AF_TRIGGER_IDLE);
+        }
+    }
+
+    /**
+     * Sets the focus and metering regions to the focus area within the crop region, as far as the
+     * camera supports them.
+     */
+    private void applyFocusArea(CaptureRequest.Builder builder, Rect crop) {
+        MeteringRectangle[] regions = null;
+        if (mFocusArea != null) {
+            Rect region = new Rect();
+            FocusAreas.toCropRegion(mFocusArea, crop, region);
+            regions = new MeteringRectangle[]{
+                    new MeteringRectangle(region, MeteringRectangle.METERING_WEIGHT_MAX)};
+        }
+        if (getMaxRegions(CameraCharacteristics.CONTROL_MAX_REGIONS_AF) > 0) {
+            builder.set(CaptureRequest.CONTROL_AF_REGIONS, regions);
+        }
+        if (getMaxRegions(CameraCharacteristics.CONTROL_MAX_REGIONS_AE) > 0) {
+            builder.set(CaptureRequest.CONTROL_AE_REGIONS, regions);
+        }
+    }
+
+    private int getMaxRegions(CameraCharacteristics.Key<Integer> key) {
+        Integer regions = mCharacteristics.get(key);
+        return regions != null ? regions : 0;
+    }
+
+    private void applyFlashMode(CaptureRequest.Builder builder) {
+        int aeMode = CameraMetadata.CONTROL_AE_MODE_ON;
+        int flashMode = CameraMetadata.FLASH_MODE_OFF;
+        if (Camera.Parameters.FLASH_MODE_TORCH.equals(mFlashMode)) {
+            flashMode = CameraMetadata.FLASH_MODE_TORCH;
+        } else if (Camera.Parameters.FLASH_MODE_AUTO.equals(mFlashMode)) {
+            aeMode = CameraMetadata.CONTROL_AE_MODE_ON_AUTO_FLASH;
+        } else if (Camera.Parameters.FLASH_MODE_ON.equals(mFlashMode)) {
+            aeMode = CameraMetadata.CONTROL_AE_MODE_ON_ALWAYS_FLASH;
+        } else if (Camera.Parameters.FLASH_MODE_RED_EYE.equals(mFlashMode)) {
+            aeMode = CameraMetadata.CONTROL_AE_MODE_ON_AUTO_FLASH_REDEYE;
+        }
+        builder.set(CaptureRequest.CONTROL_AE_MODE, aeMode);
+        builder.set(CaptureRequest.FLASH_MODE, flashMode);
+    }
+
+    private static int toAfMode(String focusMode) {
+        if (focusMode == null || Camera.Parameters.FOCUS_MODE_CONTINUOUS_PICTURE.equals(focusMode)) {
+            return CameraMetadata.CONTROL_AF_MODE_CONTINUOUS_PICTURE;
+        } else if (Camera.Parameters.FOCUS_MODE_CONTINUOUS_VIDEO.equals(focusMode)) {
+            return CameraMetadata.CONTROL_AF_MODE_CONTINUOUS_VIDEO;
+        } else if (Camera.Parameters.FOCUS_MODE_AUTO.equals(focusMode)) {
+            return CameraMetadata.CONTROL_AF_MODE_AUTO;
+        } else if (Camera.Parameters.FOCUS_MODE_MACRO.equals(focusMode)) {
+            return CameraMetadata.CONTROL_AF_MODE_MACRO;
+        } else if (Camera.Parameters.FOCUS_MODE_EDOF.equals(focusMode)) {
+            return CameraMetadata.CONTROL_AF_MODE_EDOF;
+        }
+        return CameraMetadata.CONTROL_AF_MODE_OFF;
+    }
+
+    private static boolean contains(int[] values, int value) {
+        if (values == null) {
+            return false;
+        }
+        for (int v : values) {
+            if (v == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Picks the size closest to the desired one, by the sum of the width and height differences,
+     * among sizes within the given aspect ratio (if not zero) and pixel count.
+     */
+    private static Size selectSize(android.util.Size[] sizes, int desiredWidth, int desiredHeight,
+                                   float aspectRatio, int maxPixels) {
+        if (sizes == null) {
+            return null;
+        }
+        android.util.Size selected = null;
+        int minDiff = Integer.MAX_VALUE;
+        for (android.util.Size size : sizes) {
+            if (aspectRatio > 0 && Math.abs((float) size.getWidth() / size.getHeight() - aspectRatio)
+                    > ASPECT_RATIO_TOLERANCE) {
+                continue;
+            }
+            if (size.getWidth() * size.getHeight() > maxPixels) {
+                continue;
+            }
+            int diff = Math.abs(size.getWidth() - desiredWidth)
+                    + Math.abs(size.getHeight() - desiredHeight);
+            if (diff < minDiff) {
+                selected = size;
+                minDiff = diff;
+            }
+        }
+        return selected != null ? new Size(selected.getWidth(), selected.getHeight()) : null;
+    }
+
+    private static Range<Integer> selectFpsRange(Range<Integer>[] ranges, float desiredFps) {
+        if (ranges == null) {
+            return null;
+        }
+        Range<Integer> selected = null;
+        float minDiff = Float.MAX_VALUE;
+        for (Range<Integer> range : ranges) {
+            float diff = Math.abs(desiredFps - range.getLower()) + Math.abs(desiredFps - range.getUpper());
+            if (diff < minDiff) {
+                selected = range;
+                minDiff = diff;
+            }
+        }
+        return selected;
+    }
+}
@@ -0,0 +1,95 @@
+package com.amolg.flutterbarcodescanner.camera;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The camera settings that {@link CameraSource} resolves for a facing and requested preview size
+ * and frame rate: the camera id, preview and picture sizes, fps range and the focus and flash
+ * modes the camera supports.  Kept in a {@link CameraCapabilityCache} so later starts can skip
+ * walking the camera's parameters.
+ */
+final class CameraCapabilities {
+    private static final String VERSION = "1";
+    private static final String FIELD_SEPARATOR = ";";
+    private static final String LIST_SEPARATOR = ",";
+
+    final int cameraId;
+    final int previewWidth;
+    final int previewHeight;
+    // Zero if there is no picture size with the preview's aspect ratio.
+    final int pictureWidth;
+    final int pictureHeight;
+    final int minFps;
+    final int maxFps;
+    final List<String> focusModes;
+    final List<String> flashModes;
+
+    CameraCapabilities(int cameraId, int previewWidth, int previewHeight, int pictureWidth,
+                       int pictureHeight, int minFps, int maxFps, List<String> focusModes,
+                       List<String> flashModes) {
+        this.cameraId = cameraId;
+        this.previewWidth = previewWidth;
+        this.previewHeight = previewHeight;
+        this.pictureWidth = pictureWidth;
+        this.pictureHeight = pictureHeight;
+        this.minFps = minFps;
+        this.maxFps = maxFps;
+        this.focusModes = focusModes != null ? focusModes : Collections.<String>emptyList();
+        this.flashModes = flashModes != null ? flashModes : Collections.<String>emptyList();
+    }
+
+    /**
+     * Returns the capabilities as a single string, for {@link #decode(String)}.
+     */
+    String encode() {
+        return VERSION + FIELD_SEPARATOR + cameraId
+                + FIELD_SEPARATOR + previewWidth + FIELD_SEPARATOR + previewHeight
+                + FIELD_SEPARATOR + pictureWidth + FIELD_SEPARATOR + pictureHeight
+                + FIELD_SEPARATOR + minFps + FIELD_SEPARATOR + maxFps
+                + FIELD_SEPARATOR + join(focusModes) + FIELD_SEPARATOR + join(flashModes);
+    }
+
+    /**
+     * Reads capabilities written by {@link #encode()}, returning null if the string is from
+     * another version or is not valid.
+     */
+    static CameraCapabilities decode(String encoded) {
+        if (encoded == null) {
+            return null;
+        }
+        String[] fields = encoded.split(FIELD_SEPARATOR, -1);
+        if (fields.length != 10 || !VERSION.equals(fields[0])) {
+            return null;
+        }
+        try {
+            return new CameraCapabilities(Integer.parseInt(fields[1]),
+                    Integer.parseInt(fields[2]), Integer.parseInt(fields[3]),
+                    Integer.parseInt(fields[4]), Integer.parseInt(fields[5]),
+                    Integer.parseInt(fields[6]), Integer.parseInt(fields[7]),
+                    split(fields[8]), split(fields[9]));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String join(List<String> values) {
+        StringBuilder builder = new StringBuilder();
+        for (String value : values) {
+            if (builder.length() > 0) {
+                builder.append(LIST_SEPARATOR);
+            }
+            builder.append(value);
+        }
+        return builder.toString();
+    }
+
+    private static List<String> split(String joined) {
+        if (joined.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return new ArrayList<>(Arrays.asList(joined.split(LIST_SEPARATOR)));
+    }
+}
@@ -0,0 +1,65 @@
+package com.amolg.flutterbarcodescanner.camera;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+
+/**
+ * Keeps the camera settings {@link CameraSource} resolves on disk, so that later starts can skip
+ * enumerating the camera's sizes, fps ranges and modes.  Entries are keyed by camera facing and
+ * the requested preview size and frame rate.
+ * <p/>
+ * The cache belongs to one build of the OS: when {@link Build#FINGERPRINT} changes, e.g. after a
+ * system update, which may change what the camera HAL reports, every entry is dropped.
+ */
+public final class CameraCapabilityCache {
+    private static final String PREFERENCES_NAME = "flutter_barcode_scanner_camera_capabilities";
+    private static final String KEY_FINGERPRINT = "fingerprint";
+
+    private final SharedPreferences mPreferences;
+
+    public CameraCapabilityCache(Context context) {
+        mPreferences = context.getApplicationContext()
+                .getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+        if (!Build.FINGERPRINT.equals(mPreferences.getString(KEY_FINGERPRINT, null))) {
+            mPreferences.edit()
+                    .clear()
+                    .putString(KEY_FINGERPRINT, Build.FINGERPRINT)
+                    .apply();
+        }
+    }
+
+    CameraCapabilities get(int facing, int requestedWidth, int requestedHeight, float requestedFps) {
+        return CameraCapabilities.decode(mPreferences.getString(
+                key(facing, requestedWidth, requestedHeight, requestedFps), null));
+    }
+
+    void put(int facing, int requestedWidth, int requestedHeight, float requestedFps,
+             CameraCapabilities capabilities) {
+        mPreferences.edit()
+                .putString(key(facing, requestedWidth, requestedHeight, requestedFps),
+                        capabilities.encode())
+                .apply();
+    }
+
+    void remove(int facing, int requestedWidth, int requestedHeight, float requestedFps) {
+        mPreferences.edit()
+                .remove(key(facing, requestedWidth, requestedHeight, requestedFps))
+                .apply();
+    }
+
+    /**
+     * Drops every entry.
+     */
+    public void clear() {
+        mPreferences.edit()
+                .clear()
+                .putString(KEY_FINGERPRINT, Build.FINGERPRINT)
+                .apply();
+    }
+
+    private static String key(int facing, int requestedWidth, int requestedHeight, float requestedFps) {
+        return "camera_" + facing + "_" + requestedWidth + "x" + requestedHeight
+                + "@" + Math.round(requestedFps * 1000);
+    }
+}
@@ -20,15 +20,21 @@ import android.annotation.SuppressLint;
 import android.annotation.TargetApi;
 import android.content.Context;
 import android.graphics.ImageFormat;
+import android.graphics.Point;
+import android.graphics.Rect;
 import android.graphics.SurfaceTexture;
 import android.hardware.Camera;
 import android.hardware.Camera.CameraInfo;
 import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
 import android.os.SystemClock;
 import androidx.annotation.Nullable;
 import androidx.annotation.RequiresPermission;
 import androidx.annotation.StringDef;
 
+import android.util.Log;
+import android.util.SparseArray;
 import android.view.Surface;
 import android.view.SurfaceHolder;
 import android.view.SurfaceView;
@@ -44,9 +50,8 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 
 
 @SuppressWarnings("deprecation")
@@ -55,25 +60,38 @@ public class CameraSource {
     public static final int CAMERA_FACING_BACK = CameraInfo.CAMERA_FACING_BACK;
     @SuppressLint("InlinedApi")
     public static final int CAMERA_FACING_FRONT = CameraInfo.CAMERA_FACING_FRONT;
+    private static final String TAG = "CameraSource";
     private static final int DUMMY_TEXTURE_NAME = 100;
     private static final float ASPECT_RATIO_TOLERANCE = 0.01f;
+    // Distance in pixels between the luma samples used to measure brightness for the torch.
+    private static final int LUMA_SAMPLE_STEP = 16;
 
     private Context mContext;
     private final Object mCameraLock = new Object();
     private Camera mCamera;
+    private Camera2Session mCamera2Session;
+    // Camera opened ahead of time by openCamera, used instead of opening one when starting.
+    private Camera mOpenedCamera;
     private int mFacing = CAMERA_FACING_BACK;
     private int mRotation;
     private Size mPreviewSize;
+    // Size of the frames handed to the detector.  Same as the preview size with the camera1 API.
+    private Size mFrameSize;
 
     // These values may be requested by the caller.  Due to hardware limitations, we may need to
     // select close, but not exactly the same values for these.
     private float mRequestedFps = 30.0f;
     private int mRequestedPreviewWidth = 1024;
     private int mRequestedPreviewHeight = 768;
+    private int mRequestedAnalysisWidth = 640;
+    private int mRequestedAnalysisHeight = 480;
+    private boolean mUseCamera2 = false;
 
 
     private String mFocusMode = null;
-    private String mFlashMode = null;
+    // Written under mCameraLock, but volatile as the processing thread reads it without the lock
+    // to tell the brightness controller whether the torch is on.
+    private volatile String mFlashMode = null;
 
     // These instances need to be held onto to avoid GC of their underlying resources.  Even though
     // these aren't used outside of the method that creates them, they still must have hard
@@ -89,11 +107,119 @@ public class CameraSource {
     private FrameProcessingRunnable mFrameProcessor;
 
     /**
-     * Map to convert between a byte array, received from the camera, and its associated byte
-     * buffer.  We use byte buffers internally because this is a more efficient way to call into
-     * native code later (avoids a potential copy).
+     * Number of detector instances that frames are spread over, and the factory used to create the
+     * additional ones.  When a processor is supplied, detection results are delivered to it by the
+     * camera source instead of through the detector.
      */
-    private Map<byte[], ByteBuffer> mBytesToByteBuffer = new HashMap<>();
+    private int mDetectionWorkers = 1;
+    private DetectorFactory mDetectorFactory;
+    private Detector.Processor<?> mProcessor;
+
+    /**
+     * Region of the preview, in upright frame coordinates, that frames are cropped to before
+     * detection.  Only used when a region mapper has been set.
+     */
+    private volatile Rect mScanRegion;
+    private RegionResultMapper mRegionMapper;
+
+    /**
+     * Scales scanning back while the device is hot, when a thermal source is set.  The tier is
+     * read and applied on the processing thread; frames are decoded at half resolution while
+     * mHalveFrames is set, with the mapper scaling results back up.
+     */
+    private ThermalSource mThermalSource;
+    private ThermalTierController mThermalTiers;
+    private RegionResultMapper mThermalMapper;
+    private ThermalListener mThermalListener;
+    private int mAppliedThermalTier = ThermalTierController.TIER_NORMAL;
+    private volatile boolean mHalveFrames;
+
+    /**
+     * Preview buffers shared with the camera.  Frames are passed around by their index in the pool,
+     * and we use its byte buffers internally because this is a more efficient way to call into
+     * native code later (avoids a potential copy).  Zero depth means one buffer per detection
+     * worker plus three.
+     */
+    private FramePool mFramePool;
+    private int mFramePoolDepth = 0;
+
+    /**
+     * Paces detection according to detector cost and scan success.  Null when every frame the
+     * processing thread can take is detected.
+     */
+    private DetectionRateGovernor mRateGovernor;
+
+    /**
+     * Per-stage latency histograms and frame counters, or null if not collected.
+     */
+    private ScannerStats mStats;
+
+    /**
+     * Resolved camera settings kept between starts, or null if they are worked out every time.
+     */
+    private CameraCapabilityCache mCapabilityCache;
+
+    /**
+     * Startup stages of the scan session this camera source belongs to, or null if not traced.
+     */
+    private StartupTrace mStartupTrace;
+
+    /**
+     * While set, preview frames go straight back to the camera instead of to detection, so the
+     * camera keeps running, ready for detection to resume without a restart.
+     */
+    private volatile boolean mDetectionPaused;
+
+    /**
+     * Whether the scan region is also used as the focus and metering area, and when to trigger a
+     * new focus scan after detection finds nothing, or null to leave focus to the camera.
+     */
+    private boolean mFocusOnScanRegion;
+    private RefocusScheduler mRefocusScheduler;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable mRefocus = new Runnable() {
+        @Override
+        public void run() {
+            refocus();
+        }
+    };
+
+    /**
+     * Whether the torch follows the brightness of the preview, measured on the processing thread
+     * and switched on the main thread, and who to tell when it switches.
+     */
+    private volatile boolean mAutoTorch;
+    private final AutoTorchController mAutoTorchController = new AutoTorchController();
+    private AutoTorchListener mAutoTorchListener;
+    private final Runnable mAutoTorchOn = new Runnable() {
+        @Override
+        public void run() {
+            switchAutoTorch(true);
+        }
+    };
+    private final Runnable mAutoTorchOff = new Runnable() {
+        @Override
+        public void run() {
+            switchAutoTorch(false);
+        }
+    };
+
+    /**
+     * Steps zoom from detection results when set, measuring codes with the item measurer.  The
+     * ratio is chosen on detection threads and applied on the main thread.
+     */
+    private AutoZoomController mAutoZoomController;
+    private ItemMeasurer mItemMeasurer;
+    private volatile boolean mAutoZoom;
+    private volatile float mPendingZoomRatio;
+    private final Runnable mApplyZoom = new Runnable() {
+        @Override
+        public void run() {
+            if (mAutoZoom) {
+                setZoomRatio(mPendingZoomRatio);
+            }
+        }
+    };
 
 
     @StringDef({
@@ -120,6 +246,68 @@ public class CameraSource {
     private @interface FlashMode {
     }
 
+    /**
+     * Factory for the additional detector instances used by parallel detection workers.
+     */
+    public interface DetectorFactory {
+        /**
+         * Creates a new detector of the same kind as the one passed to the builder.  The returned
+         * detector must not have a processor set; its results are delivered to the processor
+         * supplied with {@link Builder#setProcessor(Detector.Processor)}.
+         */
+        Detector<?> create();
+    }
+
+    /**
+     * Told when automatic torch control switches the torch.
+     */
+    public interface AutoTorchListener {
+        /**
+         * Called on the main thread after the torch was switched on or off.
+         */
+        void onAutoTorch(boolean on);
+    }
+
+    /**
+     * Measures detected items for automatic zoom.
+     */
+    public interface ItemMeasurer {
+        /**
+         * Returns the width of a detected item in upright frame coordinates, or 0 if unknown.
+         */
+        int getWidth(Object item);
+    }
+
+    /**
+     * Moves detected items from scan region coordinates back to full frame coordinates.
+     */
+    public interface RegionResultMapper {
+        /**
+         * Offsets the position of a detected item by the upright position of the scan region.
+         */
+        void offset(Object item, int dx, int dy);
+
+        /**
+         * Multiplies the position and size of a detected item by the factor a frame was scaled
+         * down by before detection.  Called before {@link #offset}.
+         */
+        void scale(Object item, int factor);
+    }
+
+    /**
+     * Told when scanning is scaled back or restored as the device heats up or cools down.
+     */
+    public interface ThermalListener {
+        /**
+         * Called on the main thread when the thermal tier changes.
+         *
+         * @param tier            0 when scanning runs as configured, up to 4 when the device is
+         *                        critically hot.
+         * @param animateOverlay  false if overlay animations should stop to save power.
+         */
+        void onThermalTierChanged(int tier, boolean animateOverlay);
+    }
+
     /**
      * Builder for configuring and creating an associated camera source.
      */
@@ -127,6 +315,11 @@ public class CameraSource {
         private final Detector<?> mDetector;
         private CameraSource mCameraSource = new CameraSource();
 
+        private float mMinDetectionRate;
+        private float mMaxDetectionRate;
+        private float mIdleDetectionRate;
+        private int mIdleAfterEmptyFrames;
+
         /**
          * Creates a camera source builder with the supplied context and detector.  Camera preview
          * images will be streamed to the associated detector upon starting the camera source.
@@ -184,6 +377,41 @@ public class CameraSource {
             return this;
         }
 
+        /**
+         * Sets a camera already opened by {@link #openCamera(int)} for the facing of this camera
+         * source, which saves opening it when the camera source starts.  The camera source takes
+         * ownership of it.  Ignored with the camera2 API.
+         */
+        public Builder setOpenedCamera(Camera camera) {
+            mCameraSource.mOpenedCamera = camera;
+            return this;
+        }
+
+        /**
+         * Uses the camera2 API on devices that have it (Lollipop and later).  Frames for detection
+         * then come from a separate stream at the analysis size, and only their luma is read.
+         * Taking pictures is not supported in this mode.  Default: false.
+         */
+        public Builder setUseCamera2(boolean useCamera2) {
+            mCameraSource.mUseCamera2 = useCamera2;
+            return this;
+        }
+
+        /**
+         * Sets the desired size of the frames used for detection when the camera2 API is in use.
+         * The closest size with the preview's aspect ratio, and no larger than the preview, is
+         * selected.  Default: 640x480.
+         */
+        public Builder setRequestedAnalysisSize(int width, int height) {
+            final int MAX = 1000000;
+            if ((width <= 0) || (width > MAX) || (height <= 0) || (height > MAX)) {
+                throw new IllegalArgumentException("Invalid analysis size: " + width + "x" + height);
+            }
+            mCameraSource.mRequestedAnalysisWidth = width;
+            mCameraSource.mRequestedAnalysisHeight = height;
+            return this;
+        }
+
         /**
          * Sets the camera to use (either {@link #CAMERA_FACING_BACK} or
          * {@link #CAMERA_FACING_FRONT}). Default: back facing.
@@ -196,10 +424,198 @@ public class CameraSource {
             return this;
         }
 
+        /**
+         * Sets the processor that receives detection results.  When set, the camera source calls
+         * {@link Detector#detect(Frame)} and delivers the results itself, which is required for
+         * parallel detection.  Otherwise frames go through {@link Detector#receiveFrame(Frame)}
+         * and the processor set on the detector.
+         */
+        public Builder setProcessor(Detector.Processor<?> processor) {
+            mCameraSource.mProcessor = processor;
+            return this;
+        }
+
+        /**
+         * Sets the number of detector instances that frames are spread over.  The detector passed
+         * to the builder is used as the first worker and the factory creates the rest.  Results
+         * are still delivered in frame order.  Requires a processor.  Default: 1.
+         */
+        public Builder setDetectionWorkers(int workers, DetectorFactory factory) {
+            if (workers <= 0) {
+                throw new IllegalArgumentException("Invalid detection workers: " + workers);
+            }
+            if (workers > 1 && factory == null) {
+                throw new IllegalArgumentException("No detector factory supplied.");
+            }
+            mCameraSource.mDetectionWorkers = workers;
+            mCameraSource.mDetectorFactory = factory;
+            return this;
+        }
+
+        /**
+         * Sets the number of preview buffers shared with the camera.  A deeper pool lets the camera
+         * keep delivering frames while slow detectors hold on to theirs.  Must leave at least two
+         * buffers beyond the detection workers.  Default: detection workers plus three.
+         */
+        public Builder setFramePoolDepth(int depth) {
+            if (depth < 3) {
+                throw new IllegalArgumentException("Invalid frame pool depth: " + depth);
+            }
+            mCameraSource.mFramePoolDepth = depth;
+            return this;
+        }
+
+        /**
+         * Enables cropping frames to the region set with {@link #setScanRegion(Rect)} before
+         * detection.  The mapper moves results back to full frame coordinates.  Requires a
+         * processor.
+         */
+        public Builder setScanRegionMapper(RegionResultMapper mapper) {
+            mCameraSource.mRegionMapper = mapper;
+            return this;
+        }
+
+        /**
+         * Scales scanning back in tiers as the thermal source reports the device getting hotter:
+         * a single detection worker, the minimum detection rate, frames decoded at half
+         * resolution and, through the {@link ThermalListener}, no overlay animation.  Scanning is
+         * restored a tier at a time as the device cools.  Requires a processor.
+         *
+         * @param mapper scales results of frames decoded at half resolution back up; the scan
+         *               region mapper is used instead if one is set.
+         */
+        public Builder setThermalSource(ThermalSource source, RegionResultMapper mapper) {
+            mCameraSource.mThermalSource = source;
+            mCameraSource.mThermalTiers = new ThermalTierController(source);
+            mCameraSource.mThermalMapper = mapper;
+            return this;
+        }
+
+        /**
+         * Enables the detection rate governor.  Detection runs at up to {@code maxFps} while codes
+         * are found, slows towards {@code minFps} with each empty frame, and drops to
+         * {@code idleFps} after {@code idleAfterEmptyFrames} empty frames in a row.  The rate is
+         * also limited to what the detection workers can sustain.  Frames that arrive too early
+         * go straight back to the camera.  Requires a processor.
+         */
+        public Builder setDetectionRate(float minFps, float maxFps, float idleFps,
+                                        int idleAfterEmptyFrames) {
+            if (idleFps <= 0 || minFps < idleFps || maxFps < minFps) {
+                throw new IllegalArgumentException("Invalid detection rates: min=" + minFps
+                        + " max=" + maxFps + " idle=" + idleFps);
+            }
+            if (idleAfterEmptyFrames <= 0) {
+                throw new IllegalArgumentException("Invalid idle frame count: " + idleAfterEmptyFrames);
+            }
+            mMinDetectionRate = minFps;
+            mMaxDetectionRate = maxFps;
+            mIdleDetectionRate = idleFps;
+            mIdleAfterEmptyFrames = idleAfterEmptyFrames;
+            return this;
+        }
+
+        /**
+         * Sets where frame pipeline latencies and counters are recorded.  The capture to deliver
+         * stages are only recorded when a processor is set, since otherwise detection and
+         * delivery both happen inside the detector.
+         */
+        public Builder setStats(ScannerStats stats) {
+            mCameraSource.mStats = stats;
+            return this;
+        }
+
+        /**
+         * Keeps the resolved camera id, sizes, fps range and supported modes in the given cache,
+         * so later starts skip enumerating them.  Only used with the camera1 API.
+         */
+        public Builder setCapabilityCache(CameraCapabilityCache cache) {
+            mCameraSource.mCapabilityCache = cache;
+            return this;
+        }
+
+        /**
+         * Marks the camera being opened, the first frame and the first frame with a detection in
+         * the given startup trace.  The first detection is only marked with a processor set by
+         * {@link #setProcessor}, as without one the detector delivers its results itself.
+         */
+        public Builder setStartupTrace(StartupTrace trace) {
+            mCameraSource.mStartupTrace = trace;
+            return this;
+        }
+
+        /**
+         * Focuses and meters on the scan region given to {@link #setScanRegion(Rect)}, where the
+         * camera supports focus or metering areas, instead of on the whole field of view.
+         */
+        public Builder setFocusOnScanRegion(boolean focusOnScanRegion) {
+            mCameraSource.mFocusOnScanRegion = focusOnScanRegion;
+            return this;
+        }
+
+        /**
+         * Triggers a new focus scan whenever detection has found nothing for the given time.
+         * Requires a processor, as detection results are only seen through one.
+         */
+        public Builder setRefocusAfterIdle(long idleMillis) {
+            mCameraSource.mRefocusScheduler = new RefocusScheduler(idleMillis);
+            return this;
+        }
+
+        /**
+         * Switches the torch on while the preview is dark and off again once it is bright.
+         */
+        public Builder setAutoTorch(boolean autoTorch) {
+            mCameraSource.mAutoTorch = autoTorch;
+            return this;
+        }
+
+        /**
+         * Zooms in, up to the given ratio, while detection finds nothing or finds only small
+         * codes, and back out once a code is read at a normal size.  Requires a processor, as
+         * detection results are only seen through one.
+         *
+         * @param measurer gives the width of detected items, to tell small codes apart.
+         */
+        public Builder setAutoZoom(float maxRatio, ItemMeasurer measurer) {
+            mCameraSource.mAutoZoomController = new AutoZoomController(maxRatio);
+            mCameraSource.mItemMeasurer = measurer;
+            mCameraSource.mAutoZoom = true;
+            return this;
+        }
+
         /**
          * Creates an instance of the camera source.
          */
         public CameraSource build() {
+            if (mCameraSource.mDetectionWorkers > 1 && mCameraSource.mProcessor == null) {
+                throw new IllegalStateException("Parallel detection requires a processor.");
+            }
+            if (mCameraSource.mRegionMapper != null && mCameraSource.mProcessor == null) {
+                throw new IllegalStateException("Scan region cropping requires a processor.");
+            }
+            if (mCameraSource.mRefocusScheduler != null && mCameraSource.mProcessor == null) {
+                throw new IllegalStateException("Refocusing after idle detection requires a processor.");
+            }
+            if (mCameraSource.mAutoZoomController != null && mCameraSource.mProcessor == null) {
+                throw new IllegalStateException("Automatic zoom requires a processor.");
+            }
+            if (mCameraSource.mThermalTiers != null && mCameraSource.mProcessor == null) {
+                throw new IllegalStateException("Thermal scaling requires a processor.");
+            }
+            if (mIdleAfterEmptyFrames > 0) {
+                if (mCameraSource.mProcessor == null) {
+                    throw new IllegalStateException("The detection rate governor requires a processor.");
+                }
+                mCameraSource.mRateGovernor = new DetectionRateGovernor(mMinDetectionRate,
+                        mMaxDetectionRate, mIdleDetectionRate, mIdleAfterEmptyFrames,
+                        mCameraSource.mDetectionWorkers);
+            }
+            if (mCameraSource.mFramePoolDepth == 0) {
+                mCameraSource.mFramePoolDepth = mCameraSource.mDetectionWorkers + 3;
+            } else if (mCameraSource.mFramePoolDepth < mCameraSource.mDetectionWorkers + 2) {
+                throw new IllegalStateException("Frame pool depth " + mCameraSource.mFramePoolDepth
+                        + " is too small for " + mCameraSource.mDetectionWorkers + " detection workers.");
+            }
             mCameraSource.mFrameProcessor = mCameraSource.new FrameProcessingRunnable(mDetector);
             return mCameraSource;
         }
@@ -271,9 +687,30 @@ public class CameraSource {
         synchronized (mCameraLock) {
             stop();
             mFrameProcessor.release();
+            releaseOpenedCamera();
+            if (mThermalSource != null) {
+                mThermalSource.release();
+                mThermalSource = null;
+            }
         }
     }
 
+    /**
+     * Opens the camera facing the given direction, e.g. ahead of time on a background thread, to
+     * be handed to {@link Builder#setOpenedCamera(Camera)}.  The caller must release it if it is
+     * never handed over.
+     *
+     * @throws RuntimeException if there is no such camera or it could not be opened
+     */
+    @RequiresPermission(Manifest.permission.CAMERA)
+    public static Camera openCamera(int facing) {
+        int cameraId = getIdForRequestedCamera(facing);
+        if (cameraId == -1) {
+            throw new RuntimeException("Could not find requested camera.");
+        }
+        return Camera.open(cameraId);
+    }
+
     /**
      * Opens the camera and starts sending preview frames to the underlying detector.  The preview
      * frames are not displayed.
@@ -283,7 +720,14 @@ public class CameraSource {
     @RequiresPermission(Manifest.permission.CAMERA)
     public CameraSource start() throws IOException {
         synchronized (mCameraLock) {
-            if (mCamera != null) {
+            if (mCamera != null || mCamera2Session != null) {
+                return this;
+            }
+
+            if (useCamera2()) {
+                releaseOpenedCamera();
+                startCamera2(null, null);
+                startProcessing();
                 return this;
             }
 
@@ -300,9 +744,7 @@ public class CameraSource {
             }
             mCamera.startPreview();
 
-            mProcessingThread = new Thread(mFrameProcessor);
-            mFrameProcessor.setActive(true);
-            mProcessingThread.start();
+            startProcessing();
         }
         return this;
     }
@@ -317,7 +759,14 @@ public class CameraSource {
     @RequiresPermission(Manifest.permission.CAMERA)
     public CameraSource start(SurfaceHolder surfaceHolder) throws IOException {
         synchronized (mCameraLock) {
-            if (mCamera != null) {
+            if (mCamera != null || mCamera2Session != null) {
+                return this;
+            }
+
+            if (useCamera2()) {
+                releaseOpenedCamera();
+                startCamera2(surfaceHolder, null);
+                startProcessing();
                 return this;
             }
 
@@ -325,9 +774,38 @@ public class CameraSource {
             mCamera.setPreviewDisplay(surfaceHolder);
             mCamera.startPreview();
 
-            mProcessingThread = new Thread(mFrameProcessor);
-            mFrameProcessor.setActive(true);
-            mProcessingThread.start();
+            startProcessing();
+        }
+        return this;
+    }
+
+    /**
+     * Opens the camera and starts sending preview frames to the underlying detector.  The preview
+     * frames are drawn into the supplied texture, e.g. one registered with Flutter, so they can be
+     * displayed without a view of their own.  The texture stays owned by the caller.
+     *
+     * @param surfaceTexture the texture to use for the preview frames
+     * @throws IOException if the supplied texture could not be used for the preview
+     */
+    @RequiresPermission(Manifest.permission.CAMERA)
+    public CameraSource start(SurfaceTexture surfaceTexture) throws IOException {
+        synchronized (mCameraLock) {
+            if (mCamera != null || mCamera2Session != null) {
+                return this;
+            }
+
+            if (useCamera2()) {
+                releaseOpenedCamera();
+                startCamera2(null, surfaceTexture);
+                startProcessing();
+                return this;
+            }
+
+            mCamera = createCamera();
+            mCamera.setPreviewTexture(surfaceTexture);
+            mCamera.startPreview();
+
+            startProcessing();
         }
         return this;
     }
@@ -335,14 +813,18 @@ public class CameraSource {
     /**
      * Closes the camera and stops sending frames to the underlying frame detector.
      * <p/>
-     * This camera source may be restarted again by calling {@link #start()} or
-     * {@link #start(SurfaceHolder)}.
+     * This camera source may be restarted again by calling {@link #start()},
+     * {@link #start(SurfaceHolder)} or {@link #start(SurfaceTexture)}.
      * <p/>
      * Call {@link #release()} instead to completely shut down this camera source and release the
      * resources of the underlying detector.
      */
     public void stop() {
         synchronized (mCameraLock) {
+            mMainHandler.removeCallbacks(mRefocus);
+            mMainHandler.removeCallbacks(mAutoTorchOn);
+            mMainHandler.removeCallbacks(mAutoTorchOff);
+            mMainHandler.removeCallbacks(mApplyZoom);
             mFrameProcessor.setActive(false);
             if (mProcessingThread != null) {
                 try {
@@ -354,9 +836,10 @@ public class CameraSource {
                 }
                 mProcessingThread = null;
             }
+            mFrameProcessor.awaitInFlight();
 
-            // clear the buffer to prevent oom exceptions
-            mBytesToByteBuffer.clear();
+            // drop the buffers to prevent oom exceptions
+            mFramePool = null;
 
             if (mCamera != null) {
                 mCamera.stopPreview();
@@ -367,18 +850,238 @@ public class CameraSource {
                     // developer wants to display a preview we must use a SurfaceHolder.  If the developer doesn't
                     // want to display a preview we use a SurfaceTexture if we are running at least Honeycomb.
 
-                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
-                        mCamera.setPreviewTexture(null);
+                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+                        mCamera.setPreviewTexture(null);
+
+                    } else {
+                        mCamera.setPreviewDisplay(null);
+                    }
+                } catch (Exception e) {
+                }
+                mCamera.release();
+                mCamera = null;
+            }
+            if (mCamera2Session != null) {
+                mCamera2Session.close();
+                mCamera2Session = null;
+            }
+        }
+    }
+
+    /**
+     * Pauses or resumes detection without stopping the camera or the preview.  While paused,
+     * frames are handed back to the camera as they arrive and the processing thread waits idle.
+     * Safe to call from any thread, and before the camera source is started.
+     */
+    public void setDetectionPaused(boolean paused) {
+        if (!paused && mDetectionPaused && mRateGovernor != null) {
+            // Start again at the full rate rather than the idle rate reached before the pause.
+            mRateGovernor.reset();
+        }
+        mDetectionPaused = paused;
+    }
+
+    public boolean isDetectionPaused() {
+        return mDetectionPaused;
+    }
+
+    /**
+     * Turns automatic torch control on or off, e.g. off when the user switches the torch by hand.
+     * The torch is left as it is.  Safe to call from any thread.
+     */
+    public void setAutoTorchEnabled(boolean autoTorch) {
+        mAutoTorch = autoTorch;
+    }
+
+    public boolean isAutoTorchEnabled() {
+        return mAutoTorch;
+    }
+
+    /**
+     * Turns automatic zoom, if set up with {@link Builder#setAutoZoom}, on or off, e.g. off when
+     * the user zooms by hand.  Zoom is left as it is.  Safe to call from any thread.
+     */
+    public void setAutoZoomEnabled(boolean autoZoom) {
+        mAutoZoom = autoZoom && mAutoZoomController != null;
+    }
+
+    public boolean isAutoZoomEnabled() {
+        return mAutoZoom;
+    }
+
+    /**
+     * Sets who to tell when scanning is scaled back or restored for heat, or null for no one.
+     * Must be called on the main thread.
+     */
+    public void setThermalListener(ThermalListener listener) {
+        mThermalListener = listener;
+    }
+
+    /**
+     * Sets who to tell when automatic torch control switches the torch, or null for no one.  Must
+     * be called on the main thread.
+     */
+    public void setAutoTorchListener(AutoTorchListener listener) {
+        mAutoTorchListener = listener;
+    }
+
+    /**
+     * Restricts detection to a region of the preview, given in upright frame coordinates (the
+     * coordinate space of detection results).  Pass null to detect on the full frame.  Has no
+     * effect unless a region mapper was set on the builder.
+     */
+    public void setScanRegion(@Nullable Rect region) {
+        mScanRegion = region != null ? new Rect(region) : null;
+        if (mFocusOnScanRegion) {
+            boolean applied = setFocusArea(region);
+            if (mStartupTrace != null) {
+                mStartupTrace.setFocusAreas(applied);
+            }
+        }
+    }
+
+    /**
+     * Focuses and meters on a region of the preview, given in upright frame coordinates like the
+     * scan region, as far as the camera supports focus and metering areas.  Pass null to go back
+     * to the camera's default areas.  Only has an effect while the camera is running.
+     *
+     * @return true if the camera now focuses or meters on the region
+     */
+    public boolean setFocusArea(@Nullable Rect region) {
+        synchronized (mCameraLock) {
+            if (mFrameSize == null || (mCamera == null && mCamera2Session == null)) {
+                return false;
+            }
+            Rect area = null;
+            if (region != null) {
+                area = new Rect();
+                if (!FocusAreas.toCameraArea(region, mFrameSize.getWidth(), mFrameSize.getHeight(),
+                        mRotation, area)) {
+                    area = null;
+                }
+            }
+
+            if (mCamera2Session != null) {
+                return mCamera2Session.setFocusArea(area) && area != null;
+            }
+
+            Camera.Parameters parameters = mCamera.getParameters();
+            List<Camera.Area> areas = area != null
+                    ? Collections.singletonList(new Camera.Area(area, 1000)) : null;
+            boolean supported = false;
+            if (parameters.getMaxNumFocusAreas() > 0) {
+                parameters.setFocusAreas(areas);
+                supported = true;
+            }
+            if (parameters.getMaxNumMeteringAreas() > 0) {
+                parameters.setMeteringAreas(areas);
+                supported = true;
+            }
+            if (!supported) {
+                return false;
+            }
+            try {
+                mCamera.setParameters(parameters);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Could not set focus areas", e);
+                return false;
+            }
+            return area != null;
+        }
+    }
+
+    /**
+     * Triggers a new focus scan, after which a continuous focus mode carries on scanning.
+     */
+    private void refocus() {
+        synchronized (mCameraLock) {
+            if (mCamera2Session != null) {
+                mCamera2Session.refocus();
+                return;
+            }
+            if (mCamera == null) {
+                return;
+            }
+            final boolean continuous = Camera.Parameters.FOCUS_MODE_CONTINUOUS_PICTURE.equals(mFocusMode)
+                    || Camera.Parameters.FOCUS_MODE_CONTINUOUS_VIDEO.equals(mFocusMode);
+            if (!continuous && !Camera.Parameters.FOCUS_MODE_AUTO.equals(mFocusMode)
+                    && !Camera.Parameters.FOCUS_MODE_MACRO.equals(mFocusMode)) {
+                return;
+            }
+            try {
+                mCamera.cancelAutoFocus();
+                mCamera.autoFocus(new Camera.AutoFocusCallback() {
+                    @Override
+                    public void onAutoFocus(boolean success, Camera camera) {
+                        // Without this a continuous mode stays locked at the new focus.
+                        if (continuous) {
+                            camera.cancelAutoFocus();
+                        }
+                    }
+                });
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Could not refocus", e);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of camera frames that were replaced by a newer frame before detection
+     * could start on them.
+     */
+    public long getDroppedFrameCount() {
+        return mFrameProcessor.getDroppedFrameCount();
+    }
+
+    /**
+     * Returns the number of camera frames that the detection rate governor sent back to the
+     * camera without detection.
+     */
+    public long getThrottledFrameCount() {
+        return mFrameProcessor.getThrottledFrameCount();
+    }
+
+    /**
+     * Returns the current target detection rate in frames per second.  Without a detection rate
+     * governor this is the requested camera frame rate.
+     */
+    public float getDetectionRate() {
+        return mRateGovernor != null ? mRateGovernor.getRate() : mRequestedFps;
+    }
+
+    /**
+     * Returns, for each detection worker, the fraction of time spent in detection since the camera
+     * source was last started.  Empty when results are delivered through the detector.
+     */
+    public float[] getDetectionWorkerUtilization() {
+        return mFrameProcessor.getWorkerUtilization();
+    }
 
-                    } else {
-                        mCamera.setPreviewDisplay(null);
-                    }
-                } catch (Exception e) {
-                }
-                mCamera.release();
-                mCamera = null;
-            }
-        }
+    /**
+     * Returns the number of times the camera was left without a free preview buffer since the
+     * camera was last opened.
+     */
+    public long getFramePoolExhaustedCount() {
+        FramePool pool = mFramePool;
+        return pool != null ? pool.getExhaustedCount() : 0;
+    }
+
+    /**
+     * Returns the average time, in microseconds, that preview buffers were held before being
+     * returned to the camera, since the camera was last opened.
+     */
+    public long getAverageFrameReturnMicros() {
+        FramePool pool = mFramePool;
+        return pool != null ? pool.getAverageReturnMicros() : 0;
+    }
+
+    /**
+     * Returns the longest time, in microseconds, that a preview buffer was held before being
+     * returned to the camera, since the camera was last opened.
+     */
+    public long getMaxFrameReturnMicros() {
+        FramePool pool = mFramePool;
+        return pool != null ? pool.getMaxReturnMicros() : 0;
     }
 
     /**
@@ -388,6 +1091,14 @@ public class CameraSource {
         return mPreviewSize;
     }
 
+    /**
+     * Returns the size of the frames handed to the detector, which detection results refer to.
+     * This is the preview size unless the camera2 API is in use.
+     */
+    public Size getFrameSize() {
+        return mFrameSize;
+    }
+
     /**
      * Returns the selected camera; one of {@link #CAMERA_FACING_BACK} or
      * {@link #CAMERA_FACING_FRONT}.
@@ -396,8 +1107,23 @@ public class CameraSource {
         return mFacing;
     }
 
+    /**
+     * Returns how far frames are rotated from upright, clockwise in degrees, once the camera has
+     * been started.
+     */
+    public int getRotationDegrees() {
+        return mRotation * 90;
+    }
+
+    /**
+     * Zooms by the given scale and returns the new zoom index, or with the camera2 API the new
+     * zoom ratio in hundredths.
+     */
     public int doZoom(float scale) {
         synchronized (mCameraLock) {
+            if (mCamera2Session != null) {
+                return mCamera2Session.zoom(scale);
+            }
             if (mCamera == null) {
                 return 0;
             }
@@ -432,7 +1158,7 @@ public class CameraSource {
      * Initiates taking a picture, which happens asynchronously.  The camera source should have been
      * activated previously with {@link #start()} or {@link #start(SurfaceHolder)}.  The camera
      * preview is suspended while the picture is being taken, but will resume once picture taking is
-     * done.
+     * done.  Not supported with the camera2 API.
      *
      * @param shutter the callback for image capture moment, or null
      * @param jpeg    the callback for JPEG image data, or null
@@ -478,6 +1204,13 @@ public class CameraSource {
      */
     public boolean setFocusMode(@FocusMode String mode) {
         synchronized (mCameraLock) {
+            if (mCamera2Session != null) {
+                if (mCamera2Session.setFocusMode(mode)) {
+                    mFocusMode = mode;
+                    return true;
+                }
+                return false;
+            }
             if (mCamera != null && mode != null) {
                 Camera.Parameters parameters = mCamera.getParameters();
                 if (parameters.getSupportedFocusModes().contains(mode)) {
@@ -518,9 +1251,17 @@ public class CameraSource {
      */
     public boolean setFlashMode(@FlashMode String mode) {
         synchronized (mCameraLock) {
+            if (mCamera2Session != null) {
+                if (mCamera2Session.setFlashMode(mode)) {
+                    mFlashMode = mode;
+                    return true;
+                }
+                return false;
+            }
             if (mCamera != null && mode != null) {
                 Camera.Parameters parameters = mCamera.getParameters();
-                if (parameters.getSupportedFlashModes().contains(mode)) {
+                List<String> flashModes = parameters.getSupportedFlashModes();
+                if (flashModes != null && flashModes.contains(mode)) {
                     parameters.setFlashMode(mode);
                     mCamera.setParameters(parameters);
                     mFlashMode = mode;
@@ -552,6 +1293,10 @@ public class CameraSource {
      */
     public void autoFocus(@Nullable AutoFocusCallback cb) {
         synchronized (mCameraLock) {
+            if (mCamera2Session != null) {
+                mCamera2Session.autoFocus(cb);
+                return;
+            }
             if (mCamera != null) {
                 CameraAutoFocusCallback autoFocusCallback = null;
                 if (cb != null) {
@@ -573,6 +1318,10 @@ public class CameraSource {
      */
     public void cancelAutoFocus() {
         synchronized (mCameraLock) {
+            if (mCamera2Session != null) {
+                mCamera2Session.cancelAutoFocus();
+                return;
+            }
             if (mCamera != null) {
                 mCamera.cancelAutoFocus();
             }
@@ -592,6 +1341,9 @@ public class CameraSource {
         }
 
         synchronized (mCameraLock) {
+            if (mCamera2Session != null) {
+                mCamera2Session.setAutoFocusMoveCallback(cb);
+            }
             if (mCamera != null) {
                 CameraAutoFocusMoveCallback autoFocusMoveCallback = null;
                 if (cb != null) {
@@ -685,74 +1437,222 @@ public class CameraSource {
      */
     @SuppressLint("InlinedApi")
     private Camera createCamera() {
-        int requestedCameraId = getIdForRequestedCamera(mFacing);
+        StartupTrace.beginSection("createCamera");
+        try {
+            Camera camera = openAndConfigureCamera();
+            if (mStartupTrace != null) {
+                mStartupTrace.mark(StartupTrace.CAMERA_OPENED, SystemClock.elapsedRealtimeNanos());
+            }
+            return camera;
+        } finally {
+            StartupTrace.endSection();
+        }
+    }
+
+    /**
+     * Opens the camera and applies the user settings.  The camera settings resolved for this
+     * facing, preview size and frame rate are taken from the capability cache when it has them,
+     * and stored in it when it does not.
+     */
+    private Camera openAndConfigureCamera() {
+        CameraCapabilities capabilities = mCapabilityCache == null ? null
+                : mCapabilityCache.get(mFacing, mRequestedPreviewWidth, mRequestedPreviewHeight, mRequestedFps);
+        int requestedCameraId = capabilities != null
+                ? capabilities.cameraId : getIdForRequestedCamera(mFacing);
         if (requestedCameraId == -1) {
             throw new RuntimeException("Could not find requested camera.");
         }
-        Camera camera = Camera.open(requestedCameraId);
+        Camera camera = mOpenedCamera != null ? mOpenedCamera : Camera.open(requestedCameraId);
+        mOpenedCamera = null;
+
+        if (capabilities != null) {
+            String focusMode = mFocusMode;
+            String flashMode = mFlashMode;
+            try {
+                applyParameters(camera, capabilities);
+            } catch (RuntimeException e) {
+                // The cached settings no longer suit the camera, so resolve them again.
+                mCapabilityCache.remove(mFacing, mRequestedPreviewWidth, mRequestedPreviewHeight, mRequestedFps);
+                capabilities = null;
+                mFocusMode = focusMode;
+                mFlashMode = flashMode;
+            }
+        }
+        if (capabilities == null) {
+            capabilities = resolveCapabilities(camera, requestedCameraId);
+            applyParameters(camera, capabilities);
+            if (mCapabilityCache != null) {
+                mCapabilityCache.put(mFacing, mRequestedPreviewWidth, mRequestedPreviewHeight,
+                        mRequestedFps, capabilities);
+            }
+        }
+
+        // By default three frame buffers plus one per detection worker are used with the camera:
+        //
+        //   one for each frame that is currently being executed upon in doing detection
+        //   one for the next pending frame to process immediately upon completing detection
+        //   two for the frames that the camera uses to populate future preview images
+        mFramePool = createFramePool(mFrameSize);
+        camera.setPreviewCallbackWithBuffer(new CameraPreviewCallback(mFramePool));
+        for (byte[] buffer : mFramePool.queueAll()) {
+            camera.addCallbackBuffer(buffer);
+        }
+
+        return camera;
+    }
 
+    /**
+     * Works out the camera settings for the requested preview size and frame rate by walking the
+     * camera's supported sizes, fps ranges and modes.
+     *
+     * @throws RuntimeException if there is no suitable preview size or frame rate
+     */
+    private CameraCapabilities resolveCapabilities(Camera camera, int cameraId) {
         SizePair sizePair = selectSizePair(camera, mRequestedPreviewWidth, mRequestedPreviewHeight);
         if (sizePair == null) {
             throw new RuntimeException("Could not find suitable preview size.");
         }
         Size pictureSize = sizePair.pictureSize();
-        mPreviewSize = sizePair.previewSize();
 
         int[] previewFpsRange = selectPreviewFpsRange(camera, mRequestedFps);
         if (previewFpsRange == null) {
             throw new RuntimeException("Could not find suitable preview frames per second range.");
         }
 
+        Camera.Parameters parameters = camera.getParameters();
+        return new CameraCapabilities(cameraId,
+                sizePair.previewSize().getWidth(), sizePair.previewSize().getHeight(),
+                pictureSize != null ? pictureSize.getWidth() : 0,
+                pictureSize != null ? pictureSize.getHeight() : 0,
+                previewFpsRange[Camera.Parameters.PREVIEW_FPS_MIN_INDEX],
+                previewFpsRange[Camera.Parameters.PREVIEW_FPS_MAX_INDEX],
+                parameters.getSupportedFocusModes(), parameters.getSupportedFlashModes());
+    }
+
+    /**
+     * Sets the preview size, frame rate, rotation and the user's focus and flash modes on the
+     * camera.
+     *
+     * @throws RuntimeException if the camera rejects the settings
+     */
+    private void applyParameters(Camera camera, CameraCapabilities capabilities) {
+        mPreviewSize = new Size(capabilities.previewWidth, capabilities.previewHeight);
+        mFrameSize = mPreviewSize;
+
         Camera.Parameters parameters = camera.getParameters();
 
-        if (pictureSize != null) {
-            parameters.setPictureSize(pictureSize.getWidth(), pictureSize.getHeight());
+        if (capabilities.pictureWidth != 0) {
+            parameters.setPictureSize(capabilities.pictureWidth, capabilities.pictureHeight);
         }
         parameters.setPreviewSize(mPreviewSize.getWidth(), mPreviewSize.getHeight());
-        parameters.setPreviewFpsRange(
-                previewFpsRange[Camera.Parameters.PREVIEW_FPS_MIN_INDEX],
-                previewFpsRange[Camera.Parameters.PREVIEW_FPS_MAX_INDEX]);
+        parameters.setPreviewFpsRange(capabilities.minFps, capabilities.maxFps);
         parameters.setPreviewFormat(ImageFormat.NV21);
 
-        setRotation(camera, parameters, requestedCameraId);
+        setRotation(camera, parameters, capabilities.cameraId);
 
-        if (mFocusMode != null) {
-            if (parameters.getSupportedFocusModes().contains(
-                    mFocusMode)) {
-                parameters.setFocusMode(mFocusMode);
-            } else {
-            }
+        if (mFocusMode != null && capabilities.focusModes.contains(mFocusMode)) {
+            parameters.setFocusMode(mFocusMode);
         }
 
         // setting mFocusMode to the one set in the params
         mFocusMode = parameters.getFocusMode();
 
-        if (mFlashMode != null) {
-            if (parameters.getSupportedFlashModes() != null) {
-                if (parameters.getSupportedFlashModes().contains(
-                        mFlashMode)) {
-                    parameters.setFlashMode(mFlashMode);
-                }
-            }
+        if (mFlashMode != null && capabilities.flashModes.contains(mFlashMode)) {
+            parameters.setFlashMode(mFlashMode);
         }
 
         // setting mFlashMode to the one set in the params
         mFlashMode = parameters.getFlashMode();
 
         camera.setParameters(parameters);
+    }
 
-        // Four frame buffers are needed for working with the camera:
-        //
-        //   one for the frame that is currently being executed upon in doing detection
-        //   one for the next pending frame to process immediately upon completing detection
-        //   two for the frames that the camera uses to populate future preview images
-        camera.setPreviewCallbackWithBuffer(new CameraPreviewCallback());
-        camera.addCallbackBuffer(createPreviewBuffer(mPreviewSize));
-        camera.addCallbackBuffer(createPreviewBuffer(mPreviewSize));
-        camera.addCallbackBuffer(createPreviewBuffer(mPreviewSize));
-        camera.addCallbackBuffer(createPreviewBuffer(mPreviewSize));
+    /**
+     * Releases a camera set with {@link Builder#setOpenedCamera} that will not be used, as the
+     * camera2 API opens its own.
+     */
+    private void releaseOpenedCamera() {
+        if (mOpenedCamera != null) {
+            mOpenedCamera.release();
+            mOpenedCamera = null;
+        }
+    }
 
-        return camera;
+    private boolean useCamera2() {
+        return mUseCamera2 && Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP;
+    }
+
+    /**
+     * Opens the camera through the camera2 API and starts streaming frames to the processing
+     * thread.  The preview goes to the surface holder if there is one, otherwise to the surface
+     * texture, or to a dummy texture without either.
+     *
+     * @throws IOException if the camera could not be started
+     */
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private void startCamera2(@Nullable SurfaceHolder surfaceHolder,
+                              @Nullable SurfaceTexture surfaceTexture) throws IOException {
+        Camera2Session session = new Camera2Session(mContext, mFacing,
+                mRequestedPreviewWidth, mRequestedPreviewHeight,
+                mRequestedAnalysisWidth, mRequestedAnalysisHeight,
+                mRequestedFps, getDisplayRotationDegrees());
+        mPreviewSize = session.getPreviewSize();
+        mFrameSize = session.getAnalysisSize();
+        mRotation = session.getRotation();
+
+        Surface previewSurface;
+        if (surfaceHolder != null) {
+            surfaceHolder.setFixedSize(mPreviewSize.getWidth(), mPreviewSize.getHeight());
+            previewSurface = surfaceHolder.getSurface();
+        } else {
+            if (surfaceTexture == null) {
+                mDummySurfaceTexture = new SurfaceTexture(DUMMY_TEXTURE_NAME);
+                surfaceTexture = mDummySurfaceTexture;
+            }
+            surfaceTexture.setDefaultBufferSize(mPreviewSize.getWidth(), mPreviewSize.getHeight());
+            previewSurface = new Surface(surfaceTexture);
+        }
+
+        mFramePool = createFramePool(mFrameSize);
+        session.start(previewSurface, mFramePool, new Camera2Session.FrameListener() {
+            @Override
+            public void onFrame(FramePool pool, int frameIndex) {
+                mFrameProcessor.setNextFrame(pool, frameIndex);
+            }
+
+            @Override
+            public void onFrameSkipped() {
+                mFrameProcessor.onFrameSkipped();
+            }
+        }, mFocusMode, mFlashMode);
+        mCamera2Session = session;
+        if (mStartupTrace != null) {
+            mStartupTrace.mark(StartupTrace.CAMERA_OPENED, SystemClock.elapsedRealtimeNanos());
+        }
+    }
+
+    private void startProcessing() {
+        if (mRefocusScheduler != null) {
+            mRefocusScheduler.reset(SystemClock.elapsedRealtimeNanos());
+        }
+        mAutoTorchController.reset();
+        if (mAutoZoomController != null) {
+            mAutoZoomController.reset(SystemClock.elapsedRealtimeNanos());
+        }
+        mProcessingThread = new Thread(mFrameProcessor);
+        mFrameProcessor.setActive(true);
+        mProcessingThread.start();
+    }
+
+    /**
+     * Puts a frame buffer back in its pool and, with the camera1 API, back in the camera queue.
+     */
+    private void returnFrame(FramePool pool, int frameIndex) {
+        byte[] buffer = pool.release(frameIndex);
+        Camera camera = mCamera;
+        if (camera != null && pool == mFramePool) {
+            camera.addCallbackBuffer(buffer);
+        }
     }
 
     /**
@@ -882,6 +1782,28 @@ public class CameraSource {
     }
 
     private void setRotation(Camera camera, Camera.Parameters parameters, int cameraId) {
+        int degrees = getDisplayRotationDegrees();
+
+        CameraInfo cameraInfo = new CameraInfo();
+        Camera.getCameraInfo(cameraId, cameraInfo);
+
+        int angle;
+        int displayAngle;
+        if (cameraInfo.facing == Camera.CameraInfo.CAMERA_FACING_FRONT) {
+            angle = (cameraInfo.orientation + degrees) % 360;
+            displayAngle = (360 - angle) % 360; // compensate for it being mirrored
+        } else {  // back-facing
+            angle = (cameraInfo.orientation - degrees + 360) % 360;
+            displayAngle = angle;
+        }
+
+        mRotation = angle / 90;
+
+        camera.setDisplayOrientation(displayAngle);
+        parameters.setRotation(angle);
+    }
+
+    private int getDisplayRotationDegrees() {
         WindowManager windowManager =
                 (WindowManager) mContext.getSystemService(Context.WINDOW_SERVICE);
         int degrees = 0;
@@ -902,45 +1824,27 @@ public class CameraSource {
             default:
 
         }
-
-        CameraInfo cameraInfo = new CameraInfo();
-        Camera.getCameraInfo(cameraId, cameraInfo);
-
-        int angle;
-        int displayAngle;
-        if (cameraInfo.facing == Camera.CameraInfo.CAMERA_FACING_FRONT) {
-            angle = (cameraInfo.orientation + degrees) % 360;
-            displayAngle = (360 - angle) % 360; // compensate for it being mirrored
-        } else {  // back-facing
-            angle = (cameraInfo.orientation - degrees + 360) % 360;
-            displayAngle = angle;
-        }
-
-        mRotation = angle / 90;
-
-        camera.setDisplayOrientation(displayAngle);
-        parameters.setRotation(angle);
+        return degrees;
     }
 
-    private byte[] createPreviewBuffer(Size previewSize) {
+    private FramePool createFramePool(Size previewSize) {
         int bitsPerPixel = ImageFormat.getBitsPerPixel(ImageFormat.NV21);
         long sizeInBits = previewSize.getHeight() * previewSize.getWidth() * bitsPerPixel;
         int bufferSize = (int) Math.ceil(sizeInBits / 8.0d) + 1;
 
-        byte[] byteArray = new byte[bufferSize];
-        ByteBuffer buffer = ByteBuffer.wrap(byteArray);
-        if (!buffer.hasArray() || (buffer.array() != byteArray)) {
-            throw new IllegalStateException("Failed to create valid buffer for camera source.");
-        }
-
-        mBytesToByteBuffer.put(byteArray, buffer);
-        return byteArray;
+        return new FramePool(mFramePoolDepth, bufferSize);
     }
 
     private class CameraPreviewCallback implements Camera.PreviewCallback {
+        private final FramePool mPool;
+
+        CameraPreviewCallback(FramePool pool) {
+            mPool = pool;
+        }
+
         @Override
         public void onPreviewFrame(byte[] data, Camera camera) {
-            mFrameProcessor.setNextFrame(data, camera);
+            mFrameProcessor.setNextFrame(mPool, data, camera);
         }
     }
 
@@ -948,22 +1852,82 @@ public class CameraSource {
         private Detector<?> mDetector;
         private long mStartTimeMillis = SystemClock.elapsedRealtime();
 
-        // This lock guards all of the member variables below.
-        private final Object mLock = new Object();
-        private boolean mActive = true;
+        // Null when results are delivered through the detector's own processor.
+        private DetectionWorkerPool mWorkerPool;
 
-        // These pending variables hold the state associated with the new frame awaiting processing.
-        private long mPendingTimeMillis;
-        private int mPendingFrameId = 0;
-        private ByteBuffer mPendingFrameData;
+        // Holds the newest frame awaiting processing.  The preview callback swaps frames in
+        // without taking a lock, so it never waits on the processing thread.
+        private final FrameExchanger<FramePool.Entry> mPendingFrame = new FrameExchanger<>();
+
+        // Only written from the preview callback thread.
+        private int mNextFrameId = 0;
+        private volatile long mDroppedFrames;
+        // Only written from the processing thread.
+        private volatile long mThrottledFrames;
 
         FrameProcessingRunnable(Detector<?> detector) {
             mDetector = detector;
+
+            if (mProcessor != null) {
+                Detector<?>[] detectors = new Detector<?>[mDetectionWorkers];
+                detectors[0] = detector;
+                for (int i = 1; i < detectors.length; ++i) {
+                    detectors[i] = mDetectorFactory.create();
+                }
+                mWorkerPool = new DetectionWorkerPool(detectors, mProcessor,
+                        mRegionMapper != null ? mRegionMapper : mThermalMapper,
+                        new DetectionWorkerPool.FrameReleaseCallback() {
+                            @Override
+                            public void onFrameReleased(int frameIndex) {
+                                returnFrame(mFramePool, frameIndex);
+                            }
+                        },
+                        mRateGovernor == null && mStats == null && mRefocusScheduler == null
+                                && mAutoZoomController == null && mStartupTrace == null ? null
+                                : new DetectionWorkerPool.DetectionListener() {
+                            @Override
+                            public void onFrameDetected(long captureNanos, long detectedNanos,
+                                                        long detectNanos, SparseArray<?> items) {
+                                int itemCount = items != null ? items.size() : 0;
+                                if (mRateGovernor != null) {
+                                    mRateGovernor.onFrameDetected(detectNanos, itemCount > 0);
+                                }
+                                if (mStats != null) {
+                                    mStats.recordDetected(detectNanos, itemCount > 0);
+                                }
+                                if (mStartupTrace != null && itemCount > 0
+                                        && mStartupTrace.mark(StartupTrace.FIRST_DECODE, detectedNanos)) {
+                                    // For comparing time to first decode with and without
+                                    // focus areas across runs.
+                                    Log.i(TAG, "First decode "
+                                            + mStartupTrace.getStageMicros(StartupTrace.FIRST_DECODE) / 1000
+                                            + " ms after the scan call, focus areas "
+                                            + (mStartupTrace.hasFocusAreas() ? "on" : "off"));
+                                }
+                                if (mRefocusScheduler != null
+                                        && mRefocusScheduler.onFrameDetected(detectedNanos, itemCount > 0)) {
+                                    mMainHandler.post(mRefocus);
+                                }
+                                if (mAutoZoom) {
+                                    float ratio = mAutoZoomController.onFrameDetected(detectedNanos,
+                                            itemCount, largestItemWidth(items));
+                                    if (ratio != AutoZoomController.NO_CHANGE) {
+                                        mPendingZoomRatio = ratio;
+                                        mMainHandler.post(mApplyZoom);
+                                    }
+                                }
+                            }
+                        });
+            }
         }
 
         @SuppressLint("Assert")
         void release() {
             assert (mProcessingThread == null || mProcessingThread.getState() == State.TERMINATED);
+            if (mWorkerPool != null) {
+                mWorkerPool.release();
+                mWorkerPool = null;
+            }
             if (mDetector != null) {
                 mDetector.release();
                 mDetector = null;
@@ -971,73 +1935,356 @@ public class CameraSource {
         }
 
         void setActive(boolean active) {
-            synchronized (mLock) {
-                mActive = active;
-                mLock.notifyAll();
+            // A pending frame belongs to a camera that is stopped or being stopped, or arrived
+            // before processing started.  Its buffer goes back the way a consumed frame's does,
+            // or the pool would lose it for good.
+            FramePool.Entry pending = mPendingFrame.poll();
+            if (pending != null) {
+                returnFrame(pending.pool, pending.index);
+            }
+            mPendingFrame.setOpen(active);
+            if (active && mRateGovernor != null) {
+                mRateGovernor.reset();
+            }
+            if (mWorkerPool != null) {
+                mWorkerPool.setActive(active);
             }
         }
 
-        void setNextFrame(byte[] data, Camera camera) {
-            synchronized (mLock) {
-                if (mPendingFrameData != null) {
-                    camera.addCallbackBuffer(mPendingFrameData.array());
-                    mPendingFrameData = null;
-                }
+        /**
+         * Waits for frames still being detected by pool workers, so that their buffers are back
+         * with the camera before it is released.
+         */
+        void awaitInFlight() {
+            if (mWorkerPool != null) {
+                mWorkerPool.awaitInFlight();
+            }
+        }
 
-                if (!mBytesToByteBuffer.containsKey(data)) {
-                    return;
-                }
+        long getDroppedFrameCount() {
+            return mDroppedFrames;
+        }
+
+        long getThrottledFrameCount() {
+            return mThrottledFrames;
+        }
+
+        float[] getWorkerUtilization() {
+            DetectionWorkerPool pool = mWorkerPool;
+            return pool != null ? pool.getUtilization() : new float[0];
+        }
+
+        void setNextFrame(FramePool pool, byte[] data, Camera camera) {
+            int frameIndex = pool.acquire(data);
+            if (frameIndex == FramePool.NO_FRAME) {
+                return;
+            }
+            setNextFrame(pool, frameIndex);
+        }
+
+        /**
+         * Counts a camera frame that arrived while every buffer was in use.
+         */
+        void onFrameSkipped() {
+            mDroppedFrames++;
+            if (mStats != null) {
+                mStats.recordDropped();
+            }
+        }
 
-                mPendingTimeMillis = SystemClock.elapsedRealtime() - mStartTimeMillis;
-                mPendingFrameId++;
-                mPendingFrameData = mBytesToByteBuffer.get(data);
+        void setNextFrame(FramePool pool, int frameIndex) {
+            FramePool.Entry entry = pool.getEntry(frameIndex);
+            entry.captureNanos = SystemClock.elapsedRealtimeNanos();
+            entry.timestampMillis = SystemClock.elapsedRealtime() - mStartTimeMillis;
+            entry.frameId = ++mNextFrameId;
+            if (mStartupTrace != null && !mStartupTrace.isMarked(StartupTrace.FIRST_FRAME)) {
+                mStartupTrace.mark(StartupTrace.FIRST_FRAME, entry.captureNanos);
+            }
+            if (mDetectionPaused) {
+                returnFrame(pool, frameIndex);
+                return;
+            }
 
-                mLock.notifyAll();
+            // The newest frame wins; a frame that was still waiting goes back to the camera.
+            FramePool.Entry replaced = mPendingFrame.offer(entry);
+            if (replaced != null) {
+                returnFrame(replaced.pool, replaced.index);
+                mDroppedFrames++;
+                if (mStats != null) {
+                    mStats.recordDropped();
+                }
             }
         }
 
         @Override
         public void run() {
             Frame outputFrame;
+            FramePool pool;
+            int frameIndex;
             ByteBuffer data;
+            int frameId;
+            long timestampMillis;
+            long captureNanos;
+            FramePool.Entry entry;
+            Rect sensorRegion = new Rect();
+            Point regionOffset = new Point();
 
             while (true) {
-                synchronized (mLock) {
-                    while (mActive && (mPendingFrameData == null)) {
-                        try {
-                            mLock.wait();
-                        } catch (InterruptedException e) {
-                            return;
-                        }
+                // Claim a free worker before taking a frame, so that frames arriving while every
+                // worker is busy are replaced by newer ones rather than queued.
+                DetectionWorkerPool.Worker worker = null;
+                if (mWorkerPool != null) {
+                    worker = mWorkerPool.awaitIdleWorker();
+                    if (worker == null) {
+                        return;
                     }
+                }
 
-                    if (!mActive) {
-                        return;
+                entry = mPendingFrame.take();
+                if (entry == null) {
+                    if (worker != null) {
+                        mWorkerPool.recycle(worker);
                     }
+                    return;
+                }
 
-                    outputFrame = new Frame.Builder()
-                            .setImageData(mPendingFrameData, mPreviewSize.getWidth(),
-                                    mPreviewSize.getHeight(), ImageFormat.NV21)
-                            .setId(mPendingFrameId)
-                            .setTimestampMillis(mPendingTimeMillis)
-                            .setRotation(mRotation)
-                            .build();
+                pool = entry.pool;
+                frameIndex = entry.index;
+                captureNanos = entry.captureNanos;
 
-                    data = mPendingFrameData;
-                    mPendingFrameData = null;
+                long dequeuedNanos = SystemClock.elapsedRealtimeNanos();
+                if (mStats != null) {
+                    mStats.recordDequeued(captureNanos, dequeuedNanos);
                 }
 
+                if (mThermalTiers != null) {
+                    applyThermalTier(mThermalTiers.update(dequeuedNanos));
+                }
+
+                if (mAutoTorch) {
+                    // Measured before the rate governor, so that the torch follows the scene while
+                    // detection runs at its idle rate.
+                    measureBrightness(pool.getBuffer(frameIndex).array(), dequeuedNanos);
+                }
+
+                // Too soon after the last detection at the governed rate: skip this frame.
+                if (mRateGovernor != null && !mRateGovernor.tryDispatch(dequeuedNanos)) {
+                    returnFrame(pool, frameIndex);
+                    mThrottledFrames++;
+                    if (mStats != null) {
+                        mStats.recordDropped();
+                    }
+                    if (worker != null) {
+                        mWorkerPool.recycle(worker);
+                    }
+                    continue;
+                }
+
+                frameId = entry.frameId;
+                timestampMillis = entry.timestampMillis;
+                data = pool.getBuffer(frameIndex);
+
+                final int width = mFrameSize.getWidth();
+                final int height = mFrameSize.getHeight();
+
+                if (worker != null) {
+                    // Crop to the scan region into the worker's own buffer, which lets the camera
+                    // buffer go back right away and leaves the detector only the region to search.
+                    Rect region = mScanRegion;
+                    boolean cropped = region != null && mRegionMapper != null
+                            && FrameRegion.toSensorRect(region, width, height, mRotation, sensorRegion);
+                    boolean halved = mHalveFrames;
+                    if (cropped || halved) {
+                        if (!cropped) {
+                            sensorRegion.set(0, 0, width, height);
+                        }
+                        int regionWidth = halved ? FrameRegion.halfSize(sensorRegion.width())
+                                : sensorRegion.width();
+                        int regionHeight = halved ? FrameRegion.halfSize(sensorRegion.height())
+                                : sensorRegion.height();
+                        byte[] regionBytes = worker.obtainRegionBytes(
+                                FrameRegion.bufferSize(regionWidth, regionHeight));
+                        if (halved) {
+                            FrameRegion.downscale(data.array(), width, sensorRegion, regionBytes);
+                        } else {
+                            FrameRegion.crop(data.array(), width, height, sensorRegion, regionBytes);
+                        }
+                        if (cropped) {
+                            FrameRegion.uprightOffset(sensorRegion, width, height, mRotation, regionOffset);
+                        } else {
+                            regionOffset.set(0, 0);
+                        }
+                        worker.setRegionOffset(regionOffset.x, regionOffset.y);
+                        worker.setRegionScale(halved ? 2 : 1);
+                        outputFrame = buildFrame(worker.getRegionBuffer(), regionWidth,
+                                regionHeight, frameId, timestampMillis);
+                        returnFrame(pool, frameIndex);
+                        frameIndex = FramePool.NO_FRAME;
+                    } else {
+                        worker.setRegionOffset(0, 0);
+                        worker.setRegionScale(1);
+                        outputFrame = buildFrame(data, width, height, frameId, timestampMillis);
+                    }
+                    mWorkerPool.dispatch(worker, outputFrame, frameIndex, captureNanos);
+                    continue;
+                }
+
+                outputFrame = buildFrame(data, width, height, frameId, timestampMillis);
 
                 try {
                     mDetector.receiveFrame(outputFrame);
                 } catch (Throwable t) {
                 } finally {
-                    mCamera.addCallbackBuffer(data.array());
+                    returnFrame(pool, frameIndex);
+                }
+                if (mStats != null) {
+                    // Includes the detector's processor, which runs inside receiveFrame.
+                    mStats.getDetect().recordNanos(SystemClock.elapsedRealtimeNanos() - dequeuedNanos);
                 }
             }
         }
     }
 
+    /**
+     * Applies a thermal tier on the processing thread, if it is not applied already, and reports
+     * the change.
+     */
+    private void applyThermalTier(final int tier) {
+        if (tier == mAppliedThermalTier) {
+            return;
+        }
+        mAppliedThermalTier = tier;
+        DetectionWorkerPool workerPool = mFrameProcessor.mWorkerPool;
+        if (workerPool != null) {
+            workerPool.setWorkerLimit(tier >= ThermalTierController.TIER_FEWER_WORKERS
+                    ? 1 : mDetectionWorkers);
+        }
+        if (mRateGovernor != null) {
+            mRateGovernor.setRateCap(tier >= ThermalTierController.TIER_LOWER_RATE
+                    ? mRateGovernor.getMinRate() : Float.MAX_VALUE);
+        }
+        // Halving needs a mapper to scale the results back to full frame coordinates.
+        mHalveFrames = tier >= ThermalTierController.TIER_LOWER_RESOLUTION
+                && (mRegionMapper != null || mThermalMapper != null);
+        if (mStats != null) {
+            mStats.recordThermalTier(tier);
+        }
+        Log.i(TAG, "Thermal tier " + tier);
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (mThermalListener != null) {
+                    mThermalListener.onThermalTierChanged(tier,
+                            tier < ThermalTierController.TIER_NO_ANIMATION);
+                }
+            }
+        });
+    }
+
+    /**
+     * Measures the brightness of a frame on the processing thread and posts any torch switch to
+     * the main thread, as switching takes the camera lock, which stop() holds while waiting for
+     * this thread.
+     */
+    private void measureBrightness(byte[] data, long nowNanos) {
+        int luma = AutoTorchController.meanLuma(data, mFrameSize.getWidth(), mFrameSize.getHeight(),
+                LUMA_SAMPLE_STEP);
+        boolean torchOn = Camera.Parameters.FLASH_MODE_TORCH.equals(mFlashMode);
+        switch (mAutoTorchController.onFrame(nowNanos, luma, torchOn)) {
+            case AutoTorchController.TURN_ON:
+                mMainHandler.post(mAutoTorchOn);
+                break;
+            case AutoTorchController.TURN_OFF:
+                mMainHandler.post(mAutoTorchOff);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Returns the width of the widest item as a fraction of the upright frame width, or 0.
+     */
+    private float largestItemWidth(SparseArray<?> items) {
+        if (items == null || mItemMeasurer == null) {
+            return 0;
+        }
+        int largest = 0;
+        for (int i = 0; i < items.size(); ++i) {
+            largest = Math.max(largest, mItemMeasurer.getWidth(items.valueAt(i)));
+        }
+        if (mHalveFrames) {
+            // Measured before the results are scaled back up.
+            largest *= 2;
+        }
+        // Odd rotations turn the frame sideways.
+        int uprightWidth = mRotation % 2 == 0 ? mFrameSize.getWidth() : mFrameSize.getHeight();
+        return (float) largest / uprightWidth;
+    }
+
+    /**
+     * Sets the zoom ratio, within what the camera supports.  Unlike {@link #doZoom(float)}, the
+     * ratio is absolute.
+     */
+    private void setZoomRatio(float ratio) {
+        synchronized (mCameraLock) {
+            if (mCamera2Session != null) {
+                mCamera2Session.setZoomRatio(ratio);
+                return;
+            }
+            if (mCamera == null) {
+                return;
+            }
+            Camera.Parameters parameters = mCamera.getParameters();
+            if (!parameters.isZoomSupported()) {
+                return;
+            }
+            // Ratios are in hundredths, in increasing order; take the largest not past the ratio.
+            List<Integer> ratios = parameters.getZoomRatios();
+            int target = Math.round(ratio * 100);
+            int zoom = 0;
+            while (zoom < parameters.getMaxZoom() && zoom + 1 < ratios.size()
+                    && ratios.get(zoom + 1) <= target) {
+                ++zoom;
+            }
+            if (zoom != parameters.getZoom()) {
+                parameters.setZoom(zoom);
+                mCamera.setParameters(parameters);
+            }
+        }
+    }
+
+    private void switchAutoTorch(boolean on) {
+        if (!mAutoTorch || (mCamera == null && mCamera2Session == null)) {
+            // Turned off, or the camera stopped, since the switch was posted.
+            return;
+        }
+        boolean switched;
+        try {
+            switched = setFlashMode(on ? Camera.Parameters.FLASH_MODE_TORCH
+                    : Camera.Parameters.FLASH_MODE_OFF);
+        } catch (RuntimeException e) {
+            switched = false;
+        }
+        if (!switched) {
+            Log.w(TAG, "Unable to switch the torch, automatic torch control turned off");
+            mAutoTorch = false;
+            return;
+        }
+        if (mAutoTorchListener != null) {
+            mAutoTorchListener.onAutoTorch(on);
+        }
+    }
+
+    private Frame buildFrame(ByteBuffer data, int width, int height, int id, long timestampMillis) {
+        return new Frame.Builder()
+                .setImageData(data, width, height, ImageFormat.NV21)
+                .setId(id)
+                .setTimestampMillis(timestampMillis)
+                .setRotation(mRotation)
+                .build();
+    }
+
     public Camera.Size getOptimalPreviewSize(List<Camera.Size> sizes, int w, int h) {
         final double ASPECT_TOLERANCE = 0.1;
         double targetRatio=(double)h / w;
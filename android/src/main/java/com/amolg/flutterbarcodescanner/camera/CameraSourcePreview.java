@@ -91,7 +91,9 @@ public class CameraSourcePreview extends ViewGroup {
         if (mStartRequested && mSurfaceAvailable) {
             mCameraSource.start(mSurfaceView.getHolder());
             if (mOverlay != null) {
-                Size size = mCameraSource.getPreviewSize();
+                // Detection results are in frame coordinates, which only differ from the preview
+                // in scale when the camera2 API is in use.
+                Size size = mCameraSource.getFrameSize();
                 int min = Math.min(size.getWidth(), size.getHeight());
                 int max = Math.max(size.getWidth(), size.getHeight());
                 if (isPortraitMode()) {
@@ -104,6 +106,17 @@ public class CameraSourcePreview extends ViewGroup {
                 mOverlay.clear();
             }
             mStartRequested = false;
+            updateScanRegion();
+        }
+    }
+
+    /**
+     * Restricts detection to the overlay's scan window, once both the overlay and the camera
+     * preview have a size.
+     */
+    private void updateScanRegion() {
+        if (mOverlay != null && mCameraSource != null) {
+            mCameraSource.setScanRegion(mOverlay.getScanWindowInPreview());
         }
     }
 
@@ -175,6 +188,7 @@ public class CameraSourcePreview extends ViewGroup {
         for (int i = 0; i < getChildCount(); ++i) {
             getChildAt(i).layout(0, 0, childWidth, childHeight);
         }
+        updateScanRegion();
 
         try {
             startIfReady();
@@ -0,0 +1,141 @@
+package com.amolg.flutterbarcodescanner.camera;
+
+/**
+ * Decides how often frames are handed to the detector.  The rate runs at its maximum while codes
+ * are being found, falls towards the minimum with every empty frame and drops to the idle rate
+ * once a run of empty frames reaches the idle threshold.  A detection jumps straight back to the
+ * maximum.  The rate is also capped by what the detection workers can sustain, measured as a
+ * moving average of detection time, so that slow devices are not asked to decode continuously.
+ * <p/>
+ * Times are passed in by the caller, in nanoseconds, so that the policy can be exercised without a
+ * camera.
+ */
+final class DetectionRateGovernor {
+    // Weight given to the newest sample in the moving averages.
+    private static final float SMOOTHING = 0.2f;
+    // Fraction of the detection workers' capacity the rate may use.
+    private static final float HEADROOM = 0.8f;
+    private static final long NANOS_PER_SECOND = 1000000000L;
+
+    private final float mMinRate;
+    private final float mMaxRate;
+    private final float mIdleRate;
+    private final int mIdleAfterEmptyFrames;
+    private final int mWorkers;
+
+    private float mAverageDetectNanos;
+    private float mSuccessRatio;
+    private int mEmptyFrames;
+    private float mRate;
+    private long mLastDispatchNanos;
+    private boolean mDispatched;
+    private float mRateCap = Float.MAX_VALUE;
+
+    DetectionRateGovernor(float minRate, float maxRate, float idleRate, int idleAfterEmptyFrames,
+                          int workers) {
+        if (idleRate <= 0 || minRate < idleRate || maxRate < minRate) {
+            throw new IllegalArgumentException("Invalid detection rates: min=" + minRate
+                    + " max=" + maxRate + " idle=" + idleRate);
+        }
+        if (idleAfterEmptyFrames <= 0) {
+            throw new IllegalArgumentException("Invalid idle frame count: " + idleAfterEmptyFrames);
+        }
+        mMinRate = minRate;
+        mMaxRate = maxRate;
+        mIdleRate = idleRate;
+        mIdleAfterEmptyFrames = idleAfterEmptyFrames;
+        mWorkers = workers;
+        reset();
+    }
+
+    /**
+     * Returns to the maximum rate and forgets past measurements, e.g. when the camera restarts.
+     */
+    synchronized void reset() {
+        mAverageDetectNanos = 0;
+        mSuccessRatio = 0;
+        mEmptyFrames = 0;
+        mRate = Math.min(mMaxRate, mRateCap);
+        mDispatched = false;
+    }
+
+    /**
+     * Returns true if a frame arriving now should be detected, and if so counts it as dispatched.
+     * Frames that are refused should go straight back to the camera.
+     */
+    synchronized boolean tryDispatch(long nowNanos) {
+        if (mDispatched && nowNanos - mLastDispatchNanos < (long) (NANOS_PER_SECOND / mRate)) {
+            return false;
+        }
+        mDispatched = true;
+        mLastDispatchNanos = nowNanos;
+        return true;
+    }
+
+    /**
+     * Records the outcome of one detection and updates the target rate.
+     *
+     * @param detectNanos time the detector spent on the frame
+     * @param detected    whether anything was found in the frame
+     */
+    synchronized void onFrameDetected(long detectNanos, boolean detected) {
+        mAverageDetectNanos = mAverageDetectNanos == 0 ? detectNanos
+                : mAverageDetectNanos + SMOOTHING * (detectNanos - mAverageDetectNanos);
+        mSuccessRatio += SMOOTHING * ((detected ? 1 : 0) - mSuccessRatio);
+
+        if (detected) {
+            mEmptyFrames = 0;
+        } else if (mEmptyFrames < mIdleAfterEmptyFrames) {
+            mEmptyFrames++;
+        }
+
+        float rate;
+        if (mEmptyFrames >= mIdleAfterEmptyFrames) {
+            rate = mIdleRate;
+        } else {
+            rate = mMaxRate - (mMaxRate - mMinRate) * mEmptyFrames / mIdleAfterEmptyFrames;
+            if (mAverageDetectNanos > 0) {
+                float sustainable = HEADROOM * mWorkers * NANOS_PER_SECOND / mAverageDetectNanos;
+                rate = Math.max(mMinRate, Math.min(rate, sustainable));
+            }
+        }
+        mRate = Math.min(rate, mRateCap);
+    }
+
+    /**
+     * Holds the rate at or below the given rate, e.g. while the device is hot, or lifts the cap
+     * when given {@link Float#MAX_VALUE}.
+     */
+    synchronized void setRateCap(float cap) {
+        mRateCap = cap;
+        mRate = Math.min(mRate, cap);
+    }
+
+    /**
+     * Returns the slowest rate the governor runs at while codes are being looked for.
+     */
+    float getMinRate() {
+        return mMinRate;
+    }
+
+    /**
+     * Returns the current target detection rate, in frames per second.
+     */
+    synchronized float getRate() {
+        return mRate;
+    }
+
+    /**
+     * Returns the moving average of detection time, in nanoseconds.
+     */
+    synchronized long getAverageDetectNanos() {
+        return (long) mAverageDetectNanos;
+    }
+
+    /**
+     * Returns the moving average fraction of detected frames that contained something.
+     */
+    synchronized float getSuccessRatio() {
+        return mSuccessRatio;
+    }
+}
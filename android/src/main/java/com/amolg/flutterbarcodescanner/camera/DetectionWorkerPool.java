@@ -0,0 +1,376 @@
+package com.amolg.flutterbarcodescanner.camera;
+
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.SparseArray;
+
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.Frame;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs several detector instances in parallel over consecutive camera frames.  Each worker owns
+ * its own detector, so frames are decoded concurrently, but detection results are handed to the
+ * processor strictly in frame id order so that trackers still observe frames in sequence.
+ * <p/>
+ * Results are delivered without holding the pool lock, so the processor and listener may call
+ * back into the pool, other than {@link #awaitInFlight()}.  Only one thread delivers at a time:
+ * a worker that finishes while another is delivering leaves its result for that thread to
+ * deliver next.
+ * <p/>
+ * With a single worker, frames are detected inline on the calling thread.
+ */
+class DetectionWorkerPool {
+    private static final String TAG = "DetectionWorkerPool";
+
+    /**
+     * Receives the frame pool index of a frame once a worker no longer needs its data, so that the
+     * buffer can be handed back to the camera.
+     */
+    interface FrameReleaseCallback {
+        void onFrameReleased(int frameIndex);
+    }
+
+    /**
+     * Told about every detected frame, in frame order, just before its results are delivered.
+     */
+    interface DetectionListener {
+        /**
+         * @param items the items found, or null if detection failed.
+         */
+        void onFrameDetected(long captureNanos, long detectedNanos, long detectNanos,
+                             SparseArray<?> items);
+    }
+
+    private final Worker[] mWorkers;
+    private final Detector.Processor mProcessor;
+    private final CameraSource.RegionResultMapper mRegionMapper;
+    private final FrameReleaseCallback mReleaseCallback;
+    private final DetectionListener mDetectionListener;
+    private final ExecutorService mExecutor;
+
+    // This lock guards all of the member variables below.
+    private final Object mLock = new Object();
+    private boolean mActive = true;
+    private final ArrayDeque<Worker> mIdleWorkers;
+    // Workers with a frame in flight, in the order the frames were dispatched.
+    private final ArrayDeque<Worker> mInFlight;
+    // Workers whose results are next to be delivered, in frame order.
+    private final ArrayDeque<Worker> mReady;
+    // The thread delivering results, or null.
+    private Thread mDeliveringThread;
+    // Most workers that may hold a frame at once.
+    private int mWorkerLimit;
+    private long mStartNanos = SystemClock.elapsedRealtimeNanos();
+
+    DetectionWorkerPool(Detector<?>[] detectors, Detector.Processor<?> processor,
+                        CameraSource.RegionResultMapper regionMapper,
+                        FrameReleaseCallback releaseCallback,
+                        DetectionListener detectionListener) {
+        mProcessor = processor;
+        mRegionMapper = regionMapper;
+        mReleaseCallback = releaseCallback;
+        mDetectionListener = detectionListener;
+        mWorkers = new Worker[detectors.length];
+        mIdleWorkers = new ArrayDeque<>(detectors.length);
+        mInFlight = new ArrayDeque<>(detectors.length);
+        mReady = new ArrayDeque<>(detectors.length);
+        for (int i = 0; i < detectors.length; ++i) {
+            mWorkers[i] = new Worker(detectors[i]);
+            mIdleWorkers.add(mWorkers[i]);
+        }
+        mWorkerLimit = detectors.length;
+        mExecutor = detectors.length > 1 ? Executors.newFixedThreadPool(detectors.length) : null;
+    }
+
+    int getWorkerCount() {
+        return mWorkers.length;
+    }
+
+    /**
+     * Limits how many workers may hold a frame at once, from one to the worker count, e.g. to
+     * use fewer cores while the device is hot.  Workers already holding a frame finish it.
+     */
+    void setWorkerLimit(int limit) {
+        synchronized (mLock) {
+            mWorkerLimit = Math.max(1, Math.min(limit, mWorkers.length));
+            mLock.notifyAll();
+        }
+    }
+
+    void setActive(boolean active) {
+        synchronized (mLock) {
+            mActive = active;
+            if (active) {
+                mStartNanos = SystemClock.elapsedRealtimeNanos();
+                for (Worker worker : mWorkers) {
+                    worker.mBusyNanos = 0;
+                    worker.mFramesProcessed = 0;
+                }
+            }
+            mLock.notifyAll();
+        }
+    }
+
+    /**
+     * Blocks until a worker is free to take the next frame.  Returns null if the pool has been
+     * deactivated or the calling thread was interrupted.
+     */
+    Worker awaitIdleWorker() {
+        synchronized (mLock) {
+            while (mActive && (mIdleWorkers.isEmpty()
+                    || mWorkers.length - mIdleWorkers.size() >= mWorkerLimit)) {
+                try {
+                    mLock.wait();
+                } catch (InterruptedException e) {
+                    return null;
+                }
+            }
+            return mActive ? mIdleWorkers.poll() : null;
+        }
+    }
+
+    /**
+     * Returns a worker obtained from {@link #awaitIdleWorker()} without giving it a frame.
+     */
+    void recycle(Worker worker) {
+        synchronized (mLock) {
+            mIdleWorkers.push(worker);
+            mLock.notifyAll();
+        }
+    }
+
+    /**
+     * Hands a frame to a worker obtained from {@link #awaitIdleWorker()}.  The frame pool buffer
+     * is released once detection is done; the index is {@link FramePool#NO_FRAME} if the frame
+     * was built from the worker's region buffer.
+     */
+    void dispatch(Worker worker, Frame frame, int frameIndex, long captureNanos) {
+        worker.mFrame = frame;
+        worker.mFrameIndex = frameIndex;
+        worker.mCaptureNanos = captureNanos;
+        worker.mDone = false;
+        synchronized (mLock) {
+            mInFlight.add(worker);
+        }
+
+        if (mExecutor == null) {
+            worker.run();
+        } else {
+            mExecutor.execute(worker);
+        }
+    }
+
+    /**
+     * Blocks until every dispatched frame has been detected and delivered.
+     *
+     * @throws IllegalStateException if called while delivering results, which would never end
+     */
+    void awaitInFlight() {
+        synchronized (mLock) {
+            if (mDeliveringThread == Thread.currentThread()) {
+                throw new IllegalStateException("Cannot wait for frames in flight while delivering");
+            }
+            while (!mInFlight.isEmpty() || !mReady.isEmpty() || mDeliveringThread != null) {
+                try {
+                    mLock.wait();
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the fraction of wall time each worker has spent in detection since the pool was
+     * last activated.
+     */
+    float[] getUtilization() {
+        synchronized (mLock) {
+            long elapsed = Math.max(1, SystemClock.elapsedRealtimeNanos() - mStartNanos);
+            float[] utilization = new float[mWorkers.length];
+            for (int i = 0; i < mWorkers.length; ++i) {
+                utilization[i] = (float) mWorkers[i].mBusyNanos / elapsed;
+            }
+            return utilization;
+        }
+    }
+
+    /**
+     * Returns the number of frames each worker has detected since the pool was last activated.
+     */
+    long[] getFramesProcessed() {
+        synchronized (mLock) {
+            long[] frames = new long[mWorkers.length];
+            for (int i = 0; i < mWorkers.length; ++i) {
+                frames[i] = mWorkers[i].mFramesProcessed;
+            }
+            return frames;
+        }
+    }
+
+    /**
+     * Releases the worker threads, the worker detectors and the processor.  The first detector is
+     * owned by the caller and is not released here.
+     */
+    void release() {
+        if (mExecutor != null) {
+            mExecutor.shutdown();
+        }
+        for (int i = 1; i < mWorkers.length; ++i) {
+            mWorkers[i].mDetector.release();
+        }
+        mProcessor.release();
+    }
+
+    private void onWorkerDone(Worker worker) {
+        synchronized (mLock) {
+            worker.mDone = true;
+            // Every leading result that is complete is ready, so that the processor sees frames in
+            // the same order they were dispatched, regardless of which worker finished first.
+            while (!mInFlight.isEmpty() && mInFlight.peek().mDone) {
+                mReady.add(mInFlight.poll());
+            }
+            if (mDeliveringThread != null || mReady.isEmpty()) {
+                // The delivering thread takes these results once it is done with its own.
+                mLock.notifyAll();
+                return;
+            }
+            mDeliveringThread = Thread.currentThread();
+        }
+
+        while (true) {
+            Worker head;
+            synchronized (mLock) {
+                head = mReady.poll();
+                if (head == null) {
+                    mDeliveringThread = null;
+                    mLock.notifyAll();
+                    return;
+                }
+            }
+            try {
+                deliver(head);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Could not deliver detection results", e);
+            }
+            synchronized (mLock) {
+                head.mFrame = null;
+                head.mResults = null;
+                mIdleWorkers.push(head);
+                mLock.notifyAll();
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void deliver(Worker worker) {
+        if (mDetectionListener != null) {
+            mDetectionListener.onFrameDetected(worker.mCaptureNanos, worker.mDetectedNanos,
+                    worker.mDetectNanos, worker.mResults);
+        }
+        if (worker.mResults != null) {
+            mapToFullFrame(worker);
+            mProcessor.receiveDetections(new TimedDetections(worker.mResults,
+                    worker.mFrame.getMetadata(), worker.mDetector.isOperational(),
+                    worker.mCaptureNanos, worker.mDetectedNanos));
+        }
+    }
+
+    /**
+     * Moves results detected in a cropped frame back to full frame coordinates.
+     */
+    private void mapToFullFrame(Worker worker) {
+        if (mRegionMapper == null
+                || (worker.mOffsetX == 0 && worker.mOffsetY == 0 && worker.mScale == 1)) {
+            return;
+        }
+        for (int i = 0; i < worker.mResults.size(); ++i) {
+            Object item = worker.mResults.valueAt(i);
+            if (worker.mScale != 1) {
+                mRegionMapper.scale(item, worker.mScale);
+            }
+            mRegionMapper.offset(item, worker.mOffsetX, worker.mOffsetY);
+        }
+    }
+
+    final class Worker implements Runnable {
+        private final Detector<?> mDetector;
+
+        private Frame mFrame;
+        private int mFrameIndex = FramePool.NO_FRAME;
+        private SparseArray<?> mResults;
+        private boolean mDone;
+        private long mCaptureNanos;
+        private long mDetectedNanos;
+        private long mDetectNanos;
+
+        // Reused buffer for frames cropped to the scan region or scaled down, the upright offset
+        // of the crop and the factor the frame was scaled down by.
+        private byte[] mRegionBytes;
+        private ByteBuffer mRegionBuffer;
+        private int mOffsetX;
+        private int mOffsetY;
+        private int mScale = 1;
+
+        // Guarded by the pool lock when read from other threads.
+        private long mBusyNanos;
+        private long mFramesProcessed;
+
+        Worker(Detector<?> detector) {
+            mDetector = detector;
+        }
+
+        /**
+         * Returns this worker's region buffer, reallocated only when the region size changes.
+         */
+        byte[] obtainRegionBytes(int size) {
+            if (mRegionBytes == null || mRegionBytes.length != size) {
+                mRegionBytes = new byte[size];
+                mRegionBuffer = ByteBuffer.wrap(mRegionBytes);
+            }
+            return mRegionBytes;
+        }
+
+        ByteBuffer getRegionBuffer() {
+            return mRegionBuffer;
+        }
+
+        void setRegionOffset(int x, int y) {
+            mOffsetX = x;
+            mOffsetY = y;
+        }
+
+        void setRegionScale(int scale) {
+            mScale = scale;
+        }
+
+        @Override
+        public void run() {
+            long startNanos = SystemClock.elapsedRealtimeNanos();
+            mResults = null;
+            try {
+                mResults = mDetector.detect(mFrame);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Detector failed on frame", e);
+            } finally {
+                if (mFrameIndex != FramePool.NO_FRAME) {
+                    mReleaseCallback.onFrameReleased(mFrameIndex);
+                    mFrameIndex = FramePool.NO_FRAME;
+                }
+                // Even if detection threw an error, so that the frame does not stay in flight.
+                mDetectedNanos = SystemClock.elapsedRealtimeNanos();
+                mDetectNanos = mDetectedNanos - startNanos;
+                synchronized (mLock) {
+                    mBusyNanos += mDetectNanos;
+                    mFramesProcessed++;
+                }
+                onWorkerDone(this);
+            }
+        }
+    }
+}
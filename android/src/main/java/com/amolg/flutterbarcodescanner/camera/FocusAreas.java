@@ -0,0 +1,49 @@
+package com.amolg.flutterbarcodescanner.camera;
+
+import android.graphics.Rect;
+
+/**
+ * Helpers for turning the scan window into camera focus and metering areas.  The window is given
+ * in upright frame coordinates, like the scan region, and becomes an area in the camera's own
+ * coordinates: -1000 to 1000 across the sensor's field of view, as {@code Camera.Area} takes,
+ * which camera2 then maps onto its crop region.
+ */
+final class FocusAreas {
+    static final int AREA_MIN = -1000;
+    static final int AREA_MAX = 1000;
+
+    private FocusAreas() {
+    }
+
+    /**
+     * Converts an upright region of a frame of the given size and rotation to a camera area.
+     *
+     * @return false if the region is empty or covers the whole frame, in which case the camera's
+     * default areas are as good
+     */
+    static boolean toCameraArea(Rect upright, int width, int height, int rotation, Rect out) {
+        if (!FrameRegion.toSensorRect(upright, width, height, rotation, out)) {
+            return false;
+        }
+        out.set(scale(out.left, width), scale(out.top, height),
+                scale(out.right, width), scale(out.bottom, height));
+        return true;
+    }
+
+    /**
+     * Maps a camera area onto the camera2 crop region, in active array coordinates.
+     */
+    static void toCropRegion(Rect area, Rect crop, Rect out) {
+        out.set(crop.left + unscale(area.left, crop.width()), crop.top + unscale(area.top, crop.height()),
+                crop.left + unscale(area.right, crop.width()), crop.top + unscale(area.bottom, crop.height()));
+    }
+
+    private static int scale(int position, int size) {
+        int scaled = (int) ((long) position * (AREA_MAX - AREA_MIN) / size) + AREA_MIN;
+        return Math.max(AREA_MIN, Math.min(AREA_MAX, scaled));
+    }
+
+    private static int unscale(int area, int size) {
+        return (int) ((long) (area - AREA_MIN) * size / (AREA_MAX - AREA_MIN));
+    }
+}
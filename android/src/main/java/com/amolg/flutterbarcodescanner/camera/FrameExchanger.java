@@ -0,0 +1,72 @@
+package com.amolg.flutterbarcodescanner.camera;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Single-slot handoff of the newest item from a producer to one consumer thread.  Offering never
+ * blocks: it swaps the new item into the slot and hands back whatever it replaced, so the producer
+ * can recycle it.  The consumer parks while the slot is empty and is unparked by the next offer.
+ */
+final class FrameExchanger<T> {
+    private final AtomicReference<T> mSlot = new AtomicReference<>();
+    private volatile Thread mWaiter;
+    private volatile boolean mOpen = true;
+
+    /**
+     * Publishes an item, waking the consumer if it is waiting.
+     *
+     * @return the item that was still waiting to be taken, or null
+     */
+    T offer(T item) {
+        T replaced = mSlot.getAndSet(item);
+        Thread waiter = mWaiter;
+        if (waiter != null) {
+            LockSupport.unpark(waiter);
+        }
+        return replaced;
+    }
+
+    /**
+     * Takes the newest item, parking until one is offered.  Only one thread may call this at a
+     * time.
+     *
+     * @return the item, or null if the exchanger was closed or the thread interrupted
+     */
+    T take() {
+        Thread current = Thread.currentThread();
+        mWaiter = current;
+        try {
+            while (true) {
+                if (!mOpen || current.isInterrupted()) {
+                    return null;
+                }
+                T item = mSlot.getAndSet(null);
+                if (item != null) {
+                    return item;
+                }
+                LockSupport.park(this);
+            }
+        } finally {
+            mWaiter = null;
+        }
+    }
+
+    /**
+     * Removes and returns the waiting item, if any, without blocking.
+     */
+    T poll() {
+        return mSlot.getAndSet(null);
+    }
+
+    /**
+     * Opens or closes the exchanger.  Closing wakes a waiting consumer, which then gets null.
+     */
+    void setOpen(boolean open) {
+        mOpen = open;
+        Thread waiter = mWaiter;
+        if (waiter != null) {
+            LockSupport.unpark(waiter);
+        }
+    }
+}
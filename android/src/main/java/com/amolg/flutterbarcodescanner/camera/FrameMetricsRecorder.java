@@ -0,0 +1,45 @@
+package com.amolg.flutterbarcodescanner.camera;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.view.FrameMetrics;
+import android.view.Window;
+
+/**
+ * Records the draw and total time of each frame of a window in the scanner stats, on Android 7
+ * and later.  The platform delivers frame metrics through a {@link Handler}, which it requires,
+ * so one must be given; a handler on its own thread keeps the recording off the main thread being
+ * measured.
+ */
+@TargetApi(Build.VERSION_CODES.N)
+public final class FrameMetricsRecorder implements Window.OnFrameMetricsAvailableListener {
+    private final ScannerStats mStats;
+    private final Handler mHandler;
+
+    /**
+     * @throws IllegalArgumentException if there is no handler
+     */
+    public FrameMetricsRecorder(ScannerStats stats, Handler handler) {
+        if (handler == null) {
+            throw new IllegalArgumentException("Frame metrics need a handler");
+        }
+        mStats = stats;
+        mHandler = handler;
+    }
+
+    public void start(Window window) {
+        window.addOnFrameMetricsAvailableListener(this, mHandler);
+    }
+
+    public void stop(Window window) {
+        window.removeOnFrameMetricsAvailableListener(this);
+    }
+
+    @Override
+    public void onFrameMetricsAvailable(Window window, FrameMetrics frameMetrics,
+                                        int dropCountSinceLastInvocation) {
+        mStats.recordUiFrame(frameMetrics.getMetric(FrameMetrics.DRAW_DURATION),
+                frameMetrics.getMetric(FrameMetrics.TOTAL_DURATION));
+    }
+}
@@ -0,0 +1,215 @@
+package com.amolg.flutterbarcodescanner.camera;
+
+import android.os.SystemClock;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Fixed set of preview buffers shared with the camera.  Frames are referred to by their index in
+ * the pool, so the preview callback can find the byte buffer for a camera array without hashing.
+ * <p/>
+ * The camera fills callback buffers in the order they were added, so the pool keeps that queue and
+ * checks its head first; a full scan is only needed if the camera ever returns buffers out of order.
+ */
+final class FramePool {
+    static final int NO_FRAME = -1;
+
+    /**
+     * Describes the frame currently held in one of the pool's buffers.  There is one entry per
+     * buffer, owned by whoever holds the buffer, so frames can be handed between threads without
+     * allocating.
+     */
+    static final class Entry {
+        final FramePool pool;
+        final int index;
+        int frameId;
+        long timestampMillis;
+        long captureNanos;
+
+        private Entry(FramePool pool, int index) {
+            this.pool = pool;
+            this.index = index;
+        }
+    }
+
+    private final byte[][] mArrays;
+    private final ByteBuffer[] mBuffers;
+    private final Entry[] mEntries;
+    private final long[] mAcquiredNanos;
+
+    // This lock guards all of the member variables below.
+    private final Object mLock = new Object();
+
+    // Indices of the buffers currently queued with the camera, oldest first.
+    private final int[] mQueued;
+    private int mQueueHead;
+    private int mQueueSize;
+
+    private long mExhaustedCount;
+    private long mReturnCount;
+    private long mTotalReturnNanos;
+    private long mMaxReturnNanos;
+
+    FramePool(int depth, int bufferSize) {
+        if (depth <= 0) {
+            throw new IllegalArgumentException("Invalid frame pool depth: " + depth);
+        }
+
+        mArrays = new byte[depth][];
+        mBuffers = new ByteBuffer[depth];
+        mEntries = new Entry[depth];
+        mAcquiredNanos = new long[depth];
+        mQueued = new int[depth];
+        for (int i = 0; i < depth; ++i) {
+            mArrays[i] = new byte[bufferSize];
+            mBuffers[i] = ByteBuffer.wrap(mArrays[i]);
+            mEntries[i] = new Entry(this, i);
+            if (!mBuffers[i].hasArray() || (mBuffers[i].array() != mArrays[i])) {
+                throw new IllegalStateException("Failed to create valid buffer for camera source.");
+            }
+        }
+    }
+
+    int getDepth() {
+        return mArrays.length;
+    }
+
+    ByteBuffer getBuffer(int index) {
+        return mBuffers[index];
+    }
+
+    byte[] getArray(int index) {
+        return mArrays[index];
+    }
+
+    Entry getEntry(int index) {
+        return mEntries[index];
+    }
+
+    /**
+     * Marks every buffer as queued with the camera and returns the arrays to add to it, in order.
+     */
+    byte[][] queueAll() {
+        synchronized (mLock) {
+            mQueueHead = 0;
+            mQueueSize = mArrays.length;
+            for (int i = 0; i < mArrays.length; ++i) {
+                mQueued[i] = i;
+            }
+            return mArrays;
+        }
+    }
+
+    /**
+     * Takes the buffer the camera has just filled out of the camera queue.
+     *
+     * @return the buffer index, or {@link #NO_FRAME} if the array does not belong to this pool
+     */
+    int acquire(byte[] data) {
+        synchronized (mLock) {
+            int index = NO_FRAME;
+            if (mQueueSize > 0 && mArrays[mQueued[mQueueHead]] == data) {
+                index = mQueued[mQueueHead];
+                mQueueHead = (mQueueHead + 1) % mQueued.length;
+                mQueueSize--;
+            } else {
+                index = removeQueued(data);
+                if (index == NO_FRAME) {
+                    return NO_FRAME;
+                }
+            }
+
+            // The camera has nothing left to fill, so it will skip frames until one is returned.
+            if (mQueueSize == 0) {
+                mExhaustedCount++;
+            }
+            mAcquiredNanos[index] = SystemClock.elapsedRealtimeNanos();
+            return index;
+        }
+    }
+
+    /**
+     * Takes the oldest free buffer for a producer that fills buffers itself rather than handing
+     * them to the camera.
+     *
+     * @return the buffer index, or {@link #NO_FRAME} if every buffer is in use
+     */
+    int acquireFree() {
+        synchronized (mLock) {
+            if (mQueueSize == 0) {
+                mExhaustedCount++;
+                return NO_FRAME;
+            }
+            int index = mQueued[mQueueHead];
+            mQueueHead = (mQueueHead + 1) % mQueued.length;
+            mQueueSize--;
+            mAcquiredNanos[index] = SystemClock.elapsedRealtimeNanos();
+            return index;
+        }
+    }
+
+    /**
+     * Puts a buffer back in the camera queue and returns the array to add to the camera.
+     */
+    byte[] release(int index) {
+        synchronized (mLock) {
+            long returnNanos = SystemClock.elapsedRealtimeNanos() - mAcquiredNanos[index];
+            mReturnCount++;
+            mTotalReturnNanos += returnNanos;
+            mMaxReturnNanos = Math.max(mMaxReturnNanos, returnNanos);
+
+            mQueued[(mQueueHead + mQueueSize) % mQueued.length] = index;
+            mQueueSize++;
+            return mArrays[index];
+        }
+    }
+
+    /**
+     * Returns the number of times the camera was left without a free buffer.
+     */
+    long getExhaustedCount() {
+        synchronized (mLock) {
+            return mExhaustedCount;
+        }
+    }
+
+    /**
+     * Returns the average time, in microseconds, between the camera delivering a buffer and the
+     * buffer being returned to it.
+     */
+    long getAverageReturnMicros() {
+        synchronized (mLock) {
+            return mReturnCount == 0 ? 0 : mTotalReturnNanos / mReturnCount / 1000;
+        }
+    }
+
+    /**
+     * Returns the longest time, in microseconds, that a buffer was held before being returned.
+     */
+    long getMaxReturnMicros() {
+        synchronized (mLock) {
+            return mMaxReturnNanos / 1000;
+        }
+    }
+
+    /**
+     * Slow path for a buffer that is not at the head of the camera queue: finds it in the queue
+     * and closes the gap it leaves.
+     */
+    private int removeQueued(byte[] data) {
+        for (int i = 0; i < mQueueSize; ++i) {
+            int slot = (mQueueHead + i) % mQueued.length;
+            int index = mQueued[slot];
+            if (mArrays[index] == data) {
+                for (int j = i; j > 0; --j) {
+                    mQueued[(mQueueHead + j) % mQueued.length] =
+                            mQueued[(mQueueHead + j - 1) % mQueued.length];
+                }
+                mQueueHead = (mQueueHead + 1) % mQueued.length;
+                mQueueSize--;
+                return index;
+            }
+        }
+        return NO_FRAME;
+    }
+}
@@ -0,0 +1,130 @@
+package com.amolg.flutterbarcodescanner.camera;
+
+import android.graphics.Point;
+import android.graphics.Rect;
+
+import java.util.Arrays;
+
+/**
+ * Helpers for cutting a region out of an NV21 camera frame.  Regions are given in upright
+ * coordinates, i.e. the coordinate space of detection results, and are converted to the sensor
+ * orientation of the frame data using the frame rotation (in 90 degree clockwise steps).
+ */
+final class FrameRegion {
+
+    private FrameRegion() {
+    }
+
+    /**
+     * Converts an upright region to the matching region of the sensor frame, aligned to even
+     * coordinates as required by the NV21 chroma plane.
+     *
+     * @return false if the region is empty or covers the whole frame, in which case there is
+     * nothing to gain from cropping
+     */
+    static boolean toSensorRect(Rect upright, int width, int height, int rotation, Rect out) {
+        switch (rotation) {
+            case 1:
+                out.set(upright.top, height - upright.right, upright.bottom, height - upright.left);
+                break;
+            case 2:
+                out.set(width - upright.right, height - upright.bottom,
+                        width - upright.left, height - upright.top);
+                break;
+            case 3:
+                out.set(width - upright.bottom, upright.left, width - upright.top, upright.right);
+                break;
+            default:
+                out.set(upright);
+                break;
+        }
+
+        if (!out.intersect(0, 0, width, height)) {
+            return false;
+        }
+        out.left &= ~1;
+        out.top &= ~1;
+        out.right = out.left + (out.width() & ~1);
+        out.bottom = out.top + (out.height() & ~1);
+        return !out.isEmpty() && (out.width() < width || out.height() < height);
+    }
+
+    /**
+     * Returns the upright position of the top left corner of a cropped sensor region, which is the
+     * offset to add to results detected in the crop.
+     */
+    static void uprightOffset(Rect sensor, int width, int height, int rotation, Point out) {
+        switch (rotation) {
+            case 1:
+                out.set(height - sensor.bottom, sensor.left);
+                break;
+            case 2:
+                out.set(width - sensor.right, height - sensor.bottom);
+                break;
+            case 3:
+                out.set(sensor.top, width - sensor.right);
+                break;
+            default:
+                out.set(sensor.left, sensor.top);
+                break;
+        }
+    }
+
+    /**
+     * Copies a region of an NV21 frame into a packed NV21 buffer of the region's size.
+     */
+    static void crop(byte[] src, int width, int height, Rect region, byte[] dst) {
+        final int cropWidth = region.width();
+        final int cropHeight = region.height();
+
+        // Luma plane, one byte per pixel.
+        for (int row = 0; row < cropHeight; ++row) {
+            System.arraycopy(src, (region.top + row) * width + region.left,
+                    dst, row * cropWidth, cropWidth);
+        }
+
+        // Interleaved VU plane, one pair per 2x2 block.
+        final int srcChroma = width * height;
+        final int dstChroma = cropWidth * cropHeight;
+        for (int row = 0; row < cropHeight / 2; ++row) {
+            System.arraycopy(src, srcChroma + (region.top / 2 + row) * width + region.left,
+                    dst, dstChroma + row * cropWidth, cropWidth);
+        }
+    }
+
+    /**
+     * Scales a region of an NV21 frame down by two into a packed NV21 buffer, averaging each 2x2
+     * block of luma.  The output is half the region's size, rounded down to even dimensions.  The
+     * chroma plane is left neutral, as the detector only reads luma.
+     */
+    static void downscale(byte[] src, int width, Rect region, byte[] dst) {
+        final int outWidth = halfSize(region.width());
+        final int outHeight = halfSize(region.height());
+        for (int row = 0; row < outHeight; ++row) {
+            int top = (region.top + 2 * row) * width + region.left;
+            int bottom = top + width;
+            int out = row * outWidth;
+            for (int column = 0; column < outWidth; ++column) {
+                int x = 2 * column;
+                dst[out + column] = (byte) (((src[top + x] & 0xff) + (src[top + x + 1] & 0xff)
+                        + (src[bottom + x] & 0xff) + (src[bottom + x + 1] & 0xff) + 2) >> 2);
+            }
+        }
+        final int lumaSize = outWidth * outHeight;
+        Arrays.fill(dst, lumaSize, lumaSize + lumaSize / 2, (byte) 128);
+    }
+
+    /**
+     * Returns a dimension scaled down by two, rounded down to even as NV21 needs.
+     */
+    static int halfSize(int size) {
+        return (size / 2) & ~1;
+    }
+
+    /**
+     * Returns the size of an NV21 buffer holding a frame of the given dimensions.
+     */
+    static int bufferSize(int width, int height) {
+        return width * height * 3 / 2;
+    }
+}
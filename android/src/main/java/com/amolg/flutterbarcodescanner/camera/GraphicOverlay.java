@@ -21,9 +21,11 @@ import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.PorterDuff;
 import android.graphics.PorterDuffXfermode;
+import android.graphics.Rect;
 import android.graphics.RectF;
 import android.util.AttributeSet;
 import android.view.View;
+import android.view.animation.AnimationUtils;
 
 
 import com.amolg.flutterbarcodescanner.BarcodeCaptureActivity;
@@ -31,25 +33,51 @@ import com.amolg.flutterbarcodescanner.FlutterBarcodeScannerPlugin;
 import com.amolg.flutterbarcodescanner.constants.AppConstants;
 import com.amolg.flutterbarcodescanner.utils.AppUtil;
 
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.List;
-import java.util.Set;
-import java.util.Vector;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 
 public class GraphicOverlay<T extends GraphicOverlay.Graphic> extends View {
     private final Object mLock = new Object();
-    private float mWidthScaleFactor = 1.0f, mHeightScaleFactor = 1.0f;
+    private int mPreviewWidth;
+    private float mWidthScaleFactor = 1.0f;
+    private int mPreviewHeight;
+    private float mHeightScaleFactor = 1.0f;
 
     private int mFacing = CameraSource.CAMERA_FACING_BACK;
-    private Set<T> mGraphics = new HashSet<>();
+
+    /**
+     * Graphics are added and removed from the detector thread far less often than they are read,
+     * so readers iterate a snapshot without taking {@link #mLock}.  Adding a graphic that is
+     * already shown, which trackers do on every update, does not copy.
+     */
+    private final CopyOnWriteArrayList<T> mGraphics = new CopyOnWriteArrayList<>();
+    private final List<T> mGraphicsView = Collections.unmodifiableList(mGraphics);
 
     /**
      * Custom added values for overlay
      */
-    private float left, top, endY;
+    private float left, top;
     private int rectWidth, rectHeight, frames, lineColor, lineWidth;
-    private boolean revAnimation;
+
+    /**
+     * Scan window geometry in view pixels, worked out when the view size changes, and the paints
+     * used for it, so that drawing a frame allocates nothing.
+     */
+    private final RectF mScanRect = new RectF();
+    private float mScanWidthPx;
+    private float mScanHeightPx;
+    private final Paint mEraserPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mLinePaint = new Paint();
+
+    /**
+     * Speed of the scan line in pixels per second, and the animation time it started moving.
+     */
+    private float mLineSpeed;
+    private long mAnimationStartMillis;
+    // Cleared to hold the line still, e.g. to save power while the device is hot.
+    private boolean mScanLineAnimated = true;
 
 
     public static abstract class Graphic {
@@ -81,6 +109,17 @@ public class GraphicOverlay<T extends GraphicOverlay.Graphic> extends View {
             return scaleY(y);
         }
 
+        /**
+         * Maps a rect in preview frame coordinates to view coordinates in place, keeping left
+         * less than right when the front camera mirrors the preview.
+         */
+        public void translateRect(RectF rect) {
+            float left = translateX(rect.left);
+            float right = translateX(rect.right);
+            rect.set(Math.min(left, right), translateY(rect.top), Math.max(left, right),
+                    translateY(rect.bottom));
+        }
+
         public void postInvalidate() {
             mOverlay.postInvalidate();
         }
@@ -97,44 +136,50 @@ public class GraphicOverlay<T extends GraphicOverlay.Graphic> extends View {
 
         lineWidth = AppConstants.BARCODE_LINE_WIDTH;
         frames = AppConstants.BARCODE_FRAMES;
+
+        mEraserPaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.CLEAR));
+        mLinePaint.setColor(lineColor);
+        mLinePaint.setStrokeWidth(lineWidth);
+        // The line used to move by the frame step on every frame at 60 frames a second.
+        mLineSpeed = frames * 60f;
     }
 
 
     public void clear() {
-        synchronized (mLock) {
-            mGraphics.clear();
-        }
+        mGraphics.clear();
         postInvalidate();
     }
 
 
     public void add(T graphic) {
-        synchronized (mLock) {
-            mGraphics.add(graphic);
-        }
+        mGraphics.addIfAbsent(graphic);
         postInvalidate();
     }
 
     @Override
     protected void onSizeChanged(int w, int h, int oldw, int oldh) {
-        left = (w - AppUtil.dpToPx(getContext(), rectWidth)) / 2;
-        top = (h - AppUtil.dpToPx(getContext(), rectHeight)) / 2;
-        endY = top;
+        mScanWidthPx = AppUtil.dpToPx(getContext(), rectWidth);
+        mScanHeightPx = AppUtil.dpToPx(getContext(), rectHeight);
+        left = (w - mScanWidthPx) / 2;
+        top = (h - mScanHeightPx) / 2;
+        mScanRect.set(left, top, left + mScanWidthPx, top + mScanHeightPx);
+        updateScaleFactors();
         super.onSizeChanged(w, h, oldw, oldh);
     }
 
 
     public void remove(T graphic) {
-        synchronized (mLock) {
-            mGraphics.remove(graphic);
+        if (mGraphics.remove(graphic)) {
+            postInvalidate();
         }
-        postInvalidate();
     }
 
+    /**
+     * Returns the graphics shown.  Iterating the list sees the graphics as they were when the
+     * iteration started, without locking or copying.
+     */
     public List<T> getGraphics() {
-        synchronized (mLock) {
-            return new Vector(mGraphics);
-        }
+        return mGraphicsView;
     }
 
     public float getWidthScaleFactor() {
@@ -147,43 +192,92 @@ public class GraphicOverlay<T extends GraphicOverlay.Graphic> extends View {
 
     public void setCameraInfo(int previewWidth, int previewHeight, int facing) {
         synchronized (mLock) {
+            mPreviewWidth = previewWidth;
+            mPreviewHeight = previewHeight;
             mFacing = facing;
+            updateScaleFactors();
         }
         postInvalidate();
     }
 
+    /**
+     * Returns the scan window in preview frame coordinates, using the inverse of the mapping in
+     * {@link Graphic#translateX(float)} and {@link Graphic#translateY(float)}.  Returns null
+     * until both the view and the preview size are known.
+     */
+    public Rect getScanWindowInPreview() {
+        synchronized (mLock) {
+            if (mPreviewWidth == 0 || mPreviewHeight == 0 || getWidth() == 0 || getHeight() == 0) {
+                return null;
+            }
+
+            float right = mScanRect.right;
+            float bottom = mScanRect.bottom;
+            float previewLeft;
+            float previewRight;
+            if (mFacing == CameraSource.CAMERA_FACING_FRONT) {
+                previewLeft = (getWidth() - right) / mWidthScaleFactor;
+                previewRight = (getWidth() - left) / mWidthScaleFactor;
+            } else {
+                previewLeft = left / mWidthScaleFactor;
+                previewRight = right / mWidthScaleFactor;
+            }
+
+            Rect window = new Rect(Math.round(previewLeft), Math.round(top / mHeightScaleFactor),
+                    Math.round(previewRight), Math.round(bottom / mHeightScaleFactor));
+            if (!window.intersect(0, 0, mPreviewWidth, mPreviewHeight)) {
+                return null;
+            }
+            return window;
+        }
+    }
+
+    /**
+     * Starts or stops the scan line moving.  While stopped, the line rests across the middle of
+     * the scan window and the overlay is not redrawn for it.
+     */
+    public void setScanLineAnimated(boolean animated) {
+        if (animated == mScanLineAnimated) {
+            return;
+        }
+        mScanLineAnimated = animated;
+        // Restart from the top rather than jump to where the line would have been.
+        mAnimationStartMillis = 0;
+        invalidate();
+    }
+
+    private void updateScaleFactors() {
+        if (mPreviewWidth != 0 && mPreviewHeight != 0) {
+            mWidthScaleFactor = (float) getWidth() / (float) mPreviewWidth;
+            mHeightScaleFactor = (float) getHeight() / (float) mPreviewHeight;
+        }
+    }
+
     @Override
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
 
         // draw transparent rect
-        int cornerRadius = 0;
-        Paint eraser = new Paint();
-        eraser.setAntiAlias(true);
-        eraser.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.CLEAR));
-
-        RectF rect = new RectF(left, top, AppUtil.dpToPx(getContext(), rectWidth) + left, AppUtil.dpToPx(getContext(), rectHeight) + top);
-        canvas.drawRoundRect(rect, (float) cornerRadius, (float) cornerRadius, eraser);
-
-        // draw horizontal line
-        Paint line = new Paint();
-        line.setColor(lineColor);
-        line.setStrokeWidth(Float.valueOf(lineWidth));
-
-        // draw the line to product animation
-        if (endY >= top + AppUtil.dpToPx(getContext(), rectHeight) + frames) {
-            revAnimation = true;
-        } else if (endY == top + frames) {
-            revAnimation = false;
+        canvas.drawRect(mScanRect, mEraserPaint);
+
+        if (!mScanLineAnimated) {
+            float lineY = top + frames + mScanHeightPx / 2;
+            canvas.drawLine(left, lineY, mScanRect.right, lineY, mLinePaint);
+            return;
         }
 
-        // check if the line has reached to bottom
-        if (revAnimation) {
-            endY -= frames;
-        } else {
-            endY += frames;
+        // Place the line by the time since the animation started, so its speed does not depend on
+        // how often frames are drawn.  The animation time is the time of the frame being drawn.
+        long nowMillis = AnimationUtils.currentAnimationTimeMillis();
+        if (mAnimationStartMillis == 0) {
+            mAnimationStartMillis = nowMillis;
         }
-        canvas.drawLine(left, endY, left + AppUtil.dpToPx(getContext(), rectWidth), endY, line);
-        invalidate();
+        float lineY = top + frames + ScanLineAnimation.offset(
+                (nowMillis - mAnimationStartMillis) * 1000000L, mScanHeightPx, mLineSpeed);
+        canvas.drawLine(left, lineY, mScanRect.right, lineY, mLinePaint);
+
+        // Draw the next position at the next vsync.  This redraws the whole view: a dirty rect
+        // would be ignored under hardware acceleration, and on every view from Android 9.
+        postInvalidateOnAnimation();
     }
-}
\ No newline at end of file
+}
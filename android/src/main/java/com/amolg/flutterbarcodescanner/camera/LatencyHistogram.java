@@ -0,0 +1,129 @@
+package com.amolg.flutterbarcodescanner.camera;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Log-linear latency histogram in microseconds, in the style of an HDR histogram.  Values below
+ * 64us get a bucket each; above that every power of two is split into 32 buckets, which keeps the
+ * error of any reported value within about 3% up to half an hour.
+ * <p/>
+ * Recording is allocation free and safe from any thread.  Readers may see a recording that is in
+ * progress, which is acceptable for monitoring.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 31;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + SUB_BUCKETS;
+    private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+
+    private final AtomicLongArray mCounts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong mCount = new AtomicLong();
+    private final AtomicLong mTotalMicros = new AtomicLong();
+    private final AtomicLong mMinMicros = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong mMaxMicros = new AtomicLong();
+
+    /**
+     * Records one latency, given in nanoseconds.  Negative values are ignored.
+     */
+    public void recordNanos(long nanos) {
+        if (nanos < 0) {
+            return;
+        }
+        long micros = Math.min(nanos / 1000, MAX_VALUE);
+        mCounts.incrementAndGet(bucketIndex(micros));
+        mCount.incrementAndGet();
+        mTotalMicros.addAndGet(micros);
+
+        long min = mMinMicros.get();
+        while (micros < min && !mMinMicros.compareAndSet(min, micros)) {
+            min = mMinMicros.get();
+        }
+        long max = mMaxMicros.get();
+        while (micros > max && !mMaxMicros.compareAndSet(max, micros)) {
+            max = mMaxMicros.get();
+        }
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; ++i) {
+            mCounts.set(i, 0);
+        }
+        mCount.set(0);
+        mTotalMicros.set(0);
+        mMinMicros.set(Long.MAX_VALUE);
+        mMaxMicros.set(0);
+    }
+
+    public long getCount() {
+        return mCount.get();
+    }
+
+    public long getMeanMicros() {
+        long count = mCount.get();
+        return count == 0 ? 0 : mTotalMicros.get() / count;
+    }
+
+    public long getMinMicros() {
+        return mCount.get() == 0 ? 0 : mMinMicros.get();
+    }
+
+    public long getMaxMicros() {
+        return mMaxMicros.get();
+    }
+
+    /**
+     * Returns the value, in microseconds, that the given percentage of recordings are at or below.
+     * The value is the upper end of its bucket, capped at the largest value recorded.
+     */
+    public long getPercentileMicros(double percentile) {
+        long count = mCount.get();
+        if (count == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(count * Math.min(percentile, 100.0) / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; ++i) {
+            seen += mCounts.get(i);
+            if (seen >= target) {
+                return Math.min(bucketUpperBound(i), getMaxMicros());
+            }
+        }
+        return getMaxMicros();
+    }
+
+    /**
+     * Returns a summary of the histogram, in microseconds, for sending over the method channel.
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("count", getCount());
+        map.put("mean", getMeanMicros());
+        map.put("min", getMinMicros());
+        map.put("p50", getPercentileMicros(50));
+        map.put("p90", getPercentileMicros(90));
+        map.put("p99", getPercentileMicros(99));
+        map.put("max", getMaxMicros());
+        return map;
+    }
+
+    static int bucketIndex(long micros) {
+        if (micros < 2 * SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(micros) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((micros >> shift) - SUB_BUCKETS);
+    }
+
+    static long bucketUpperBound(int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lower + (1L << shift) - 1;
+    }
+}
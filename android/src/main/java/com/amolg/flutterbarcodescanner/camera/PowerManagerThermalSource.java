@@ -0,0 +1,52 @@
+package com.amolg.flutterbarcodescanner.camera;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.os.Build;
+import android.os.PowerManager;
+
+/**
+ * Thermal status reported by {@link PowerManager}, from Android Q.  The status is kept as the
+ * platform reports changes, so reading it costs no binder call.
+ */
+@TargetApi(Build.VERSION_CODES.Q)
+public final class PowerManagerThermalSource implements ThermalSource {
+    private final PowerManager mPowerManager;
+    private volatile int mStatus;
+    private final PowerManager.OnThermalStatusChangedListener mListener =
+            new PowerManager.OnThermalStatusChangedListener() {
+                @Override
+                public void onThermalStatusChanged(int status) {
+                    mStatus = status;
+                }
+            };
+
+    private PowerManagerThermalSource(PowerManager powerManager) {
+        mPowerManager = powerManager;
+        mStatus = powerManager.getCurrentThermalStatus();
+        // Without an executor, changes are reported on the main thread.
+        powerManager.addThermalStatusListener(mListener);
+    }
+
+    /**
+     * Returns a thermal source for the device, or null before Android Q, which does not report
+     * thermal status.
+     */
+    public static ThermalSource create(Context context) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) {
+            return null;
+        }
+        PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        return powerManager != null ? new PowerManagerThermalSource(powerManager) : null;
+    }
+
+    @Override
+    public int getThermalStatus() {
+        return mStatus;
+    }
+
+    @Override
+    public void release() {
+        mPowerManager.removeThermalStatusListener(mListener);
+    }
+}
@@ -0,0 +1,52 @@
+package com.amolg.flutterbarcodescanner.camera;
+
+/**
+ * Decides when to trigger a new focus scan: after detection has found nothing for a while, which
+ * usually means focus settled on the background instead of the code.  Waits the same time again
+ * after each refocus, so a scene with no code in it is not refocused on every frame.
+ * <p/>
+ * Times are in nanoseconds from a monotonic clock.  Safe to use from any thread.
+ */
+final class RefocusScheduler {
+    private final long mIdleNanos;
+    private boolean mStarted;
+    private long mLastSuccessNanos;
+    private long mLastRefocusNanos;
+
+    /**
+     * @param idleMillis how long detection must find nothing before refocusing.
+     */
+    RefocusScheduler(long idleMillis) {
+        if (idleMillis <= 0) {
+            throw new IllegalArgumentException("Refocus delay must be positive: " + idleMillis);
+        }
+        mIdleNanos = idleMillis * 1000000L;
+    }
+
+    /**
+     * Starts waiting from now, e.g. when the camera starts.
+     */
+    synchronized void reset(long nowNanos) {
+        mStarted = true;
+        mLastSuccessNanos = nowNanos;
+        mLastRefocusNanos = 0;
+    }
+
+    /**
+     * Records the outcome of detecting a frame.
+     *
+     * @return true if focus should be triggered now
+     */
+    synchronized boolean onFrameDetected(long nowNanos, boolean found) {
+        if (found || !mStarted) {
+            mStarted = true;
+            mLastSuccessNanos = nowNanos;
+            return false;
+        }
+        if (nowNanos - Math.max(mLastSuccessNanos, mLastRefocusNanos) < mIdleNanos) {
+            return false;
+        }
+        mLastRefocusNanos = nowNanos;
+        return true;
+    }
+}
@@ -0,0 +1,25 @@
+package com.amolg.flutterbarcodescanner.camera;
+
+/**
+ * Position of the scan line, which moves down the scan window and back at a constant speed.
+ */
+final class ScanLineAnimation {
+    private ScanLineAnimation() {
+    }
+
+    /**
+     * Returns the line's distance from the top of its travel after the given time.
+     *
+     * @param elapsedNanos    time since the animation started.
+     * @param travel          distance from the top of the travel to the bottom, in pixels.
+     * @param pixelsPerSecond speed of the line.
+     */
+    static float offset(long elapsedNanos, float travel, float pixelsPerSecond) {
+        if (travel <= 0 || pixelsPerSecond <= 0 || elapsedNanos <= 0) {
+            return 0;
+        }
+        double distance = elapsedNanos / 1e9 * pixelsPerSecond;
+        double phase = distance % (2.0 * travel);
+        return (float) (phase <= travel ? phase : 2.0 * travel - phase);
+    }
+}
@@ -0,0 +1,150 @@
+package com.amolg.flutterbarcodescanner.camera;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latency histograms and counters for each stage of the frame pipeline:
+ * <ul>
+ * <li>capture to dequeue: the preview callback until the processing thread takes the frame</li>
+ * <li>detect: time spent in the detector</li>
+ * <li>detect to deliver: the end of detection until the result is handed to Flutter</li>
+ * <li>end to end: the preview callback until the result is handed to Flutter</li>
+ * </ul>
+ * The scan screen's own frames are recorded too, as the time the main thread spent drawing each
+ * frame and the total time to produce it, so the cost of the overlay can be compared.
+ * The capture and detection times the code that finally hands a result to Flutter needs for the
+ * last two stages travel with the results, as {@link TimedDetections}.
+ * <p/>
+ * All times are {@link android.os.SystemClock#elapsedRealtimeNanos()} values.
+ */
+public final class ScannerStats {
+    private final LatencyHistogram mCaptureToDequeue = new LatencyHistogram();
+    private final LatencyHistogram mDetect = new LatencyHistogram();
+    private final LatencyHistogram mDetectToDeliver = new LatencyHistogram();
+    private final LatencyHistogram mEndToEnd = new LatencyHistogram();
+    private final LatencyHistogram mUiDraw = new LatencyHistogram();
+    private final LatencyHistogram mUiFrame = new LatencyHistogram();
+
+    private final AtomicLong mFramesDropped = new AtomicLong();
+    private final AtomicLong mFramesDetected = new AtomicLong();
+
+    private volatile int mThermalTier;
+    private final AtomicLong mThermalTierChanges = new AtomicLong();
+
+    public void recordDequeued(long captureNanos, long nowNanos) {
+        mCaptureToDequeue.recordNanos(nowNanos - captureNanos);
+    }
+
+    /**
+     * Records the detector time for one frame, and whether anything was found in it.
+     */
+    public void recordDetected(long detectNanos, boolean found) {
+        mDetect.recordNanos(detectNanos);
+        if (found) {
+            mFramesDetected.incrementAndGet();
+        }
+    }
+
+    /**
+     * Counts a camera frame that never reached the detector.
+     */
+    public void recordDropped() {
+        mFramesDropped.incrementAndGet();
+    }
+
+    /**
+     * Records a change of the tier scanning is scaled back to while the device is hot.
+     */
+    public void recordThermalTier(int tier) {
+        mThermalTier = tier;
+        mThermalTierChanges.incrementAndGet();
+    }
+
+    /**
+     * Records a result reaching Flutter from a frame captured and detected at the given times.
+     * Ignored if the times are unknown.
+     */
+    public void recordDelivered(long captureNanos, long detectedNanos, long nowNanos) {
+        if (captureNanos == 0 || detectedNanos == 0) {
+            return;
+        }
+        mDetectToDeliver.recordNanos(nowNanos - detectedNanos);
+        mEndToEnd.recordNanos(nowNanos - captureNanos);
+    }
+
+    /**
+     * Records one frame of the scan screen: the main thread's draw time and the total frame time.
+     */
+    public void recordUiFrame(long drawNanos, long totalNanos) {
+        mUiDraw.recordNanos(drawNanos);
+        mUiFrame.recordNanos(totalNanos);
+    }
+
+    /**
+     * Clears all histograms and counters, e.g. at the start of a scan session.
+     */
+    public void reset() {
+        mCaptureToDequeue.reset();
+        mDetect.reset();
+        mDetectToDeliver.reset();
+        mEndToEnd.reset();
+        mUiDraw.reset();
+        mUiFrame.reset();
+        mFramesDropped.set(0);
+        mFramesDetected.set(0);
+        mThermalTier = 0;
+        mThermalTierChanges.set(0);
+    }
+
+    public LatencyHistogram getCaptureToDequeue() {
+        return mCaptureToDequeue;
+    }
+
+    public LatencyHistogram getDetect() {
+        return mDetect;
+    }
+
+    public LatencyHistogram getDetectToDeliver() {
+        return mDetectToDeliver;
+    }
+
+    public LatencyHistogram getEndToEnd() {
+        return mEndToEnd;
+    }
+
+    public LatencyHistogram getUiDraw() {
+        return mUiDraw;
+    }
+
+    public LatencyHistogram getUiFrame() {
+        return mUiFrame;
+    }
+
+    public long getFramesDropped() {
+        return mFramesDropped.get();
+    }
+
+    public long getFramesDetected() {
+        return mFramesDetected.get();
+    }
+
+    /**
+     * Returns every histogram summary and counter, for sending over the method channel.
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("captureToDequeue", mCaptureToDequeue.toMap());
+        map.put("detect", mDetect.toMap());
+        map.put("detectToDeliver", mDetectToDeliver.toMap());
+        map.put("endToEnd", mEndToEnd.toMap());
+        map.put("uiDraw", mUiDraw.toMap());
+        map.put("uiFrame", mUiFrame.toMap());
+        map.put("framesDropped", getFramesDropped());
+        map.put("framesDetected", getFramesDetected());
+        map.put("thermalTier", mThermalTier);
+        map.put("thermalTierChanges", mThermalTierChanges.get());
+        return map;
+    }
+}
@@ -0,0 +1,155 @@
+package com.amolg.flutterbarcodescanner.camera;
+
+import android.os.Build;
+import android.os.Trace;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Timestamps of the stages a scan session goes through on its way to the first result, from the
+ * method call that starts it to the result reaching Flutter.  Each stage keeps the first time it
+ * was reached in the session.
+ * <p/>
+ * With tracing enabled, every stage is also an async trace section running from the method call
+ * to that stage, so a Perfetto capture shows how far into startup each stage lands.  Work within a
+ * stage is traced with {@link #beginSection(String)} and {@link #endSection()}.
+ * <p/>
+ * All times are {@link android.os.SystemClock#elapsedRealtimeNanos()} values.  Safe to use from
+ * any thread.
+ */
+public final class StartupTrace {
+    public static final int METHOD_CALL = 0;
+    public static final int ACTIVITY_CREATED = 1;
+    public static final int PERMISSION_RESOLVED = 2;
+    public static final int CAMERA_OPENED = 3;
+    public static final int FIRST_FRAME = 4;
+    public static final int FIRST_DECODE = 5;
+    public static final int RESULT_DELIVERED = 6;
+
+    private static final String[] STAGE_NAMES = {
+            "methodCall", "activityCreated", "permissionResolved", "cameraOpened", "firstFrame",
+            "firstDecode", "resultDelivered"
+    };
+    private static final String SECTION_PREFIX = "flutter_barcode_scanner:";
+
+    private final AtomicLongArray mStageNanos = new AtomicLongArray(STAGE_NAMES.length);
+    private volatile boolean mColdStart;
+    private volatile boolean mPrewarmed;
+    private volatile boolean mFocusAreas;
+    private volatile int mSession;
+
+    /**
+     * Starts a new session at the method call, forgetting the last one.
+     *
+     * @param coldStart true if this is the first scan session since the plugin was loaded.
+     */
+    public synchronized void start(long nowNanos, boolean coldStart) {
+        endOpenSections();
+        for (int i = 0; i < STAGE_NAMES.length; ++i) {
+            mStageNanos.set(i, 0);
+        }
+        ++mSession;
+        mColdStart = coldStart;
+        mPrewarmed = false;
+        mFocusAreas = false;
+        mStageNanos.set(METHOD_CALL, nowNanos);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            for (int stage = METHOD_CALL + 1; stage < STAGE_NAMES.length; ++stage) {
+                Trace.beginAsyncSection(SECTION_PREFIX + STAGE_NAMES[stage], mSession);
+            }
+        }
+    }
+
+    /**
+     * Records that a stage was reached, if it has not been already in this session and the
+     * session has started.
+     *
+     * @return true if this call recorded the stage.
+     */
+    public boolean mark(int stage, long nowNanos) {
+        if (mStageNanos.get(METHOD_CALL) == 0 || !mStageNanos.compareAndSet(stage, 0, nowNanos)) {
+            return false;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.endAsyncSection(SECTION_PREFIX + STAGE_NAMES[stage], mSession);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the time from the method call to a stage in microseconds, or -1 if the stage has
+     * not been reached in this session.
+     */
+    public long getStageMicros(int stage) {
+        long startNanos = mStageNanos.get(METHOD_CALL);
+        long nanos = mStageNanos.get(stage);
+        return startNanos == 0 || nanos == 0 ? -1 : (nanos - startNanos) / 1000;
+    }
+
+    /**
+     * Returns true if the stage has been reached in this session.
+     */
+    public boolean isMarked(int stage) {
+        return mStageNanos.get(stage) != 0;
+    }
+
+    /**
+     * Records that the session used a detector or camera prepared by a prewarm.
+     */
+    public void setPrewarmed(boolean prewarmed) {
+        mPrewarmed = prewarmed;
+    }
+
+    /**
+     * Records that the session focused and metered on the scan window.
+     */
+    public void setFocusAreas(boolean focusAreas) {
+        mFocusAreas = focusAreas;
+    }
+
+    public boolean hasFocusAreas() {
+        return mFocusAreas;
+    }
+
+    /**
+     * Returns each stage reached as microseconds since the method call, with null for stages that
+     * were not reached, and whether the session was a cold start, used a prewarm and focused on
+     * the scan window.
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new HashMap<>();
+        long startNanos = mStageNanos.get(METHOD_CALL);
+        for (int stage = METHOD_CALL + 1; stage < STAGE_NAMES.length; ++stage) {
+            long nanos = mStageNanos.get(stage);
+            map.put(STAGE_NAMES[stage], startNanos == 0 || nanos == 0 ? null : (nanos - startNanos) / 1000);
+        }
+        map.put("coldStart", mColdStart);
+        map.put("prewarmed", mPrewarmed);
+        map.put("focusAreas", mFocusAreas);
+        return map;
+    }
+
+    /**
+     * Begins a trace section on the calling thread for work within a stage.
+     */
+    public static void beginSection(String name) {
+        Trace.beginSection(SECTION_PREFIX + name);
+    }
+
+    public static void endSection() {
+        Trace.endSection();
+    }
+
+    private void endOpenSections() {
+        if (mSession == 0 || Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) {
+            return;
+        }
+        for (int stage = METHOD_CALL + 1; stage < STAGE_NAMES.length; ++stage) {
+            if (mStageNanos.get(stage) == 0) {
+                Trace.endAsyncSection(SECTION_PREFIX + STAGE_NAMES[stage], mSession);
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.amolg.flutterbarcodescanner.camera;
+
+/**
+ * Reports how hot the device is, as one of the {@code PowerManager.THERMAL_STATUS_*} values, from
+ * {@code THERMAL_STATUS_NONE} (0) to {@code THERMAL_STATUS_SHUTDOWN} (6).
+ */
+public interface ThermalSource {
+    /**
+     * Returns the latest thermal status.  Called on the frame processing thread, so it must be
+     * cheap and must not block.
+     */
+    int getThermalStatus();
+
+    /**
+     * Stops listening for thermal status changes.
+     */
+    void release();
+}
@@ -0,0 +1,82 @@
+package com.amolg.flutterbarcodescanner.camera;
+
+/**
+ * Decides how far scanning is scaled back while the device is hot.  Each tier adds one step to
+ * the tier below it:
+ * <ol>
+ * <li>{@link #TIER_FEWER_WORKERS}: a single detection worker</li>
+ * <li>{@link #TIER_LOWER_RATE}: detection rate held at the governor's minimum</li>
+ * <li>{@link #TIER_LOWER_RESOLUTION}: frames decoded at half resolution</li>
+ * <li>{@link #TIER_NO_ANIMATION}: the scan line stops moving</li>
+ * </ol>
+ * The tier follows the thermal status, one tier per status from light to critical.  It steps down
+ * as soon as the device gets hotter, but back up only one tier per cool down period, once the
+ * status has stayed below the tier for that long, so a status hovering at a boundary does not
+ * make scanning switch back and forth.
+ * <p/>
+ * Times are in nanoseconds from a monotonic clock.  Used from the frame processing thread only.
+ */
+final class ThermalTierController {
+    static final int TIER_NORMAL = 0;
+    static final int TIER_FEWER_WORKERS = 1;
+    static final int TIER_LOWER_RATE = 2;
+    static final int TIER_LOWER_RESOLUTION = 3;
+    static final int TIER_NO_ANIMATION = 4;
+
+    static final long DEFAULT_COOL_DOWN_MILLIS = 30000;
+
+    private final ThermalSource mSource;
+    private final long mCoolDownNanos;
+
+    private int mTier = TIER_NORMAL;
+    private boolean mCooling;
+    private long mCoolingSinceNanos;
+
+    ThermalTierController(ThermalSource source) {
+        this(source, DEFAULT_COOL_DOWN_MILLIS);
+    }
+
+    /**
+     * @param coolDownMillis how long the status must stay below the tier before each step back up.
+     */
+    ThermalTierController(ThermalSource source, long coolDownMillis) {
+        if (coolDownMillis < 0) {
+            throw new IllegalArgumentException("Invalid cool down: " + coolDownMillis);
+        }
+        mSource = source;
+        mCoolDownNanos = coolDownMillis * 1000000L;
+    }
+
+    /**
+     * Returns the tier a thermal status asks for.
+     */
+    static int tierForStatus(int status) {
+        // PowerManager.THERMAL_STATUS_NONE is 0, LIGHT 1, MODERATE 2, SEVERE 3 and CRITICAL 4.
+        return Math.max(TIER_NORMAL, Math.min(status, TIER_NO_ANIMATION));
+    }
+
+    /**
+     * Reads the thermal status and returns the tier to scan at now.
+     */
+    int update(long nowNanos) {
+        int target = tierForStatus(mSource.getThermalStatus());
+        if (target > mTier) {
+            mTier = target;
+            mCooling = false;
+        } else if (target == mTier) {
+            mCooling = false;
+        } else if (!mCooling) {
+            mCooling = true;
+            mCoolingSinceNanos = nowNanos;
+        } else if (nowNanos - mCoolingSinceNanos >= mCoolDownNanos) {
+            --mTier;
+            // The next step up waits a full cool down period again.
+            mCoolingSinceNanos = nowNanos;
+        }
+        return mTier;
+    }
+
+    int getTier() {
+        return mTier;
+    }
+}
@@ -0,0 +1,44 @@
+package com.amolg.flutterbarcodescanner.camera;
+
+import android.util.SparseArray;
+
+import com.google.android.gms.vision.Detector;
+import com.google.android.gms.vision.Frame;
+
+/**
+ * Detection results that carry when their frame was captured and when detection on it finished,
+ * so that the code that finally hands a result to Flutter can record the last pipeline stages in
+ * {@link ScannerStats}.  The times travel with the results through the processor and its trackers
+ * rather than through shared state, so concurrent sessions cannot mix them up.
+ * <p/>
+ * Only results delivered by the detection worker pool carry times.  Results delivered by the
+ * detector itself are plain {@link Detector.Detections}, and their times read as 0.
+ */
+public final class TimedDetections<T> extends Detector.Detections<T> {
+    private final long mCaptureNanos;
+    private final long mDetectedNanos;
+
+    TimedDetections(SparseArray<T> items, Frame.Metadata metadata, boolean operational,
+                    long captureNanos, long detectedNanos) {
+        super(items, metadata, operational);
+        mCaptureNanos = captureNanos;
+        mDetectedNanos = detectedNanos;
+    }
+
+    /**
+     * Returns the capture time of the frame the results came from, or 0 if it is unknown.
+     */
+    public static long getCaptureNanos(Detector.Detections<?> detections) {
+        return detections instanceof TimedDetections
+                ? ((TimedDetections<?>) detections).mCaptureNanos : 0;
+    }
+
+    /**
+     * Returns the time detection finished on the frame the results came from, or 0 if it is
+     * unknown.
+     */
+    public static long getDetectedNanos(Detector.Detections<?> detections) {
+        return detections instanceof TimedDetections
+                ? ((TimedDetections<?>) detections).mDetectedNanos : 0;
+    }
+}
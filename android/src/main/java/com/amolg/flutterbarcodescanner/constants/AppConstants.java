@@ -6,4 +6,9 @@ public interface AppConstants {
     String BARCODE_LINE_COLOR = "#ff669900";
     int BARCODE_LINE_WIDTH = 4;
     int BARCODE_FRAMES = 5;
+    float DETECTION_MIN_FPS = 10.0f;
+    float DETECTION_MAX_FPS = 30.0f;
+    float DETECTION_IDLE_FPS = 3.0f;
+    int DETECTION_IDLE_AFTER_EMPTY_FRAMES = 45;
+    float AUTO_ZOOM_MAX_RATIO = 3.0f;
 }
@@ -0,0 +1,55 @@
+package com.amolg.flutterbarcodescanner
+
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+internal class BarcodeDedupCacheTest {
+    @Test
+    fun shouldDeliver_repeatWithinWindow_isSuppressed() {
+        val cache = BarcodeDedupCache(1000, 8)
+
+        assertTrue(cache.shouldDeliver(QR, "abc", 0))
+        assertFalse(cache.shouldDeliver(QR, "abc", 999 * MILLIS))
+
+        assertEquals(1, cache.hits)
+        assertEquals(1, cache.misses)
+    }
+
+    @Test
+    fun shouldDeliver_afterWindow_deliversAgain() {
+        val cache = BarcodeDedupCache(1000, 8)
+        cache.shouldDeliver(QR, "abc", 0)
+
+        assertTrue(cache.shouldDeliver(QR, "abc", 1000 * MILLIS))
+        assertFalse(cache.shouldDeliver(QR, "abc", 1500 * MILLIS))
+    }
+
+    @Test
+    fun shouldDeliver_sameValueOtherFormat_isDelivered() {
+        val cache = BarcodeDedupCache(1000, 8)
+        cache.shouldDeliver(QR, "123", 0)
+
+        assertTrue(cache.shouldDeliver(EAN_13, "123", 0))
+    }
+
+    @Test
+    fun shouldDeliver_overCapacity_forgetsLeastRecentlySeen() {
+        val cache = BarcodeDedupCache(1000, 2)
+        cache.shouldDeliver(QR, "a", 0)
+        cache.shouldDeliver(QR, "b", 0)
+        cache.shouldDeliver(QR, "a", 1)
+        cache.shouldDeliver(QR, "c", 2)
+
+        assertEquals(2, cache.size())
+        assertFalse(cache.shouldDeliver(QR, "a", 3))
+        assertTrue(cache.shouldDeliver(QR, "b", 3))
+    }
+
+    private companion object {
+        const val QR = 256
+        const val EAN_13 = 32
+        const val MILLIS = 1_000_000L
+    }
+}
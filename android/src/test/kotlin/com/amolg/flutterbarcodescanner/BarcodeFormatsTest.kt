@@ -0,0 +1,40 @@
+package com.amolg.flutterbarcodescanner
+
+import com.google.android.gms.vision.barcode.Barcode
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+
+internal class BarcodeFormatsTest {
+    @Test
+    fun forScanMode_qr_decodesQrOnly() {
+        assertEquals(Barcode.QR_CODE,
+            BarcodeFormats.forScanMode(BarcodeCaptureActivity.SCAN_MODE_ENUM.QR.ordinal))
+    }
+
+    @Test
+    fun forScanMode_barcode_decodesLinearFormatsOnly() {
+        val formats = BarcodeFormats.forScanMode(BarcodeCaptureActivity.SCAN_MODE_ENUM.BARCODE.ordinal)
+
+        assertEquals(Barcode.EAN_13, formats and Barcode.EAN_13)
+        assertEquals(Barcode.CODE_128, formats and Barcode.CODE_128)
+        assertEquals(0, formats and (Barcode.QR_CODE or Barcode.DATA_MATRIX or Barcode.AZTEC))
+    }
+
+    @Test
+    fun forScanMode_default_decodesAllFormats() {
+        assertEquals(Barcode.ALL_FORMATS,
+            BarcodeFormats.forScanMode(BarcodeCaptureActivity.SCAN_MODE_ENUM.DEFAULT.ordinal))
+    }
+
+    @Test
+    fun fromNames_combinesNamedFormats() {
+        assertEquals(Barcode.QR_CODE or Barcode.EAN_13 or Barcode.UPC_A,
+            BarcodeFormats.fromNames(listOf("QR_CODE", "EAN_13", "UPC_A")))
+    }
+
+    @Test
+    fun fromNames_unknownName_throws() {
+        assertFailsWith<IllegalArgumentException> { BarcodeFormats.fromNames(listOf("QR")) }
+    }
+}
@@ -0,0 +1,51 @@
+package com.amolg.flutterbarcodescanner
+
+import kotlin.test.Test
+import kotlin.test.assertEquals
+
+internal class DirectoryScanStatsTest {
+    @Test
+    fun recordFile_countsFilesFailuresAndBarcodes() {
+        val stats = DirectoryScanStats()
+        stats.start(SECOND)
+
+        stats.recordFile(100 * MILLIS, 2, false)
+        stats.recordFile(50 * MILLIS, 0, true)
+
+        assertEquals(2L, stats.filesScanned)
+        assertEquals(1L, stats.filesFailed)
+        assertEquals(2L, stats.barcodesFound)
+    }
+
+    @Test
+    fun filesPerSecond_stopsAtTheEndOfTheRun() {
+        val stats = DirectoryScanStats()
+        stats.start(SECOND)
+        repeat(10) { stats.recordFile(10 * MILLIS, 1, false) }
+
+        assertEquals(5.0, stats.getFilesPerSecond(3 * SECOND), 1e-9)
+        stats.finish(5 * SECOND)
+        assertEquals(2.5, stats.getFilesPerSecond(9 * SECOND), 1e-9)
+        assertEquals(false, stats.toMap(9 * SECOND)["running"])
+    }
+
+    @Test
+    fun start_clearsTheLastRun() {
+        val stats = DirectoryScanStats()
+        stats.start(SECOND)
+        stats.recordFile(10 * MILLIS, 3, true)
+        stats.finish(2 * SECOND)
+
+        stats.start(3 * SECOND)
+
+        assertEquals(0L, stats.filesScanned)
+        assertEquals(0L, stats.barcodesFound)
+        assertEquals(true, stats.toMap(4 * SECOND)["running"])
+        assertEquals(1000L, stats.toMap(4 * SECOND)["elapsedMs"])
+    }
+
+    private companion object {
+        const val MILLIS = 1_000_000L
+        const val SECOND = 1_000_000_000L
+    }
+}
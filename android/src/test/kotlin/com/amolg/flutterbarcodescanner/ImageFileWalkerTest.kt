@@ -0,0 +1,71 @@
+package com.amolg.flutterbarcodescanner
+
+import java.io.File
+import java.nio.file.Files
+import kotlin.test.AfterTest
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+internal class ImageFileWalkerTest {
+    private val root: File = Files.createTempDirectory("walker").toFile()
+
+    @AfterTest
+    fun deleteFiles() {
+        root.deleteRecursively()
+    }
+
+    @Test
+    fun walk_givesImagesInNameOrder_filesBeforeSubdirectories() {
+        create("b.jpg", "a.PNG", "notes.txt", "sub/c.webp", "sub/deeper/d.jpeg", "other/e.jpg")
+
+        assertEquals(listOf("a.PNG", "b.jpg", "e.jpg", "c.webp", "d.jpeg"),
+            walk(ImageFileWalker(root, true)))
+    }
+
+    @Test
+    fun walk_notRecursive_staysInTheDirectory() {
+        create("a.jpg", "sub/b.jpg")
+
+        assertEquals(listOf("a.jpg"), walk(ImageFileWalker(root, false)))
+    }
+
+    @Test
+    fun walk_skipsHiddenFilesAndDirectories() {
+        create(".hidden.jpg", ".thumbnails/a.jpg", "b.jpg")
+
+        assertEquals(listOf("b.jpg"), walk(ImageFileWalker(root, true)))
+    }
+
+    @Test
+    fun isImage_matchesExtensionsOnly() {
+        assertTrue(ImageFileWalker.isImage("IMG_0001.JPG"))
+        assertTrue(ImageFileWalker.isImage("scan.heic"))
+        assertFalse(ImageFileWalker.isImage("jpg"))
+        assertFalse(ImageFileWalker.isImage("report.pdf"))
+    }
+
+    @Test
+    fun notADirectory_isRejected() {
+        create("a.jpg")
+
+        assertFailsWith<IllegalArgumentException> { ImageFileWalker(File(root, "a.jpg"), true) }
+    }
+
+    private fun create(vararg paths: String) {
+        for (path in paths) {
+            val file = File(root, path)
+            file.parentFile.mkdirs()
+            file.writeText("")
+        }
+    }
+
+    private fun walk(walker: ImageFileWalker): List<String> {
+        val names = mutableListOf<String>()
+        while (true) {
+            names.add(walker.next()?.name ?: return names)
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.amolg.flutterbarcodescanner
+
+import kotlin.test.Test
+import kotlin.test.assertContentEquals
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+
+internal class ImageTilingTest {
+    @Test
+    fun sideNoLongerThanTile_isOneTile() {
+        assertContentEquals(intArrayOf(0), ImageTiling.tileOrigins(1500, 2048, 256))
+        assertContentEquals(intArrayOf(0), ImageTiling.tileOrigins(2048, 2048, 256))
+    }
+
+    @Test
+    fun tilesOverlap_andLastEndsAtTheEdge() {
+        assertContentEquals(intArrayOf(0, 1792, 2952), ImageTiling.tileOrigins(5000, 2048, 256))
+    }
+
+    @Test
+    fun tilesThatFitExactly_areNotRepeated() {
+        assertContentEquals(intArrayOf(0, 1792, 3584), ImageTiling.tileOrigins(5632, 2048, 256))
+    }
+
+    @Test
+    fun everyCodeNoWiderThanTheOverlap_fitsInATile() {
+        val length = 8000
+        val origins = ImageTiling.tileOrigins(length, 2048, 256)
+        for (start in 0..length - 256) {
+            val inside = origins.any { start >= it && start + 256 <= it + 2048 }
+            assertEquals(true, inside, "Code at $start")
+        }
+    }
+
+    @Test
+    fun sampleSize_bringsTheLongerSideDown() {
+        assertEquals(1, ImageTiling.sampleSize(2048, 1536, 2048))
+        assertEquals(2, ImageTiling.sampleSize(4000, 3000, 2048))
+        assertEquals(4, ImageTiling.sampleSize(6000, 8000, 2048))
+    }
+
+    @Test
+    fun invalidTiling_isRejected() {
+        assertFailsWith<IllegalArgumentException> { ImageTiling.tileOrigins(5000, 256, 256) }
+        assertFailsWith<IllegalArgumentException> { ImageTiling.tileOrigins(0, 2048, 256) }
+    }
+}
@@ -0,0 +1,71 @@
+package com.amolg.flutterbarcodescanner
+
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertNull
+
+internal class PreviewProfileTest {
+    @Test
+    fun choose_prefersMostCodesReadAmongFastEnoughSizes() {
+        val profile = PreviewProfile.choose(listOf(
+            PreviewProfile.Measurement(640, 480, 0.33f, 60f),
+            PreviewProfile.Measurement(1280, 720, 0.67f, 25f),
+            PreviewProfile.Measurement(1920, 1080, 1.0f, 6f)), 10f)
+
+        assertEquals(1280, profile.previewWidth)
+        assertEquals(720, profile.previewHeight)
+        assertEquals(25, profile.fps)
+    }
+
+    @Test
+    fun choose_equallyGood_prefersFaster() {
+        val profile = PreviewProfile.choose(listOf(
+            PreviewProfile.Measurement(1920, 1080, 1.0f, 12f),
+            PreviewProfile.Measurement(1600, 1024, 1.0f, 18f)), 10f)
+
+        assertEquals(1600, profile.previewWidth)
+        assertEquals(18, profile.fps)
+    }
+
+    @Test
+    fun choose_noneFastEnough_picksFastestAtMinimumFps() {
+        val profile = PreviewProfile.choose(listOf(
+            PreviewProfile.Measurement(640, 480, 0.0f, 8f),
+            PreviewProfile.Measurement(1280, 720, 0.67f, 4f)), 10f)
+
+        assertEquals(640, profile.previewWidth)
+        assertEquals(15, profile.fps)
+    }
+
+    @Test
+    fun choose_fastDetector_capsFpsAt30() {
+        val profile = PreviewProfile.choose(listOf(
+            PreviewProfile.Measurement(1600, 1024, 1.0f, 90f)), 10f)
+
+        assertEquals(30, profile.fps)
+    }
+
+    @Test
+    fun choose_noMeasurements_isRejected() {
+        assertFailsWith<IllegalArgumentException> { PreviewProfile.choose(emptyList(), 10f) }
+    }
+
+    @Test
+    fun decode_encoded_roundTrips() {
+        val decoded = PreviewProfile.decode(PreviewProfile(1280, 720, 24).encode())!!
+
+        assertEquals(1280, decoded.previewWidth)
+        assertEquals(720, decoded.previewHeight)
+        assertEquals(24, decoded.fps)
+    }
+
+    @Test
+    fun decode_otherVersionOrMalformed_returnsNull() {
+        assertNull(PreviewProfile.decode(null))
+        assertNull(PreviewProfile.decode("2;1280;720;24"))
+        assertNull(PreviewProfile.decode("1;1280;wide;24"))
+        assertNull(PreviewProfile.decode("1;0;720;24"))
+        assertNull(PreviewProfile.decode("1;1280"))
+    }
+}
@@ -0,0 +1,42 @@
+package com.amolg.flutterbarcodescanner
+
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertNull
+
+internal class ResultBatcherTest {
+    @Test
+    fun add_firstItem_schedulesFlush() {
+        val batcher = ResultBatcher<String>(3, 50)
+
+        assertEquals(ResultBatcher.SCHEDULE_FLUSH, batcher.add("a", 0))
+        assertEquals(ResultBatcher.PENDING, batcher.add("b", 0))
+        assertEquals(ResultBatcher.FLUSH_NOW, batcher.add("c", 0))
+        assertEquals(listOf("a", "b", "c"), batcher.drain())
+    }
+
+    @Test
+    fun drainIfDue_beforeDelay_keepsBatch() {
+        val batcher = ResultBatcher<String>(3, 50)
+        batcher.add("a", 0)
+
+        assertNull(batcher.drainIfDue(49 * MILLIS))
+        assertEquals(listOf("a"), batcher.drainIfDue(50 * MILLIS))
+    }
+
+    @Test
+    fun drainIfDue_staleTimerAfterSizeFlush_leavesNextBatch() {
+        val batcher = ResultBatcher<String>(1, 50)
+        batcher.add("a", 0)
+        batcher.drain()
+        batcher.add("b", 30 * MILLIS)
+
+        // The first batch's timer fires, but the second batch is only 20ms old.
+        assertNull(batcher.drainIfDue(50 * MILLIS))
+        assertEquals(listOf("b"), batcher.drainIfDue(80 * MILLIS))
+    }
+
+    private companion object {
+        const val MILLIS = 1_000_000L
+    }
+}
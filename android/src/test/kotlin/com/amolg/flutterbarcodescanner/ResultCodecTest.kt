@@ -0,0 +1,56 @@
+package com.amolg.flutterbarcodescanner
+
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import kotlin.test.Test
+import kotlin.test.assertEquals
+
+internal class ResultCodecTest {
+    @Test
+    fun encodeMessage_writesHeaderAndRecord() {
+        val message = ByteBuffer.wrap(ResultCodec().encodeMessage(256, "héllo", null, 1234L))
+            .order(ByteOrder.LITTLE_ENDIAN)
+
+        assertEquals(ResultCodec.VERSION, message.get().toInt())
+        message.get()
+        assertEquals(1, message.getShort().toInt())
+        assertEquals(256, message.getInt())
+        assertEquals(1234L, message.getLong())
+        repeat(4) { assertEquals(0, message.getInt()) }
+        assertEquals(0, message.get().toInt())
+        val length = message.getInt()
+        val value = ByteArray(length).also { message.get(it) }
+        assertEquals("héllo", String(value, Charsets.UTF_8))
+        assertEquals(0, message.remaining())
+    }
+
+    @Test
+    fun encodeRecord_longValue_growsBuffer() {
+        val value = "x".repeat(10_000)
+        val record = ResultCodec().encodeRecord(1, value, null, 0)
+
+        assertEquals(4 + 8 + 16 + 1 + 4 + value.length, record.size)
+    }
+
+    @Test
+    fun encodeRecord_unpairedSurrogate_isReplaced() {
+        val record = ByteBuffer.wrap(ResultCodec().encodeRecord(1, "a\uD800b", null, 0))
+            .order(ByteOrder.LITTLE_ENDIAN)
+
+        record.position(4 + 8 + 16 + 1)
+        val length = record.getInt()
+        val value = ByteArray(length).also { record.get(it) }
+        assertEquals("a?b", String(value, Charsets.UTF_8))
+    }
+
+    @Test
+    fun joinRecords_countsRecords() {
+        val codec = ResultCodec()
+        val records = listOf(codec.encodeRecord(1, "a", null, 0), codec.encodeRecord(2, "bc", null, 0))
+
+        val message = ResultCodec.joinRecords(records)
+
+        assertEquals(ResultCodec.HEADER_SIZE + records.sumOf { it.size }, message.size)
+        assertEquals(2, message[2].toInt())
+    }
+}
@@ -0,0 +1,55 @@
+package com.amolg.flutterbarcodescanner
+
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertTrue
+
+internal class SyntheticBarcodeTest {
+    @Test
+    fun withCheckDigit_appendsEan13CheckDigit() {
+        assertEquals("4006381333931", SyntheticBarcode.withCheckDigit("400638133393"))
+        assertEquals("5901234123457", SyntheticBarcode.withCheckDigit("590123412345"))
+    }
+
+    @Test
+    fun encodeEan13_hasGuardsAndModuleCount() {
+        val modules = SyntheticBarcode.encodeEan13("4006381333931")
+
+        assertEquals(SyntheticBarcode.EAN_13_MODULES, modules.size)
+        assertEquals("101", pattern(modules, 0, 3))
+        assertEquals("01010", pattern(modules, 45, 50))
+        assertEquals("101", pattern(modules, 92, 95))
+        // First digit 4 gives L G L L G G parity; the second digit, 0, is an L code.
+        assertEquals("0001101", pattern(modules, 3, 10))
+    }
+
+    @Test
+    fun encodeEan13_badCheckDigit_isRejected() {
+        assertFailsWith<IllegalArgumentException> { SyntheticBarcode.encodeEan13("4006381333932") }
+        assertFailsWith<IllegalArgumentException> { SyntheticBarcode.withCheckDigit("40063813339x") }
+    }
+
+    @Test
+    fun render_onePixelPerModule_drawsModulesAsColumns() {
+        val modules = SyntheticBarcode.encodeEan13("4006381333931")
+        val width = modules.size + 2 * SyntheticBarcode.QUIET_MODULES
+        val height = 100
+        val frame = ByteArray(width * height * 3 / 2)
+
+        SyntheticBarcode.render(modules, width, height, 1.0f, 0, 0, frame)
+
+        val row = height / 2 * width
+        val first = SyntheticBarcode.QUIET_MODULES
+        assertTrue(luma(frame, row + first - 1) > 200)
+        assertTrue(luma(frame, row + first) < 40)
+        assertTrue(luma(frame, row + first + 1) > 200)
+        // Neutral chroma after the luma plane.
+        assertEquals(128, luma(frame, width * height))
+    }
+
+    private fun pattern(modules: BooleanArray, from: Int, to: Int) =
+        (from until to).joinToString("") { if (modules[it]) "1" else "0" }
+
+    private fun luma(frame: ByteArray, index: Int) = frame[index].toInt() and 0xff
+}
@@ -0,0 +1,74 @@
+package com.amolg.flutterbarcodescanner.camera
+
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+
+internal class AutoTorchControllerTest {
+    @Test
+    fun darkScene_turnsOnAfterSettleTime() {
+        val controller = AutoTorchController(50, 140, 500, 2000)
+
+        assertEquals(AutoTorchController.NO_CHANGE, controller.onFrame(ms(0), 20, false))
+        assertEquals(AutoTorchController.NO_CHANGE, controller.onFrame(ms(400), 20, false))
+        assertEquals(AutoTorchController.TURN_ON, controller.onFrame(ms(500), 20, false))
+    }
+
+    @Test
+    fun brightnessBetweenLevels_leavesTorchAsItIs() {
+        val controller = AutoTorchController(50, 140, 500, 2000)
+
+        for (t in 0L..5000L step 100) {
+            assertEquals(AutoTorchController.NO_CHANGE, controller.onFrame(ms(t), 90, false))
+            assertEquals(AutoTorchController.NO_CHANGE, controller.onFrame(ms(t), 90, true))
+        }
+    }
+
+    @Test
+    fun brightFrameDuringSettle_restartsTheWait() {
+        val controller = AutoTorchController(50, 140, 500, 0)
+
+        controller.onFrame(ms(0), 0, false)
+        controller.onFrame(ms(300), 255, false)
+        assertEquals(AutoTorchController.NO_CHANGE, controller.onFrame(ms(600), 0, false))
+    }
+
+    @Test
+    fun afterSwitch_holdsBeforeSwitchingBack() {
+        val controller = AutoTorchController(50, 140, 0, 2000)
+
+        assertEquals(AutoTorchController.TURN_ON, controller.onFrame(ms(0), 0, false))
+        for (t in 100L..1900L step 100) {
+            assertEquals(AutoTorchController.NO_CHANGE, controller.onFrame(ms(t), 255, true))
+        }
+        assertEquals(AutoTorchController.TURN_OFF, controller.onFrame(ms(2000), 255, true))
+    }
+
+    @Test
+    fun reset_forgetsEarlierBrightness() {
+        val controller = AutoTorchController(50, 140, 0, 0)
+        controller.onFrame(ms(0), 255, false)
+
+        controller.reset()
+
+        assertEquals(AutoTorchController.TURN_ON, controller.onFrame(ms(100), 0, false))
+    }
+
+    @Test
+    fun meanLuma_samplesGridOfYPlane() {
+        val width = 8
+        val height = 4
+        // Y plane of 0xC8 (200, read as unsigned) followed by chroma the sampling must skip.
+        val data = ByteArray(width * height * 3 / 2) { i -> if (i < width * height) 0xC8.toByte() else 0 }
+
+        assertEquals(200, AutoTorchController.meanLuma(data, width, height, 2))
+        assertEquals(200, AutoTorchController.meanLuma(data, width, height, 1))
+    }
+
+    @Test
+    fun invalidLevels_areRejected() {
+        assertFailsWith<IllegalArgumentException> { AutoTorchController(140, 50, 500, 2000) }
+    }
+
+    private fun ms(millis: Long) = millis * 1_000_000L
+}
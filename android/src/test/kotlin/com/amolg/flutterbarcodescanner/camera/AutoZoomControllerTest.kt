@@ -0,0 +1,95 @@
+package com.amolg.flutterbarcodescanner.camera
+
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+
+internal class AutoZoomControllerTest {
+    @Test
+    fun nothingFound_stepsInEveryIdlePeriod() {
+        val controller = AutoZoomController(3.0f, 800, 1.25f, 0.15f, 0.3f)
+        controller.reset(ms(0))
+
+        assertEquals(AutoZoomController.NO_CHANGE, controller.onFrameDetected(ms(799), 0, 0f))
+        assertEquals(1.25f, controller.onFrameDetected(ms(800), 0, 0f))
+        assertEquals(AutoZoomController.NO_CHANGE, controller.onFrameDetected(ms(1599), 0, 0f))
+        assertEquals(1.5625f, controller.onFrameDetected(ms(1600), 0, 0f))
+    }
+
+    @Test
+    fun atMaximum_goesBackToNoZoomAfterIdlePeriod() {
+        val controller = AutoZoomController(1.5f, 800, 1.25f, 0.15f, 0.3f)
+        controller.reset(ms(0))
+
+        assertEquals(1.25f, controller.onFrameDetected(ms(800), 0, 0f))
+        assertEquals(1.5f, controller.onFrameDetected(ms(1600), 0, 0f))
+        assertEquals(1.0f, controller.onFrameDetected(ms(2400), 0, 0f))
+    }
+
+    @Test
+    fun codeReadAtNormalSize_resetsZoom() {
+        val controller = AutoZoomController(3.0f, 800, 1.25f, 0.15f, 0.3f)
+        controller.reset(ms(0))
+        controller.onFrameDetected(ms(800), 0, 0f)
+
+        assertEquals(1.0f, controller.onFrameDetected(ms(900), 1, 0.4f))
+        assertEquals(AutoZoomController.NO_CHANGE, controller.onFrameDetected(ms(1000), 1, 0.4f))
+    }
+
+    @Test
+    fun codeRead_restartsTheSearchWait() {
+        val controller = AutoZoomController(3.0f, 800, 1.25f, 0.15f, 0.3f)
+        controller.reset(ms(0))
+
+        controller.onFrameDetected(ms(700), 1, 0.4f)
+        assertEquals(AutoZoomController.NO_CHANGE, controller.onFrameDetected(ms(1400), 0, 0f))
+        assertEquals(1.25f, controller.onFrameDetected(ms(1500), 0, 0f))
+    }
+
+    @Test
+    fun smallCode_stepsTowardsTargetWidth() {
+        val controller = AutoZoomController(5.0f, 800, 4.0f, 0.15f, 0.3f)
+        controller.reset(ms(0))
+
+        assertEquals(3.0f, controller.onFrameDetected(ms(400), 1, 0.1f), 0.001f)
+        // Too soon after the step to judge the size again.
+        assertEquals(AutoZoomController.NO_CHANGE, controller.onFrameDetected(ms(500), 1, 0.1f))
+    }
+
+    @Test
+    fun smallCode_keepsZoomOnceReadAtZoomedWidth() {
+        val controller = AutoZoomController(5.0f, 800, 4.0f, 0.15f, 0.3f)
+        controller.reset(ms(0))
+
+        assertEquals(3.0f, controller.onFrameDetected(ms(400), 1, 0.1f), 0.001f)
+        // The same code, now read at three times its width.
+        assertEquals(AutoZoomController.NO_CHANGE, controller.onFrameDetected(ms(1000), 1, 0.3f))
+        assertEquals(AutoZoomController.NO_CHANGE, controller.onFrameDetected(ms(2000), 1, 0.3f))
+    }
+
+    @Test
+    fun zoomedCode_largeWithoutZoom_resetsZoom() {
+        val controller = AutoZoomController(5.0f, 800, 4.0f, 0.15f, 0.3f)
+        controller.reset(ms(0))
+
+        assertEquals(3.0f, controller.onFrameDetected(ms(400), 1, 0.1f), 0.001f)
+        // 0.6 of the zoomed frame is 0.2 of the frame without zoom.
+        assertEquals(1.0f, controller.onFrameDetected(ms(1000), 1, 0.6f))
+    }
+
+    @Test
+    fun smallCode_stepIsLimited() {
+        val controller = AutoZoomController(3.0f, 800, 1.25f, 0.15f, 0.3f)
+        controller.reset(ms(0))
+
+        assertEquals(1.25f, controller.onFrameDetected(ms(400), 1, 0.05f))
+    }
+
+    @Test
+    fun invalidSettings_areRejected() {
+        assertFailsWith<IllegalArgumentException> { AutoZoomController(0.5f) }
+        assertFailsWith<IllegalArgumentException> { AutoZoomController(3.0f, 800, 1.0f, 0.15f, 0.3f) }
+    }
+
+    private fun ms(millis: Long) = millis * 1_000_000L
+}
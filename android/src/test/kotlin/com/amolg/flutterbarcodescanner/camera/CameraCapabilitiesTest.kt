@@ -0,0 +1,43 @@
+package com.amolg.flutterbarcodescanner.camera
+
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertNull
+
+internal class CameraCapabilitiesTest {
+    @Test
+    fun decode_encoded_roundTrips() {
+        val capabilities = CameraCapabilities(1, 1600, 1200, 4000, 3000, 15000, 30000,
+            listOf("auto", "continuous-picture"), listOf("off", "torch"))
+
+        val decoded = CameraCapabilities.decode(capabilities.encode())!!
+
+        assertEquals(1, decoded.cameraId)
+        assertEquals(1600, decoded.previewWidth)
+        assertEquals(1200, decoded.previewHeight)
+        assertEquals(4000, decoded.pictureWidth)
+        assertEquals(3000, decoded.pictureHeight)
+        assertEquals(15000, decoded.minFps)
+        assertEquals(30000, decoded.maxFps)
+        assertEquals(listOf("auto", "continuous-picture"), decoded.focusModes)
+        assertEquals(listOf("off", "torch"), decoded.flashModes)
+    }
+
+    @Test
+    fun decode_noModes_givesEmptyLists() {
+        val capabilities = CameraCapabilities(0, 640, 480, 0, 0, 30000, 30000, null, null)
+
+        val decoded = CameraCapabilities.decode(capabilities.encode())!!
+
+        assertEquals(emptyList(), decoded.focusModes)
+        assertEquals(emptyList(), decoded.flashModes)
+    }
+
+    @Test
+    fun decode_otherVersionOrMalformed_returnsNull() {
+        assertNull(CameraCapabilities.decode("2;0;640;480;0;0;30000;30000;;"))
+        assertNull(CameraCapabilities.decode("1;0;640;480;0;0;fast;30000;;"))
+        assertNull(CameraCapabilities.decode("1;0;640"))
+        assertNull(CameraCapabilities.decode(null))
+    }
+}
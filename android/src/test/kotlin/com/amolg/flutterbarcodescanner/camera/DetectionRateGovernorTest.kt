@@ -0,0 +1,71 @@
+package com.amolg.flutterbarcodescanner.camera
+
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+/*
+ * Tests for the detection rate policy.  Times are fed in directly, so no camera is involved.
+ */
+
+internal class DetectionRateGovernorTest {
+    @Test
+    fun onFrameDetected_emptyFrames_dropToIdleRate() {
+        val governor = DetectionRateGovernor(10f, 30f, 2f, 4, 1)
+
+        repeat(3) { governor.onFrameDetected(FAST_DETECT_NANOS, false) }
+        assertTrue(governor.getRate() > 10f && governor.getRate() < 30f)
+
+        governor.onFrameDetected(FAST_DETECT_NANOS, false)
+        assertEquals(2f, governor.getRate())
+    }
+
+    @Test
+    fun onFrameDetected_detectionWhileIdle_jumpsToMaxRate() {
+        val governor = DetectionRateGovernor(10f, 30f, 2f, 4, 1)
+        repeat(10) { governor.onFrameDetected(FAST_DETECT_NANOS, false) }
+
+        governor.onFrameDetected(FAST_DETECT_NANOS, true)
+
+        assertEquals(30f, governor.getRate())
+    }
+
+    @Test
+    fun onFrameDetected_slowDetector_capsRateAtSustainableRate() {
+        val governor = DetectionRateGovernor(5f, 30f, 2f, 4, 2)
+
+        // 100ms per frame on two workers sustains 20 fps, of which the governor uses 80%.
+        governor.onFrameDetected(100_000_000L, true)
+
+        assertEquals(16f, governor.getRate(), 0.01f)
+    }
+
+    @Test
+    fun tryDispatch_withinInterval_refusesFrame() {
+        val governor = DetectionRateGovernor(10f, 10f, 2f, 4, 1)
+
+        assertTrue(governor.tryDispatch(0))
+        assertFalse(governor.tryDispatch(50_000_000L))
+        assertTrue(governor.tryDispatch(100_000_000L))
+    }
+
+    @Test
+    fun setRateCap_holdsRateUntilLifted() {
+        val governor = DetectionRateGovernor(10f, 30f, 2f, 4, 1)
+
+        governor.setRateCap(governor.getMinRate())
+        governor.onFrameDetected(FAST_DETECT_NANOS, true)
+        assertEquals(10f, governor.getRate())
+        governor.reset()
+        assertEquals(10f, governor.getRate())
+
+        governor.setRateCap(Float.MAX_VALUE)
+        governor.onFrameDetected(FAST_DETECT_NANOS, true)
+        assertEquals(30f, governor.getRate())
+    }
+
+    private companion object {
+        const val FAST_DETECT_NANOS = 5_000_000L
+    }
+}
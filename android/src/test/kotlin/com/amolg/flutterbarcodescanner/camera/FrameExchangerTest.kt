@@ -0,0 +1,132 @@
+package com.amolg.flutterbarcodescanner.camera
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import kotlin.concurrent.thread
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertNull
+import kotlin.test.assertTrue
+
+/*
+ * Tests for the preview callback to processing thread handoff, including a comparison with the
+ * monitor-based handoff it replaced.
+ */
+
+internal class FrameExchangerTest {
+    @Test
+    fun offer_withPendingItem_returnsReplacedItem() {
+        val exchanger = FrameExchanger<Int>()
+
+        assertNull(exchanger.offer(1))
+        assertEquals(1, exchanger.offer(2))
+        assertEquals(2, exchanger.take())
+        assertNull(exchanger.poll())
+    }
+
+    @Test
+    fun take_whenClosed_returnsNull() {
+        val exchanger = FrameExchanger<Int>()
+        var taken: Int? = -1
+
+        val consumer = thread { taken = exchanger.take() }
+        Thread.sleep(20)
+        exchanger.setOpen(false)
+        consumer.join(1000)
+
+        assertNull(taken)
+    }
+
+    @Test
+    fun take_parkedConsumer_isWokenByOffer() {
+        val exchanger = FrameExchanger<Int>()
+        var taken: Int? = null
+
+        val consumer = thread { taken = exchanger.take() }
+        Thread.sleep(20)
+        exchanger.offer(7)
+        consumer.join(1000)
+
+        assertEquals(7, taken)
+    }
+
+    @Test
+    fun offer_whileConsumerBuildsFrame_blocksOnlyTheMonitorHandoff() {
+        // The camera callback must not wait while the processing thread builds a frame.  The
+        // monitor handoff this replaced held its lock for that time, so a frame arriving then
+        // waited the whole build, which is where its tail latency came from.
+        assertTrue(offerCompletesWhileBuilding { build -> ExchangerHandoff(build) })
+        assertFalse(offerCompletesWhileBuilding { build -> MonitorHandoff(build) })
+    }
+
+    private interface Handoff {
+        /** Producer side: publishes a frame, returns a replaced frame or null. */
+        fun offer(frame: Int): Int?
+
+        /** Consumer side: takes the next frame and does the per-frame setup work. */
+        fun take(): Int?
+    }
+
+    /** The previous handoff: the consumer builds the frame while holding the lock. */
+    private class MonitorHandoff(private val buildFrame: () -> Unit) : Handoff {
+        private val lock = Object()
+        private var pending: Int? = null
+
+        override fun offer(frame: Int): Int? = synchronized(lock) {
+            val replaced = pending
+            pending = frame
+            lock.notifyAll()
+            replaced
+        }
+
+        override fun take(): Int? = synchronized(lock) {
+            while (pending == null) {
+                lock.wait()
+            }
+            buildFrame()
+            val frame = pending
+            pending = null
+            frame
+        }
+    }
+
+    private class ExchangerHandoff(private val buildFrame: () -> Unit) : Handoff {
+        private val exchanger = FrameExchanger<Int>()
+
+        override fun offer(frame: Int): Int? = exchanger.offer(frame)
+
+        override fun take(): Int? = exchanger.take()?.also { buildFrame() }
+    }
+
+    /**
+     * Offers a frame while the consumer is in the middle of building the previous one, and
+     * returns whether the offer completed before the build was allowed to finish.
+     */
+    private fun offerCompletesWhileBuilding(create: (() -> Unit) -> Handoff): Boolean {
+        val building = CountDownLatch(1)
+        val finishBuild = CountDownLatch(1)
+        val handoff = create {
+            building.countDown()
+            finishBuild.await()
+        }
+        handoff.offer(1)
+        val consumer = thread { handoff.take() }
+        assertTrue(building.await(1, TimeUnit.SECONDS))
+
+        val offered = CountDownLatch(1)
+        val producer = thread {
+            handoff.offer(2)
+            offered.countDown()
+        }
+        val completed = offered.await(OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+        finishBuild.countDown()
+        producer.join(1000)
+        consumer.join(1000)
+        return completed
+    }
+
+    private companion object {
+        const val OFFER_TIMEOUT_MS = 500L
+    }
+}
@@ -0,0 +1,42 @@
+package com.amolg.flutterbarcodescanner.camera
+
+import android.os.Handler
+import android.view.FrameMetrics
+import android.view.Window
+import org.mockito.Mockito
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+
+internal class FrameMetricsRecorderTest {
+    @Test
+    fun start_registersWithTheGivenHandler() {
+        val window = Mockito.mock(Window::class.java)
+        val handler = Mockito.mock(Handler::class.java)
+        val recorder = FrameMetricsRecorder(ScannerStats(), handler)
+
+        recorder.start(window)
+
+        Mockito.verify(window).addOnFrameMetricsAvailableListener(recorder, handler)
+    }
+
+    @Test
+    fun noHandler_isRejected() {
+        // The platform needs a handler to deliver frame metrics on.
+        assertFailsWith<IllegalArgumentException> { FrameMetricsRecorder(ScannerStats(), null) }
+    }
+
+    @Test
+    fun onFrameMetricsAvailable_recordsDrawAndTotalTime() {
+        val stats = ScannerStats()
+        val metrics = Mockito.mock(FrameMetrics::class.java)
+        Mockito.`when`(metrics.getMetric(FrameMetrics.DRAW_DURATION)).thenReturn(2_000_000L)
+        Mockito.`when`(metrics.getMetric(FrameMetrics.TOTAL_DURATION)).thenReturn(9_000_000L)
+
+        FrameMetricsRecorder(stats, Mockito.mock(Handler::class.java))
+            .onFrameMetricsAvailable(Mockito.mock(Window::class.java), metrics, 0)
+
+        assertEquals(2000L, stats.uiDraw.maxMicros)
+        assertEquals(9000L, stats.uiFrame.maxMicros)
+    }
+}
@@ -0,0 +1,48 @@
+package com.amolg.flutterbarcodescanner.camera
+
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertTrue
+
+internal class LatencyHistogramTest {
+    @Test
+    fun bucketIndex_isContinuousAndContainsValue() {
+        var previous = -1
+        for (micros in longArrayOf(0, 1, 63, 64, 65, 127, 128, 1000, 65_535, 1L shl 31)) {
+            val index = LatencyHistogram.bucketIndex(micros)
+            assertTrue(index >= previous)
+            assertTrue(LatencyHistogram.bucketUpperBound(index) >= micros)
+            previous = index
+        }
+        assertEquals(64, LatencyHistogram.bucketIndex(64))
+        assertEquals(95, LatencyHistogram.bucketIndex(127))
+    }
+
+    @Test
+    fun getPercentileMicros_withinBucketPrecision() {
+        val histogram = LatencyHistogram()
+        for (micros in 1..1000L) {
+            histogram.recordNanos(micros * 1000)
+        }
+
+        assertEquals(1000, histogram.getCount())
+        assertEquals(1, histogram.getMinMicros())
+        assertEquals(1000, histogram.getMaxMicros())
+        assertEquals(500, histogram.getMeanMicros())
+        val p50 = histogram.getPercentileMicros(50.0)
+        assertTrue(p50 in 500..516, "p50=$p50")
+        assertEquals(1000, histogram.getPercentileMicros(100.0))
+    }
+
+    @Test
+    fun reset_clearsRecordings() {
+        val histogram = LatencyHistogram()
+        histogram.recordNanos(5_000_000)
+
+        histogram.reset()
+
+        assertEquals(0, histogram.getCount())
+        assertEquals(0, histogram.getPercentileMicros(99.0))
+        assertEquals(0, histogram.getMinMicros())
+    }
+}
@@ -0,0 +1,53 @@
+package com.amolg.flutterbarcodescanner.camera
+
+import kotlin.test.Test
+import kotlin.test.assertFailsWith
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+internal class RefocusSchedulerTest {
+    @Test
+    fun nothingFound_refocusesAfterIdleTime() {
+        val scheduler = RefocusScheduler(500)
+        scheduler.reset(ms(1000))
+
+        assertFalse(scheduler.onFrameDetected(ms(1400), false))
+        assertTrue(scheduler.onFrameDetected(ms(1500), false))
+    }
+
+    @Test
+    fun afterRefocus_waitsIdleTimeAgain() {
+        val scheduler = RefocusScheduler(500)
+        scheduler.reset(ms(0))
+
+        assertTrue(scheduler.onFrameDetected(ms(600), false))
+        assertFalse(scheduler.onFrameDetected(ms(700), false))
+        assertFalse(scheduler.onFrameDetected(ms(1000), false))
+        assertTrue(scheduler.onFrameDetected(ms(1100), false))
+    }
+
+    @Test
+    fun found_restartsTheWait() {
+        val scheduler = RefocusScheduler(500)
+        scheduler.reset(ms(0))
+
+        assertFalse(scheduler.onFrameDetected(ms(400), true))
+        assertFalse(scheduler.onFrameDetected(ms(800), false))
+        assertTrue(scheduler.onFrameDetected(ms(900), false))
+    }
+
+    @Test
+    fun beforeReset_firstFrameStartsTheWait() {
+        val scheduler = RefocusScheduler(500)
+
+        assertFalse(scheduler.onFrameDetected(ms(10_000), false))
+        assertTrue(scheduler.onFrameDetected(ms(10_500), false))
+    }
+
+    @Test
+    fun nonPositiveDelay_isRejected() {
+        assertFailsWith<IllegalArgumentException> { RefocusScheduler(0) }
+    }
+
+    private fun ms(millis: Long) = millis * 1_000_000L
+}
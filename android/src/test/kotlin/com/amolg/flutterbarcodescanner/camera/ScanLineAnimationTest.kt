@@ -0,0 +1,29 @@
+package com.amolg.flutterbarcodescanner.camera
+
+import kotlin.test.Test
+import kotlin.test.assertEquals
+
+internal class ScanLineAnimationTest {
+    @Test
+    fun offset_movesAtConstantSpeed() {
+        assertEquals(0f, ScanLineAnimation.offset(0, 300f, 300f))
+        assertEquals(150f, ScanLineAnimation.offset(500 * MILLIS, 300f, 300f), 0.01f)
+        assertEquals(300f, ScanLineAnimation.offset(1000 * MILLIS, 300f, 300f), 0.01f)
+    }
+
+    @Test
+    fun offset_pastBottom_comesBackUp() {
+        assertEquals(200f, ScanLineAnimation.offset(1333 * MILLIS + 333_333L, 300f, 300f), 0.01f)
+        assertEquals(0f, ScanLineAnimation.offset(2000 * MILLIS, 300f, 300f), 0.01f)
+        assertEquals(150f, ScanLineAnimation.offset(2500 * MILLIS, 300f, 300f), 0.01f)
+    }
+
+    @Test
+    fun offset_noTravel_staysAtTop() {
+        assertEquals(0f, ScanLineAnimation.offset(1000 * MILLIS, 0f, 300f))
+    }
+
+    private companion object {
+        const val MILLIS = 1_000_000L
+    }
+}
@@ -0,0 +1,72 @@
+package com.amolg.flutterbarcodescanner.camera
+
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+
+internal class ThermalTierControllerTest {
+    private class FakeThermalSource : ThermalSource {
+        var status = 0
+
+        override fun getThermalStatus() = status
+
+        override fun release() {}
+    }
+
+    @Test
+    fun hotter_stepsDownAtOnce() {
+        val source = FakeThermalSource()
+        val controller = ThermalTierController(source, 30_000)
+        assertEquals(ThermalTierController.TIER_NORMAL, controller.update(ms(0)))
+
+        source.status = 3 // THERMAL_STATUS_SEVERE
+        assertEquals(ThermalTierController.TIER_LOWER_RESOLUTION, controller.update(ms(10)))
+    }
+
+    @Test
+    fun statusesPastCritical_useLastTier() {
+        val source = FakeThermalSource()
+        source.status = 6 // THERMAL_STATUS_SHUTDOWN
+        val controller = ThermalTierController(source, 30_000)
+
+        assertEquals(ThermalTierController.TIER_NO_ANIMATION, controller.update(ms(0)))
+    }
+
+    @Test
+    fun cooler_stepsUpOneTierPerCoolDown() {
+        val source = FakeThermalSource()
+        val controller = ThermalTierController(source, 30_000)
+        source.status = 2
+        controller.update(ms(0))
+
+        source.status = 0
+        assertEquals(ThermalTierController.TIER_LOWER_RATE, controller.update(ms(1_000)))
+        assertEquals(ThermalTierController.TIER_LOWER_RATE, controller.update(ms(30_999)))
+        assertEquals(ThermalTierController.TIER_FEWER_WORKERS, controller.update(ms(31_000)))
+        assertEquals(ThermalTierController.TIER_FEWER_WORKERS, controller.update(ms(60_999)))
+        assertEquals(ThermalTierController.TIER_NORMAL, controller.update(ms(61_000)))
+    }
+
+    @Test
+    fun heatingAgainWhileCooling_restartsCoolDown() {
+        val source = FakeThermalSource()
+        val controller = ThermalTierController(source, 30_000)
+        source.status = 2
+        controller.update(ms(0))
+
+        source.status = 1
+        controller.update(ms(1_000))
+        source.status = 2
+        controller.update(ms(20_000))
+        source.status = 1
+        assertEquals(ThermalTierController.TIER_LOWER_RATE, controller.update(ms(35_000)))
+        assertEquals(ThermalTierController.TIER_FEWER_WORKERS, controller.update(ms(65_000)))
+    }
+
+    @Test
+    fun negativeCoolDown_isRejected() {
+        assertFailsWith<IllegalArgumentException> { ThermalTierController(FakeThermalSource(), -1) }
+    }
+
+    private fun ms(millis: Long) = millis * 1_000_000L
+}
@@ -0,0 +1,100 @@
+// Compares the binary result encoding with sending the same results as maps.
+//
+// Run with: flutter test benchmark/result_codec_benchmark.dart
+//
+// Both paths go through StandardMessageCodec, as the event channel does, so
+// the numbers cover the channel's own encoding and decoding on the Dart side
+// as well as turning each message into BarcodeResult objects.
+import 'dart:typed_data';
+import 'dart:ui';
+
+import 'package:flutter/services.dart';
+import 'package:flutter_test/flutter_test.dart';
+import 'package:flutter_barcode_scanner/flutter_barcode_scanner_method_channel.dart';
+
+import '../test/barcode_result_codec_test.dart' show encode;
+
+const int _iterations = 20000;
+const codec = StandardMessageCodec();
+
+List<BarcodeResult> _results(int count) => List.generate(
+    count,
+    (i) => BarcodeResult(
+        'PALLET-${100000 + i}',
+        1,
+        Rect.fromLTRB(10.0 + i, 20, 300.0 + i, 80),
+        [
+          Offset(10.0 + i, 20),
+          Offset(300.0 + i, 20),
+          Offset(300.0 + i, 80),
+          Offset(10.0 + i, 80)
+        ],
+        DateTime.fromMicrosecondsSinceEpoch(1700000000000000 + i)));
+
+Map<String, Object> _toMap(BarcodeResult result) => <String, Object>{
+      'rawValue': result.rawValue,
+      'format': result.format,
+      'left': result.boundingBox.left.toInt(),
+      'top': result.boundingBox.top.toInt(),
+      'right': result.boundingBox.right.toInt(),
+      'bottom': result.boundingBox.bottom.toInt(),
+      'cornerPoints': [
+        for (final point in result.cornerPoints) ...[
+          point.dx.toInt(),
+          point.dy.toInt()
+        ]
+      ],
+      'timestamp': result.captureTime.microsecondsSinceEpoch,
+    };
+
+BarcodeResult _fromMap(Map<Object?, Object?> map) {
+  final corners = (map['cornerPoints']! as List).cast<int>();
+  return BarcodeResult(
+      map['rawValue']! as String,
+      map['format']! as int,
+      Rect.fromLTRB(
+          (map['left']! as int).toDouble(),
+          (map['top']! as int).toDouble(),
+          (map['right']! as int).toDouble(),
+          (map['bottom']! as int).toDouble()),
+      [
+        for (var i = 0; i < corners.length; i += 2)
+          Offset(corners[i].toDouble(), corners[i + 1].toDouble())
+      ],
+      DateTime.fromMicrosecondsSinceEpoch(map['timestamp']! as int));
+}
+
+double _microsPerMessage(void Function() body) {
+  for (var i = 0; i < _iterations ~/ 10; i++) {
+    body();
+  }
+  final stopwatch = Stopwatch()..start();
+  for (var i = 0; i < _iterations; i++) {
+    body();
+  }
+  return stopwatch.elapsedMicroseconds / _iterations;
+}
+
+void main() {
+  for (final count in [1, 32]) {
+    test('decode $count result(s) per message', () {
+      final results = _results(count);
+      final binaryMessage = codec.encodeMessage(encode(results))!;
+      final mapMessage =
+          codec.encodeMessage(results.map(_toMap).toList())!;
+
+      final binary = _microsPerMessage(() => BarcodeResultCodec.decode(
+          codec.decodeMessage(binaryMessage) as Uint8List));
+      final maps = _microsPerMessage(() =>
+          (codec.decodeMessage(mapMessage) as List)
+              .map((item) => _fromMap(item as Map<Object?, Object?>))
+              .toList());
+
+      // ignore: avoid_print
+      print('$count result(s): binary ${binary.toStringAsFixed(2)}us '
+          '(${binaryMessage.lengthInBytes} bytes), '
+          'maps ${maps.toStringAsFixed(2)}us '
+          '(${mapMessage.lengthInBytes} bytes)');
+    });
+  }
+}
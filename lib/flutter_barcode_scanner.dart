@@ -1,10 +1,34 @@
 import 'dart:async';
+import 'dart:typed_data';
 
 import 'package:flutter/services.dart';
+import 'package:flutter/widgets.dart';
+
+import 'flutter_barcode_scanner_method_channel.dart';
+
+export 'flutter_barcode_scanner_method_channel.dart'
+    show BarcodeResult, BarcodeResultCodec;
 
 /// Scan mode which is either QR code or BARCODE
 enum ScanMode { QR, BARCODE, DEFAULT }
 
+/// Barcode symbologies the scanner can be restricted to.
+enum BarcodeFormat {
+  CODE_128,
+  CODE_39,
+  CODE_93,
+  CODABAR,
+  DATA_MATRIX,
+  EAN_13,
+  EAN_8,
+  ITF,
+  QR_CODE,
+  UPC_A,
+  UPC_E,
+  PDF417,
+  AZTEC
+}
+
 /// Provides access to the barcode scanner.
 ///
 /// This class is an interface between the native Android and iOS classes and a
@@ -22,9 +46,46 @@ class FlutterBarcodeScanner {
   ///
   /// Shows a scan line with [lineColor] over a scan window. A flash icon is
   /// displayed if [isShowFlashIcon] is true. The text of the cancel button can
-  /// be customized with the [cancelButtonText] string.
+  /// be customized with the [cancelButtonText] string. On Android, frames are
+  /// decoded by [detectionWorkers] detectors in parallel, and only the scan
+  /// window is decoded if [scanWindowOnly] is true. Setting [useCamera2] uses
+  /// the Camera2 API, which decodes a smaller analysis stream than the preview.
+  ///
+  /// On Android, setting [scanWindowFocus] focuses and meters on the scan
+  /// window rather than the whole view, where the camera supports it, and a
+  /// positive [refocusAfterMs] starts a new focus scan whenever nothing has
+  /// been found for that long. [getStartupTrace] reports whether the scan
+  /// window was used, for comparing time to first decode.
+  ///
+  /// On Android, setting [autoTorch] switches the torch on while the preview
+  /// is dark and off again once it is bright. Switching the torch with the
+  /// flash icon turns automatic control off for the rest of the scan.
+  ///
+  /// On Android, setting [autoZoom] zooms in step by step while nothing is
+  /// found, or while only small codes are, and back out once a code is read
+  /// at a normal size. Pinching to zoom turns automatic zoom off for the rest
+  /// of the scan.
+  ///
+  /// On Android 10 and later, setting [thermalScaling] scales scanning back
+  /// in tiers as the device heats up: a single detection worker, then the
+  /// minimum detection rate, then frames decoded at half resolution, then a
+  /// still scan line. Scanning is restored a tier at a time as the device
+  /// cools. [getScannerStats] reports the tier.
+  ///
+  /// On Android, only the symbologies implied by [scanMode] are decoded: QR
+  /// codes for [ScanMode.QR], linear barcodes for [ScanMode.BARCODE] and all
+  /// of them for [ScanMode.DEFAULT]. A non-empty [formats] list overrides this.
   static Future<String> scanBarcode(String lineColor, String cancelButtonText,
-      bool isShowFlashIcon, ScanMode scanMode) async {
+      bool isShowFlashIcon, ScanMode scanMode,
+      {int detectionWorkers = 1,
+      bool scanWindowOnly = false,
+      bool useCamera2 = false,
+      bool scanWindowFocus = false,
+      int refocusAfterMs = 0,
+      bool autoTorch = false,
+      bool autoZoom = false,
+      bool thermalScaling = false,
+      List<BarcodeFormat> formats = const []}) async {
     if (cancelButtonText.isEmpty) {
       cancelButtonText = 'Cancel';
     }
@@ -35,7 +96,16 @@ class FlutterBarcodeScanner {
       'cancelButtonText': cancelButtonText,
       'isShowFlashIcon': isShowFlashIcon,
       'isContinuousScan': false,
-      'scanMode': scanMode.index
+      'scanMode': scanMode.index,
+      'detectionWorkers': detectionWorkers,
+      'scanWindowOnly': scanWindowOnly,
+      'useCamera2': useCamera2,
+      'scanWindowFocus': scanWindowFocus,
+      'refocusAfterMs': refocusAfterMs,
+      'autoTorch': autoTorch,
+      'autoZoom': autoZoom,
+      'thermalScaling': thermalScaling,
+      'formats': formats.map((format) => format.name).toList()
     };
 
     /// Get barcode scan result
@@ -44,15 +114,98 @@ class FlutterBarcodeScanner {
     return barcodeResult;
   }
 
+  /// Scans like [scanBarcode], but returns the result with its format,
+  /// geometry and capture time.
+  ///
+  /// Android only. Returns null if the scan was cancelled.
+  static Future<BarcodeResult?> scanBarcodeDetailed(String lineColor,
+      String cancelButtonText, bool isShowFlashIcon, ScanMode scanMode,
+      {int detectionWorkers = 1,
+      bool scanWindowOnly = false,
+      bool useCamera2 = false,
+      bool scanWindowFocus = false,
+      int refocusAfterMs = 0,
+      bool autoTorch = false,
+      bool autoZoom = false,
+      bool thermalScaling = false,
+      List<BarcodeFormat> formats = const []}) async {
+    if (cancelButtonText.isEmpty) {
+      cancelButtonText = 'Cancel';
+    }
+
+    // Pass params to the plugin
+    Map params = <String, dynamic>{
+      'lineColor': lineColor,
+      'cancelButtonText': cancelButtonText,
+      'isShowFlashIcon': isShowFlashIcon,
+      'isContinuousScan': false,
+      'scanMode': scanMode.index,
+      'detectionWorkers': detectionWorkers,
+      'scanWindowOnly': scanWindowOnly,
+      'useCamera2': useCamera2,
+      'scanWindowFocus': scanWindowFocus,
+      'refocusAfterMs': refocusAfterMs,
+      'autoTorch': autoTorch,
+      'autoZoom': autoZoom,
+      'thermalScaling': thermalScaling,
+      'formats': formats.map((format) => format.name).toList(),
+      'detailedResults': true
+    };
+
+    // A cancelled scan answers with a string instead of an encoded result.
+    final barcodeResult = await _channel.invokeMethod('scanBarcode', params);
+    if (barcodeResult is! Uint8List) {
+      return null;
+    }
+    return BarcodeResultCodec.decode(barcodeResult).first;
+  }
+
   /// Returns a continuous stream of barcode scans until the user cancels the
   /// operation.
   ///
   /// Shows a scan line with [lineColor] over a scan window. A flash icon is
   /// displayed if [isShowFlashIcon] is true. The text of the cancel button can
   /// be customized with the [cancelButtonText] string. Returns a stream of
-  /// detected barcode strings.
+  /// detected barcode strings. On Android, frames are decoded by
+  /// [detectionWorkers] detectors in parallel, and only the scan window is
+  /// decoded if [scanWindowOnly] is true. Setting [useCamera2] uses the
+  /// Camera2 API, which decodes a smaller analysis stream than the preview.
+  /// Focus follows [scanWindowFocus] and [refocusAfterMs], the torch follows
+  /// [autoTorch], zoom follows [autoZoom] and heat is handled as set by
+  /// [thermalScaling], as for [scanBarcode]. The decoded symbologies are chosen as for [scanBarcode].
+  ///
+  /// On Android, a positive [dedupWindowMs] suppresses a code, identified by
+  /// format and value, for that long after it was last sent, remembering up to
+  /// [dedupCapacity] codes. Suppressed repeats never cross the platform
+  /// channel; [getScannerStats] counts them as `dedupHits`.
+  ///
+  /// On Android, setting [batchResults] sends results in batches instead of
+  /// one at a time. Each event is then a list of maps with the `rawValue`,
+  /// `format` and capture `timestamp` (milliseconds since the epoch) of each
+  /// result. A batch is sent once it holds [batchMaxItems] results, or
+  /// [batchMaxDelayMs] after its first result.
+  ///
+  /// On Android, setting [detailedResults] sends each result as a
+  /// [BarcodeResult], with its format, geometry and capture time, in a compact
+  /// binary form. With [batchResults] each event is then a list of
+  /// [BarcodeResult]s.
   static Stream? getBarcodeStreamReceiver(String lineColor,
-      String cancelButtonText, bool isShowFlashIcon, ScanMode scanMode) {
+      String cancelButtonText, bool isShowFlashIcon, ScanMode scanMode,
+      {int detectionWorkers = 1,
+      bool scanWindowOnly = false,
+      bool useCamera2 = false,
+      bool scanWindowFocus = false,
+      int refocusAfterMs = 0,
+      bool autoTorch = false,
+      bool autoZoom = false,
+      bool thermalScaling = false,
+      List<BarcodeFormat> formats = const [],
+      int dedupWindowMs = 0,
+      int dedupCapacity = 256,
+      bool batchResults = false,
+      int batchMaxItems = 32,
+      int batchMaxDelayMs = 50,
+      bool detailedResults = false}) {
     if (cancelButtonText.isEmpty) {
       cancelButtonText = 'Cancel';
     }
@@ -63,13 +216,470 @@ class FlutterBarcodeScanner {
       'cancelButtonText': cancelButtonText,
       'isShowFlashIcon': isShowFlashIcon,
       'isContinuousScan': true,
-      'scanMode': scanMode.index
+      'scanMode': scanMode.index,
+      'detectionWorkers': detectionWorkers,
+      'scanWindowOnly': scanWindowOnly,
+      'useCamera2': useCamera2,
+      'scanWindowFocus': scanWindowFocus,
+      'refocusAfterMs': refocusAfterMs,
+      'autoTorch': autoTorch,
+      'autoZoom': autoZoom,
+      'thermalScaling': thermalScaling,
+      'formats': formats.map((format) => format.name).toList(),
+      'dedupWindowMs': dedupWindowMs,
+      'dedupCapacity': dedupCapacity,
+      'batchResults': batchResults,
+      'batchMaxItems': batchMaxItems,
+      'batchMaxDelayMs': batchMaxDelayMs,
+      'detailedResults': detailedResults
     };
 
     // Invoke method to open camera, and then create an event channel which will
     // return a stream
     _channel.invokeMethod('scanBarcode', params);
+    return _resultStream(detailedResults, batchResults);
+  }
+
+  /// Starts scanning inside the app, with the camera preview shown by
+  /// [EmbeddedBarcodeScanner.buildPreview] instead of a separate scan screen.
+  ///
+  /// Android only. The camera permission must have been granted first; the
+  /// call fails with a `cameraPermission` error otherwise. Results arrive on
+  /// [EmbeddedBarcodeScanner.results] in the same form as from
+  /// [getBarcodeStreamReceiver], and the other parameters mean the same as
+  /// there. [frontCamera] uses the front camera instead of the back one.
+  /// Only one embedded scanner runs at a time; call
+  /// [EmbeddedBarcodeScanner.stop] when the preview is no longer shown. The
+  /// camera is released while the app is in the background; if it cannot be
+  /// reopened when the app comes back, the scanner stops and
+  /// [EmbeddedBarcodeScanner.results] gets a `cameraError`.
+  static Future<EmbeddedBarcodeScanner> startEmbeddedScanner(
+      {ScanMode scanMode = ScanMode.DEFAULT,
+      List<BarcodeFormat> formats = const [],
+      bool frontCamera = false,
+      int detectionWorkers = 1,
+      bool useCamera2 = false,
+      bool thermalScaling = false,
+      int dedupWindowMs = 0,
+      int dedupCapacity = 256,
+      bool batchResults = false,
+      int batchMaxItems = 32,
+      int batchMaxDelayMs = 50,
+      bool detailedResults = false}) async {
+    final results =
+        _resultStream(detailedResults, batchResults, embeddedErrors: true);
+    final info = await _channel
+        .invokeMapMethod<String, dynamic>('startEmbeddedScanner', <String, dynamic>{
+      'scanMode': scanMode.index,
+      'formats': formats.map((format) => format.name).toList(),
+      'frontCamera': frontCamera,
+      'detectionWorkers': detectionWorkers,
+      'useCamera2': useCamera2,
+      'thermalScaling': thermalScaling,
+      'dedupWindowMs': dedupWindowMs,
+      'dedupCapacity': dedupCapacity,
+      'batchResults': batchResults,
+      'batchMaxItems': batchMaxItems,
+      'batchMaxDelayMs': batchMaxDelayMs,
+      'detailedResults': detailedResults
+    });
+    return EmbeddedBarcodeScanner._fromInfo(info!, results);
+  }
+
+  /// Opens the camera for a session of back to back single scans, keeping it
+  /// open between them, with the preview shown by
+  /// [BarcodeScanSession.buildPreview].
+  ///
+  /// Android only. Detection starts paused; each [BarcodeScanSession.scanNext]
+  /// resumes it until one barcode is found, so a scan only costs the detection
+  /// time. The camera permission must have been granted first, and the
+  /// session runs in place of any [startEmbeddedScanner] scan. The parameters
+  /// mean the same as for [startEmbeddedScanner]. Setting [detailedResults]
+  /// allows [BarcodeScanSession.scanNextDetailed]. If the camera cannot be
+  /// reopened when the app comes back from the background, the session is
+  /// closed and a waiting scan fails with a `cameraError`.
+  static Future<BarcodeScanSession> openSession(
+      {ScanMode scanMode = ScanMode.DEFAULT,
+      List<BarcodeFormat> formats = const [],
+      bool frontCamera = false,
+      int detectionWorkers = 1,
+      bool useCamera2 = false,
+      bool thermalScaling = false,
+      bool detailedResults = false}) async {
+    final info = await _channel
+        .invokeMapMethod<String, dynamic>('openSession', <String, dynamic>{
+      'scanMode': scanMode.index,
+      'formats': formats.map((format) => format.name).toList(),
+      'frontCamera': frontCamera,
+      'detectionWorkers': detectionWorkers,
+      'useCamera2': useCamera2,
+      'thermalScaling': thermalScaling,
+      'detailedResults': detailedResults
+    });
+    return BarcodeScanSession._fromInfo(info!, detailedResults);
+  }
+
+  /// Returns the stream of results sent over the event channel, decoded if
+  /// they are [detailedResults]. With [embeddedErrors], an embedded scanner
+  /// whose camera could not be restarted is reported as a stream error.
+  static Stream _resultStream(bool detailedResults, bool batchResults,
+      {bool embeddedErrors = false}) {
     _onBarcodeReceiver ??= _eventChannel.receiveBroadcastStream();
-    return _onBarcodeReceiver;
+    // Directory scans share the channel and have their own stream.
+    final scanResults = _onBarcodeReceiver!
+        .where((event) =>
+            event is! Map ||
+            (!event.containsKey('directoryScan') &&
+                (embeddedErrors || !event.containsKey('embeddedScanner'))))
+        .map((event) {
+      if (event is Map && event.containsKey('embeddedScanner')) {
+        throw PlatformException(
+            code: 'cameraError', message: event['message'] as String?);
+      }
+      return event;
+    });
+    if (!detailedResults) {
+      return scanResults;
+    }
+    return scanResults.map((event) {
+      if (event is! Uint8List) {
+        return event;
+      }
+      final results = BarcodeResultCodec.decode(event);
+      return batchResults ? results : results.first;
+    });
   }
+
+  /// Prepares the scanner ahead of the next scan, e.g. while the app is still
+  /// on the screen before the scan screen.
+  ///
+  /// Android only. Loads a detector for the symbologies chosen by [scanMode]
+  /// and [formats], as for [scanBarcode], checks play services and, if the
+  /// camera permission has been granted, opens the back camera. The next scan
+  /// uses them if its formats match. Whatever is unused after
+  /// [idleTimeoutMs] is released. Returns true if the detector is ready.
+  static Future<bool> prewarm(
+      {ScanMode scanMode = ScanMode.DEFAULT,
+      List<BarcodeFormat> formats = const [],
+      int idleTimeoutMs = 10000}) async {
+    final ready = await _channel.invokeMethod<bool>('prewarm', <String, dynamic>{
+      'scanMode': scanMode.index,
+      'formats': formats.map((format) => format.name).toList(),
+      'idleTimeoutMs': idleTimeoutMs
+    });
+    return ready ?? false;
+  }
+
+  /// Releases anything prepared by [prewarm] straight away.
+  static Future<void> releasePrewarm() async {
+    await _channel.invokeMethod('releasePrewarm');
+  }
+
+  /// Returns frame pipeline statistics for the current scan session.
+  ///
+  /// Android only. The `captureToDequeue`, `detect`, `detectToDeliver` and
+  /// `endToEnd` entries are latency summaries in microseconds, each with
+  /// `count`, `mean`, `min`, `p50`, `p90`, `p99` and `max`. The
+  /// `framesDropped` and `framesDetected` entries count camera frames that
+  /// never reached the detector and frames in which something was found.
+  /// `uiDraw` and `uiFrame` summarise the scan screen's own frames (Android 7
+  /// and later): the main thread's draw time and the total frame time.
+  /// `dedupHits` and `dedupMisses` count continuous scan results suppressed as
+  /// repeats and let through. `thermalTier` is how far scanning is scaled back
+  /// for heat (see `thermalScaling` on [scanBarcode]), from 0 to 4, and
+  /// `thermalTierChanges` counts its changes.
+  /// Statistics are reset whenever a scan starts.
+  static Future<Map<String, dynamic>> getScannerStats() async {
+    final stats =
+        await _channel.invokeMapMethod<String, dynamic>('getScannerStats');
+    return stats ?? <String, dynamic>{};
+  }
+
+  /// Measures the per-frame detector cost of restricting the formats.
+  ///
+  /// Android only. Decodes [frames] synthetic frames of [width] by [height]
+  /// with all formats, QR codes only and EAN/UPC only, and returns a latency
+  /// summary in microseconds for each under `all`, `qr` and `eanUpc`, in the
+  /// same shape as the [getScannerStats] entries. Takes a few seconds.
+  static Future<Map<String, dynamic>> benchmarkDetectorFormats(
+      {int width = 1280, int height = 720, int frames = 30}) async {
+    final results = await _channel.invokeMapMethod<String, dynamic>(
+        'benchmarkDetectorFormats',
+        <String, dynamic>{'width': width, 'height': height, 'frames': frames});
+    return results ?? <String, dynamic>{};
+  }
+
+  /// Picks the camera preview size and frame rate for this device.
+  ///
+  /// Android only. Decodes [frames] synthetic frames holding EAN-13 codes of
+  /// several densities at each candidate preview size, and keeps the size
+  /// that reads the most codes while the detector keeps up, with a frame rate
+  /// it keeps up with. Later scans use it until [clearPreviewCalibration] is
+  /// called or the OS is updated. Returns the chosen `previewWidth`,
+  /// `previewHeight` and `fps`, and under `candidates` the `width`, `height`,
+  /// `successRate` and `framesPerSecond` measured for each size. Takes a few
+  /// seconds.
+  static Future<Map<String, dynamic>> calibratePreview({int frames = 12}) async {
+    final results = await _channel.invokeMapMethod<String, dynamic>(
+        'calibratePreview', <String, dynamic>{'frames': frames});
+    return results ?? <String, dynamic>{};
+  }
+
+  /// Drops the profile found by [calibratePreview], so that scans go back to
+  /// the default preview size and frame rate.
+  static Future<void> clearPreviewCalibration() async {
+    await _channel.invokeMethod('clearPreviewCalibration');
+  }
+
+  /// Finds the barcodes in the image file at [path], such as a photo or a
+  /// scanned document.
+  ///
+  /// Android only. Large images are decoded in overlapping tiles, so memory
+  /// use stays the same however large the image is, and [detectionWorkers]
+  /// tiles are decoded in parallel, at most one per CPU core. [scanMode] and
+  /// [formats] pick the formats as for [scanBarcode]. Returns each code once,
+  /// top to bottom, with its position in the image; the capture time is when
+  /// the file was last modified. The orientation recorded in a photo's EXIF
+  /// data is not applied to the positions.
+  static Future<List<BarcodeResult>> scanImage(String path,
+      {ScanMode scanMode = ScanMode.DEFAULT,
+      int detectionWorkers = 2,
+      List<BarcodeFormat> formats = const []}) async {
+    final message = await _channel.invokeMethod<Uint8List>(
+        'scanImage', <String, dynamic>{
+      'path': path,
+      'scanMode': scanMode.index,
+      'detectionWorkers': detectionWorkers,
+      'formats': formats.map((format) => format.name).toList()
+    });
+    return message == null
+        ? <BarcodeResult>[]
+        : BarcodeResultCodec.decode(message);
+  }
+
+  /// Scans every image in the directory at [path], streaming the barcodes of
+  /// each file as soon as it is done.
+  ///
+  /// Android only. Meant for folders of thousands of photos: files are
+  /// scanned as [scanImage] does, [detectionWorkers] at a time, and only the
+  /// directory being read is ever listed in memory. Subdirectories are
+  /// scanned too unless [recursive] is false. [scanMode] and [formats] pick
+  /// the formats as for [scanBarcode].
+  ///
+  /// Pausing the subscription stops new files from being started; this is the
+  /// only back-pressure, so pause it to keep results from piling up while the
+  /// app is busy. [maxPending] only bounds the results waiting on the
+  /// platform side to be sent over the channel, not those sent and not yet
+  /// taken by the app. Cancelling the subscription stops the scan. The stream
+  /// closes once every file is done, or with an error if the scan could not
+  /// start. Only one directory scan runs at a
+  /// time. [getDirectoryScanStats] reports progress and throughput.
+  static Stream<DirectoryScanResult> scanDirectory(String path,
+      {ScanMode scanMode = ScanMode.DEFAULT,
+      List<BarcodeFormat> formats = const [],
+      int detectionWorkers = 2,
+      bool recursive = true,
+      int maxPending = 8}) {
+    late StreamController<DirectoryScanResult> controller;
+    StreamSubscription? events;
+    void finish([Object? error]) {
+      if (error != null) {
+        controller.addError(error);
+      }
+      events?.cancel();
+      controller.close();
+    }
+
+    controller = StreamController<DirectoryScanResult>(
+        onListen: () {
+          _onBarcodeReceiver ??= _eventChannel.receiveBroadcastStream();
+          events = _onBarcodeReceiver!.listen((event) {
+            if (event is! Map || !event.containsKey('directoryScan')) {
+              return;
+            }
+            if (event['directoryScan'] != 'done') {
+              controller.add(DirectoryScanResult._fromEvent(event));
+            } else if (event['error'] != null) {
+              finish(PlatformException(
+                  code: 'scanDirectoryFailed',
+                  message: event['error'] as String));
+            } else {
+              finish();
+            }
+          });
+          _channel.invokeMethod('scanDirectory', <String, dynamic>{
+            'path': path,
+            'scanMode': scanMode.index,
+            'formats': formats.map((format) => format.name).toList(),
+            'detectionWorkers': detectionWorkers,
+            'recursive': recursive,
+            'maxPending': maxPending
+          }).catchError((Object error) {
+            finish(error);
+          });
+        },
+        onPause: () => _channel.invokeMethod('pauseDirectoryScan'),
+        onResume: () => _channel.invokeMethod('resumeDirectoryScan'),
+        onCancel: () async {
+          await events?.cancel();
+          await _channel.invokeMethod('cancelDirectoryScan');
+        });
+    return controller.stream;
+  }
+
+  /// Returns the progress and throughput of the last [scanDirectory] run.
+  ///
+  /// Android only. `filesScanned`, `filesFailed` and `barcodesFound` count
+  /// the files done so far, `elapsedMs` and `filesPerSecond` measure the run
+  /// up to now or to its end, and `running` is true until it ends. `scan`
+  /// summarizes the time each file took and `deliveryWait` the time workers
+  /// waited for the app to take results, in microseconds, in the same shape
+  /// as the [getScannerStats] entries.
+  static Future<Map<String, dynamic>> getDirectoryScanStats() async {
+    final stats = await _channel
+        .invokeMapMethod<String, dynamic>('getDirectoryScanStats');
+    return stats ?? <String, dynamic>{};
+  }
+
+  /// Returns the startup timeline of the last scan session.
+  ///
+  /// Android only. Each of `activityCreated`, `permissionResolved`,
+  /// `cameraOpened`, `firstFrame`, `firstDecode` and `resultDelivered` is the
+  /// time in microseconds from the scan call reaching the plugin to that
+  /// stage, or null if the session did not reach it. `coldStart` is true for
+  /// the first scan since the plugin was loaded, and `prewarmed` is true if
+  /// the session used what [prewarm] prepared. `focusAreas` is true if the
+  /// camera focused and metered on the scan window (see `scanWindowFocus` on
+  /// [scanBarcode]). The same stages appear as trace sections in Perfetto
+  /// captures.
+  static Future<Map<String, dynamic>> getStartupTrace() async {
+    final trace =
+        await _channel.invokeMapMethod<String, dynamic>('getStartupTrace');
+    return trace ?? <String, dynamic>{};
+  }
+
+  /// Clears the statistics returned by [getScannerStats].
+  static Future<void> resetScannerStats() async {
+    await _channel.invokeMethod('resetScannerStats');
+  }
+}
+
+/// The camera preview of a scan running inside the app.
+///
+/// The preview goes to a Flutter texture, so the scanner opens within a few
+/// frames instead of waiting for a separate scan screen to launch.
+abstract class EmbeddedScannerPreview {
+  static const MethodChannel _channel =
+      MethodChannel('flutter_barcode_scanner');
+
+  /// The texture the camera preview is drawn into.
+  final int textureId;
+
+  /// The size of the camera preview, as the camera sensor sees it.
+  final Size previewSize;
+
+  /// How far the camera sensor is turned from the display, clockwise in
+  /// degrees.
+  final int rotation;
+
+  EmbeddedScannerPreview._fromInfo(Map<String, dynamic> info)
+      : textureId = info['textureId'] as int,
+        previewSize = Size((info['previewWidth'] as int).toDouble(),
+            (info['previewHeight'] as int).toDouble()),
+        rotation = info['rotation'] as int;
+
+  /// The width over the height of the preview as displayed.
+  double get aspectRatio => rotation % 180 == 0
+      ? previewSize.width / previewSize.height
+      : previewSize.height / previewSize.width;
+
+  /// Returns a widget showing the camera preview at its own aspect ratio.
+  Widget buildPreview() {
+    return AspectRatio(
+        aspectRatio: aspectRatio, child: Texture(textureId: textureId));
+  }
+}
+
+/// A scan running inside the app, started by
+/// [FlutterBarcodeScanner.startEmbeddedScanner].
+class EmbeddedBarcodeScanner extends EmbeddedScannerPreview {
+  /// The scan results, as from [FlutterBarcodeScanner.getBarcodeStreamReceiver].
+  final Stream results;
+
+  EmbeddedBarcodeScanner._fromInfo(Map<String, dynamic> info, this.results)
+      : super._fromInfo(info);
+
+  /// Stops the camera and releases the preview texture.
+  Future<void> stop() async {
+    await EmbeddedScannerPreview._channel.invokeMethod('stopEmbeddedScanner');
+  }
+}
+
+/// A session of single scans with the camera kept open, opened by
+/// [FlutterBarcodeScanner.openSession].
+class BarcodeScanSession extends EmbeddedScannerPreview {
+  /// Whether results carry their format, geometry and capture time.
+  final bool detailedResults;
+
+  BarcodeScanSession._fromInfo(Map<String, dynamic> info, this.detailedResults)
+      : super._fromInfo(info);
+
+  /// Detects until a barcode is found and returns its value.
+  ///
+  /// Returns null if [pauseDetection] or [close] is called first. Only one
+  /// scan can be waiting at a time.
+  Future<String?> scanNext() async {
+    final result =
+        await EmbeddedScannerPreview._channel.invokeMethod('scanNext');
+    if (result is Uint8List) {
+      return BarcodeResultCodec.decode(result).first.rawValue;
+    }
+    return result as String?;
+  }
+
+  /// Scans like [scanNext], but returns the result with its format, geometry
+  /// and capture time. The session must have been opened with
+  /// `detailedResults`.
+  Future<BarcodeResult?> scanNextDetailed() async {
+    if (!detailedResults) {
+      throw StateError('The session was not opened with detailedResults');
+    }
+    final result =
+        await EmbeddedScannerPreview._channel.invokeMethod('scanNext');
+    if (result is! Uint8List) {
+      return null;
+    }
+    return BarcodeResultCodec.decode(result).first;
+  }
+
+  /// Stops detecting, keeping the camera and preview running. A waiting
+  /// [scanNext] returns null.
+  Future<void> pauseDetection() async {
+    await EmbeddedScannerPreview._channel.invokeMethod('pauseDetection');
+  }
+
+  /// Closes the camera and releases the preview texture.
+  Future<void> close() async {
+    await EmbeddedScannerPreview._channel.invokeMethod('closeSession');
+  }
+}
+
+/// The barcodes found in one file by [FlutterBarcodeScanner.scanDirectory].
+class DirectoryScanResult {
+  /// The path of the image file.
+  final String path;
+
+  /// The barcodes in the file, as from [FlutterBarcodeScanner.scanImage].
+  /// Empty if the file could not be scanned.
+  final List<BarcodeResult> results;
+
+  /// Why the file could not be scanned, or null if it was.
+  final String? error;
+
+  DirectoryScanResult._fromEvent(Map event)
+      : path = event['path'] as String,
+        results = event['results'] is Uint8List
+            ? BarcodeResultCodec.decode(event['results'] as Uint8List)
+            : const <BarcodeResult>[],
+        error = event['error'] as String?;
 }
@@ -1,3 +1,7 @@
+import 'dart:convert';
+import 'dart:typed_data';
+import 'dart:ui';
+
 import 'package:flutter/foundation.dart';
 import 'package:flutter/services.dart';
 
@@ -15,3 +19,77 @@ class MethodChannelFlutterBarcodeScanner extends FlutterBarcodeScannerPlatform {
     return version;
   }
 }
+
+/// A scan result with its geometry and capture time.
+class BarcodeResult {
+  /// Creates a result.
+  const BarcodeResult(this.rawValue, this.format, this.boundingBox,
+      this.cornerPoints, this.captureTime);
+
+  /// The barcode value.
+  final String rawValue;
+
+  /// The barcode format, one of the Android `Barcode` format flags, e.g. 256
+  /// for a QR code.
+  final int format;
+
+  /// The box around [cornerPoints], in camera frame pixels.
+  final Rect boundingBox;
+
+  /// The corners of the barcode, in camera frame pixels.
+  final List<Offset> cornerPoints;
+
+  /// When the camera frame the barcode was found in was captured.
+  final DateTime captureTime;
+}
+
+/// Decodes the binary scan results sent by the Android plugin.
+///
+/// All values are little endian. A message is a 4 byte header (u8 version,
+/// u8 reserved, u16 record count) followed by its records. Each record is an
+/// i32 format, an i64 capture time in microseconds since the epoch, the i32
+/// left, top, right and bottom of the bounding box, a u8 corner count with an
+/// i32 x and y per corner, and the raw value as an i32 length and UTF-8 bytes.
+class BarcodeResultCodec {
+  BarcodeResultCodec._();
+
+  /// The only message version this decoder reads.
+  static const int version = 1;
+
+  /// Decodes every result in [message].
+  static List<BarcodeResult> decode(Uint8List message) {
+    final data = ByteData.sublistView(message);
+    if (data.getUint8(0) != version) {
+      throw FormatException(
+          'Unsupported barcode result version ${data.getUint8(0)}');
+    }
+    final count = data.getUint16(2, Endian.little);
+    final results = <BarcodeResult>[];
+    var offset = 4;
+    for (var i = 0; i < count; i++) {
+      final format = data.getInt32(offset, Endian.little);
+      final captureMicros = data.getInt64(offset + 4, Endian.little);
+      final boundingBox = Rect.fromLTRB(
+          data.getInt32(offset + 12, Endian.little).toDouble(),
+          data.getInt32(offset + 16, Endian.little).toDouble(),
+          data.getInt32(offset + 20, Endian.little).toDouble(),
+          data.getInt32(offset + 24, Endian.little).toDouble());
+      final corners = data.getUint8(offset + 28);
+      offset += 29;
+      final cornerPoints = <Offset>[];
+      for (var j = 0; j < corners; j++) {
+        cornerPoints.add(Offset(data.getInt32(offset, Endian.little).toDouble(),
+            data.getInt32(offset + 4, Endian.little).toDouble()));
+        offset += 8;
+      }
+      final length = data.getInt32(offset, Endian.little);
+      offset += 4;
+      final rawValue =
+          utf8.decode(Uint8List.sublistView(message, offset, offset + length));
+      offset += length;
+      results.add(BarcodeResult(rawValue, format, boundingBox, cornerPoints,
+          DateTime.fromMicrosecondsSinceEpoch(captureMicros)));
+    }
+    return results;
+  }
+}
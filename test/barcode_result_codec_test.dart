@@ -0,0 +1,74 @@
+import 'dart:convert';
+import 'dart:typed_data';
+import 'dart:ui';
+
+import 'package:flutter_test/flutter_test.dart';
+import 'package:flutter_barcode_scanner/flutter_barcode_scanner_method_channel.dart';
+
+/// Builds a message the way the Android ResultCodec writes it.
+Uint8List encode(List<BarcodeResult> results) {
+  final builder = BytesBuilder();
+  final header = ByteData(4)
+    ..setUint8(0, BarcodeResultCodec.version)
+    ..setUint16(2, results.length, Endian.little);
+  builder.add(header.buffer.asUint8List());
+  for (final result in results) {
+    final value = utf8.encode(result.rawValue);
+    final record = ByteData(33 + result.cornerPoints.length * 8)
+      ..setInt32(0, result.format, Endian.little)
+      ..setInt64(4, result.captureTime.microsecondsSinceEpoch, Endian.little)
+      ..setInt32(12, result.boundingBox.left.toInt(), Endian.little)
+      ..setInt32(16, result.boundingBox.top.toInt(), Endian.little)
+      ..setInt32(20, result.boundingBox.right.toInt(), Endian.little)
+      ..setInt32(24, result.boundingBox.bottom.toInt(), Endian.little)
+      ..setUint8(28, result.cornerPoints.length);
+    var offset = 29;
+    for (final point in result.cornerPoints) {
+      record
+        ..setInt32(offset, point.dx.toInt(), Endian.little)
+        ..setInt32(offset + 4, point.dy.toInt(), Endian.little);
+      offset += 8;
+    }
+    record.setInt32(offset, value.length, Endian.little);
+    builder
+      ..add(record.buffer.asUint8List())
+      ..add(value);
+  }
+  return builder.takeBytes();
+}
+
+void main() {
+  final qr = BarcodeResult(
+      'https://example.com/ü',
+      256,
+      const Rect.fromLTRB(10, 20, 110, 120),
+      const [Offset(10, 20), Offset(110, 20), Offset(110, 120), Offset(10, 120)],
+      DateTime.fromMicrosecondsSinceEpoch(1700000000123456));
+  final ean = BarcodeResult('4006381333931', 32, Rect.zero, const [],
+      DateTime.fromMicrosecondsSinceEpoch(1700000000200000));
+
+  test('decode reads every field of a single result', () {
+    final result = BarcodeResultCodec.decode(encode([qr])).single;
+
+    expect(result.rawValue, qr.rawValue);
+    expect(result.format, 256);
+    expect(result.boundingBox, qr.boundingBox);
+    expect(result.cornerPoints, qr.cornerPoints);
+    expect(result.captureTime, qr.captureTime);
+  });
+
+  test('decode reads a batch in order', () {
+    final results = BarcodeResultCodec.decode(encode([qr, ean, qr]));
+
+    expect(results.map((result) => result.rawValue),
+        [qr.rawValue, ean.rawValue, qr.rawValue]);
+    expect(results[1].cornerPoints, isEmpty);
+    expect(results[1].captureTime, ean.captureTime);
+  });
+
+  test('decode rejects an unknown version', () {
+    final message = encode([qr])..[0] = 2;
+
+    expect(() => BarcodeResultCodec.decode(message), throwsFormatException);
+  });
+}
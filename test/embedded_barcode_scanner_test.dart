@@ -0,0 +1,77 @@
+import 'package:flutter/services.dart';
+import 'package:flutter/widgets.dart';
+import 'package:flutter_barcode_scanner/flutter_barcode_scanner.dart';
+import 'package:flutter_test/flutter_test.dart';
+
+void main() {
+  TestWidgetsFlutterBinding.ensureInitialized();
+
+  const MethodChannel channel = MethodChannel('flutter_barcode_scanner');
+  final calls = <MethodCall>[];
+
+  setUp(() {
+    calls.clear();
+    TestDefaultBinaryMessengerBinding.instance.defaultBinaryMessenger
+        .setMockMethodCallHandler(channel, (MethodCall methodCall) async {
+      calls.add(methodCall);
+      if (methodCall.method == 'scanNext') {
+        return '4006381333931';
+      }
+      if (methodCall.method == 'startEmbeddedScanner' ||
+          methodCall.method == 'openSession') {
+        return <String, dynamic>{
+          'textureId': 7,
+          'previewWidth': 1600,
+          'previewHeight': 1200,
+          'rotation': 90
+        };
+      }
+      return null;
+    });
+  });
+
+  tearDown(() {
+    TestDefaultBinaryMessengerBinding.instance.defaultBinaryMessenger
+        .setMockMethodCallHandler(channel, null);
+  });
+
+  test('startEmbeddedScanner passes the options and reads the preview', () async {
+    final scanner = await FlutterBarcodeScanner.startEmbeddedScanner(
+        formats: [BarcodeFormat.QR_CODE], frontCamera: true);
+
+    expect(calls.single.method, 'startEmbeddedScanner');
+    expect(calls.single.arguments['formats'], ['QR_CODE']);
+    expect(calls.single.arguments['frontCamera'], true);
+    expect(scanner.textureId, 7);
+    expect(scanner.previewSize, const Size(1600, 1200));
+    expect(scanner.rotation, 90);
+    expect(scanner.aspectRatio, 1200 / 1600);
+  });
+
+  test('stop asks the plugin to stop the embedded scanner', () async {
+    final scanner = await FlutterBarcodeScanner.startEmbeddedScanner();
+    await scanner.stop();
+
+    expect(calls.last.method, 'stopEmbeddedScanner');
+  });
+
+  test('a session scans and closes through the plugin', () async {
+    final session = await FlutterBarcodeScanner.openSession(
+        scanMode: ScanMode.BARCODE);
+
+    expect(await session.scanNext(), '4006381333931');
+    await session.pauseDetection();
+    await session.close();
+
+    expect(calls.map((call) => call.method),
+        ['openSession', 'scanNext', 'pauseDetection', 'closeSession']);
+    expect(calls.first.arguments['scanMode'], ScanMode.BARCODE.index);
+    expect(session.textureId, 7);
+  });
+
+  test('scanNextDetailed needs a detailed session', () async {
+    final session = await FlutterBarcodeScanner.openSession();
+
+    expect(session.scanNextDetailed(), throwsStateError);
+  });
+}